@@ -0,0 +1,149 @@
+package controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import view.HotPathProbe;
+
+/**
+ * Allocation budget check for the paths the event dispatch thread runs while the user
+ * draws. Measures the bytes each path allocates per run with HotPathProbe and compares
+ * them with the budgets checked in to allocation-budgets.properties, printing every path
+ * with its budget, measurement, and the difference. The exit status is 1 if any path is
+ * over budget, so that a build running this check fails when a change adds allocations
+ * to painting, dragging, or committing a shape.
+ *
+ * <p>With --update, the budgets file is rewritten from the measurements instead, each
+ * rounded up to a whole 8 bytes and given some headroom, for when an increase is intended.
+ *
+ * <p>Usage: {@code AllocationBudget [budgets] [--update]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class AllocationBudget {
+
+    // CONSTANTS
+    /** Budgets file used when none is given. */
+    private static final String DEFAULT_BUDGETS = "allocation-budgets.properties";
+
+    /** Option to rewrite the budgets from the measurements. */
+    private static final String UPDATE = "--update";
+
+    /** Number of runs of each path, both to warm up and to measure. */
+    private static final int RUNS = 20_000;
+
+    /** Fraction of a measurement added as headroom when budgets are rewritten. */
+    private static final double HEADROOM = 0.25;
+
+    /** Bytes added as headroom when budgets are rewritten, for paths that allocate nothing. */
+    private static final int MIN_HEADROOM = 16;
+
+    /** Granularity of allocations on the heap, in bytes. */
+    private static final int ALIGNMENT = 8;
+
+
+    // Private constructor to inhibit external instantiation.
+    private AllocationBudget() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Measures the paths and checks them against their budgets, or rewrites the budgets.
+     *
+     * @param theArgs Optionally the budgets file and --update.
+     * @throws IOException If the budgets cannot be read or written.
+     */
+    public static void main(final String[] theArgs) throws IOException {
+
+        System.setProperty("java.awt.headless", "true");
+        Path file = Paths.get(DEFAULT_BUDGETS);
+        boolean update = false;
+        for (final String arg: theArgs) {
+            if (UPDATE.equals(arg)) {
+                update = true;
+            } else {
+                file = Paths.get(arg);
+            }
+        }
+
+        final Map<String, Double> measured = HotPathProbe.measure(RUNS);
+        if (update) {
+            // Sorted and without a date, so that a changed budget is a one line diff.
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+                out.println("# Bytes allocated per run of each event dispatch thread path.");
+                out.println("# Checked by controller.AllocationBudget; rewrite with "
+                            + UPDATE + ".");
+                for (final Map.Entry<String, Double> path:
+                     new TreeMap<String, Double>(measured).entrySet()) {
+                    final double budget = path.getValue()
+                                          + Math.max(path.getValue() * HEADROOM, MIN_HEADROOM);
+                    out.println(path.getKey() + "="
+                                + (long) Math.ceil(budget / ALIGNMENT) * ALIGNMENT);
+                }
+            }
+            System.out.println("Wrote " + measured.size() + " budgets to " + file);
+            return;
+        }
+
+        final Properties budgets = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            budgets.load(in);
+        } catch (final NoSuchFileException e) {
+            System.err.println("No budgets at " + file + "; create them with " + UPDATE);
+            System.exit(2);
+        }
+        System.exit(check(measured, budgets) ? 0 : 1);
+    }
+
+    /**
+     * Prints every path with its budget and measurement.
+     *
+     * @param theMeasured The bytes allocated per run of each path.
+     * @param theBudgets The budget of each path.
+     * @return Whether every path stayed within its budget.
+     */
+    private static boolean check(final Map<String, Double> theMeasured,
+                                 final Properties theBudgets) {
+
+        boolean passed = true;
+        System.out.printf(Locale.ROOT, "%-20s %10s %10s %10s  %s%n", "path", "budget",
+                          "bytes/run", "change", "result");
+        for (final Map.Entry<String, Double> path: theMeasured.entrySet()) {
+            final String value = theBudgets.getProperty(path.getKey());
+            if (value == null) {
+                System.out.printf(Locale.ROOT, "%-20s %10s %10.1f %10s  %s%n", path.getKey(),
+                                  "-", path.getValue(), "-", "NO BUDGET");
+                passed = false;
+                continue;
+            }
+            final long budget = Long.parseLong(value.trim());
+            final double change = path.getValue() - budget;
+            final boolean over = change > 0;
+            String result = "ok";
+            if (over) {
+                result = String.format(Locale.ROOT, "OVER by %.1f bytes (%+.0f%%)", change,
+                                       100 * change / Math.max(budget, 1));
+            }
+            System.out.printf(Locale.ROOT, "%-20s %10d %10.1f %+10.1f  %s%n", path.getKey(),
+                              budget, path.getValue(), change, result);
+            passed &= !over;
+        }
+        for (final String path: theBudgets.stringPropertyNames()) {
+            if (!theMeasured.containsKey(path)) {
+                System.out.printf(Locale.ROOT, "%-20s %10s %10s %10s  %s%n", path,
+                                  theBudgets.getProperty(path), "-", "-", "NOT MEASURED");
+            }
+        }
+        return passed;
+    }
+}
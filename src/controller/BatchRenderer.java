@@ -0,0 +1,232 @@
+package controller;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import model.PaintDocument;
+import model.PaintDocumentIO;
+import view.ShapeRenderer;
+
+/**
+ * Headless command that renders every PowerPaint document in a directory to a PNG of the
+ * requested size. Reading and writing files happens on a pool of I/O threads while
+ * rasterization is limited to a fixed pool sized to the number of processors, so slow disks
+ * never leave the CPUs idle and rendering never oversubscribes them.
+ *
+ * <p>Usage: {@code BatchRenderer <inputDir> <outputDir> <width> <height> [rasterThreads]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class BatchRenderer {
+
+    // CONSTANTS
+    /** Number of threads allowed to block on file reads and writes at once. */
+    private static final int IO_THREADS = 32;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private BatchRenderer() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Renders the documents found in the input directory.
+     *
+     * @param theArgs The input directory, output directory, image width, image height, and
+     * optionally the number of rasterization threads.
+     */
+    public static void main(final String[] theArgs) {
+
+        System.setProperty("java.awt.headless", "true");
+        if (theArgs.length < 4) {
+            System.err.println("Usage: BatchRenderer <inputDir> <outputDir> <width> "
+                               + "<height> [rasterThreads]");
+            System.exit(2);
+        }
+        final Path input = Paths.get(theArgs[0]);
+        final Path output = Paths.get(theArgs[1]);
+        final int width = Integer.parseInt(theArgs[2]);
+        final int height = Integer.parseInt(theArgs[3]);
+        final int rasterThreads;
+        if (theArgs.length > 4) {
+            rasterThreads = Integer.parseInt(theArgs[4]);
+        } else {
+            rasterThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        try {
+            final int failures = renderAll(input, output, width, height, rasterThreads);
+            System.exit(failures == 0 ? 0 : 1);
+        } catch (final IOException e) {
+            System.err.println("Could not list " + input + ": " + e.getMessage());
+            System.exit(1);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Renders every document in the input directory, printing a line per file and a summary.
+     *
+     * @param theInput The directory containing the documents.
+     * @param theOutput The directory the PNGs are written to.
+     * @param theWidth The width of each image.
+     * @param theHeight The height of each image.
+     * @param theRasterThreads The number of threads used for rasterization.
+     * @return The number of documents that could not be rendered.
+     * @throws IOException If the input directory cannot be listed.
+     * @throws InterruptedException If interrupted while waiting for the renders to finish.
+     */
+    public static int renderAll(final Path theInput, final Path theOutput, final int theWidth,
+                                final int theHeight, final int theRasterThreads)
+        throws IOException, InterruptedException {
+
+        if (theWidth <= 0 || theHeight <= 0 || theRasterThreads <= 0) {
+            throw new IllegalArgumentException("Size and thread count must be positive");
+        }
+        Files.createDirectories(theOutput);
+        final List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream =
+                 Files.newDirectoryStream(theInput, "*." + PaintDocumentIO.EXTENSION)) {
+            for (final Path file: stream) {
+                files.add(file);
+            }
+        }
+
+        final ExecutorService io = Executors.newFixedThreadPool(IO_THREADS);
+        final ExecutorService raster = Executors.newFixedThreadPool(theRasterThreads);
+        final long start = System.nanoTime();
+        int failures = 0;
+        try {
+            final List<Future<String>> results = new ArrayList<Future<String>>(files.size());
+            for (final Path file: files) {
+                results.add(io.submit(new RenderJob(file, theOutput, theWidth, theHeight,
+                                                    raster)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    System.out.println(results.get(i).get());
+                } catch (final ExecutionException e) {
+                    failures++;
+                    System.out.println(files.get(i).getFileName() + " FAILED: "
+                                       + e.getCause());
+                }
+            }
+        } finally {
+            io.shutdownNow();
+            raster.shutdownNow();
+            io.awaitTermination(1, TimeUnit.MINUTES);
+            raster.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        final double seconds = (System.nanoTime() - start) / (NANOS_PER_MILLI * 1000);
+        final int rendered = files.size() - failures;
+        System.out.println(String.format(Locale.ROOT,
+            "%d rendered, %d failed in %.2f s (%.1f documents/s, %d raster threads)",
+            rendered, failures, seconds, rendered / Math.max(seconds, 1e-9),
+            theRasterThreads));
+        return failures;
+    }
+
+    /**
+     * Converts a duration in nanoseconds to milliseconds.
+     *
+     * @param theNanos The duration in nanoseconds.
+     * @return The duration in milliseconds.
+     */
+    private static double millis(final long theNanos) {
+
+        return theNanos / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * Reads, renders, and writes a single document. Runs on an I/O thread and hands the
+     * rasterization step to the raster pool.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class RenderJob implements Callable<String> {
+
+        // INSTANCE FIELDS
+        /** The document to render. */
+        private final Path myFile;
+
+        /** The directory the PNG is written to. */
+        private final Path myOutput;
+
+        /** The width of the image. */
+        private final int myWidth;
+
+        /** The height of the image. */
+        private final int myHeight;
+
+        /** The pool that rasterization is submitted to. */
+        private final ExecutorService myRaster;
+
+
+        /**
+         * Constructor that stores the parameters of the job.
+         *
+         * @param theFile The document to render.
+         * @param theOutput The directory the PNG is written to.
+         * @param theWidth The width of the image.
+         * @param theHeight The height of the image.
+         * @param theRaster The pool that rasterization is submitted to.
+         */
+        RenderJob(final Path theFile, final Path theOutput, final int theWidth,
+                  final int theHeight, final ExecutorService theRaster) {
+
+            myFile = theFile;
+            myOutput = theOutput;
+            myWidth = theWidth;
+            myHeight = theHeight;
+            myRaster = theRaster;
+        }
+
+        @Override
+        public String call() throws Exception {
+
+            final long readStart = System.nanoTime();
+            final PaintDocument document = PaintDocumentIO.read(myFile);
+            final long renderStart = System.nanoTime();
+            final BufferedImage image = myRaster.submit(
+                new Callable<BufferedImage>() {
+                    @Override
+                    public BufferedImage call() {
+                        return ShapeRenderer.render(document, myWidth, myHeight);
+                    }
+                }).get();
+            final long writeStart = System.nanoTime();
+            final String name = myFile.getFileName().toString();
+            final String png = name.substring(0, name.lastIndexOf('.')) + ".png";
+            ImageIO.write(image, "png", myOutput.resolve(png).toFile());
+            final long end = System.nanoTime();
+
+            return String.format(Locale.ROOT,
+                "%s: %d shapes, read %.1f ms, render %.1f ms, write %.1f ms",
+                name, document.getShapes().size(), millis(renderStart - readStart),
+                millis(writeStart - renderStart), millis(end - writeStart));
+        }
+    }
+}
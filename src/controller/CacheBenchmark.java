@@ -0,0 +1,377 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.swing.SwingUtilities;
+import model.DocumentLayer;
+import model.PaintDocument;
+import model.PaintShape;
+import view.CacheBudget;
+import view.PaintPanel;
+
+/**
+ * Headless benchmark of several open documents sharing one CacheBudget, as the tabs of
+ * the window do. Each document is shown in turn, as when the user opens them one after
+ * another, and then the user switches back to the document shown before the last, and
+ * then to the first. Every switch reports the time to paint the document, the layers it
+ * had to rasterize again, and the bytes cached by all the documents together. Checks that
+ * the documents not on screen never hold more than the budget, that switching back to a
+ * recently viewed document paints it from its cached rasters, that the first document
+ * was evicted and redrawn, and that every redrawn frame matches the one first painted.
+ * Exits with status 1 if any check fails.
+ *
+ * <p>Usage: {@code CacheBenchmark [documents] [shapes] [budget MB] [seed]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class CacheBenchmark {
+
+    // CONSTANTS
+    /** Default number of open documents. */
+    private static final int DEFAULT_DOCUMENTS = 8;
+
+    /** Default number of shapes in each document. */
+    private static final int DEFAULT_SHAPES = 20_000;
+
+    /** Default budget in megabytes. */
+    private static final int DEFAULT_BUDGET = 64;
+
+    /** Number of layers the shapes of each document are spread over. */
+    private static final int LAYERS = 3;
+
+    /** Width of the canvas. */
+    private static final int CANVAS_WIDTH = 1280;
+
+    /** Height of the canvas. */
+    private static final int CANVAS_HEIGHT = 800;
+
+    /** Bytes in a megabyte. */
+    private static final double BYTES_PER_MEGA = 1024 * 1024;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private CacheBenchmark() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the benchmark and the checks.
+     *
+     * @param theArgs Optionally the number of documents, the number of shapes in each, the
+     * budget in megabytes, and the seed.
+     * @throws Exception If the panels fail.
+     */
+    public static void main(final String[] theArgs) throws Exception {
+
+        System.setProperty("java.awt.headless", "true");
+        final int documents =
+            theArgs.length > 0 ? Integer.parseInt(theArgs[0]) : DEFAULT_DOCUMENTS;
+        final int shapes = theArgs.length > 1 ? Integer.parseInt(theArgs[1]) : DEFAULT_SHAPES;
+        final long budget = (long) ((theArgs.length > 2 ? Integer.parseInt(theArgs[2])
+                                                        : DEFAULT_BUDGET) * BYTES_PER_MEGA);
+        final long seed = theArgs.length > 3 ? Long.parseLong(theArgs[3]) : 46;
+        if (documents < 2) {
+            throw new IllegalArgumentException("At least two documents are needed");
+        }
+
+        final List<PaintDocument> drawings = new ArrayList<PaintDocument>();
+        for (int i = 0; i < documents; i++) {
+            drawings.add(makeDocument(shapes, new Random(seed + i)));
+        }
+        System.out.printf(Locale.ROOT, "%d documents of %d shapes in %d layers, %.0f MB budget%n",
+                          documents, shapes, LAYERS, budget / BYTES_PER_MEGA);
+        final boolean failed = call(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return run(drawings, budget);
+            }
+        });
+        if (failed) {
+            System.exit(1);
+        }
+        System.out.println("recent documents were cached and evicted ones redrawn identically");
+    }
+
+    /**
+     * Shows every document in turn and then switches back to two of them, checking the
+     * budget and the frames. Called on the event dispatch thread.
+     *
+     * @param theDrawings The documents.
+     * @param theCapacity The budget in bytes.
+     * @return Whether any check failed.
+     */
+    private static boolean run(final List<PaintDocument> theDrawings,
+                               final long theCapacity) {
+
+        final CacheBudget budget = new CacheBudget(theCapacity);
+        final List<BenchPanel> panels = new ArrayList<BenchPanel>();
+        final List<int[]> frames = new ArrayList<int[]>();
+        boolean failed = false;
+        long unbounded = 0;
+        long peak = 0;
+        System.out.printf(Locale.ROOT, "%-12s %10s %14s %12s%n", "show", "paint ms",
+                          "layer renders", "cached MB");
+        for (int i = 0; i < theDrawings.size(); i++) {
+            final BenchPanel panel = new BenchPanel(budget);
+            panel.setDocumentNow(theDrawings.get(i));
+            panels.add(panel);
+            show(panel, "document " + (i + 1), budget);
+            frames.add(panel.pixels());
+            unbounded += panel.rasterBytes();
+            peak = Math.max(peak, budget.getTotal());
+            if (budget.getTotal() - panel.rasterBytes() > theCapacity) {
+                System.out.println("FAIL: the documents not shown hold more than the budget");
+                failed = true;
+            }
+        }
+
+        // The document shown before the last was painted recently enough to be kept.
+        final int recent = panels.size() - 2;
+        if (show(panels.get(recent), "document " + (recent + 1), budget) != 0) {
+            System.out.println("FAIL: the recently viewed document was rasterized again");
+            failed = true;
+        }
+        failed |= !matches(panels.get(recent), frames.get(recent));
+        peak = Math.max(peak, budget.getTotal());
+
+        // The first document was painted longest ago, so it went first.
+        final long renders = show(panels.get(0), "document 1", budget);
+        if (unbounded > theCapacity && (budget.getEvictions() == 0 || renders == 0)) {
+            System.out.println("FAIL: the documents outgrew the budget but none was evicted");
+            failed = true;
+        }
+        failed |= !matches(panels.get(0), frames.get(0));
+        peak = Math.max(peak, budget.getTotal());
+
+        System.out.printf(Locale.ROOT, "cached at most %.1f MB; %.1f MB without a budget; "
+                          + "%d evictions%n", peak / BYTES_PER_MEGA, unbounded / BYTES_PER_MEGA,
+                          budget.getEvictions());
+        return failed;
+    }
+
+    /**
+     * Paints a document's panel as though its tab were selected and reports the paint.
+     *
+     * @param thePanel The panel.
+     * @param theLabel What to call the document in the report.
+     * @param theBudget The budget shared by the panels.
+     * @return The number of layers rasterized in full by the paint.
+     */
+    private static long show(final BenchPanel thePanel, final String theLabel,
+                             final CacheBudget theBudget) {
+
+        final long before = thePanel.fullRenders();
+        final long start = System.nanoTime();
+        thePanel.frame();
+        final double millis = (System.nanoTime() - start) / NANOS_PER_MILLI;
+        final long renders = thePanel.fullRenders() - before;
+        System.out.printf(Locale.ROOT, "%-12s %10.1f %14d %12.1f%n", theLabel, millis,
+                          renders, theBudget.getTotal() / BYTES_PER_MEGA);
+        return renders;
+    }
+
+    /**
+     * Checks that a panel last painted the given pixels.
+     *
+     * @param thePanel The panel.
+     * @param theExpected The pixels of the frame first painted.
+     * @return Whether the frames match.
+     */
+    private static boolean matches(final BenchPanel thePanel, final int[] theExpected) {
+
+        if (Arrays.equals(theExpected, thePanel.pixels())) {
+            return true;
+        }
+        System.out.println("FAIL: the document was painted differently after switching back");
+        return false;
+    }
+
+    /**
+     * Runs work on the event dispatch thread and waits for its result.
+     *
+     * @param <T> The type of the result.
+     * @param theWork The work.
+     * @return The result of the work.
+     * @throws Exception If the work fails.
+     */
+    private static <T> T call(final Callable<T> theWork) throws Exception {
+
+        final FutureTask<T> task = new FutureTask<T>(theWork);
+        SwingUtilities.invokeLater(task);
+        try {
+            return task.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Makes a document of random strokes and shapes spread evenly over its layers.
+     *
+     * @param theShapes The number of shapes.
+     * @param theRandom The source of randomness.
+     * @return The document.
+     */
+    private static PaintDocument makeDocument(final int theShapes, final Random theRandom) {
+
+        final List<DocumentLayer> layers = new ArrayList<DocumentLayer>();
+        for (int i = 0; i < LAYERS; i++) {
+            final List<PaintShape> shapes = new ArrayList<PaintShape>();
+            for (int j = i; j < theShapes; j += LAYERS) {
+                shapes.add(randomShape(theRandom));
+            }
+            layers.add(new DocumentLayer("Layer " + (i + 1), true, i == 1 ? 0.5f : 1,
+                                         shapes));
+        }
+        return PaintDocument.ofLayers(CANVAS_WIDTH, CANVAS_HEIGHT, layers);
+    }
+
+    /**
+     * Creates a random shape: a pencil stroke, a line, or an outlined or filled rectangle
+     * or ellipse.
+     *
+     * @param theRandom The source of randomness.
+     * @return The shape.
+     */
+    private static PaintShape randomShape(final Random theRandom) {
+
+        final double x = theRandom.nextDouble() * CANVAS_WIDTH;
+        final double y = theRandom.nextDouble() * CANVAS_HEIGHT;
+        final int kind = theRandom.nextInt(10);
+        final Color color = new Color(theRandom.nextInt(0x1000000));
+        final Shape shape;
+        boolean filled = false;
+        if (kind < 3) {
+            final double size = 4 + theRandom.nextDouble() * 60;
+            shape = kind % 2 == 0 ? new Rectangle2D.Double(x, y, size, size / 2)
+                                  : new Ellipse2D.Double(x, y, size, size / 2);
+            filled = theRandom.nextBoolean();
+        } else if (kind < 5) {
+            shape = new Line2D.Double(x, y, x + theRandom.nextGaussian() * 30,
+                                      y + theRandom.nextGaussian() * 30);
+        } else {
+            final Path2D path = new Path2D.Double();
+            path.moveTo(x, y);
+            double px = x;
+            double py = y;
+            for (int i = 0; i < 12; i++) {
+                px += theRandom.nextGaussian() * 6;
+                py += theRandom.nextGaussian() * 6;
+                path.lineTo(px, py);
+            }
+            shape = path;
+        }
+        return new PaintShape(shape, color, color, filled, 1 + theRandom.nextInt(4));
+    }
+
+
+    /**
+     * PaintPanel holding one of the open documents, painted into an image of the canvas
+     * size. Its layers are rasterized inline, so that every paint shows the whole document
+     * and its cost. Must be used on the event dispatch thread.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class BenchPanel extends PaintPanel {
+
+        /** Auto-generated UID for object serialization. */
+        private static final long serialVersionUID = -6203817495261038477L;
+
+        /** The image painted into, the size of the panel. */
+        private final transient BufferedImage myFrame;
+
+
+        /**
+         * Constructor of a panel holding an empty drawing at the canvas size whose cached
+         * images count against the given budget.
+         *
+         * @param theBudget The budget shared by the panels.
+         */
+        private BenchPanel(final CacheBudget theBudget) {
+
+            super();
+            setSize(CANVAS_WIDTH, CANVAS_HEIGHT);
+            myFrame = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT,
+                                        BufferedImage.TYPE_INT_RGB);
+            setCacheBudget(theBudget);
+            setBackgroundRendering(false);
+            getRenderStats().setEnabled(true);
+        }
+
+        /**
+         * Paints the panel into its image.
+         */
+        private void frame() {
+
+            final Graphics2D g2d = myFrame.createGraphics();
+            try {
+                paintComponent(g2d);
+            } finally {
+                g2d.dispose();
+            }
+        }
+
+        /**
+         * Provides the caller with the pixels last painted.
+         *
+         * @return A copy of the pixels of the image.
+         */
+        private int[] pixels() {
+
+            return myFrame.getRGB(0, 0, CANVAS_WIDTH, CANVAS_HEIGHT, null, 0, CANVAS_WIDTH);
+        }
+
+        /**
+         * Replaces the drawing inline.
+         *
+         * @param theDocument The new drawing.
+         */
+        private void setDocumentNow(final PaintDocument theDocument) {
+
+            setDocument(theDocument);
+        }
+
+        /**
+         * Provides the caller with the number of layers rasterized in full so far.
+         *
+         * @return The number of full layer rasterizations.
+         */
+        private long fullRenders() {
+
+            return getRenderStats().getFullLayerRenders();
+        }
+
+        /**
+         * Provides the caller with the bytes of the images the panel's compositor caches.
+         *
+         * @return The bytes cached after the last paint.
+         */
+        private long rasterBytes() {
+
+            return getRenderStats().getRasterBytes();
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import model.PaintShape;
+import view.CollabClient;
+import view.CollabProtocol;
+
+/**
+ * Load test for CollabServer. Starts a server on a free loopback port (unless a port is
+ * given), connects many simulated participants, and has each commit shapes at a steady
+ * rate while receiving everyone else's. Reports how long shapes took from being committed
+ * by one participant to being received by another, how many frames the participants'
+ * messages were batched into, and how many messages and bytes the server relayed per
+ * second.
+ *
+ * <p>Usage: {@code CollabLoadTest [clients] [shapesPerClient] [shapesPerSecond] [port]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class CollabLoadTest {
+
+    // CONSTANTS
+    /** Number of participants used when none is given. */
+    private static final int DEFAULT_CLIENTS = 32;
+
+    /** Number of shapes each participant commits when none is given. */
+    private static final int DEFAULT_SHAPES = 500;
+
+    /** Shapes each participant commits per second when none is given. */
+    private static final int DEFAULT_RATE = 50;
+
+    /** Width and height of the canvas the shapes are drawn on. */
+    private static final int CANVAS = 1000;
+
+    /** Milliseconds to wait for the last shapes to arrive after the last is committed. */
+    private static final long DRAIN_TIMEOUT = 30_000;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /** Nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private CollabLoadTest() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param theArgs Optionally the number of participants, the number of shapes each
+     * commits, the shapes each commits per second, and the port of an already running
+     * server.
+     * @throws Exception If the test cannot run.
+     */
+    public static void main(final String[] theArgs) throws Exception {
+
+        System.setProperty("java.awt.headless", "true");
+        final int clients = theArgs.length > 0 ? Integer.parseInt(theArgs[0])
+                                               : DEFAULT_CLIENTS;
+        final int shapes = theArgs.length > 1 ? Integer.parseInt(theArgs[1])
+                                              : DEFAULT_SHAPES;
+        final int rate = theArgs.length > 2 ? Integer.parseInt(theArgs[2]) : DEFAULT_RATE;
+        if (clients < 2 || shapes < 1 || rate < 1) {
+            System.err.println("Usage: CollabLoadTest [clients >= 2] [shapesPerClient] "
+                               + "[shapesPerSecond] [port]");
+            System.exit(2);
+        }
+        CollabServer server = null;
+        final int port;
+        if (theArgs.length > 3) {
+            port = Integer.parseInt(theArgs[3]);
+        } else {
+            server = new CollabServer(0);
+            server.start();
+            port = server.getPort();
+        }
+
+        try {
+            run(port, clients, shapes, rate, server);
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Connects the participants, has them commit their shapes, waits for every shape to
+     * reach every other participant, and prints the results.
+     *
+     * @param thePort The port of the server.
+     * @param theClients The number of participants.
+     * @param theShapes The number of shapes each participant commits.
+     * @param theRate The shapes each participant commits per second.
+     * @param theServer The embedded server, or null if the server runs elsewhere.
+     * @throws Exception If a participant cannot connect or fails.
+     */
+    private static void run(final int thePort, final int theClients, final int theShapes,
+                            final int theRate, final CollabServer theServer)
+        throws Exception {
+
+        // When each shape was committed, by participant and message number.
+        final Map<Integer, AtomicLongArray> sent =
+            new ConcurrentHashMap<Integer, AtomicLongArray>();
+        final List<Participant> participants = new ArrayList<Participant>();
+        final List<CollabClient> connections = new ArrayList<CollabClient>();
+        final List<Arrivals> arrivals = new ArrayList<Arrivals>();
+        try {
+            for (int i = 0; i < theClients; i++) {
+                final Arrivals received = new Arrivals((theClients - 1) * theShapes, sent);
+                final CollabClient client = new CollabClient("127.0.0.1", thePort, received);
+                arrivals.add(received);
+                connections.add(client);
+                final AtomicLongArray times = new AtomicLongArray(theShapes);
+                sent.put(client.getId(), times);
+                participants.add(new Participant(client, times, theRate, i));
+            }
+
+            final ExecutorService pool = Executors.newFixedThreadPool(theClients);
+            final long start = System.nanoTime();
+            final long serverBytes = theServer == null ? 0 : theServer.getBytesDelivered();
+            try {
+                final List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (final Participant participant: participants) {
+                    futures.add(pool.submit(participant));
+                }
+                for (final Future<?> future: futures) {
+                    future.get();
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            final long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+            boolean complete = true;
+            for (final Arrivals received: arrivals) {
+                complete &= received.await(deadline - System.currentTimeMillis());
+            }
+            final double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+
+            long frames = 0;
+            for (final CollabClient client: connections) {
+                frames += client.getFramesSent();
+            }
+            final long messages = (long) theClients * theShapes;
+            final long expected = messages * (theClients - 1);
+            final long[] latencies = join(arrivals);
+            System.out.println(String.format(Locale.ROOT,
+                "%d participants committed %d shapes in %d frames (%.1f per frame) in %.2f s",
+                theClients, messages, frames, messages / (double) Math.max(frames, 1),
+                seconds));
+            System.out.println(String.format(Locale.ROOT,
+                "%d of %d deliveries received%s", latencies.length, expected,
+                complete ? "" : " (TIMED OUT)"));
+            if (latencies.length > 0) {
+                System.out.println(String.format(Locale.ROOT,
+                    "propagation ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f",
+                    percentile(latencies, 0.50), percentile(latencies, 0.90),
+                    percentile(latencies, 0.99),
+                    latencies[latencies.length - 1] / NANOS_PER_MILLI));
+            }
+            if (theServer != null) {
+                System.out.println(String.format(Locale.ROOT,
+                    "server: %.0f messages/s in, %.0f messages/s out, %.2f MB/s out",
+                    theServer.getMessagesReceived() / seconds,
+                    theServer.getMessagesDelivered() / seconds,
+                    (theServer.getBytesDelivered() - serverBytes) / seconds / (1 << 20)));
+            }
+            if (!complete) {
+                System.exit(1);
+            }
+        } finally {
+            for (final CollabClient client: connections) {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Gathers the latencies every participant noted.
+     *
+     * @param theArrivals The deliveries noted by each participant.
+     * @return The latencies in nanoseconds, sorted ascending.
+     */
+    private static long[] join(final List<Arrivals> theArrivals) {
+
+        final List<long[]> parts = new ArrayList<long[]>();
+        int length = 0;
+        for (final Arrivals received: theArrivals) {
+            final long[] part = received.getLatencies();
+            parts.add(part);
+            length += part.length;
+        }
+        final long[] result = new long[length];
+        int count = 0;
+        for (final long[] part: parts) {
+            System.arraycopy(part, 0, result, count, part.length);
+            count += part.length;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns a percentile of sorted latencies in milliseconds.
+     *
+     * @param theSorted The latencies in nanoseconds, sorted ascending.
+     * @param theFraction The percentile as a fraction between 0 and 1.
+     * @return The latency at that percentile in milliseconds.
+     */
+    private static double percentile(final long[] theSorted, final double theFraction) {
+
+        final int index = (int) Math.ceil(theFraction * theSorted.length) - 1;
+        return theSorted[Math.max(index, 0)] / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * A simulated participant committing random shapes at a steady rate.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Participant implements Runnable {
+
+        // INSTANCE FIELDS
+        /** The participant's connection. */
+        private final CollabClient myClient;
+
+        /** When each of the participant's shapes was committed. */
+        private final AtomicLongArray myTimes;
+
+        /** Nanoseconds between shapes. */
+        private final long myInterval;
+
+        /** Chooses the shapes. */
+        private final Random myRandom;
+
+
+        /**
+         * Constructor that stores the parameters of the participant.
+         *
+         * @param theClient The participant's connection.
+         * @param theTimes Where to note when each shape is committed.
+         * @param theRate The shapes committed per second.
+         * @param theSeed Seed for choosing shapes.
+         */
+        Participant(final CollabClient theClient, final AtomicLongArray theTimes,
+                    final int theRate, final long theSeed) {
+
+            myClient = theClient;
+            myTimes = theTimes;
+            myInterval = (long) (NANOS_PER_SECOND / theRate);
+            myRandom = new Random(theSeed);
+        }
+
+        @Override
+        public void run() {
+
+            // Participants start at random points of their interval, as people would.
+            long next = System.nanoTime() + (long) (myRandom.nextDouble() * myInterval);
+            for (int i = 0; i < myTimes.length(); i++) {
+                final long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        Thread.sleep((long) (wait / NANOS_PER_MILLI),
+                                     (int) (wait % (long) NANOS_PER_MILLI));
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                next += myInterval;
+                final PaintShape shape = randomShape();
+                myTimes.set(i, System.nanoTime());
+                myClient.sendShape(shape);
+            }
+        }
+
+        /**
+         * Makes a random line, rectangle, or ellipse.
+         *
+         * @return The shape.
+         */
+        private PaintShape randomShape() {
+
+            final double x = myRandom.nextDouble() * CANVAS;
+            final double y = myRandom.nextDouble() * CANVAS;
+            final double w = myRandom.nextDouble() * CANVAS / 4;
+            final double h = myRandom.nextDouble() * CANVAS / 4;
+            final Color color = new Color(myRandom.nextInt(1 << 24));
+            final int kind = myRandom.nextInt(3);
+            if (kind == 0) {
+                return new PaintShape(new Line2D.Double(x, y, x + w, y + h), color, color,
+                                      false, myRandom.nextInt(10) + 1);
+            }
+            final boolean filled = myRandom.nextBoolean();
+            if (kind == 1) {
+                return new PaintShape(new Rectangle2D.Double(x, y, w, h), color, color,
+                                      filled, myRandom.nextInt(10) + 1);
+            }
+            return new PaintShape(new Ellipse2D.Double(x, y, w, h), color, color, filled,
+                                  myRandom.nextInt(10) + 1);
+        }
+    }
+
+    /**
+     * Notes when a participant receives each shape.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Arrivals implements CollabProtocol.Receiver {
+
+        // INSTANCE FIELDS
+        /** The number of deliveries expected. */
+        private final int myExpected;
+
+        /** When each shape was committed, by participant and message number. */
+        private final Map<Integer, AtomicLongArray> mySent;
+
+        /** The latency of every delivery so far, in nanoseconds. */
+        private final long[] myLatencies;
+
+        /** The number of deliveries so far. */
+        private int myCount;
+
+
+        /**
+         * Constructor that stores what the deliveries are checked against.
+         *
+         * @param theExpected The number of deliveries expected.
+         * @param theSent When each shape was committed, filled in as the test runs.
+         */
+        Arrivals(final int theExpected, final Map<Integer, AtomicLongArray> theSent) {
+
+            myExpected = theExpected;
+            mySent = theSent;
+            myLatencies = new long[theExpected];
+        }
+
+        @Override
+        public void shape(final int theOrigin, final int theSequence,
+                          final PaintShape theShape) {
+
+            final long now = System.nanoTime();
+            final long latency = now - mySent.get(theOrigin).get(theSequence);
+            synchronized (this) {
+                if (myCount < myLatencies.length) {
+                    myLatencies[myCount] = latency;
+                }
+                myCount++;
+                if (myCount >= myExpected) {
+                    notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void clear(final int theOrigin, final int theSequence) {
+
+            // Participants of the test never clear.
+        }
+
+        @Override
+        public void endBatch() {
+
+            // Deliveries are noted as they are decoded.
+        }
+
+        @Override
+        public void disconnected(final IOException theError) {
+
+            System.err.println("A participant was disconnected: " + theError);
+        }
+
+        /**
+         * Waits until every delivery has been received or the time is up.
+         *
+         * @param theMillis The longest time to wait, in milliseconds.
+         * @return Whether every delivery was received.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        synchronized boolean await(final long theMillis) throws InterruptedException {
+
+            final long end = System.currentTimeMillis() + theMillis;
+            long left = theMillis;
+            while (myCount < myExpected && left > 0) {
+                wait(left);
+                left = end - System.currentTimeMillis();
+            }
+            return myCount >= myExpected;
+        }
+
+        /**
+         * Provides the caller with the latencies of the deliveries so far.
+         *
+         * @return The latencies in nanoseconds, in the order received.
+         */
+        synchronized long[] getLatencies() {
+
+            return Arrays.copyOf(myLatencies, Math.min(myCount, myLatencies.length));
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import view.CollabProtocol;
+
+/**
+ * Server of collaborative drawing sessions, through which PaintPanels share the shapes
+ * committed to them and their Clear commands. The server only listens on the loopback
+ * interface.
+ *
+ * <p>Every frame a client sends is relayed to every other client without decoding its
+ * shapes, and all clients receive the frames in the order the server took them. The
+ * frames relayed since the drawing was last cleared are kept, so a client that joins
+ * receives the drawing so far. Each client has a thread that writes all the frames waiting
+ * for it at once, so frames arriving together reach the client in one write; a client
+ * that falls more than MAX_BACKLOG bytes behind is disconnected.
+ *
+ * <p>Usage: {@code CollabServer [port]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class CollabServer {
+
+    // CONSTANTS
+    /** Bytes of relayed frames that may wait for a client before it is disconnected. */
+    private static final long MAX_BACKLOG = 64L << 20;
+
+    /** Bytes before the messages of a relayed frame: its length and its origin. */
+    private static final int HEADER = 2 * Integer.BYTES;
+
+
+    // INSTANCE FIELDS
+    /** The socket clients connect to. */
+    private final ServerSocket myServer;
+
+    /** Threads that accept, read from, and write to clients. */
+    private final ExecutorService myExecutor;
+
+    /** The connected clients; also guards the history and the order of relayed frames. */
+    private final List<Connection> myConnections;
+
+    /** The frames relayed since the drawing was last cleared, with their headers. */
+    private final List<byte[]> myHistory;
+
+    /** The number given to the next client. */
+    private int myNextId;
+
+    /** The number of messages received from clients. */
+    private final AtomicLong myMessagesIn;
+
+    /** The number of messages written to clients. */
+    private final AtomicLong myMessagesOut;
+
+    /** The number of bytes written to clients. */
+    private final AtomicLong myBytesOut;
+
+
+    /**
+     * Constructor that binds the server to the loopback interface. The server does not
+     * accept clients until start is called.
+     *
+     * @param thePort The port to listen on, or 0 to pick a free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public CollabServer(final int thePort) throws IOException {
+
+        myServer = new ServerSocket();
+        myServer.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), thePort));
+        myExecutor = Executors.newCachedThreadPool();
+        myConnections = new ArrayList<Connection>();
+        myHistory = new ArrayList<byte[]>();
+        myNextId = 1;
+        myMessagesIn = new AtomicLong();
+        myMessagesOut = new AtomicLong();
+        myBytesOut = new AtomicLong();
+    }
+
+    /**
+     * Starts a server from the command line.
+     *
+     * @param theArgs Optionally the port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static void main(final String[] theArgs) throws IOException {
+
+        final int port = theArgs.length > 0 ? Integer.parseInt(theArgs[0])
+                                            : CollabProtocol.DEFAULT_PORT;
+        final CollabServer server = new CollabServer(port);
+        server.start();
+        System.out.println("Sharing drawings on localhost:" + server.getPort());
+    }
+
+    /**
+     * Starts accepting clients.
+     */
+    public void start() {
+
+        myExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /**
+     * Stops accepting clients, disconnects every client, and releases the server's threads.
+     */
+    public void stop() {
+
+        try {
+            myServer.close();
+        } catch (final IOException e) {
+            // Stopping, so there is nothing left to do with the socket.
+        }
+        final List<Connection> connections;
+        synchronized (myConnections) {
+            connections = new ArrayList<Connection>(myConnections);
+        }
+        for (final Connection connection: connections) {
+            remove(connection);
+        }
+        myExecutor.shutdownNow();
+    }
+
+    /**
+     * Provides the caller with the port the server is bound to.
+     *
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+
+        return myServer.getLocalPort();
+    }
+
+    /**
+     * Provides the caller with the number of connected clients.
+     *
+     * @return The number of clients.
+     */
+    public int getClients() {
+
+        synchronized (myConnections) {
+            return myConnections.size();
+        }
+    }
+
+    /**
+     * Provides the caller with the number of messages received from clients.
+     *
+     * @return The number of messages received.
+     */
+    public long getMessagesReceived() {
+
+        return myMessagesIn.get();
+    }
+
+    /**
+     * Provides the caller with the number of messages written to clients.
+     *
+     * @return The number of messages delivered.
+     */
+    public long getMessagesDelivered() {
+
+        return myMessagesOut.get();
+    }
+
+    /**
+     * Provides the caller with the number of bytes written to clients.
+     *
+     * @return The number of bytes delivered.
+     */
+    public long getBytesDelivered() {
+
+        return myBytesOut.get();
+    }
+
+    /**
+     * Accepts clients until the server is stopped.
+     */
+    private void accept() {
+
+        while (!myServer.isClosed()) {
+            final Socket socket;
+            try {
+                socket = myServer.accept();
+            } catch (final IOException e) {
+                // The server was stopped.
+                return;
+            }
+            myExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+        }
+    }
+
+    /**
+     * Greets a client, sends it the drawing so far, and relays its frames until it leaves.
+     *
+     * @param theSocket The client's connection.
+     */
+    private void serve(final Socket theSocket) {
+
+        Connection connection = null;
+        try {
+            theSocket.setTcpNoDelay(true);
+            final DataInputStream in =
+                new DataInputStream(new BufferedInputStream(theSocket.getInputStream()));
+            CollabProtocol.readHello(in);
+            connection = join(theSocket);
+            while (true) {
+                final byte[] frame = new byte[CollabProtocol.readLength(in)];
+                in.readFully(frame);
+                relay(connection, frame);
+            }
+        } catch (final IOException e) {
+            // The client left or broke the protocol; either way it is dropped.
+        } finally {
+            if (connection == null) {
+                try {
+                    theSocket.close();
+                } catch (final IOException e) {
+                    // Dropping the client, so there is nothing left to do with the socket.
+                }
+            } else {
+                remove(connection);
+            }
+        }
+    }
+
+    /**
+     * Adds a client to the session, answering its greeting and queuing the drawing so far
+     * for it, and starts writing to it.
+     *
+     * @param theSocket The client's connection.
+     * @return The client's connection.
+     * @throws IOException If the client cannot be answered, or the drawing so far is more
+     * than MAX_BACKLOG bytes and cannot all be queued for it.
+     */
+    private Connection join(final Socket theSocket) throws IOException {
+
+        final DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(theSocket.getOutputStream()));
+        final Connection result;
+        synchronized (myConnections) {
+            result = new Connection(theSocket, out, myNextId++);
+            CollabProtocol.writeHello(out);
+            out.writeInt(result.myId);
+            out.flush();
+            for (final byte[] frame: myHistory) {
+                if (!result.deliver(frame)) {
+                    // Better to turn the client away than to show it part of the drawing.
+                    throw new IOException("The drawing is too large to send");
+                }
+            }
+            myConnections.add(result);
+        }
+        myExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                result.write();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Relays a frame to every client but the one it came from, and keeps it in the history.
+     *
+     * @param theOrigin The client the frame came from.
+     * @param theFrame The messages of the frame.
+     * @throws IOException If the frame is malformed.
+     */
+    private void relay(final Connection theOrigin, final byte[] theFrame) throws IOException {
+
+        final int messages = CollabProtocol.countMessages(theFrame);
+        final boolean clears = CollabProtocol.clears(theFrame);
+        final byte[] relayed = ByteBuffer.allocate(HEADER + theFrame.length)
+            .putInt(theFrame.length).putInt(theOrigin.myId).put(theFrame).array();
+        myMessagesIn.addAndGet(messages);
+        final List<Connection> slow = new ArrayList<Connection>();
+        int recipients = 0;
+        synchronized (myConnections) {
+            if (clears) {
+                // Whatever came before the clear is gone, so a joining client needs none of it.
+                myHistory.clear();
+            }
+            myHistory.add(relayed);
+            for (final Connection connection: myConnections) {
+                if (connection == theOrigin) {
+                    continue;
+                }
+                if (connection.deliver(relayed)) {
+                    recipients++;
+                } else {
+                    slow.add(connection);
+                }
+            }
+        }
+        myMessagesOut.addAndGet((long) messages * recipients);
+        for (final Connection connection: slow) {
+            remove(connection);
+        }
+    }
+
+    /**
+     * Removes a client from the session and closes its connection.
+     *
+     * @param theConnection The client's connection.
+     */
+    private void remove(final Connection theConnection) {
+
+        synchronized (myConnections) {
+            myConnections.remove(theConnection);
+        }
+        theConnection.close();
+    }
+
+
+    /**
+     * A connected client and the frames waiting to be written to it.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private final class Connection {
+
+        // INSTANCE FIELDS
+        /** The client's connection. */
+        private final Socket mySocket;
+
+        /** The stream to the client. */
+        private final DataOutputStream myOut;
+
+        /** The number given to the client. */
+        private final int myId;
+
+        /** The frames waiting to be written, with their headers; guards the backlog. */
+        private final ArrayDeque<byte[]> myOutbox;
+
+        /** The bytes waiting to be written. */
+        private long myBacklog;
+
+        /** Whether the connection is closed. */
+        private boolean myClosed;
+
+
+        /**
+         * Constructor that stores the client's connection.
+         *
+         * @param theSocket The client's connection.
+         * @param theOut The stream to the client.
+         * @param theId The number given to the client.
+         */
+        Connection(final Socket theSocket, final DataOutputStream theOut, final int theId) {
+
+            mySocket = theSocket;
+            myOut = theOut;
+            myId = theId;
+            myOutbox = new ArrayDeque<byte[]>();
+        }
+
+        /**
+         * Queues a frame for the client.
+         *
+         * @param theFrame The frame with its header.
+         * @return Whether the frame was queued; false if the client is too far behind.
+         */
+        boolean deliver(final byte[] theFrame) {
+
+            synchronized (myOutbox) {
+                if (myBacklog + theFrame.length > MAX_BACKLOG) {
+                    return false;
+                }
+                myOutbox.add(theFrame);
+                myBacklog += theFrame.length;
+                myOutbox.notifyAll();
+                return true;
+            }
+        }
+
+        /**
+         * Writes the queued frames to the client until the connection is closed, flushing
+         * once for all the frames that were waiting.
+         */
+        void write() {
+
+            final List<byte[]> frames = new ArrayList<byte[]>();
+            try {
+                while (true) {
+                    synchronized (myOutbox) {
+                        while (myOutbox.isEmpty() && !myClosed) {
+                            myOutbox.wait();
+                        }
+                        if (myClosed) {
+                            return;
+                        }
+                        frames.addAll(myOutbox);
+                        myOutbox.clear();
+                        myBacklog = 0;
+                    }
+                    long bytes = 0;
+                    for (final byte[] frame: frames) {
+                        myOut.write(frame);
+                        bytes += frame.length;
+                    }
+                    myOut.flush();
+                    myBytesOut.addAndGet(bytes);
+                    frames.clear();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final IOException e) {
+                remove(this);
+            }
+        }
+
+        /**
+         * Closes the connection and stops writing to it.
+         */
+        void close() {
+
+            synchronized (myOutbox) {
+                myClosed = true;
+                myOutbox.notifyAll();
+            }
+            try {
+                mySocket.close();
+            } catch (final IOException e) {
+                // Closing, so there is nothing left to do with the connection.
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import model.FillShape;
+import model.FloodFill;
+import model.SpanShape;
+
+/**
+ * Headless benchmark of the scanline flood fill on large canvases: an open canvas, and
+ * canvases whose walls are laid out to make filling as hard as possible: a serpentine
+ * corridor, a comb of one-pixel columns that turns every run into a single pixel, and a
+ * randomly carved maze of one-pixel corridors. Each fill is compared with a per-pixel fill
+ * that visits neighbors one at a time, and the compactness and drawing time of the
+ * resulting FillShape are reported.
+ *
+ * <p>Usage: {@code FillBenchmark [size] [rounds]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class FillBenchmark {
+
+    // CONSTANTS
+    /** Default width and height of the canvas. */
+    private static final int DEFAULT_SIZE = 4096;
+
+    /** Default number of timed rounds per pattern; the fastest is reported. */
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /** Color of open pixels. */
+    private static final int OPEN = 0xFFFFFFFF;
+
+    /** Color of wall pixels. */
+    private static final int WALL = 0xFF000000;
+
+    /** Seed for the maze generator, so every run measures the same maze. */
+    private static final long MAZE_SEED = 42;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private FillBenchmark() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the benchmark and prints one line per pattern.
+     *
+     * @param theArgs Optionally the canvas size and the number of timed rounds.
+     */
+    public static void main(final String[] theArgs) {
+
+        System.setProperty("java.awt.headless", "true");
+        int size = DEFAULT_SIZE;
+        if (theArgs.length > 0) {
+            size = Integer.parseInt(theArgs[0]);
+        }
+        int rounds = DEFAULT_ROUNDS;
+        if (theArgs.length > 1) {
+            rounds = Integer.parseInt(theArgs[1]);
+        }
+
+        System.out.printf(Locale.ROOT, "%-10s %10s %9s %9s %10s %10s %8s %9s%n", "pattern",
+                          "pixels", "runs", "rects", "scan ms", "pixel ms", "speedup",
+                          "draw ms");
+        measure("open", walled(size, OPEN), size, rounds);
+        measure("serpent", serpentine(size), size, rounds);
+        measure("comb", comb(size), size, rounds);
+        measure("maze", maze(size), size, rounds);
+    }
+
+    /**
+     * Fills a pattern from its top left open pixel with both fills and prints the results.
+     *
+     * @param theName The name of the pattern.
+     * @param thePixels The pattern's pixels.
+     * @param theSize The width and height of the pattern.
+     * @param theRounds The number of timed rounds.
+     */
+    private static void measure(final String theName, final int[] thePixels,
+                                final int theSize, final int theRounds) {
+
+        SpanShape spans = null;
+        long scan = Long.MAX_VALUE;
+        long pixel = Long.MAX_VALUE;
+        int expected = 0;
+        // One untimed round warms up the JIT.
+        for (int round = 0; round <= theRounds; round++) {
+            long start = System.nanoTime();
+            spans = FloodFill.fill(thePixels, theSize, theSize, 1, 1, 0);
+            final long scanTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            expected = pixelFill(thePixels, theSize, 1, 1);
+            final long pixelTime = System.nanoTime() - start;
+            if (round > 0) {
+                scan = Math.min(scan, scanTime);
+                pixel = Math.min(pixel, pixelTime);
+            }
+        }
+
+        final int[] runs = spans.getRuns();
+        long filled = 0;
+        for (int i = 0; i < runs.length; i += 3) {
+            filled += runs[i + 2] - runs[i + 1] + 1;
+        }
+        if (filled != expected) {
+            throw new IllegalStateException(theName + ": scanline fill covered " + filled
+                                            + " pixels, per-pixel fill " + expected);
+        }
+        final int rectangles = spans.getRectangles().length / 4;
+
+        final BufferedImage canvas =
+            new BufferedImage(theSize, theSize, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = canvas.createGraphics();
+        final long drawStart = System.nanoTime();
+        try {
+            new FillShape(spans, Color.RED).draw(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        final long draw = System.nanoTime() - drawStart;
+
+        System.out.printf(Locale.ROOT, "%-10s %10d %9d %9d %10.1f %10.1f %7.1fx %9.1f%n",
+                          theName, filled, spans.getRunCount(), rectangles,
+                          scan / NANOS_PER_MILLI, pixel / NANOS_PER_MILLI,
+                          (double) pixel / scan, draw / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Fills the same region as the scanline fill by visiting one pixel at a time and
+     * queueing each of its four neighbors, the approach the scanline fill replaces.
+     *
+     * @param thePixels The pattern's pixels.
+     * @param theSize The width and height of the pattern.
+     * @param theX The column of the seed pixel.
+     * @param theY The row of the seed pixel.
+     * @return The number of pixels filled.
+     */
+    private static int pixelFill(final int[] thePixels, final int theSize, final int theX,
+                                 final int theY) {
+
+        final int target = thePixels[theY * theSize + theX];
+        final boolean[] filled = new boolean[thePixels.length];
+        int[] queue = new int[1024];
+        int head = 0;
+        int tail = 0;
+        int count = 0;
+        queue[tail++] = theY * theSize + theX;
+        filled[theY * theSize + theX] = true;
+        final int[] neighbors = new int[4];
+        while (head < tail) {
+            final int index = queue[head++];
+            count++;
+            final int x = index % theSize;
+            int found = 0;
+            if (x > 0) {
+                neighbors[found++] = index - 1;
+            }
+            if (x < theSize - 1) {
+                neighbors[found++] = index + 1;
+            }
+            if (index >= theSize) {
+                neighbors[found++] = index - theSize;
+            }
+            if (index < thePixels.length - theSize) {
+                neighbors[found++] = index + theSize;
+            }
+            for (int i = 0; i < found; i++) {
+                final int next = neighbors[i];
+                if (!filled[next] && thePixels[next] == target) {
+                    filled[next] = true;
+                    if (tail == queue.length) {
+                        // Reclaim the consumed front of the queue before growing it.
+                        System.arraycopy(queue, head, queue, 0, tail - head);
+                        tail -= head;
+                        head = 0;
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, queue.length * 2);
+                        }
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Builds a single corridor that winds back and forth across every other row.
+     *
+     * @param theSize The width and height of the pattern.
+     * @return The pattern's pixels.
+     */
+    private static int[] serpentine(final int theSize) {
+
+        final int[] result = walled(theSize, WALL);
+        for (int y = 1; y < theSize - 1; y += 2) {
+            Arrays.fill(result, y * theSize + 1, y * theSize + theSize - 1, OPEN);
+            if (y + 2 < theSize - 1) {
+                // Connect to the next corridor at alternating ends.
+                final int x = (y / 2) % 2 == 0 ? theSize - 2 : 1;
+                result[(y + 1) * theSize + x] = OPEN;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds one-pixel columns joined at alternating ends, so every row of the fill is
+     * made of runs a single pixel wide.
+     *
+     * @param theSize The width and height of the pattern.
+     * @return The pattern's pixels.
+     */
+    private static int[] comb(final int theSize) {
+
+        final int[] result = walled(theSize, WALL);
+        for (int x = 1; x < theSize - 1; x += 2) {
+            for (int y = 1; y < theSize - 1; y++) {
+                result[y * theSize + x] = OPEN;
+            }
+            if (x + 2 < theSize - 1) {
+                final int y = (x / 2) % 2 == 0 ? theSize - 2 : 1;
+                result[y * theSize + x + 1] = OPEN;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Carves a random maze of one-pixel corridors with a depth-first search, so the fill
+     * branches at every junction.
+     *
+     * @param theSize The width and height of the pattern.
+     * @return The pattern's pixels.
+     */
+    private static int[] maze(final int theSize) {
+
+        final int[] result = walled(theSize, WALL);
+        final int cells = (theSize - 1) / 2;
+        final boolean[] visited = new boolean[cells * cells];
+        final int[] stack = new int[cells * cells];
+        final int[] choices = new int[4];
+        final Random random = new Random(MAZE_SEED);
+        int depth = 0;
+        stack[depth++] = 0;
+        visited[0] = true;
+        result[theSize + 1] = OPEN;
+        while (depth > 0) {
+            final int cell = stack[depth - 1];
+            final int column = cell % cells;
+            final int row = cell / cells;
+            int count = 0;
+            if (column > 0 && !visited[cell - 1]) {
+                choices[count++] = cell - 1;
+            }
+            if (column < cells - 1 && !visited[cell + 1]) {
+                choices[count++] = cell + 1;
+            }
+            if (row > 0 && !visited[cell - cells]) {
+                choices[count++] = cell - cells;
+            }
+            if (row < cells - 1 && !visited[cell + cells]) {
+                choices[count++] = cell + cells;
+            }
+            if (count == 0) {
+                depth--;
+            } else {
+                final int next = choices[random.nextInt(count)];
+                visited[next] = true;
+                stack[depth++] = next;
+                final int x = 2 * (next % cells) + 1;
+                final int y = 2 * (next / cells) + 1;
+                // Open the new cell and the wall between it and the current one.
+                result[y * theSize + x] = OPEN;
+                result[(y + 2 * row + 1) / 2 * theSize + (x + 2 * column + 1) / 2] = OPEN;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a canvas made entirely of pixels of one color.
+     *
+     * @param theSize The width and height of the canvas.
+     * @param theColor The color of every pixel.
+     * @return The canvas's pixels.
+     */
+    private static int[] walled(final int theSize, final int theColor) {
+
+        final int[] result = new int[theSize * theSize];
+        Arrays.fill(result, theColor);
+        return result;
+    }
+}
@@ -0,0 +1,208 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import model.ImageShape;
+import model.RasterImage;
+
+/**
+ * Headless benchmark of imported pictures. Makes a large photo-like picture, imports it as
+ * a RasterImage, and reports how long decoding takes, how much of it stays on the heap,
+ * and the time of drawing it into a window-sized canvas, both shrunk to fit the canvas and
+ * at full size panned to its middle. Each drawing is also timed as a plain drawImage of
+ * the full-resolution picture, which is what the import replaces. Drawing an ImageShape
+ * should cost about the same whatever the size of the picture.
+ *
+ * <p>Usage: {@code ImageBenchmark [width] [height] [rounds]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class ImageBenchmark {
+
+    // CONSTANTS
+    /** Default width of the picture. */
+    private static final int DEFAULT_WIDTH = 7200;
+
+    /** Default height of the picture. */
+    private static final int DEFAULT_HEIGHT = 4800;
+
+    /** Default number of timed rounds; the fastest is reported. */
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /** Width of the canvas drawn into. */
+    private static final int CANVAS_WIDTH = 1280;
+
+    /** Height of the canvas drawn into. */
+    private static final int CANVAS_HEIGHT = 800;
+
+    /** Number of discs scattered over the picture so that it has detail to filter. */
+    private static final int DISCS = 4000;
+
+    /** Largest radius of a disc. */
+    private static final int MAX_RADIUS = 120;
+
+    /** Seed of the picture's discs. */
+    private static final long SEED = 44;
+
+    /** Bytes in a megabyte, for reporting memory. */
+    private static final double BYTES_PER_MEGA = 1024.0 * 1024.0;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private ImageBenchmark() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the benchmark and prints the cost of importing and drawing the picture.
+     *
+     * @param theArgs Optionally the width and height of the picture and the number of
+     * timed rounds.
+     * @throws IOException If the picture cannot be encoded or decoded.
+     */
+    public static void main(final String[] theArgs) throws IOException {
+
+        System.setProperty("java.awt.headless", "true");
+        final int width = theArgs.length > 0 ? Integer.parseInt(theArgs[0]) : DEFAULT_WIDTH;
+        final int height = theArgs.length > 1 ? Integer.parseInt(theArgs[1]) : DEFAULT_HEIGHT;
+        final int rounds = theArgs.length > 2 ? Integer.parseInt(theArgs[2]) : DEFAULT_ROUNDS;
+
+        final BufferedImage picture = makePicture(width, height);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(picture, "jpg", bytes);
+        final byte[] encoded = bytes.toByteArray();
+
+        final long start = System.nanoTime();
+        final RasterImage image = RasterImage.decode(encoded);
+        final double decodeMillis = (System.nanoTime() - start) / NANOS_PER_MILLI;
+        System.out.printf(Locale.ROOT, "%d x %d picture, %.1f MB encoded%n", width, height,
+                          encoded.length / BYTES_PER_MEGA);
+        System.out.printf(Locale.ROOT,
+                          "decode %.0f ms, %d levels, %.1f MB on heap of %.1f MB at full "
+                          + "resolution%n", decodeMillis, image.getLevels(),
+                          image.getResidentBytes() / BYTES_PER_MEGA,
+                          (double) Integer.BYTES * width * height / BYTES_PER_MEGA);
+
+        final double fit = Math.min(1, Math.min((double) CANVAS_WIDTH / width,
+                                                (double) CANVAS_HEIGHT / height));
+        final Rectangle2D fitted = new Rectangle2D.Double(0, 0, width * fit, height * fit);
+        final Rectangle2D panned = new Rectangle2D.Double((CANVAS_WIDTH - width) / 2.0,
+                                                          (CANVAS_HEIGHT - height) / 2.0,
+                                                          width, height);
+        final BufferedImage canvas =
+            new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        System.out.printf(Locale.ROOT, "%-8s %6s %14s %14s%n", "view", "level",
+                          "ImageShape ms", "drawImage ms");
+        for (final Rectangle2D frame: new Rectangle2D[] {fitted, panned}) {
+            final ImageShape shape = new ImageShape(image, frame);
+            final double shapeMillis = time(canvas, rounds, new Drawing() {
+                @Override
+                public void draw(final Graphics2D theGraphics) {
+                    shape.draw(theGraphics);
+                }
+            });
+            final double plainMillis = time(canvas, rounds, new Drawing() {
+                @Override
+                public void draw(final Graphics2D theGraphics) {
+                    theGraphics.drawImage(picture, (int) frame.getX(), (int) frame.getY(),
+                                          (int) frame.getWidth(), (int) frame.getHeight(),
+                                          null);
+                }
+            });
+            System.out.printf(Locale.ROOT, "%-8s %6d %14.2f %14.2f%n",
+                              frame == fitted ? "fitted" : "panned",
+                              image.levelFor(frame.getWidth() / width), shapeMillis,
+                              plainMillis);
+        }
+    }
+
+    /**
+     * Makes a picture of a gradient scattered with translucent discs.
+     *
+     * @param theWidth The width of the picture.
+     * @param theHeight The height of the picture.
+     * @return The picture.
+     */
+    private static BufferedImage makePicture(final int theWidth, final int theHeight) {
+
+        final BufferedImage result =
+            new BufferedImage(theWidth, theHeight, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = result.createGraphics();
+        try {
+            g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, theWidth, theHeight,
+                                           Color.BLUE));
+            g2d.fillRect(0, 0, theWidth, theHeight);
+            final Random random = new Random(SEED);
+            for (int i = 0; i < DISCS; i++) {
+                final int radius = 1 + random.nextInt(MAX_RADIUS);
+                g2d.setColor(new Color(random.nextInt(), true));
+                g2d.fillOval(random.nextInt(theWidth) - radius,
+                             random.nextInt(theHeight) - radius, 2 * radius, 2 * radius);
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return result;
+    }
+
+    /**
+     * Times a drawing into the canvas, with bilinear filtering as the panel would draw.
+     *
+     * @param theCanvas The canvas to draw into.
+     * @param theRounds The number of timed rounds, after as many untimed ones.
+     * @param theDrawing The drawing.
+     * @return The fastest round in milliseconds.
+     */
+    private static double time(final BufferedImage theCanvas, final int theRounds,
+                               final Drawing theDrawing) {
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 2 * theRounds; round++) {
+            final Graphics2D g2d = theCanvas.createGraphics();
+            try {
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                     RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                final long start = System.nanoTime();
+                theDrawing.draw(g2d);
+                final long elapsed = System.nanoTime() - start;
+                if (round >= theRounds) {
+                    best = Math.min(best, elapsed);
+                }
+            } finally {
+                g2d.dispose();
+            }
+        }
+        return best / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * Something drawn into the canvas by time.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private interface Drawing {
+
+        /**
+         * Draws into the canvas.
+         *
+         * @param theGraphics The graphics context of the canvas.
+         */
+        void draw(Graphics2D theGraphics);
+    }
+}
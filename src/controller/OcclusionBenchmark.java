@@ -0,0 +1,372 @@
+package controller;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import model.Layer;
+import model.OcclusionIndex;
+import model.PaintShape;
+import model.ShapeList;
+import view.LayerCompositor;
+import view.ShapeRenderer;
+
+/**
+ * Headless check and benchmark of occlusion culling. Builds a heavily reworked drawing, in
+ * which later opaque rectangles and ellipses are filled over older strokes, through a
+ * series of commits, removals, and moves. After every step the layer is painted through a
+ * LayerCompositor, which skips hidden shapes, and compared pixel for pixel with drawing
+ * every shape, and the incrementally maintained occlusion index is compared with one built
+ * from scratch. Finally it reports the time of a full repaint with and without culling and
+ * the time of keeping the index up to date. Exits with status 1 if any pixel or count
+ * differs.
+ *
+ * <p>Usage: {@code OcclusionBenchmark [shapes] [steps] [seed]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class OcclusionBenchmark {
+
+    // CONSTANTS
+    /** Default number of shapes committed in each step. */
+    private static final int DEFAULT_SHAPES = 2000;
+
+    /** Default number of steps. */
+    private static final int DEFAULT_STEPS = 12;
+
+    /** Width of the canvas. */
+    private static final int WIDTH = 1024;
+
+    /** Height of the canvas. */
+    private static final int HEIGHT = 768;
+
+    /** Number of timed rounds of each repaint; the fastest is reported. */
+    private static final int ROUNDS = 5;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private OcclusionBenchmark() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the check and the benchmark.
+     *
+     * @param theArgs Optionally the number of shapes per step, the number of steps, and
+     * the random seed.
+     */
+    public static void main(final String[] theArgs) {
+
+        System.setProperty("java.awt.headless", "true");
+        final int shapes = theArgs.length > 0 ? Integer.parseInt(theArgs[0]) : DEFAULT_SHAPES;
+        final int steps = theArgs.length > 1 ? Integer.parseInt(theArgs[1]) : DEFAULT_STEPS;
+        final long seed = theArgs.length > 2 ? Long.parseLong(theArgs[2]) : 43;
+        final Random random = new Random(seed);
+
+        final Layer layer = new Layer("Layer 1");
+        final List<Layer> layers = Collections.singletonList(layer);
+        final LayerCompositor compositor = new LayerCompositor();
+        final OcclusionIndex index = new OcclusionIndex();
+        final BufferedImage culled = newCanvas();
+        final BufferedImage plain = newCanvas();
+        int failures = 0;
+
+        System.out.printf(Locale.ROOT, "%-6s %-8s %8s %8s %10s%n", "step", "edit", "shapes",
+                          "hidden", "pixels");
+        for (int step = 0; step < steps; step++) {
+            final String edit = edit(layer, step, shapes, random);
+            final ShapeList current = layer.getShapes().snapshot();
+
+            paint(culled, compositor, layers);
+            paintPlain(plain, current);
+            final int differing = differences(culled, plain);
+
+            index.sync(current);
+            final OcclusionIndex fresh = new OcclusionIndex();
+            fresh.sync(current);
+            final boolean agrees = agree(index, fresh, current);
+            System.out.printf(Locale.ROOT, "%-6d %-8s %8d %8d %10s%s%n", step, edit,
+                              current.size(), index.getHiddenCount(),
+                              differing == 0 ? "identical" : differing + " differ",
+                              agrees ? "" : "  index differs from rebuilt index");
+            if (differing != 0 || !agrees) {
+                failures++;
+            }
+        }
+
+        final ShapeList current = layer.getShapes().snapshot();
+        final long withCulling = time(current, index);
+        final long without = time(current, null);
+        System.out.printf(Locale.ROOT, "full repaint of %d shapes, %d hidden: "
+                          + "%.2f ms culled, %.2f ms drawing all%n", current.size(),
+                          index.getHiddenCount(), withCulling / NANOS_PER_MILLI,
+                          without / NANOS_PER_MILLI);
+
+        long start = System.nanoTime();
+        final OcclusionIndex rebuilt = new OcclusionIndex();
+        rebuilt.sync(current);
+        final long rebuild = System.nanoTime() - start;
+        final PaintShape cover = new PaintShape(new Rectangle2D.Double(100, 100, 400, 300),
+                                                Color.ORANGE, Color.ORANGE, true, 2);
+        start = System.nanoTime();
+        rebuilt.sync(current.append(cover));
+        final long append = System.nanoTime() - start;
+        start = System.nanoTime();
+        rebuilt.sync(current);
+        final long remove = System.nanoTime() - start;
+        System.out.printf(Locale.ROOT, "index: build %.2f ms, commit fill %.3f ms, "
+                          + "remove fill %.2f ms%n", rebuild / NANOS_PER_MILLI,
+                          append / NANOS_PER_MILLI, remove / NANOS_PER_MILLI);
+
+        if (failures > 0) {
+            System.out.println(failures + " of " + steps + " steps failed");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Applies one step of editing to the layer: mostly commits, with removals and moves
+     * in between. The removals and moves are not reported to the compositor, so it
+     * rasterizes the whole layer again after them, which is what is compared.
+     *
+     * @param theLayer The layer.
+     * @param theStep The number of the step.
+     * @param theShapes The number of shapes to commit.
+     * @param theRandom The source of randomness.
+     * @return The name of the edit.
+     */
+    private static String edit(final Layer theLayer, final int theStep, final int theShapes,
+                               final Random theRandom) {
+
+        final ShapeList current = theLayer.getShapes().snapshot();
+        final String result;
+        if (theStep % 4 == 2 && !current.isEmpty()) {
+            // Remove every fifth shape, fills among them, revealing what they hid.
+            final List<PaintShape> doomed = new ArrayList<PaintShape>();
+            for (int i = theRandom.nextInt(5); i < current.size(); i += 5) {
+                doomed.add(current.get(i));
+            }
+            theLayer.getShapes().removeAll(doomed);
+            result = "remove";
+        } else if (theStep % 4 == 3 && !current.isEmpty()) {
+            final int count = Math.min(current.size(), 50);
+            final int[] positions = new int[count];
+            final PaintShape[] expected = new PaintShape[count];
+            final PaintShape[] moved = new PaintShape[count];
+            for (int i = 0; i < count; i++) {
+                positions[i] = i * (current.size() / count);
+                expected[i] = current.get(positions[i]);
+                moved[i] = expected[i].translated(theRandom.nextInt(61) - 30,
+                                                  theRandom.nextInt(61) - 30);
+            }
+            theLayer.getShapes().replace(positions, expected, moved);
+            result = "move";
+        } else {
+            for (int i = 0; i < theShapes; i++) {
+                theLayer.getShapes().add(randomShape(theRandom));
+            }
+            result = "commit";
+        }
+        return result;
+    }
+
+    /**
+     * Creates a random shape: a pencil stroke, a line, or an outlined or filled rectangle
+     * or ellipse, at fractional coordinates, with a few large opaque fills among them.
+     *
+     * @param theRandom The source of randomness.
+     * @return The shape.
+     */
+    private static PaintShape randomShape(final Random theRandom) {
+
+        final double x = theRandom.nextDouble() * WIDTH;
+        final double y = theRandom.nextDouble() * HEIGHT;
+        final int kind = theRandom.nextInt(20);
+        final Color color = new Color(theRandom.nextInt(0x1000000));
+        final Shape shape;
+        boolean filled = false;
+        Color fill = color;
+        if (kind == 0) {
+            // A large cover, opaque more often than not.
+            final double size = 100 + theRandom.nextDouble() * 300;
+            shape = theRandom.nextBoolean()
+                ? new Rectangle2D.Double(x - size / 2, y - size / 2, size, size * 0.75)
+                : new Ellipse2D.Double(x - size / 2, y - size / 2, size, size * 0.75);
+            filled = true;
+            fill = theRandom.nextInt(4) == 0
+                ? new Color(theRandom.nextInt(0x1000000) | 0x80000000, true)
+                : new Color(theRandom.nextInt(0x1000000));
+        } else if (kind < 6) {
+            final double size = 4 + theRandom.nextDouble() * 60;
+            shape = kind % 2 == 0 ? new Rectangle2D.Double(x, y, size, size / 2)
+                                  : new Ellipse2D.Double(x, y, size, size / 2);
+            filled = theRandom.nextBoolean();
+        } else if (kind < 10) {
+            shape = new Line2D.Double(x, y, x + theRandom.nextGaussian() * 30,
+                                      y + theRandom.nextGaussian() * 30);
+        } else {
+            final Path2D path = new Path2D.Double();
+            path.moveTo(x, y);
+            double px = x;
+            double py = y;
+            for (int i = 0; i < 12; i++) {
+                px += theRandom.nextGaussian() * 6;
+                py += theRandom.nextGaussian() * 6;
+                path.lineTo(px, py);
+            }
+            shape = path;
+        }
+        return new PaintShape(shape, color, fill, filled, 1 + theRandom.nextInt(6));
+    }
+
+    /**
+     * Creates a blank canvas.
+     *
+     * @return A new image of the canvas size.
+     */
+    private static BufferedImage newCanvas() {
+
+        return new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    /**
+     * Paints the layers through the compositor onto a cleared canvas.
+     *
+     * @param theImage The canvas.
+     * @param theCompositor The compositor.
+     * @param theLayers The layers.
+     */
+    private static void paint(final BufferedImage theImage,
+                              final LayerCompositor theCompositor,
+                              final List<Layer> theLayers) {
+
+        final Graphics2D g2d = theImage.createGraphics();
+        try {
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.setColor(ShapeRenderer.BACKGROUND_COLOR);
+            g2d.fillRect(0, 0, WIDTH, HEIGHT);
+            g2d.setComposite(AlphaComposite.SrcOver);
+            theCompositor.paint(g2d, theLayers, theLayers.get(0), WIDTH, HEIGHT);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Paints every shape, hidden or not, the way the compositor rasterizes a layer, and
+     * composites the result onto the canvas the way the compositor does.
+     *
+     * @param theImage The canvas.
+     * @param theShapes The shapes.
+     */
+    private static void paintPlain(final BufferedImage theImage, final ShapeList theShapes) {
+
+        final BufferedImage layer = newCanvas();
+        Graphics2D g2d = layer.createGraphics();
+        try {
+            ShapeRenderer.applyHints(g2d);
+            ShapeRenderer.paintShapes(g2d, theShapes);
+        } finally {
+            g2d.dispose();
+        }
+        g2d = theImage.createGraphics();
+        try {
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.setColor(ShapeRenderer.BACKGROUND_COLOR);
+            g2d.fillRect(0, 0, WIDTH, HEIGHT);
+            g2d.setComposite(AlphaComposite.SrcOver);
+            g2d.drawImage(layer, 0, 0, null);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Counts the pixels that differ between two canvases.
+     *
+     * @param theFirst The first canvas.
+     * @param theSecond The second canvas.
+     * @return The number of differing pixels.
+     */
+    private static int differences(final BufferedImage theFirst,
+                                   final BufferedImage theSecond) {
+
+        final int[] first = ((DataBufferInt) theFirst.getRaster().getDataBuffer()).getData();
+        final int[] second = ((DataBufferInt) theSecond.getRaster().getDataBuffer()).getData();
+        if (Arrays.equals(first, second)) {
+            return 0;
+        }
+        int result = 0;
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] != second[i]) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines whether two occlusion indexes of the same shapes hide the same shapes.
+     *
+     * @param theIndex The first index.
+     * @param theOther The second index.
+     * @param theShapes The shapes both index.
+     * @return Whether the indexes agree on every shape.
+     */
+    private static boolean agree(final OcclusionIndex theIndex, final OcclusionIndex theOther,
+                                 final ShapeList theShapes) {
+
+        if (theIndex.getHiddenCount() != theOther.getHiddenCount()
+            || theIndex.size() != theOther.size()) {
+            return false;
+        }
+        for (final PaintShape shape: theShapes) {
+            if (theIndex.isHidden(shape) != theOther.isHidden(shape)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Times a full repaint of the shapes onto a layer raster.
+     *
+     * @param theShapes The shapes.
+     * @param theHidden The occlusion index to cull with, or null to draw every shape.
+     * @return The fastest time of a repaint, in nanoseconds.
+     */
+    private static long time(final ShapeList theShapes, final OcclusionIndex theHidden) {
+
+        final BufferedImage image = newCanvas();
+        long result = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final Graphics2D g2d = image.createGraphics();
+            try {
+                ShapeRenderer.applyHints(g2d);
+                final long start = System.nanoTime();
+                ShapeRenderer.paintShapes(g2d, theShapes, theHidden);
+                result = Math.min(result, System.nanoTime() - start);
+            } finally {
+                g2d.dispose();
+            }
+        }
+        return result;
+    }
+}
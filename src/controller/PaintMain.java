@@ -4,6 +4,7 @@ import java.awt.EventQueue;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import view.PaintGUI;
+import view.StartupTimeline;
 
 /**
  * Starts the PowerPaint application.
@@ -26,6 +27,7 @@ public final class PaintMain {
      */
     public static void main(final String[] theArgs) {
     	
+        StartupTimeline.begin();
         EventQueue.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -0,0 +1,233 @@
+package controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load test for RenderServer. Starts a server on a free loopback port (unless a port is
+ * given), then has many concurrent clients request overlapping viewports of one document
+ * and reports throughput, latency percentiles, and the server's cache hit ratio.
+ *
+ * <p>Usage: {@code RenderLoadClient <document> [clients] [requestsPerClient] [port]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class RenderLoadClient {
+
+    // CONSTANTS
+    /** Number of concurrent clients used when none is given. */
+    private static final int DEFAULT_CLIENTS = 16;
+
+    /** Number of requests each client makes when none is given. */
+    private static final int DEFAULT_REQUESTS = 50;
+
+    /** Width and height of every requested image. */
+    private static final int IMAGE_SIZE = 512;
+
+    /** Number of distinct viewport origins along each axis, so requests overlap. */
+    private static final int POSITIONS = 4;
+
+    /** Tile cache size of the embedded server in bytes. */
+    private static final long CACHE_BYTES = 256L << 20;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private RenderLoadClient() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param theArgs The document to render, and optionally the number of clients, the
+     * number of requests per client, and the port of an already running server.
+     * @throws Exception If the document cannot be read or the test cannot run.
+     */
+    public static void main(final String[] theArgs) throws Exception {
+
+        System.setProperty("java.awt.headless", "true");
+        if (theArgs.length < 1) {
+            System.err.println("Usage: RenderLoadClient <document> [clients] "
+                               + "[requestsPerClient] [port]");
+            System.exit(2);
+        }
+        final byte[] document = Files.readAllBytes(Paths.get(theArgs[0]));
+        final int clients = theArgs.length > 1 ? Integer.parseInt(theArgs[1])
+                                               : DEFAULT_CLIENTS;
+        final int requests = theArgs.length > 2 ? Integer.parseInt(theArgs[2])
+                                                : DEFAULT_REQUESTS;
+        RenderServer server = null;
+        final int port;
+        if (theArgs.length > 3) {
+            port = Integer.parseInt(theArgs[3]);
+        } else {
+            server = new RenderServer(0, CACHE_BYTES);
+            server.start();
+            port = server.getPort();
+        }
+
+        try {
+            run(document, port, clients, requests);
+            if (server != null) {
+                final double lookups = server.getTileCache().getHits()
+                                       + server.getTileCache().getMisses();
+                System.out.println(String.format(Locale.ROOT, "tile cache hit ratio %.1f%%",
+                    100 * server.getTileCache().getHits() / Math.max(lookups, 1)));
+            }
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Issues the requests and prints the latency distribution.
+     *
+     * @param theDocument The saved document sent with every request.
+     * @param thePort The port of the server.
+     * @param theClients The number of concurrent clients.
+     * @param theRequests The number of requests each client makes.
+     * @throws InterruptedException If interrupted while waiting for the clients.
+     * @throws ExecutionException If a client fails.
+     */
+    private static void run(final byte[] theDocument, final int thePort,
+                            final int theClients, final int theRequests)
+        throws InterruptedException, ExecutionException {
+
+        final HttpClient http = HttpClient.newHttpClient();
+        final ExecutorService pool = Executors.newFixedThreadPool(theClients);
+        final List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+        final long start = System.nanoTime();
+        try {
+            for (int i = 0; i < theClients; i++) {
+                futures.add(pool.submit(new Client(http, theDocument, thePort, theRequests,
+                                                   i)));
+            }
+            final long[] latencies = new long[theClients * theRequests];
+            int count = 0;
+            for (final Future<long[]> future: futures) {
+                final long[] client = future.get();
+                System.arraycopy(client, 0, latencies, count, client.length);
+                count += client.length;
+            }
+            final double seconds = (System.nanoTime() - start) / (NANOS_PER_MILLI * 1000);
+            Arrays.sort(latencies);
+            System.out.println(String.format(Locale.ROOT,
+                "%d requests from %d clients in %.2f s (%.1f requests/s)",
+                latencies.length, theClients, seconds, latencies.length / seconds));
+            System.out.println(String.format(Locale.ROOT,
+                "latency ms: p50 %.1f  p90 %.1f  p99 %.1f  max %.1f",
+                percentile(latencies, 0.50), percentile(latencies, 0.90),
+                percentile(latencies, 0.99), latencies[latencies.length - 1] / NANOS_PER_MILLI));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a percentile of sorted latencies in milliseconds.
+     *
+     * @param theSorted The latencies in nanoseconds, sorted ascending.
+     * @param theFraction The percentile as a fraction between 0 and 1.
+     * @return The latency at that percentile in milliseconds.
+     */
+    private static double percentile(final long[] theSorted, final double theFraction) {
+
+        final int index = (int) Math.ceil(theFraction * theSorted.length) - 1;
+        return theSorted[Math.max(index, 0)] / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * A single simulated client issuing requests one after another.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Client implements Callable<long[]> {
+
+        // INSTANCE FIELDS
+        /** The shared HTTP client. */
+        private final HttpClient myHttp;
+
+        /** The saved document sent with every request. */
+        private final byte[] myDocument;
+
+        /** The port of the server. */
+        private final int myPort;
+
+        /** The number of requests to make. */
+        private final int myRequests;
+
+        /** Chooses the viewport of each request. */
+        private final Random myRandom;
+
+
+        /**
+         * Constructor that stores the parameters of the client.
+         *
+         * @param theHttp The shared HTTP client.
+         * @param theDocument The saved document sent with every request.
+         * @param thePort The port of the server.
+         * @param theRequests The number of requests to make.
+         * @param theSeed Seed for choosing viewports.
+         */
+        Client(final HttpClient theHttp, final byte[] theDocument, final int thePort,
+               final int theRequests, final long theSeed) {
+
+            myHttp = theHttp;
+            myDocument = theDocument;
+            myPort = thePort;
+            myRequests = theRequests;
+            myRandom = new Random(theSeed);
+        }
+
+        @Override
+        public long[] call() throws IOException, InterruptedException {
+
+            final long[] result = new long[myRequests];
+            for (int i = 0; i < myRequests; i++) {
+                // Viewports start on a small grid of origins at full scale, so concurrent
+                // requests overlap and share most of their tiles.
+                final int x = myRandom.nextInt(POSITIONS) * IMAGE_SIZE / POSITIONS;
+                final int y = myRandom.nextInt(POSITIONS) * IMAGE_SIZE / POSITIONS;
+                final URI uri = URI.create("http://127.0.0.1:" + myPort + "/render?x=" + x
+                                           + "&y=" + y + "&w=" + IMAGE_SIZE + "&h="
+                                           + IMAGE_SIZE + "&width=" + IMAGE_SIZE
+                                           + "&height=" + IMAGE_SIZE);
+                final HttpRequest request = HttpRequest.newBuilder(uri)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(myDocument)).build();
+                final long start = System.nanoTime();
+                final HttpResponse<byte[]> response =
+                    myHttp.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                result[i] = System.nanoTime() - start;
+                if (response.statusCode() != 200) {
+                    throw new IOException("HTTP " + response.statusCode() + ": "
+                                          + new String(response.body(), "UTF-8"));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,596 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import model.PaintDocument;
+import model.PaintDocumentIO;
+import view.ImageCache;
+import view.ShapeRenderer;
+
+/**
+ * Embedded HTTP service that renders PowerPaint documents to PNGs for other tools without
+ * starting the GUI. The server only listens on the loopback interface.
+ *
+ * <p>{@code POST /render?width=W&height=H[&x=X&y=Y&w=VW&h=VH]} with a saved document as
+ * the request body returns a W by H PNG of the viewport (X, Y, VW, VH) of the document's
+ * canvas, which defaults to the whole canvas. Output is assembled from fixed-size tiles
+ * cached by the SHA-256 of the document and the scale, so repeated and overlapping
+ * requests only rasterize the tiles they have not seen. Parsed documents are kept too, up
+ * to a bound on the bytes of the bodies they came from. {@code GET /stats} reports the
+ * cache counters.
+ *
+ * <p>Usage: {@code RenderServer [port] [cacheMegabytes]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class RenderServer {
+
+    // CONSTANTS
+    /** Port used when none is given on the command line. */
+    public static final int DEFAULT_PORT = 8717;
+
+    /** Tile cache size used when none is given on the command line. */
+    private static final int DEFAULT_CACHE_MEGABYTES = 256;
+
+    /** Width and height of each cached tile in pixels. */
+    private static final int TILE_SIZE = 256;
+
+    /** Number of parsed documents kept so repeated requests skip parsing. */
+    private static final int DOCUMENT_CACHE_SIZE = 64;
+
+    /** The largest request body accepted, in bytes. */
+    private static final int MAX_BODY = 64 << 20;
+
+    /**
+     * Most bytes of request bodies whose parsed documents are kept together. A body of the
+     * largest size still fits on its own.
+     */
+    private static final long DOCUMENT_CACHE_BYTES = MAX_BODY;
+
+    /** The largest image dimension that may be requested. */
+    private static final int MAX_DIMENSION = 8192;
+
+    /** Bytes in a megabyte. */
+    private static final long MEGABYTE = 1 << 20;
+
+
+    // INSTANCE FIELDS
+    /** The underlying JDK HTTP server. */
+    private final HttpServer myServer;
+
+    /** Threads that handle requests. */
+    private final ExecutorService myExecutor;
+
+    /** Rendered tiles keyed by document hash, scale, and tile position. */
+    private final ImageCache<TileKey> myTiles;
+
+    /** Recently parsed documents keyed by the hash of their bytes, least recent first. */
+    private final Map<String, CachedDocument> myDocuments;
+
+    /** Bytes of the request bodies of the parsed documents kept; guarded by myDocuments. */
+    private long myDocumentBytes;
+
+
+    /**
+     * Constructor that binds the server to the loopback interface. The server does not
+     * accept requests until start is called.
+     *
+     * @param thePort The port to listen on, or 0 to pick a free port.
+     * @param theCacheBytes The capacity of the tile cache in bytes.
+     * @throws IOException If the port cannot be bound.
+     */
+    public RenderServer(final int thePort, final long theCacheBytes) throws IOException {
+
+        myServer = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), thePort), 0);
+        myExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        myTiles = new ImageCache<TileKey>(theCacheBytes);
+        myDocuments = new LinkedHashMap<String, CachedDocument>(16, 0.75f, true);
+        myServer.setExecutor(myExecutor);
+        myServer.createContext("/render", new RenderHandler());
+        myServer.createContext("/stats", new StatsHandler());
+    }
+
+    /**
+     * Starts a server from the command line.
+     *
+     * @param theArgs Optionally the port followed by the tile cache size in megabytes.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static void main(final String[] theArgs) throws IOException {
+
+        System.setProperty("java.awt.headless", "true");
+        final int port = theArgs.length > 0 ? Integer.parseInt(theArgs[0]) : DEFAULT_PORT;
+        final long cache = theArgs.length > 1 ? Long.parseLong(theArgs[1])
+                                              : DEFAULT_CACHE_MEGABYTES;
+        final RenderServer server = new RenderServer(port, cache * MEGABYTE);
+        server.start();
+        System.out.println("Rendering on http://localhost:" + server.getPort() + "/render");
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+
+        myServer.start();
+    }
+
+    /**
+     * Stops accepting requests and releases the server's threads.
+     */
+    public void stop() {
+
+        myServer.stop(0);
+        myExecutor.shutdownNow();
+    }
+
+    /**
+     * Provides the caller with the port the server is bound to.
+     *
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+
+        return myServer.getAddress().getPort();
+    }
+
+    /**
+     * Provides the caller with the cache of rendered tiles.
+     *
+     * @return The tile cache.
+     */
+    public ImageCache<?> getTileCache() {
+
+        return myTiles;
+    }
+
+    /**
+     * Renders a viewport of a document by stitching together cached tiles.
+     *
+     * @param theHash The hash identifying the document.
+     * @param theDocument The document to render.
+     * @param theViewport The viewport as x, y, width, and height in canvas coordinates.
+     * @param theWidth The width of the resulting image.
+     * @param theHeight The height of the resulting image.
+     * @return The rendered viewport.
+     * @throws ExecutionException If a tile cannot be rendered.
+     * @throws InterruptedException If interrupted while waiting for a tile.
+     */
+    private BufferedImage render(final String theHash, final PaintDocument theDocument,
+                                 final double[] theViewport, final int theWidth,
+                                 final int theHeight)
+        throws ExecutionException, InterruptedException {
+
+        final double scaleX = theWidth / theViewport[2];
+        final double scaleY = theHeight / theViewport[3];
+        // Tiles are laid out in device space, so the viewport origin snaps to a pixel.
+        final int originX = (int) Math.round(theViewport[0] * scaleX);
+        final int originY = (int) Math.round(theViewport[1] * scaleY);
+
+        final BufferedImage result =
+            new BufferedImage(theWidth, theHeight, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = result.createGraphics();
+        try {
+            final int firstColumn = Math.floorDiv(originX, TILE_SIZE);
+            final int lastColumn = Math.floorDiv(originX + theWidth - 1, TILE_SIZE);
+            final int firstRow = Math.floorDiv(originY, TILE_SIZE);
+            final int lastRow = Math.floorDiv(originY + theHeight - 1, TILE_SIZE);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    final TileKey key = new TileKey(theHash, scaleX, scaleY, column, row);
+                    final BufferedImage tile =
+                        myTiles.get(key, new TileLoader(theDocument, key));
+                    g2d.drawImage(tile, column * TILE_SIZE - originX,
+                                  row * TILE_SIZE - originY, null);
+                }
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the parsed document for the given bytes, parsing it on the first request.
+     * Parsed documents are kept, least recently used first out, while there are no more
+     * than DOCUMENT_CACHE_SIZE of them and their bodies total no more than
+     * DOCUMENT_CACHE_BYTES.
+     *
+     * @param theHash The hash of the bytes.
+     * @param theBytes The saved document.
+     * @return The parsed document.
+     * @throws IOException If the bytes are not a valid document.
+     */
+    private PaintDocument document(final String theHash, final byte[] theBytes)
+        throws IOException {
+
+        synchronized (myDocuments) {
+            final CachedDocument cached = myDocuments.get(theHash);
+            if (cached != null) {
+                return cached.myDocument;
+            }
+        }
+        final PaintDocument result;
+        try {
+            result = PaintDocumentIO.read(new ByteArrayInputStream(theBytes));
+        } catch (final RuntimeException e) {
+            // A corrupt body is the client's error, whatever part of parsing noticed it.
+            throw new IOException("Corrupt document: " + e, e);
+        }
+        synchronized (myDocuments) {
+            final CachedDocument old =
+                myDocuments.put(theHash, new CachedDocument(result, theBytes.length));
+            myDocumentBytes += theBytes.length - (old == null ? 0 : old.myBytes);
+            final Iterator<CachedDocument> eldest = myDocuments.values().iterator();
+            while (myDocuments.size() > DOCUMENT_CACHE_SIZE
+                   || myDocumentBytes > DOCUMENT_CACHE_BYTES) {
+                myDocumentBytes -= eldest.next().myBytes;
+                eldest.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the hexadecimal SHA-256 hash of the given bytes.
+     *
+     * @param theBytes The bytes to hash.
+     * @return The hash as a hexadecimal string.
+     */
+    private static String hash(final byte[] theBytes) {
+
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(theBytes);
+            final StringBuilder result = new StringBuilder(digest.length * 2);
+            for (final byte value: digest) {
+                result.append(Character.forDigit((value >> 4) & 0xF, 16));
+                result.append(Character.forDigit(value & 0xF, 16));
+            }
+            return result.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Parses the query string of a request into its parameters.
+     *
+     * @param theQuery The raw query string, which may be null.
+     * @return The parameters by name.
+     */
+    private static Map<String, String> parameters(final String theQuery) {
+
+        final Map<String, String> result = new HashMap<String, String>();
+        if (theQuery != null) {
+            for (final String pair: theQuery.split("&")) {
+                final int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    result.put(pair.substring(0, equals), pair.substring(equals + 1));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a numeric parameter.
+     *
+     * @param theParameters The request parameters.
+     * @param theName The name of the parameter.
+     * @param theDefault The value used when the parameter is absent.
+     * @return The value of the parameter.
+     */
+    private static double number(final Map<String, String> theParameters,
+                                 final String theName, final double theDefault) {
+
+        final String value = theParameters.get(theName);
+        if (value == null) {
+            return theDefault;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + theName + " is not a number");
+        }
+    }
+
+    /**
+     * Reads the whole request body, refusing bodies larger than MAX_BODY.
+     *
+     * @param theStream The request body.
+     * @return The bytes of the body.
+     * @throws IOException If the body cannot be read.
+     */
+    private static byte[] readBody(final InputStream theStream) throws IOException {
+
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read = theStream.read(buffer);
+        while (read >= 0) {
+            result.write(buffer, 0, read);
+            if (result.size() > MAX_BODY) {
+                throw new IllegalArgumentException("Document too large");
+            }
+            read = theStream.read(buffer);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Sends a complete response and closes the exchange.
+     *
+     * @param theExchange The exchange to respond to.
+     * @param theStatus The HTTP status code.
+     * @param theType The content type of the body.
+     * @param theBody The body of the response.
+     * @throws IOException If the response cannot be sent.
+     */
+    private static void respond(final HttpExchange theExchange, final int theStatus,
+                                final String theType, final byte[] theBody)
+        throws IOException {
+
+        theExchange.getResponseHeaders().set("Content-Type", theType);
+        theExchange.sendResponseHeaders(theStatus, theBody.length);
+        try (OutputStream out = theExchange.getResponseBody()) {
+            out.write(theBody);
+        }
+    }
+
+    /**
+     * Sends a plain text error response.
+     *
+     * @param theExchange The exchange to respond to.
+     * @param theStatus The HTTP status code.
+     * @param theMessage The error message.
+     * @throws IOException If the response cannot be sent.
+     */
+    private static void error(final HttpExchange theExchange, final int theStatus,
+                              final String theMessage) throws IOException {
+
+        respond(theExchange, theStatus, "text/plain; charset=utf-8",
+                (theMessage + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Handles render requests.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private final class RenderHandler implements HttpHandler {
+
+        @Override
+        public void handle(final HttpExchange theExchange) throws IOException {
+
+            try {
+                if (!"POST".equals(theExchange.getRequestMethod())) {
+                    error(theExchange, 405, "Use POST with a document body");
+                    return;
+                }
+                final Map<String, String> parameters =
+                    parameters(theExchange.getRequestURI().getRawQuery());
+                final byte[] body = readBody(theExchange.getRequestBody());
+                final String hash = hash(body);
+                final PaintDocument document = document(hash, body);
+
+                final int width = (int) number(parameters, "width", document.getWidth());
+                final int height = (int) number(parameters, "height", document.getHeight());
+                final double[] viewport = {
+                    number(parameters, "x", 0),
+                    number(parameters, "y", 0),
+                    number(parameters, "w", document.getWidth()),
+                    number(parameters, "h", document.getHeight())
+                };
+                if (width <= 0 || height <= 0 || width > MAX_DIMENSION
+                    || height > MAX_DIMENSION || !(viewport[2] > 0) || !(viewport[3] > 0)) {
+                    throw new IllegalArgumentException("Invalid size or viewport");
+                }
+
+                final BufferedImage image = render(hash, document, viewport, width, height);
+                final ByteArrayOutputStream png = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", png);
+                theExchange.getResponseHeaders().set("ETag", "\"" + hash + "\"");
+                respond(theExchange, 200, "image/png", png.toByteArray());
+            } catch (final IllegalArgumentException | IOException e) {
+                error(theExchange, 400, e.getMessage());
+            } catch (final ExecutionException e) {
+                error(theExchange, 500, String.valueOf(e.getCause()));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error(theExchange, 503, "Interrupted");
+            }
+        }
+    }
+
+    /**
+     * Reports the tile cache counters as plain text.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private final class StatsHandler implements HttpHandler {
+
+        @Override
+        public void handle(final HttpExchange theExchange) throws IOException {
+
+            final String documents;
+            synchronized (myDocuments) {
+                documents = " documents=" + myDocuments.size()
+                            + " documentBytes=" + myDocumentBytes;
+            }
+            final String stats = "tiles=" + myTiles.getCount()
+                                 + " bytes=" + myTiles.getSize()
+                                 + " hits=" + myTiles.getHits()
+                                 + " misses=" + myTiles.getMisses() + documents + "\n";
+            respond(theExchange, 200, "text/plain; charset=utf-8",
+                    stats.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * A parsed document kept by the server, with the size of the body it was parsed from.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class CachedDocument {
+
+        // INSTANCE FIELDS
+        /** The parsed document. */
+        private final PaintDocument myDocument;
+
+        /** The bytes of the request body it was parsed from. */
+        private final long myBytes;
+
+
+        /**
+         * Constructor that stores the document and the size of its body.
+         *
+         * @param theDocument The parsed document.
+         * @param theBytes The bytes of the request body.
+         */
+        CachedDocument(final PaintDocument theDocument, final long theBytes) {
+
+            myDocument = theDocument;
+            myBytes = theBytes;
+        }
+    }
+
+    /**
+     * Renders a single tile of a document at a given scale.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class TileLoader implements Callable<BufferedImage> {
+
+        // INSTANCE FIELDS
+        /** The document to render. */
+        private final PaintDocument myDocument;
+
+        /** The tile to render. */
+        private final TileKey myKey;
+
+
+        /**
+         * Constructor that stores the document and tile.
+         *
+         * @param theDocument The document to render.
+         * @param theKey The tile to render.
+         */
+        TileLoader(final PaintDocument theDocument, final TileKey theKey) {
+
+            myDocument = theDocument;
+            myKey = theKey;
+        }
+
+        @Override
+        public BufferedImage call() {
+
+            final BufferedImage tile =
+                new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+            final Graphics2D g2d = tile.createGraphics();
+            try {
+                g2d.setColor(ShapeRenderer.BACKGROUND_COLOR);
+                g2d.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+                ShapeRenderer.applyHints(g2d);
+                g2d.translate(-myKey.myColumn * TILE_SIZE, -myKey.myRow * TILE_SIZE);
+                g2d.scale(myKey.myScaleX, myKey.myScaleY);
+                ShapeRenderer.paintDocument(g2d, myDocument);
+            } finally {
+                g2d.dispose();
+            }
+            return tile;
+        }
+    }
+
+    /**
+     * Identifies a tile by the document it belongs to, its scale, and its position.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class TileKey {
+
+        // INSTANCE FIELDS
+        /** The hash of the document. */
+        private final String myHash;
+
+        /** The horizontal scale from canvas to device space. */
+        private final double myScaleX;
+
+        /** The vertical scale from canvas to device space. */
+        private final double myScaleY;
+
+        /** The column of the tile in device space. */
+        private final int myColumn;
+
+        /** The row of the tile in device space. */
+        private final int myRow;
+
+
+        /**
+         * Constructor that stores the components of the key.
+         *
+         * @param theHash The hash of the document.
+         * @param theScaleX The horizontal scale.
+         * @param theScaleY The vertical scale.
+         * @param theColumn The column of the tile.
+         * @param theRow The row of the tile.
+         */
+        TileKey(final String theHash, final double theScaleX, final double theScaleY,
+                final int theColumn, final int theRow) {
+
+            myHash = theHash;
+            myScaleX = theScaleX;
+            myScaleY = theScaleY;
+            myColumn = theColumn;
+            myRow = theRow;
+        }
+
+        @Override
+        public boolean equals(final Object theOther) {
+
+            if (!(theOther instanceof TileKey)) {
+                return false;
+            }
+            final TileKey other = (TileKey) theOther;
+            return myHash.equals(other.myHash)
+                   && Double.compare(myScaleX, other.myScaleX) == 0
+                   && Double.compare(myScaleY, other.myScaleY) == 0
+                   && myColumn == other.myColumn && myRow == other.myRow;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Arrays.hashCode(new Object[] {myHash, myScaleX, myScaleY, myColumn, myRow});
+        }
+    }
+}
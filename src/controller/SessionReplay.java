@@ -0,0 +1,67 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+import view.SessionReplayer;
+
+/**
+ * Headless command that replays a session recorded from PowerPaint's File menu and prints
+ * how long each kind of event took to handle and paint, and the checksum of the final
+ * frame. Two replays of the same recording should give the same checksum; a different one
+ * means the drawing or its rendering has changed.
+ *
+ * <p>Usage: {@code SessionReplay <recording> [--realtime]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class SessionReplay {
+
+    // CONSTANTS
+    /** Option to replay at the recorded pace rather than as fast as possible. */
+    private static final String REAL_TIME = "--realtime";
+
+
+    // Private constructor to inhibit external instantiation.
+    private SessionReplay() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Replays the recording and prints its report.
+     *
+     * @param theArgs The recording and optionally --realtime.
+     */
+    public static void main(final String[] theArgs) {
+
+        System.setProperty("java.awt.headless", "true");
+        if (theArgs.length < 1 || theArgs.length > 2
+            || theArgs.length == 2 && !REAL_TIME.equals(theArgs[1])) {
+            System.err.println("Usage: SessionReplay <recording> [" + REAL_TIME + "]");
+            System.exit(2);
+        }
+
+        final SessionReplayer.Report report;
+        try {
+            report = SessionReplayer.replay(Paths.get(theArgs[0]), theArgs.length == 2);
+        } catch (final IOException e) {
+            System.err.println("Could not replay " + theArgs[0] + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        System.out.printf(Locale.ROOT, "%-8s %8s %10s %10s %10s%n", "event", "count",
+                          "p50 ms", "p99 ms", "max ms");
+        for (final String kind: report.getKinds()) {
+            System.out.printf(Locale.ROOT, "%-8s %8d %10.3f %10.3f %10.3f%n", kind,
+                              report.getCount(kind), report.getLatencyMillis(kind, 0.5),
+                              report.getLatencyMillis(kind, 0.99),
+                              report.getLatencyMillis(kind, 1));
+        }
+        System.out.printf(Locale.ROOT, "total %.1f ms, %d shapes, checksum %08x%n",
+                          report.getTotalMillis(), report.getShapes(),
+                          report.getChecksum());
+    }
+}
@@ -0,0 +1,228 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import model.PaintShape;
+import model.SnapIndex;
+
+/**
+ * Headless benchmark of the snap index. Fills a large canvas with rectangles whose corners
+ * give the requested number of snap points, then times building the index, adding shapes
+ * one at a time as the canvas does on commit, and nearest-point queries both within the
+ * snap radius and without any limit. Every query is checked against a scan of all points,
+ * and the scan's own time is reported for comparison.
+ *
+ * <p>Usage: {@code SnapBenchmark [points] [queries]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class SnapBenchmark {
+
+    // CONSTANTS
+    /** Default number of snap points to index. */
+    private static final int DEFAULT_POINTS = 1_000_000;
+
+    /** Default number of timed queries of each kind. */
+    private static final int DEFAULT_QUERIES = 100_000;
+
+    /** Width and height of the canvas the rectangles are scattered over. */
+    private static final int CANVAS_SIZE = 4096;
+
+    /** Largest width and height of a rectangle. */
+    private static final int MAX_SIDE = 64;
+
+    /** Number of shapes added one at a time after the bulk build. */
+    private static final int COMMITS = 10_000;
+
+    /** Number of queries checked against a scan of every point. */
+    private static final int CHECKS = 200;
+
+    /** The snap radius used by the canvas. */
+    private static final double SNAP_RADIUS = 8;
+
+    /** Seed for the generator, so every run measures the same drawing. */
+    private static final long SEED = 42;
+
+    /** Nanoseconds in a microsecond, for reporting timings. */
+    private static final double NANOS_PER_MICRO = 1_000.0;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private SnapBenchmark() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the benchmark and prints its results.
+     *
+     * @param theArgs Optionally the number of points and the number of queries.
+     */
+    public static void main(final String[] theArgs) {
+
+        System.setProperty("java.awt.headless", "true");
+        int points = DEFAULT_POINTS;
+        if (theArgs.length > 0) {
+            points = Integer.parseInt(theArgs[0]);
+        }
+        int queries = DEFAULT_QUERIES;
+        if (theArgs.length > 1) {
+            queries = Integer.parseInt(theArgs[1]);
+        }
+
+        final Random random = new Random(SEED);
+        final List<PaintShape> shapes = new ArrayList<PaintShape>();
+        for (int i = 0; i < points / 4; i++) {
+            shapes.add(rectangle(random));
+        }
+        final List<PaintShape> commits = new ArrayList<PaintShape>();
+        for (int i = 0; i < COMMITS; i++) {
+            commits.add(rectangle(random));
+        }
+        // Compute the snap points up front so that only the index is timed.
+        for (final PaintShape shape: shapes) {
+            shape.getSnapPoints();
+        }
+
+        final SnapIndex index = new SnapIndex();
+        long start = System.nanoTime();
+        index.addAll(shapes);
+        final long build = System.nanoTime() - start;
+        start = System.nanoTime();
+        index.addAll(commits);
+        final long commit = System.nanoTime() - start;
+        shapes.addAll(commits);
+        final double[] all = allPoints(shapes);
+
+        System.out.printf(Locale.ROOT, "points %d, build %.1f ms, commit %.2f us/shape%n",
+                          index.size(), build / NANOS_PER_MILLI,
+                          commit / NANOS_PER_MICRO / COMMITS);
+        System.out.printf(Locale.ROOT, "%-10s %10s %10s %10s %10s%n", "query", "mean us",
+                          "p99 us", "max us", "scan us");
+        measure("radius", index, all, SNAP_RADIUS, queries, random);
+        measure("unbounded", index, all, Double.POSITIVE_INFINITY, queries, random);
+    }
+
+    /**
+     * Times nearest-point queries from random points, checks a sample of them against a
+     * scan of every point, and prints one line of results.
+     *
+     * @param theName The name of the kind of query.
+     * @param theIndex The index to query.
+     * @param thePoints Every indexed point, one coordinate pair after another.
+     * @param theRadius How far away a point may be and still be found.
+     * @param theQueries The number of timed queries.
+     * @param theRandom The source of query points.
+     */
+    private static void measure(final String theName, final SnapIndex theIndex,
+                                final double[] thePoints, final double theRadius,
+                                final int theQueries, final Random theRandom) {
+
+        // One untimed pass warms up the JIT.
+        for (int i = 0; i < theQueries; i++) {
+            theIndex.nearest(theRandom.nextDouble() * CANVAS_SIZE,
+                             theRandom.nextDouble() * CANVAS_SIZE, theRadius);
+        }
+        final long[] times = new long[theQueries];
+        long total = 0;
+        for (int i = 0; i < theQueries; i++) {
+            final double x = theRandom.nextDouble() * CANVAS_SIZE;
+            final double y = theRandom.nextDouble() * CANVAS_SIZE;
+            final long start = System.nanoTime();
+            theIndex.nearest(x, y, theRadius);
+            times[i] = System.nanoTime() - start;
+            total += times[i];
+        }
+        Arrays.sort(times);
+
+        long scan = 0;
+        for (int i = 0; i < CHECKS; i++) {
+            final double x = theRandom.nextDouble() * CANVAS_SIZE;
+            final double y = theRandom.nextDouble() * CANVAS_SIZE;
+            final Point2D found = theIndex.nearest(x, y, theRadius);
+            final long start = System.nanoTime();
+            final double expected = scan(thePoints, x, y);
+            scan += System.nanoTime() - start;
+            final boolean inRange = expected <= theRadius;
+            if (inRange != (found != null)
+                || found != null && found.distance(x, y) != expected) {
+                throw new IllegalStateException(theName + " query at " + x + ", " + y
+                                                + " found " + found + ", nearest point is "
+                                                + expected + " away");
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%-10s %10.2f %10.2f %10.2f %10.1f%n", theName,
+                          total / NANOS_PER_MICRO / theQueries,
+                          times[theQueries * 99 / 100] / NANOS_PER_MICRO,
+                          times[theQueries - 1] / NANOS_PER_MICRO,
+                          scan / NANOS_PER_MICRO / CHECKS);
+    }
+
+    /**
+     * Finds the distance to the nearest point by visiting every point.
+     *
+     * @param thePoints Every point, one coordinate pair after another.
+     * @param theX The x coordinate to search from.
+     * @param theY The y coordinate to search from.
+     * @return The distance to the nearest point.
+     */
+    private static double scan(final double[] thePoints, final double theX,
+                               final double theY) {
+
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < thePoints.length; i += 2) {
+            final double dx = thePoints[i] - theX;
+            final double dy = thePoints[i + 1] - theY;
+            best = Math.min(best, dx * dx + dy * dy);
+        }
+        return Math.sqrt(best);
+    }
+
+    /**
+     * Collects the snap points of every shape into one array.
+     *
+     * @param theShapes The shapes.
+     * @return Every snap point, one coordinate pair after another.
+     */
+    private static double[] allPoints(final List<PaintShape> theShapes) {
+
+        double[] result = new double[theShapes.size() * 8];
+        int count = 0;
+        for (final PaintShape shape: theShapes) {
+            final double[] points = shape.getSnapPoints();
+            if (count + points.length > result.length) {
+                result = Arrays.copyOf(result, Math.max(result.length * 2,
+                                                        count + points.length));
+            }
+            System.arraycopy(points, 0, result, count, points.length);
+            count += points.length;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Creates a rectangle of random size at a random position on the canvas.
+     *
+     * @param theRandom The source of positions and sizes.
+     * @return The rectangle.
+     */
+    private static PaintShape rectangle(final Random theRandom) {
+
+        return new PaintShape(new Rectangle2D.Double(theRandom.nextInt(CANVAS_SIZE),
+                                                     theRandom.nextInt(CANVAS_SIZE),
+                                                     1 + theRandom.nextInt(MAX_SIDE),
+                                                     1 + theRandom.nextInt(MAX_SIDE)),
+                              Color.BLACK, Color.BLACK, false, 1);
+    }
+}
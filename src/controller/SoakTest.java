@@ -0,0 +1,440 @@
+package controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import view.SessionReplayer;
+import view.WorkloadGenerator;
+
+/**
+ * Headless soak test of the whole drawing path. Feeds synthetic sessions from a
+ * WorkloadGenerator through the real tools into one PaintPanel for as long as asked,
+ * clearing the drawing whenever it reaches a size limit, and writes one JSON line per
+ * interval with the frame times, heap, and garbage collection pauses of that interval.
+ * A final summary line flags a suspected leak when the heap left after collections keeps
+ * growing, and degradation when frames at the end are much slower than at the start; the
+ * exit status is 1 if either is flagged.
+ *
+ * <p>Usage: {@code SoakTest <minutes> <report.jsonl> [name=value ...]} where the settings
+ * are seed, batch (shapes per session), maxShapes, interval (seconds), width, height,
+ * lines, rectangles, ellipses, pencils (the weights of the mix), minSize, maxSize,
+ * minStroke, maxStroke, and fill (the share of filled shapes).
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class SoakTest {
+
+    // CONSTANTS
+    /** Type of the notifications sent by the JVM after each garbage collection. */
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    /** Relative growth of the heap left after collections that suggests a leak. */
+    private static final double LEAK_GROWTH = 0.25;
+
+    /** Slowdown of the 99th percentile frame time from start to end that is flagged. */
+    private static final double DEGRADATION = 2.0;
+
+    /** Fewest measured intervals needed before leaks or degradation are judged. */
+    private static final int MIN_INTERVALS = 3;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /** Milliseconds in a minute. */
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    /** Milliseconds in a second. */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+
+    // Private constructor to inhibit external instantiation.
+    private SoakTest() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the soak test.
+     *
+     * @param theArgs The number of minutes to run, the report file, and any settings.
+     * @throws IOException If the report cannot be written.
+     */
+    public static void main(final String[] theArgs) throws IOException {
+
+        System.setProperty("java.awt.headless", "true");
+        if (theArgs.length < 2) {
+            System.err.println("Usage: SoakTest <minutes> <report.jsonl> [name=value ...]");
+            System.exit(2);
+        }
+        final double minutes = Double.parseDouble(theArgs[0]);
+        final Map<String, String> settings = new HashMap<String, String>();
+        for (final String arg: Arrays.asList(theArgs).subList(2, theArgs.length)) {
+            final int equals = arg.indexOf('=');
+            if (equals < 0) {
+                System.err.println("Expected name=value: " + arg);
+                System.exit(2);
+            }
+            settings.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+
+        final int width = setting(settings, "width", 1280);
+        final int height = setting(settings, "height", 800);
+        final WorkloadGenerator generator =
+            new WorkloadGenerator(width, height, setting(settings, "seed", 42));
+        generator.setMix(setting(settings, "lines", 1), setting(settings, "rectangles", 1),
+                         setting(settings, "ellipses", 1), setting(settings, "pencils", 1));
+        generator.setSizes(setting(settings, "minSize", 10), setting(settings, "maxSize", 200));
+        generator.setStrokeWidths(setting(settings, "minStroke", 1),
+                                  setting(settings, "maxStroke", 10));
+        if (settings.containsKey("fill")) {
+            generator.setFillRatio(Double.parseDouble(settings.remove("fill")));
+        }
+        final int batch = setting(settings, "batch", 100);
+        final int maxShapes = setting(settings, "maxShapes", 5000);
+        final long interval = setting(settings, "interval", 60) * MILLIS_PER_SECOND;
+        if (!settings.isEmpty()) {
+            System.err.println("Unknown settings: " + settings.keySet());
+            System.exit(2);
+        }
+
+        final boolean flagged;
+        try (PrintWriter report =
+                 new PrintWriter(Files.newBufferedWriter(Paths.get(theArgs[1])))) {
+            flagged = soak(generator, batch, maxShapes,
+                           (long) (minutes * MILLIS_PER_MINUTE), interval, report);
+            if (report.checkError()) {
+                throw new IOException("Could not write " + theArgs[1]);
+            }
+        }
+        System.exit(flagged ? 1 : 0);
+    }
+
+    /**
+     * Replays generated sessions until the time is up, reporting each interval and a
+     * summary.
+     *
+     * @param theGenerator The source of the sessions.
+     * @param theBatch The number of shapes in each session.
+     * @param theMaxShapes The size the drawing is cleared at.
+     * @param theDuration The length of the run, in milliseconds.
+     * @param theInterval The length of each reported interval, in milliseconds.
+     * @param theReport The report to write JSON lines to.
+     * @return Whether a leak or degradation was flagged.
+     * @throws IOException If a session cannot be replayed.
+     */
+    private static boolean soak(final WorkloadGenerator theGenerator, final int theBatch,
+                                final int theMaxShapes, final long theDuration,
+                                final long theInterval, final PrintWriter theReport)
+        throws IOException {
+
+        final GcPauses pauses = new GcPauses();
+        final SessionReplayer replayer = new SessionReplayer();
+        final List<double[]> samples = new ArrayList<double[]>();
+        final ByteArrayOutputStream session = new ByteArrayOutputStream();
+        final long start = System.currentTimeMillis();
+        long nextReport = start + theInterval;
+        int shapes = 0;
+        long totalShapes = 0;
+        final List<long[]> frames = new ArrayList<long[]>();
+        int intervalBatches = 0;
+
+        while (true) {
+            session.reset();
+            final boolean clear = shapes + theBatch > theMaxShapes;
+            theGenerator.write(session, theBatch, clear);
+            final SessionReplayer.Report result =
+                replayer.play(new ByteArrayInputStream(session.toByteArray()), false);
+            shapes = result.getShapes();
+            totalShapes += theBatch;
+            intervalBatches++;
+            for (final String kind: result.getKinds()) {
+                frames.add(result.getLatencyNanos(kind));
+            }
+
+            final long now = System.currentTimeMillis();
+            final boolean done = now - start >= theDuration;
+            if (now >= nextReport || done) {
+                final long[] times = join(frames);
+                final long[] gc = pauses.drain();
+                final double[] sample = {gc[3], percentile(times, 0.99)};
+                samples.add(sample);
+                theReport.println(String.format(Locale.ROOT,
+                    "{\"type\":\"interval\",\"elapsedSeconds\":%.1f,\"batches\":%d,"
+                    + "\"shapesDrawn\":%d,\"documentShapes\":%d,\"frames\":%d,"
+                    + "\"frameP50Ms\":%.3f,\"frameP99Ms\":%.3f,\"frameMaxMs\":%.3f,"
+                    + "\"heapUsedBytes\":%d,\"heapAfterGcBytes\":%d,\"gcCount\":%d,"
+                    + "\"gcPauseTotalMs\":%d,\"gcPauseMaxMs\":%d}",
+                    (now - start) / (double) MILLIS_PER_SECOND, intervalBatches,
+                    totalShapes, shapes, times.length, percentile(times, 0.5),
+                    sample[1], percentile(times, 1),
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                    gc[3], gc[0], gc[1], gc[2]));
+                theReport.flush();
+                frames.clear();
+                intervalBatches = 0;
+                nextReport = now + theInterval;
+            }
+            if (done) {
+                break;
+            }
+        }
+        pauses.close();
+        return summarize(samples, theReport);
+    }
+
+    /**
+     * Judges the intervals for leaks and degradation and writes the summary line. The
+     * first interval is left out as warm-up, and intervals without a collection say
+     * nothing about the heap.
+     *
+     * @param theSamples The least heap left after a collection, or -1 without one, and
+     * the 99th percentile frame time of each interval.
+     * @param theReport The report to write the summary to.
+     * @return Whether a leak or degradation was flagged.
+     */
+    private static boolean summarize(final List<double[]> theSamples,
+                                     final PrintWriter theReport) {
+
+        final List<double[]> measured = theSamples.subList(Math.min(1, theSamples.size()),
+                                                           theSamples.size());
+        final int count = measured.size();
+
+        // Least squares line through the heap left after collections.
+        int points = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        for (int i = 0; i < count; i++) {
+            final double heap = measured.get(i)[0];
+            if (heap >= 0) {
+                points++;
+                sumX += i;
+                sumY += heap;
+                sumXY += i * heap;
+                sumXX += (double) i * i;
+            }
+        }
+        double growth = 0;
+        if (points >= MIN_INTERVALS) {
+            final double slope = (points * sumXY - sumX * sumY)
+                                 / (points * sumXX - sumX * sumX);
+            final double first = (sumY - slope * sumX) / points;
+            growth = slope * (count - 1) / Math.max(first, 1);
+        }
+
+        double slowdown = 1;
+        if (count >= MIN_INTERVALS) {
+            final int third = Math.max(1, count / 3);
+            slowdown = medianFrame(measured.subList(count - third, count))
+                       / Math.max(medianFrame(measured.subList(0, third)), 1e-6);
+        }
+        final boolean leak = growth > LEAK_GROWTH;
+        final boolean degraded = slowdown > DEGRADATION;
+        theReport.println(String.format(Locale.ROOT,
+            "{\"type\":\"summary\",\"intervals\":%d,\"heapGrowth\":%.4f,"
+            + "\"frameP99Slowdown\":%.3f,\"leakSuspected\":%b,\"degraded\":%b}",
+            count, growth, slowdown, leak, degraded));
+        return leak || degraded;
+    }
+
+    /**
+     * Finds the median of the 99th percentile frame times of some intervals.
+     *
+     * @param theSamples The intervals.
+     * @return The median frame time, in milliseconds.
+     */
+    private static double medianFrame(final List<double[]> theSamples) {
+
+        final double[] times = new double[theSamples.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = theSamples.get(i)[1];
+        }
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+
+    /**
+     * Finds the time within which a fraction of the sorted times fall.
+     *
+     * @param theTimes The times in nanoseconds, sorted.
+     * @param theFraction The fraction, from 0 to 1.
+     * @return The time in milliseconds, 0 if there are no times.
+     */
+    private static double percentile(final long[] theTimes, final double theFraction) {
+
+        if (theTimes.length == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(theFraction * theTimes.length) - 1;
+        return theTimes[Math.max(0, Math.min(rank, theTimes.length - 1))] / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Joins arrays of times into one sorted array.
+     *
+     * @param theTimes The arrays of times.
+     * @return All the times, sorted.
+     */
+    private static long[] join(final List<long[]> theTimes) {
+
+        int length = 0;
+        for (final long[] times: theTimes) {
+            length += times.length;
+        }
+        final long[] result = new long[length];
+        int position = 0;
+        for (final long[] times: theTimes) {
+            System.arraycopy(times, 0, result, position, times.length);
+            position += times.length;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Reads an integer setting and removes it, so that unknown settings are left over.
+     *
+     * @param theSettings The settings given.
+     * @param theName The name of the setting.
+     * @param theDefault The value if the setting was not given.
+     * @return The value of the setting.
+     */
+    private static int setting(final Map<String, String> theSettings, final String theName,
+                               final int theDefault) {
+
+        final String value = theSettings.remove(theName);
+        return value == null ? theDefault : Integer.parseInt(value);
+    }
+
+
+    /**
+     * Listens to the JVM's notifications of garbage collections and totals their pauses
+     * and the heap they leave until drained.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class GcPauses implements NotificationListener {
+
+        /** The collectors listened to. */
+        private final List<NotificationEmitter> myEmitters;
+
+        /** Names of the memory pools that make up the heap. */
+        private final Set<String> myHeapPools;
+
+        /** Collections since last drained. */
+        private long myCount;
+
+        /** Total duration of the collections since last drained, in milliseconds. */
+        private long myTotal;
+
+        /** Longest collection since last drained, in milliseconds. */
+        private long myMax;
+
+        /** Least heap left after a collection since last drained, or -1 if none. */
+        private long myLeast;
+
+
+        /**
+         * Constructor that starts listening to every collector that sends notifications.
+         */
+        private GcPauses() {
+
+            myHeapPools = new HashSet<String>();
+            for (final MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    myHeapPools.add(pool.getName());
+                }
+            }
+            myLeast = -1;
+            myEmitters = new ArrayList<NotificationEmitter>();
+            for (final GarbageCollectorMXBean gc:
+                 ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter) {
+                    final NotificationEmitter emitter = (NotificationEmitter) gc;
+                    emitter.addNotificationListener(this, null, null);
+                    myEmitters.add(emitter);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void handleNotification(final Notification theNotification,
+                                                    final Object theHandback) {
+
+            if (GC_NOTIFICATION.equals(theNotification.getType())
+                && theNotification.getUserData() instanceof CompositeData) {
+                final CompositeData info = (CompositeData) ((CompositeData)
+                    theNotification.getUserData()).get("gcInfo");
+                final long duration = (Long) info.get("duration");
+                myCount++;
+                myTotal += duration;
+                myMax = Math.max(myMax, duration);
+
+                long heap = 0;
+                final TabularData after = (TabularData) info.get("memoryUsageAfterGc");
+                for (final Object row: after.values()) {
+                    final CompositeData pool = (CompositeData) row;
+                    if (myHeapPools.contains(pool.get("key"))) {
+                        heap += (Long) ((CompositeData) pool.get("value")).get("used");
+                    }
+                }
+                myLeast = myLeast < 0 ? heap : Math.min(myLeast, heap);
+            }
+        }
+
+        /**
+         * Provides the collections since last drained and starts over.
+         *
+         * @return The number of collections, their total and longest pause in
+         * milliseconds, and the least heap in bytes left after one, or -1 if there were
+         * none.
+         */
+        private synchronized long[] drain() {
+
+            final long[] result = {myCount, myTotal, myMax, myLeast};
+            myCount = 0;
+            myTotal = 0;
+            myMax = 0;
+            myLeast = -1;
+            return result;
+        }
+
+        /**
+         * Stops listening to the collectors.
+         */
+        private void close() {
+
+            for (final NotificationEmitter emitter: myEmitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (final ListenerNotFoundException e) {
+                    // Already removed; nothing to do.
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import model.Motif;
+import model.PaintShape;
+import model.StampShape;
+import view.ShapeRenderer;
+
+/**
+ * Headless benchmark of stamped copies. Tiles a canvas with copies of motifs of growing
+ * complexity, once as StampShapes sharing the motif and once as translated PaintShapes that
+ * each carry their own geometry, and reports the memory the copies take and the time of a
+ * full repaint of them. Stamped copies should cost about the same however complex the
+ * motif is.
+ *
+ * <p>Usage: {@code StampBenchmark [copies] [rounds]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class StampBenchmark {
+
+    // CONSTANTS
+    /** Default number of copies of each motif. */
+    private static final int DEFAULT_COPIES = 2000;
+
+    /** Default number of timed rounds; the fastest is reported. */
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /** Numbers of points in the pencil strokes of the motifs measured. */
+    private static final int[] COMPLEXITIES = {16, 256, 4096};
+
+    /** Width and height of the canvas. */
+    private static final int CANVAS_SIZE = 2048;
+
+    /** Width and height of a cell of the tiling. */
+    private static final int CELL_SIZE = 40;
+
+    /** Radius of the motif's stroke around its center. */
+    private static final double RADIUS = 16;
+
+    /** Bytes in a kilobyte, for reporting memory. */
+    private static final double BYTES_PER_KILO = 1024.0;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private StampBenchmark() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the benchmark and prints one line per motif and way of copying it.
+     *
+     * @param theArgs Optionally the number of copies and the number of timed rounds.
+     */
+    public static void main(final String[] theArgs) {
+
+        System.setProperty("java.awt.headless", "true");
+        int count = DEFAULT_COPIES;
+        if (theArgs.length > 0) {
+            count = Integer.parseInt(theArgs[0]);
+        }
+        int rounds = DEFAULT_ROUNDS;
+        if (theArgs.length > 1) {
+            rounds = Integer.parseInt(theArgs[1]);
+        }
+
+        System.out.printf(Locale.ROOT, "%d copies%n%-8s %-8s %12s %12s%n", count, "points",
+                          "copies", "memory KB", "paint ms");
+        for (final int points: COMPLEXITIES) {
+            measure(points, count, rounds);
+        }
+    }
+
+    /**
+     * Copies a motif both ways and prints one line of results for each.
+     *
+     * @param thePoints The number of points of the motif's stroke.
+     * @param theCount The number of copies.
+     * @param theRounds The number of timed rounds.
+     */
+    private static void measure(final int thePoints, final int theCount,
+                                final int theRounds) {
+
+        final PaintShape stroke = stroke(thePoints);
+        final Motif motif = new Motif(Collections.singletonList(stroke));
+        final int columns = CANVAS_SIZE / CELL_SIZE;
+
+        final List<PaintShape> stamps = new ArrayList<PaintShape>(theCount);
+        for (int i = 0; i < theCount; i++) {
+            stamps.add(new StampShape(motif, i % columns * CELL_SIZE,
+                                      i / columns % columns * CELL_SIZE));
+        }
+        final long stampTime = time(stamps, theRounds);
+        final long stampMemory = release(stamps);
+
+        final List<PaintShape> copies = new ArrayList<PaintShape>(theCount);
+        for (int i = 0; i < theCount; i++) {
+            copies.add(stroke.translated(i % columns * CELL_SIZE,
+                                         i / columns % columns * CELL_SIZE));
+        }
+        final long copyTime = time(copies, theRounds);
+        final long copyMemory = release(copies);
+
+        System.out.printf(Locale.ROOT, "%-8d %-8s %12.1f %12.2f%n", thePoints, "stamped",
+                          stampMemory / BYTES_PER_KILO, stampTime / NANOS_PER_MILLI);
+        System.out.printf(Locale.ROOT, "%-8d %-8s %12.1f %12.2f%n", thePoints, "copied",
+                          copyMemory / BYTES_PER_KILO, copyTime / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Creates a closed pencil stroke with the given number of points, zigzagging around a
+     * circle in the top left cell of the tiling.
+     *
+     * @param thePoints The number of points of the stroke.
+     * @return The stroke.
+     */
+    private static PaintShape stroke(final int thePoints) {
+
+        final Path2D.Double path = new Path2D.Double();
+        for (int i = 0; i < thePoints; i++) {
+            final double angle = 2 * Math.PI * i / thePoints;
+            final double radius = RADIUS - 2 * (i % 2);
+            final double x = CELL_SIZE / 2.0 + radius * Math.cos(angle);
+            final double y = CELL_SIZE / 2.0 + radius * Math.sin(angle);
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+        }
+        path.closePath();
+        return new PaintShape(path, Color.BLUE, Color.CYAN, true, 1);
+    }
+
+    /**
+     * Times full repaints of some copies.
+     *
+     * @param theShapes The copies.
+     * @param theRounds The number of timed rounds.
+     * @return The fastest repaint, in nanoseconds.
+     */
+    private static long time(final List<PaintShape> theShapes, final int theRounds) {
+
+        final BufferedImage canvas =
+            new BufferedImage(CANVAS_SIZE, CANVAS_SIZE, BufferedImage.TYPE_INT_RGB);
+        long best = Long.MAX_VALUE;
+        // One untimed round warms up the JIT and renders the motif's sprite.
+        for (int round = 0; round <= theRounds; round++) {
+            final Graphics2D g2d = canvas.createGraphics();
+            try {
+                g2d.setColor(ShapeRenderer.BACKGROUND_COLOR);
+                g2d.fillRect(0, 0, CANVAS_SIZE, CANVAS_SIZE);
+                ShapeRenderer.applyHints(g2d);
+                final long start = System.nanoTime();
+                ShapeRenderer.paintShapes(g2d, theShapes);
+                if (round > 0) {
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+            } finally {
+                g2d.dispose();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Empties a list of copies and measures the memory that frees. The motif shared by
+     * stamped copies is still referenced by the caller, so only the copies are counted.
+     *
+     * @param theShapes The copies, which are removed from the list.
+     * @return The bytes the copies took.
+     */
+    private static long release(final List<PaintShape> theShapes) {
+
+        final long before = usedMemory();
+        theShapes.clear();
+        return before - usedMemory();
+    }
+
+    /**
+     * Measures the heap in use after asking for a garbage collection.
+     *
+     * @return The bytes of heap in use.
+     */
+    private static long usedMemory() {
+
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
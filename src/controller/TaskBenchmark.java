@@ -0,0 +1,613 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+import model.DocumentLayer;
+import model.PaintDocument;
+import model.PaintDocumentIO;
+import model.PaintShape;
+import view.DocumentTask;
+import view.PaintPanel;
+import view.ShapeRenderer;
+
+/**
+ * Headless benchmark of the event dispatch thread's responsiveness during long document
+ * operations. A large layered document is opened, saved, exported as PNG, and redrawn
+ * after the canvas is resized, first inline on the event dispatch thread as before, and
+ * then as background tasks. While each runs, a heartbeat paints the panel on the event
+ * dispatch thread every few milliseconds; the longest time the heartbeat waited is the
+ * longest the user would have seen the window freeze. The frame painted after opening in
+ * the background is compared pixel for pixel with the one painted after opening inline,
+ * and cancelled saves and opens are checked to leave the file and the drawing as they
+ * were. Exits with status 1 if any check fails.
+ *
+ * <p>Usage: {@code TaskBenchmark [shapes] [layers] [seed]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class TaskBenchmark {
+
+    // CONSTANTS
+    /** Default number of shapes in the document. */
+    private static final int DEFAULT_SHAPES = 120_000;
+
+    /** Default number of layers the shapes are spread over. */
+    private static final int DEFAULT_LAYERS = 4;
+
+    /** Width of the canvas. */
+    private static final int CANVAS_WIDTH = 1280;
+
+    /** Height of the canvas. */
+    private static final int CANVAS_HEIGHT = 800;
+
+    /** Width of the canvas after it is resized. */
+    private static final int RESIZED_WIDTH = 1440;
+
+    /** Height of the canvas after it is resized. */
+    private static final int RESIZED_HEIGHT = 900;
+
+    /** Milliseconds between heartbeats. */
+    private static final int HEARTBEAT_MILLIS = 5;
+
+    /** Milliseconds a task runs before it is cancelled by the cancellation checks. */
+    private static final int CANCEL_MILLIS = 30;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private TaskBenchmark() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the benchmark and the checks.
+     *
+     * @param theArgs Optionally the number of shapes, the number of layers, and the seed.
+     * @throws Exception If the document cannot be written or the panel fails.
+     */
+    public static void main(final String[] theArgs) throws Exception {
+
+        System.setProperty("java.awt.headless", "true");
+        final int shapes = theArgs.length > 0 ? Integer.parseInt(theArgs[0]) : DEFAULT_SHAPES;
+        final int layers = theArgs.length > 1 ? Integer.parseInt(theArgs[1]) : DEFAULT_LAYERS;
+        final long seed = theArgs.length > 2 ? Long.parseLong(theArgs[2]) : 45;
+
+        final Path directory = Files.createTempDirectory("tasks");
+        final Path document = directory.resolve("large." + PaintDocumentIO.EXTENSION);
+        final Path saved = directory.resolve("saved." + PaintDocumentIO.EXTENSION);
+        final Path exported = directory.resolve("exported.png");
+        PaintDocumentIO.write(makeDocument(shapes, layers, new Random(seed)), document);
+        System.out.printf(Locale.ROOT, "%d shapes in %d layers, %.1f MB document%n", shapes,
+                          layers, Files.size(document) / (1024.0 * 1024.0));
+
+        final BenchPanel panel = call(new Callable<BenchPanel>() {
+            @Override
+            public BenchPanel call() {
+                return new BenchPanel();
+            }
+        });
+        System.out.printf(Locale.ROOT, "%-8s %16s %20s %16s%n", "task", "inline stall ms",
+                          "background stall ms", "background ms");
+
+        // Inline, as the menu did before: every operation holds the event dispatch thread.
+        call(new Callable<Object>() {
+            @Override
+            public Object call() {
+                panel.renderInBackground(false);
+                return null;
+            }
+        });
+        final double[] inline = new double[4];
+        inline[0] = stall(new Callable<Object>() {
+            @Override
+            public Object call() throws IOException {
+                panel.setDocumentNow(PaintDocumentIO.read(document));
+                panel.frame();
+                return null;
+            }
+        });
+        final int[] expected = panel.pixels();
+        inline[1] = stall(new Callable<Object>() {
+            @Override
+            public Object call() throws IOException {
+                PaintDocumentIO.write(panel.getDocumentNow(), saved);
+                return null;
+            }
+        });
+        inline[2] = stall(new Callable<Object>() {
+            @Override
+            public Object call() throws IOException {
+                final PaintDocument drawing = panel.getDocumentNow();
+                ImageIO.write(ShapeRenderer.render(drawing, drawing.getWidth(),
+                                                   drawing.getHeight()),
+                              "png", exported.toFile());
+                return null;
+            }
+        });
+        inline[3] = stall(new Callable<Object>() {
+            @Override
+            public Object call() {
+                panel.resizeCanvas(RESIZED_WIDTH, RESIZED_HEIGHT);
+                panel.frame();
+                return null;
+            }
+        });
+
+        // In the background: the heartbeat keeps painting while the tasks run.
+        call(new Callable<Object>() {
+            @Override
+            public Object call() {
+                panel.renderInBackground(true);
+                panel.resizeCanvas(CANVAS_WIDTH, CANVAS_HEIGHT);
+                return null;
+            }
+        });
+        final String[] names = {"open", "save", "export", "resize"};
+        final Runnable[] starts = {
+            new Runnable() {
+                @Override
+                public void run() {
+                    panel.open(document);
+                }
+            },
+            new Runnable() {
+                @Override
+                public void run() {
+                    panel.save(saved);
+                }
+            },
+            new Runnable() {
+                @Override
+                public void run() {
+                    panel.export(exported);
+                }
+            },
+            new Runnable() {
+                @Override
+                public void run() {
+                    panel.resizeCanvas(RESIZED_WIDTH, RESIZED_HEIGHT);
+                }
+            },
+        };
+        boolean failed = false;
+        for (int i = 0; i < starts.length; i++) {
+            final double[] background = drive(panel, starts[i]);
+            System.out.printf(Locale.ROOT, "%-8s %16.1f %20.1f %16.1f%n", names[i], inline[i],
+                              background[0], background[1]);
+            if (i == 0 && !Arrays.equals(expected, panel.pixels())) {
+                System.out.println("FAIL: the document opened in the background differs");
+                failed = true;
+            }
+        }
+        failed |= checkCancelled(panel, document, directory);
+
+        deleteAll(directory);
+        if (failed) {
+            System.exit(1);
+        }
+        System.out.println("frames match and cancelled tasks changed nothing");
+    }
+
+    /**
+     * Checks that a cancelled save of the large drawing leaves the file it was saving over
+     * as it was and no temporary file behind, and that a cancelled open of the large
+     * document leaves an empty drawing empty.
+     *
+     * @param thePanel The panel, holding the large drawing.
+     * @param theFile The large document file.
+     * @param theDirectory The directory of the file.
+     * @return Whether any check failed.
+     * @throws Exception If the panel fails.
+     */
+    private static boolean checkCancelled(final BenchPanel thePanel, final Path theFile,
+                                          final Path theDirectory) throws Exception {
+
+        final Path kept = theDirectory.resolve("kept." + PaintDocumentIO.EXTENSION);
+        final byte[] before = {1, 2, 3};
+        Files.write(kept, before);
+        call(new Callable<Object>() {
+            @Override
+            public Object call() {
+                thePanel.save(kept);
+                return null;
+            }
+        });
+        Thread.sleep(CANCEL_MILLIS);
+        thePanel.cancelAll();
+        awaitWorker(thePanel, theDirectory);
+        boolean result = false;
+        if (!Arrays.equals(before, Files.readAllBytes(kept))) {
+            System.out.println("FAIL: the cancelled save changed the file");
+            result = true;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(theDirectory, "*.tmp")) {
+            if (files.iterator().hasNext()) {
+                System.out.println("FAIL: the cancelled save left a temporary file");
+                result = true;
+            }
+        }
+
+        call(new Callable<Object>() {
+            @Override
+            public Object call() {
+                thePanel.clear();
+                thePanel.open(theFile);
+                return null;
+            }
+        });
+        Thread.sleep(CANCEL_MILLIS);
+        thePanel.cancelAll();
+        awaitWorker(thePanel, theDirectory);
+        final int count = call(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return thePanel.getDocumentNow().getShapes().size();
+            }
+        });
+        if (count != 0) {
+            System.out.println("FAIL: the cancelled open changed the drawing");
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Waits until the worker thread has stopped the cancelled tasks, by saving the drawing
+     * to a scratch file after them and waiting for the save to be done.
+     *
+     * @param thePanel The panel.
+     * @param theDirectory The directory to save the scratch file in.
+     * @throws Exception If the panel fails.
+     */
+    private static void awaitWorker(final BenchPanel thePanel, final Path theDirectory)
+        throws Exception {
+
+        drive(thePanel, new Runnable() {
+            @Override
+            public void run() {
+                thePanel.save(theDirectory.resolve("scratch." + PaintDocumentIO.EXTENSION));
+            }
+        });
+    }
+
+    /**
+     * Starts background tasks on the event dispatch thread and keeps painting the panel
+     * there until they are done.
+     *
+     * @param thePanel The panel.
+     * @param theStart Starts the tasks.
+     * @return The longest wait for the event dispatch thread and the time until the tasks
+     * were done, in milliseconds.
+     * @throws Exception If the panel fails.
+     */
+    private static double[] drive(final BenchPanel thePanel, final Runnable theStart)
+        throws Exception {
+
+        final long start = System.nanoTime();
+        long worst = 0;
+        boolean busy = true;
+        Runnable next = theStart;
+        while (busy) {
+            final Runnable work = next;
+            final long before = System.nanoTime();
+            busy = call(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    work.run();
+                    thePanel.frame();
+                    return !thePanel.isIdle();
+                }
+            });
+            worst = Math.max(worst, System.nanoTime() - before);
+            next = NOTHING;
+            Thread.sleep(HEARTBEAT_MILLIS);
+        }
+        return new double[] {worst / NANOS_PER_MILLI,
+                             (System.nanoTime() - start) / NANOS_PER_MILLI};
+    }
+
+    /** A heartbeat that only paints. */
+    private static final Runnable NOTHING = new Runnable() {
+        @Override
+        public void run() {
+            // Nothing to start.
+        }
+    };
+
+    /**
+     * Times work done on the event dispatch thread.
+     *
+     * @param theWork The work.
+     * @return The time the event dispatch thread was held, in milliseconds.
+     * @throws Exception If the work fails.
+     */
+    private static double stall(final Callable<Object> theWork) throws Exception {
+
+        final long start = System.nanoTime();
+        call(theWork);
+        return (System.nanoTime() - start) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Runs work on the event dispatch thread and waits for its result.
+     *
+     * @param <T> The type of the result.
+     * @param theWork The work.
+     * @return The result of the work.
+     * @throws Exception If the work fails.
+     */
+    private static <T> T call(final Callable<T> theWork) throws Exception {
+
+        final FutureTask<T> task = new FutureTask<T>(theWork);
+        SwingUtilities.invokeLater(task);
+        try {
+            return task.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Makes a document of random strokes and shapes spread evenly over its layers.
+     *
+     * @param theShapes The number of shapes.
+     * @param theLayers The number of layers.
+     * @param theRandom The source of randomness.
+     * @return The document.
+     */
+    private static PaintDocument makeDocument(final int theShapes, final int theLayers,
+                                              final Random theRandom) {
+
+        final List<DocumentLayer> layers = new ArrayList<DocumentLayer>();
+        for (int i = 0; i < theLayers; i++) {
+            final List<PaintShape> shapes = new ArrayList<PaintShape>();
+            for (int j = i; j < theShapes; j += theLayers) {
+                shapes.add(randomShape(theRandom));
+            }
+            layers.add(new DocumentLayer("Layer " + (i + 1), true, i == 1 ? 0.5f : 1,
+                                         shapes));
+        }
+        return PaintDocument.ofLayers(CANVAS_WIDTH, CANVAS_HEIGHT, layers);
+    }
+
+    /**
+     * Creates a random shape: a pencil stroke, a line, or an outlined or filled rectangle
+     * or ellipse.
+     *
+     * @param theRandom The source of randomness.
+     * @return The shape.
+     */
+    private static PaintShape randomShape(final Random theRandom) {
+
+        final double x = theRandom.nextDouble() * CANVAS_WIDTH;
+        final double y = theRandom.nextDouble() * CANVAS_HEIGHT;
+        final int kind = theRandom.nextInt(10);
+        final Color color = new Color(theRandom.nextInt(0x1000000));
+        final Shape shape;
+        boolean filled = false;
+        if (kind < 3) {
+            final double size = 4 + theRandom.nextDouble() * 60;
+            shape = kind % 2 == 0 ? new Rectangle2D.Double(x, y, size, size / 2)
+                                  : new Ellipse2D.Double(x, y, size, size / 2);
+            filled = theRandom.nextBoolean();
+        } else if (kind < 5) {
+            shape = new Line2D.Double(x, y, x + theRandom.nextGaussian() * 30,
+                                      y + theRandom.nextGaussian() * 30);
+        } else {
+            final Path2D path = new Path2D.Double();
+            path.moveTo(x, y);
+            double px = x;
+            double py = y;
+            for (int i = 0; i < 12; i++) {
+                px += theRandom.nextGaussian() * 6;
+                py += theRandom.nextGaussian() * 6;
+                path.lineTo(px, py);
+            }
+            shape = path;
+        }
+        return new PaintShape(shape, color, color, filled, 1 + theRandom.nextInt(4));
+    }
+
+    /**
+     * Deletes a directory and the files in it.
+     *
+     * @param theDirectory The directory.
+     * @throws IOException If a file cannot be deleted.
+     */
+    private static void deleteAll(final Path theDirectory) throws IOException {
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(theDirectory)) {
+            for (final Path file: files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(theDirectory);
+    }
+
+
+    /**
+     * PaintPanel whose document operations and painting the benchmark drives. Every
+     * method but cancelAll must be called on the event dispatch thread.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class BenchPanel extends PaintPanel {
+
+        /** Auto-generated UID for object serialization. */
+        private static final long serialVersionUID = 4511938405527134210L;
+
+        /** The image painted into, the size of the panel. */
+        private transient BufferedImage myFrame;
+
+
+        /**
+         * Constructor of a panel holding an empty drawing at the canvas size.
+         */
+        private BenchPanel() {
+
+            super();
+            resizeCanvas(CANVAS_WIDTH, CANVAS_HEIGHT);
+        }
+
+        /**
+         * Paints the panel into its image.
+         */
+        private void frame() {
+
+            final Graphics2D g2d = myFrame.createGraphics();
+            try {
+                paintComponent(g2d);
+            } finally {
+                g2d.dispose();
+            }
+        }
+
+        /**
+         * Provides the caller with the pixels last painted.
+         *
+         * @return A copy of the pixels of the image.
+         */
+        private int[] pixels() {
+
+            return myFrame.getRGB(0, 0, myFrame.getWidth(), myFrame.getHeight(), null, 0,
+                                  myFrame.getWidth());
+        }
+
+        /**
+         * Resizes the panel and its image.
+         *
+         * @param theWidth The new width.
+         * @param theHeight The new height.
+         */
+        private void resizeCanvas(final int theWidth, final int theHeight) {
+
+            setSize(theWidth, theHeight);
+            myFrame = new BufferedImage(theWidth, theHeight, BufferedImage.TYPE_INT_RGB);
+        }
+
+        /**
+         * Sets whether large layers are rasterized in the background.
+         *
+         * @param theBackground Whether to rasterize them in the background.
+         */
+        private void renderInBackground(final boolean theBackground) {
+
+            setBackgroundRendering(theBackground);
+        }
+
+        /**
+         * Replaces the drawing inline.
+         *
+         * @param theDocument The new drawing.
+         */
+        private void setDocumentNow(final PaintDocument theDocument) {
+
+            setDocument(theDocument);
+        }
+
+        /**
+         * Provides the caller with a snapshot of the drawing.
+         *
+         * @return The drawing.
+         */
+        private PaintDocument getDocumentNow() {
+
+            return getDocument();
+        }
+
+        /**
+         * Opens a document in the background.
+         *
+         * @param theFile The document file.
+         */
+        private void open(final Path theFile) {
+
+            openDocument(theFile);
+        }
+
+        /**
+         * Saves the drawing in the background.
+         *
+         * @param theFile The document file.
+         */
+        private void save(final Path theFile) {
+
+            saveDocument(theFile);
+        }
+
+        /**
+         * Exports the drawing in the background.
+         *
+         * @param theFile The PNG file.
+         */
+        private void export(final Path theFile) {
+
+            exportImage(theFile);
+        }
+
+        /**
+         * Removes every shape from the drawing.
+         */
+        private void clear() {
+
+            clearShapes();
+        }
+
+        /**
+         * Tells whether no background task is queued or running.
+         *
+         * @return Whether the panel has no tasks.
+         */
+        private boolean isIdle() {
+
+            return getTasks().isEmpty();
+        }
+
+        /**
+         * Cancels every task, from any thread.
+         *
+         * @throws Exception If the event dispatch thread fails.
+         */
+        private void cancelAll() throws Exception {
+
+            call(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    for (final DocumentTask<?> task:
+                         new ArrayList<DocumentTask<?>>(getTasks())) {
+                        cancelTask(task);
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+}
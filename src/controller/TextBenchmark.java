@@ -0,0 +1,206 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import model.GlyphCache;
+import model.GlyphText;
+import model.PaintShape;
+import model.TextShape;
+import view.ShapeRenderer;
+
+/**
+ * Headless benchmark of text rendering. Scatters labels over a canvas and times a full
+ * repaint of them as TextShapes drawn from their cached glyphs, as strings laid out again
+ * on every repaint, and as filled rectangles of the same size for comparison. A second
+ * repaint with a small clip shows that labels outside it are culled like any other shape.
+ *
+ * <p>Usage: {@code TextBenchmark [labels] [rounds]}
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class TextBenchmark {
+
+    // CONSTANTS
+    /** Default number of labels. */
+    private static final int DEFAULT_LABELS = 5000;
+
+    /** Default number of timed rounds; the fastest is reported. */
+    private static final int DEFAULT_ROUNDS = 10;
+
+    /** Width and height of the canvas. */
+    private static final int CANVAS_SIZE = 2048;
+
+    /** Width and height of the clip used to measure culling. */
+    private static final int CLIP_SIZE = 256;
+
+    /** Number of distinct strings among the labels. */
+    private static final int DISTINCT = 500;
+
+    /** Font of every label. */
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 14);
+
+    /** Seed for the generator, so every run measures the same labels. */
+    private static final long SEED = 42;
+
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // Private constructor to inhibit external instantiation.
+    private TextBenchmark() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Runs the benchmark and prints one line per way of drawing the labels.
+     *
+     * @param theArgs Optionally the number of labels and the number of timed rounds.
+     */
+    public static void main(final String[] theArgs) {
+
+        System.setProperty("java.awt.headless", "true");
+        int count = DEFAULT_LABELS;
+        if (theArgs.length > 0) {
+            count = Integer.parseInt(theArgs[0]);
+        }
+        int rounds = DEFAULT_ROUNDS;
+        if (theArgs.length > 1) {
+            rounds = Integer.parseInt(theArgs[1]);
+        }
+
+        final Random random = new Random(SEED);
+        final List<PaintShape> labels = new ArrayList<PaintShape>(count);
+        final List<PaintShape> strings = new ArrayList<PaintShape>(count);
+        final List<PaintShape> boxes = new ArrayList<PaintShape>(count);
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            final String text = "Label " + random.nextInt(DISTINCT);
+            final double x = random.nextInt(CANVAS_SIZE);
+            final double y = random.nextInt(CANVAS_SIZE);
+            final Color color = new Color(random.nextInt(0x1000000));
+            final TextShape label = new TextShape(new GlyphText(text, FONT, x, y), color);
+            labels.add(label);
+            strings.add(new UncachedText(label));
+            boxes.add(new PaintShape(label.getText().getBounds2D(), color, color, true, 1));
+        }
+        final long create = System.nanoTime() - start;
+        System.out.printf(Locale.ROOT,
+                          "%d labels created in %.1f ms, %d laid out, %d from the cache%n",
+                          count, create / NANOS_PER_MILLI, GlyphCache.getMisses(),
+                          GlyphCache.getHits());
+
+        System.out.printf(Locale.ROOT, "%-12s %12s %12s%n", "drawn as", "full ms",
+                          "clipped ms");
+        measure("cached text", labels, rounds);
+        measure("drawString", strings, rounds);
+        measure("rectangles", boxes, rounds);
+    }
+
+    /**
+     * Times full and clipped repaints of some shapes and prints one line of results.
+     *
+     * @param theName How the shapes are drawn.
+     * @param theShapes The shapes to draw.
+     * @param theRounds The number of timed rounds.
+     */
+    private static void measure(final String theName, final List<PaintShape> theShapes,
+                                final int theRounds) {
+
+        final BufferedImage canvas =
+            new BufferedImage(CANVAS_SIZE, CANVAS_SIZE, BufferedImage.TYPE_INT_RGB);
+        long full = Long.MAX_VALUE;
+        long clipped = Long.MAX_VALUE;
+        // One untimed round warms up the JIT and the native glyph cache.
+        for (int round = 0; round <= theRounds; round++) {
+            final long fullTime = repaint(canvas, theShapes, null);
+            final long clippedTime = repaint(canvas, theShapes,
+                                             new Rectangle2D.Double(0, 0, CLIP_SIZE,
+                                                                    CLIP_SIZE));
+            if (round > 0) {
+                full = Math.min(full, fullTime);
+                clipped = Math.min(clipped, clippedTime);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-12s %12.2f %12.2f%n", theName,
+                          full / NANOS_PER_MILLI, clipped / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Clears the canvas and draws the shapes over it as the canvas does.
+     *
+     * @param theCanvas The image to draw into.
+     * @param theShapes The shapes to draw.
+     * @param theClip The area to repaint, or null for the whole canvas.
+     * @return The time taken to draw the shapes, in nanoseconds.
+     */
+    private static long repaint(final BufferedImage theCanvas,
+                                final List<PaintShape> theShapes,
+                                final Rectangle2D theClip) {
+
+        final Graphics2D g2d = theCanvas.createGraphics();
+        try {
+            if (theClip != null) {
+                g2d.clip(theClip);
+            }
+            g2d.setColor(ShapeRenderer.BACKGROUND_COLOR);
+            g2d.fillRect(0, 0, CANVAS_SIZE, CANVAS_SIZE);
+            ShapeRenderer.applyHints(g2d);
+            final long start = System.nanoTime();
+            ShapeRenderer.paintShapes(g2d, theShapes);
+            return System.nanoTime() - start;
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+
+    /**
+     * A label drawn with drawString, which lays the text out again on every repaint.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class UncachedText extends PaintShape {
+
+        // INSTANCE FIELDS
+        /** The label this one draws the same text as. */
+        private final TextShape myLabel;
+
+
+        /**
+         * Constructor that copies a label.
+         *
+         * @param theLabel The label to copy.
+         */
+        UncachedText(final TextShape theLabel) {
+
+            super(theLabel.getText(), theLabel.getColor(), theLabel.getColor(), true, 1);
+            myLabel = theLabel;
+        }
+
+        @Override
+        public void draw(final Graphics2D theGraphics) {
+
+            theGraphics.setColor(getColor());
+            theGraphics.setFont(myLabel.getText().getFont());
+            theGraphics.drawString(myLabel.getText().getText(),
+                                   (float) myLabel.getText().getX(),
+                                   (float) myLabel.getText().getY());
+        }
+
+        @Override
+        protected Rectangle2D computeBounds() {
+
+            return myLabel.getBounds();
+        }
+    }
+}
@@ -16,11 +16,11 @@ public abstract class AbstractTool implements DrawingTool {
     
     
     // INSTANCE FIELDS
-    /** The Point at which the Shape begins. */
-    private Point myStartPoint;
+    /** The Point at which the Shape begins; moved in place rather than replaced. */
+    private final Point myStartPoint;
     
-    /** The Point at which the Shape ends. */
-    private Point myEndPoint;
+    /** The Point at which the Shape ends; moved in place rather than replaced. */
+    private final Point myEndPoint;
     
     
     /**
@@ -28,20 +28,20 @@ public abstract class AbstractTool implements DrawingTool {
      */
     protected AbstractTool() {
         
-        myStartPoint = UNASSIGNED;
-        myEndPoint = UNASSIGNED;
+        myStartPoint = new Point(UNASSIGNED);
+        myEndPoint = new Point(UNASSIGNED);
     }
     
     @Override
     public void setStartPoint(final Point thePoint) {
         
-        myStartPoint = (Point) thePoint.clone();
+        myStartPoint.setLocation(thePoint);
     }
 
     @Override
     public void setEndPoint(final Point thePoint) {
         
-        myEndPoint = (Point) thePoint.clone();
+        myEndPoint.setLocation(thePoint);
     }
 
     /**
@@ -63,4 +63,45 @@ public abstract class AbstractTool implements DrawingTool {
 
         return (Point) myEndPoint.clone();
     }
+
+    /**
+     * Provides the caller with the x coordinate of the Shape's start point, without the
+     * copy getStartPoint makes, for use on every repaint.
+     * 
+     * @return The x coordinate of the start point.
+     */
+    protected int getStartX() {
+
+        return myStartPoint.x;
+    }
+
+    /**
+     * Provides the caller with the y coordinate of the Shape's start point.
+     * 
+     * @return The y coordinate of the start point.
+     */
+    protected int getStartY() {
+
+        return myStartPoint.y;
+    }
+
+    /**
+     * Provides the caller with the x coordinate of the Shape's end point.
+     * 
+     * @return The x coordinate of the end point.
+     */
+    protected int getEndX() {
+
+        return myEndPoint.x;
+    }
+
+    /**
+     * Provides the caller with the y coordinate of the Shape's end point.
+     * 
+     * @return The y coordinate of the end point.
+     */
+    protected int getEndY() {
+
+        return myEndPoint.y;
+    }
 }
@@ -0,0 +1,96 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of one layer of a PaintDocument: its name, whether it is shown, the
+ * opacity it is composited with, and its PaintShapes in drawing order.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class DocumentLayer {
+
+    // INSTANCE FIELDS
+    /** The name of the layer. */
+    private final String myName;
+
+    /** Whether the layer is shown. */
+    private final boolean myVisible;
+
+    /** The opacity the layer is composited with, from 0 to 1. */
+    private final float myOpacity;
+
+    /** The PaintShapes of the layer in drawing order. */
+    private final List<PaintShape> myShapes;
+
+
+    /**
+     * Constructor that stores a defensive copy of the given shapes along with the layer's
+     * settings.
+     *
+     * @param theName The name of the layer.
+     * @param theVisible Whether the layer is shown.
+     * @param theOpacity The opacity the layer is composited with, from 0 to 1.
+     * @param theShapes The PaintShapes of the layer in drawing order.
+     */
+    public DocumentLayer(final String theName, final boolean theVisible,
+                         final float theOpacity, final List<PaintShape> theShapes) {
+
+        if (!(theOpacity >= 0 && theOpacity <= 1)) {
+            throw new IllegalArgumentException("Opacity must be between 0 and 1: "
+                                               + theOpacity);
+        }
+        myName = theName;
+        myVisible = theVisible;
+        myOpacity = theOpacity;
+        if (theShapes instanceof ShapeList) {
+            // Already immutable; sharing it avoids copying a large drawing.
+            myShapes = theShapes;
+        } else {
+            myShapes = Collections.unmodifiableList(new ArrayList<PaintShape>(theShapes));
+        }
+    }
+
+    /**
+     * Accessor method that provides the caller with the name of the layer.
+     *
+     * @return The name of the layer.
+     */
+    public String getName() {
+
+        return myName;
+    }
+
+    /**
+     * Accessor method that provides the caller with whether the layer is shown.
+     *
+     * @return Whether the layer is shown.
+     */
+    public boolean isVisible() {
+
+        return myVisible;
+    }
+
+    /**
+     * Accessor method that provides the caller with the opacity of the layer.
+     *
+     * @return The opacity the layer is composited with, from 0 to 1.
+     */
+    public float getOpacity() {
+
+        return myOpacity;
+    }
+
+    /**
+     * Accessor method that provides the caller with the read-only list of PaintShapes.
+     *
+     * @return The PaintShapes of the layer in drawing order.
+     */
+    public List<PaintShape> getShapes() {
+
+        return myShapes;
+    }
+}
@@ -0,0 +1,52 @@
+package model;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+
+/**
+ * Interface for DrawingTools that work on the shapes already committed to the drawing
+ * instead of drawing a new shape. The canvas forwards mouse input to such tools along with
+ * a ShapeEditor, and lets them paint their own overlay in place of a shape preview.
+ * 
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public interface EditTool extends DrawingTool {
+    
+    /**
+     * Called when the mouse is pressed on the canvas.
+     * 
+     * @param thePoint The point at which the mouse was pressed.
+     * @param theEditor Access to the committed PaintShapes.
+     */
+    void press(Point2D thePoint, ShapeEditor theEditor);
+    
+    /**
+     * Called when the mouse is dragged on the canvas.
+     * 
+     * @param thePoint The point the mouse was dragged to.
+     * @param theEditor Access to the committed PaintShapes.
+     */
+    void drag(Point2D thePoint, ShapeEditor theEditor);
+    
+    /**
+     * Called when the mouse is released on the canvas.
+     * 
+     * @param thePoint The point at which the mouse was released.
+     * @param theEditor Access to the committed PaintShapes.
+     */
+    void release(Point2D thePoint, ShapeEditor theEditor);
+    
+    /**
+     * Paints the tool's feedback, such as a selection outline, over the drawing.
+     * 
+     * @param theGraphics The graphics context of the canvas.
+     */
+    void paintOverlay(Graphics2D theGraphics);
+    
+    /**
+     * Discards any state that refers to committed PaintShapes, such as a selection. Called
+     * when the tool is deselected or the drawing is replaced.
+     */
+    void reset();
+}
@@ -0,0 +1,151 @@
+package model;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * EditTool that removes every committed shape the eraser passes over. Each mouse movement
+ * sweeps a round brush along a segment; only shapes whose bounds touch the segment are
+ * tested against its exact outline, so erasing stays fast on dense drawings.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class EraserTool extends AbstractTool implements EditTool {
+
+    // CONSTANTS
+    /** Diameter of the eraser brush. */
+    private static final float SIZE = 12;
+
+    /** Stroke that turns a segment of the eraser's path into the area it sweeps. */
+    private static final Stroke SWEEP =
+        new BasicStroke(SIZE, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    /** Stroke of the brush outline. */
+    private static final Stroke OUTLINE = new BasicStroke(1);
+
+    /** Color of the brush outline. */
+    private static final Color OUTLINE_COLOR = Color.GRAY;
+
+
+    // INSTANCE FIELDS
+    /** The last point the eraser passed over, or null if the mouse is not pressed. */
+    private Point2D myLast;
+
+
+    @Override
+    public Shape getShape() {
+
+        return brush();
+    }
+
+    @Override
+    public String getName() {
+
+        return "Eraser";
+    }
+
+    @Override
+    public void press(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        myLast = thePoint;
+        erase(thePoint, thePoint, theEditor);
+        theEditor.repaintArea(outlineArea());
+    }
+
+    @Override
+    public void drag(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        if (myLast == null) {
+            return;
+        }
+        final Rectangle2D before = outlineArea();
+        erase(myLast, thePoint, theEditor);
+        myLast = thePoint;
+        theEditor.repaintArea(before);
+        theEditor.repaintArea(outlineArea());
+    }
+
+    @Override
+    public void release(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        if (myLast != null) {
+            final Rectangle2D before = outlineArea();
+            myLast = null;
+            theEditor.repaintArea(before);
+        }
+    }
+
+    @Override
+    public void paintOverlay(final Graphics2D theGraphics) {
+
+        if (myLast != null) {
+            theGraphics.setColor(OUTLINE_COLOR);
+            theGraphics.setStroke(OUTLINE);
+            theGraphics.draw(brush());
+        }
+    }
+
+    @Override
+    public void reset() {
+
+        myLast = null;
+    }
+
+    /**
+     * Removes every committed shape touched by the brush swept from one point to another.
+     *
+     * @param theStart The point the sweep starts at.
+     * @param theEnd The point the sweep ends at.
+     * @param theEditor Access to the committed shapes.
+     */
+    private void erase(final Point2D theStart, final Point2D theEnd,
+                       final ShapeEditor theEditor) {
+
+        final Shape swept = SWEEP.createStrokedShape(new Line2D.Double(theStart, theEnd));
+        final List<PaintShape> hits = new ArrayList<PaintShape>();
+        for (final PaintShape shape: theEditor.shapesIn(swept.getBounds2D())) {
+            if (shape.intersects(swept)) {
+                hits.add(shape);
+            }
+        }
+        if (!hits.isEmpty()) {
+            theEditor.removeShapes(hits);
+        }
+    }
+
+    /**
+     * Builds the outline of the brush at its current position.
+     *
+     * @return The outline of the brush, or an empty shape if the mouse is not pressed.
+     */
+    private Shape brush() {
+
+        if (myLast == null) {
+            return new Ellipse2D.Double();
+        }
+        return new Ellipse2D.Double(myLast.getX() - SIZE / 2, myLast.getY() - SIZE / 2,
+                                    SIZE, SIZE);
+    }
+
+    /**
+     * Computes the area covered by the brush outline.
+     *
+     * @return The area covered by the outline, padded for its stroke.
+     */
+    private Rectangle2D outlineArea() {
+
+        final Rectangle2D bounds = brush().getBounds2D();
+        return new Rectangle2D.Double(bounds.getX() - 2, bounds.getY() - 2,
+                                      bounds.getWidth() + 4, bounds.getHeight() + 4);
+    }
+}
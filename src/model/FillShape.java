@@ -0,0 +1,127 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * PaintShape holding the pixels covered by a flood fill. The pixels are kept as the runs of
+ * a SpanShape and painted in a single color, so even a fill of a large and intricate region
+ * stays compact and is drawn without any stroking.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class FillShape extends PaintShape {
+
+    // INSTANCE FIELDS
+    /** The pixels covered by the fill. */
+    private final SpanShape mySpans;
+
+
+    /**
+     * Constructor that stores the filled pixels and their color.
+     *
+     * @param theSpans The pixels covered by the fill.
+     * @param theColor The color of the fill.
+     */
+    public FillShape(final SpanShape theSpans, final Color theColor) {
+
+        super(theSpans, theColor, theColor, true, 1);
+        mySpans = theSpans;
+    }
+
+    /**
+     * Provides the caller with the pixels covered by the fill.
+     *
+     * @return The pixels covered by the fill.
+     */
+    public SpanShape getSpans() {
+
+        return mySpans;
+    }
+
+    /**
+     * Draws the filled pixels. When the graphics context is only translated, just the
+     * rectangles inside the clip are drawn; otherwise the whole outline is filled at once
+     * so that scaled rectangles do not leave seams between them.
+     *
+     * @param theGraphics The graphics context to draw into.
+     */
+    @Override
+    public void draw(final Graphics2D theGraphics) {
+
+        theGraphics.setColor(getColor());
+        if ((theGraphics.getTransform().getType() & ~AffineTransform.TYPE_TRANSLATION) != 0) {
+            theGraphics.fill(mySpans);
+            return;
+        }
+        final Rectangle clip = theGraphics.getClipBounds();
+        final int[] rectangles = mySpans.getRectangles();
+        for (int i = 0; i < rectangles.length; i += 4) {
+            if (clip == null || clip.intersects(rectangles[i], rectangles[i + 1],
+                                                rectangles[i + 2], rectangles[i + 3])) {
+                theGraphics.fillRect(rectangles[i], rectangles[i + 1],
+                                     rectangles[i + 2], rectangles[i + 3]);
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of this FillShape moved by the given offset, rounded to whole pixels.
+     *
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved copy.
+     */
+    @Override
+    public FillShape translated(final double theDeltaX, final double theDeltaY) {
+
+        return new FillShape(mySpans.translated((int) Math.round(theDeltaX),
+                                                (int) Math.round(theDeltaY)), getColor());
+    }
+
+    @Override
+    public boolean contains(final Point2D thePoint, final double theTolerance) {
+
+        if (theTolerance <= 0) {
+            return mySpans.contains(thePoint);
+        }
+        return mySpans.intersects(thePoint.getX() - theTolerance,
+                                  thePoint.getY() - theTolerance,
+                                  2 * theTolerance, 2 * theTolerance);
+    }
+
+    @Override
+    public boolean intersects(final Shape theRegion) {
+
+        return mySpans.overlaps(theRegion);
+    }
+
+    /**
+     * Provides the caller with no snap points; the corners of a fill's pixels are not
+     * geometry anyone aims for.
+     *
+     * @return An empty array.
+     */
+    @Override
+    public double[] getSnapPoints() {
+
+        return new double[0];
+    }
+
+    /**
+     * Computes the drawn bounds of the fill, which are exactly the bounds of its pixels.
+     *
+     * @return The drawn bounds of the fill.
+     */
+    @Override
+    protected Rectangle2D computeBounds() {
+
+        return mySpans.getBounds2D();
+    }
+}
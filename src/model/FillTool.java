@@ -0,0 +1,78 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.Transparency;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * EditTool that fills the area around the clicked pixel with the fill color, like a paint
+ * bucket. The fill reads the pixels of the active layer's cached raster in place, so a click
+ * renders nothing unless the layer changed since it was last painted; the filled pixels are
+ * committed as a single FillShape.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class FillTool extends AbstractTool implements EditTool {
+
+    @Override
+    public Shape getShape() {
+
+        return new Rectangle2D.Double();
+    }
+
+    @Override
+    public String getName() {
+
+        return "Fill";
+    }
+
+    @Override
+    public void press(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        final BufferedImage drawing = theEditor.getActiveRaster();
+        final int x = (int) Math.floor(thePoint.getX());
+        final int y = (int) Math.floor(thePoint.getY());
+        final Color color = theEditor.getFillColor();
+        if (x < 0 || y < 0 || x >= drawing.getWidth() || y >= drawing.getHeight()
+            || color.getAlpha() == 0
+            || (color.getTransparency() == Transparency.OPAQUE
+                && drawing.getRGB(x, y) == color.getRGB())) {
+            // Nothing would visibly change.
+            return;
+        }
+        final int[] pixels = ((DataBufferInt) drawing.getRaster().getDataBuffer()).getData();
+        final SpanShape spans = FloodFill.fill(pixels, drawing.getWidth(), drawing.getHeight(),
+                                               x, y, theEditor.getFillTolerance());
+        theEditor.addShape(new FillShape(spans, color));
+    }
+
+    @Override
+    public void drag(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        // Filling happens once, when the mouse is pressed.
+    }
+
+    @Override
+    public void release(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        // Filling happens once, when the mouse is pressed.
+    }
+
+    @Override
+    public void paintOverlay(final Graphics2D theGraphics) {
+
+        // The fill tool has no overlay.
+    }
+
+    @Override
+    public void reset() {
+
+        // The fill tool keeps no state between clicks.
+    }
+}
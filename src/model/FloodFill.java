@@ -0,0 +1,458 @@
+package model;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Scanline flood fill over packed ARGB pixels. Rather than visiting pixels one at a time,
+ * the fill extends each seed into the longest matching run on its row and then looks for
+ * new seeds only along the rows directly above and below that run, so every pixel is read
+ * a small, constant number of times and the pending work is a stack of ints.
+ *
+ * <p>The pixels are compared with the seed's color once, in order, into a bitmap of the
+ * pixels still open to the fill, and the fill then works on that bitmap alone. A bitmap is
+ * a sixteenth of the size of the pixels, so a fill that runs down narrow columns, where
+ * every pixel is in another row, mostly finds the rows it visits in the processor's cache
+ * rather than in memory, and runs are found and marked a word of pixels at a time.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class FloodFill {
+
+    // CONSTANTS
+    /** Largest allowed difference between two color channels. */
+    public static final int MAX_TOLERANCE = 255;
+
+    /** Initial capacity of the seed stack. */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** Bits of a column selecting its bit within a word of a bitmap row. */
+    private static final int ADDRESS_BITS = 6;
+
+
+    // Private constructor to inhibit external instantiation.
+    private FloodFill() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Fills the region of an image around a seed pixel. Images backed by a single int per
+     * pixel are read in place; any other image is converted first.
+     *
+     * @param theImage The image to fill.
+     * @param theX The column of the seed pixel.
+     * @param theY The row of the seed pixel.
+     * @param theTolerance How far each color channel may differ from the seed pixel's and
+     * still be filled, from 0 to MAX_TOLERANCE.
+     * @return The filled pixels, or an empty shape if the seed lies outside the image.
+     */
+    public static SpanShape fill(final BufferedImage theImage, final int theX, final int theY,
+                                 final int theTolerance) {
+
+        BufferedImage image = theImage;
+        if (image.getType() != BufferedImage.TYPE_INT_RGB
+            && image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            image = new BufferedImage(theImage.getWidth(), theImage.getHeight(),
+                                      BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D g2d = image.createGraphics();
+            try {
+                g2d.drawImage(theImage, 0, 0, null);
+            } finally {
+                g2d.dispose();
+            }
+        }
+        final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        return fill(pixels, image.getWidth(), image.getHeight(), theX, theY, theTolerance);
+    }
+
+    /**
+     * Fills the region of a row-major pixel array around a seed pixel. Pixels are filled
+     * when they connect to the seed horizontally or vertically and none of their color
+     * channels differs from the seed's by more than the tolerance. The array is not changed.
+     *
+     * @param thePixels The packed ARGB pixels, one row after another.
+     * @param theWidth The number of pixels in each row.
+     * @param theHeight The number of rows.
+     * @param theX The column of the seed pixel.
+     * @param theY The row of the seed pixel.
+     * @param theTolerance How far each color channel may differ from the seed pixel's and
+     * still be filled, from 0 to MAX_TOLERANCE.
+     * @return The filled pixels, or an empty shape if the seed lies outside the image.
+     */
+    public static SpanShape fill(final int[] thePixels, final int theWidth,
+                                 final int theHeight, final int theX, final int theY,
+                                 final int theTolerance) {
+
+        if (theTolerance < 0 || theTolerance > MAX_TOLERANCE) {
+            throw new IllegalArgumentException("Tolerance must be between 0 and "
+                                               + MAX_TOLERANCE);
+        }
+        if (theX < 0 || theY < 0 || theX >= theWidth || theY >= theHeight) {
+            return new SpanShape(new int[0]);
+        }
+        final int target = thePixels[theY * theWidth + theX];
+        // Every row has at least one spare bit past its last pixel, so a search along a row
+        // always stops at a clear bit before it reaches the next row.
+        final int stride = (theWidth >>> ADDRESS_BITS) + 1;
+        final long[] open =
+            openPixels(thePixels, theWidth, theHeight, stride, target, theTolerance);
+        // The fill clears the bits of the pixels it fills, so that its every step down a
+        // column touches one bitmap; the filled pixels are told apart afterwards.
+        final long[] reached = open.clone();
+        // Pending seeds as column and row pairs, kept in locals rather than an object so
+        // that the loop holds them in registers.
+        int[] seeds = new int[INITIAL_CAPACITY];
+        int size = 0;
+        int seed = theX;
+        int row = theY;
+        // The run whose row the current run was found from, already filled, or an empty
+        // run when the seed came from the stack.
+        int parentRow = -1;
+        int parentLeft = 0;
+        int parentRight = -1;
+
+        while (true) {
+            final int base = row * stride;
+            // Extend the seed into the widest run of open pixels on its row.
+            final int left = previousClear(open, base, seed) + 1;
+            final int right = nextClear(open, base, seed) - 1;
+            toggle(open, base, left, right);
+            // A run inside one word that matches the run above or below it exactly is most
+            // likely the top of a column of such runs, as in a narrow corridor. Each of its
+            // rows away from where the fill came from is then filled with one read and one
+            // write, for as long as the row's run matches too.
+            if (parentRow >= 0 && left == parentLeft && right == parentRight
+                && (left & Long.SIZE - 1) != 0 && (right & Long.SIZE - 1) != Long.SIZE - 1
+                && left >>> ADDRESS_BITS == right >>> ADDRESS_BITS) {
+                final int step = row - parentRow;
+                final int word = left >>> ADDRESS_BITS;
+                final long run = -1L << left & -1L >>> Long.SIZE - 1 - (right & Long.SIZE - 1);
+                final long beside = run << 1 | run >>> 1 | run;
+                int next = row + step;
+                while (next >= 0 && next < theHeight
+                       && (open[next * stride + word] & beside) == run) {
+                    open[next * stride + word] ^= run;
+                    next += step;
+                }
+                row = next - step;
+                parentRow = row - step;
+            }
+            // Look for one seed in each stretch of open pixels above and below the run. The
+            // last one found is filled next, as it would be popped first, so a fill running
+            // down a column never goes through the stack.
+            int found = -1;
+            int foundRow = 0;
+            for (int next = row - 1; next <= row + 1; next += 2) {
+                // Nothing is left open beside the run the current one was found from.
+                if (next < 0 || next == theHeight
+                    || next == parentRow && left >= parentLeft && right <= parentRight) {
+                    continue;
+                }
+                final int nextBase = next * stride;
+                int x = nextSet(open, nextBase, left, right);
+                while (x <= right) {
+                    if (found >= 0) {
+                        if (size + 2 > seeds.length) {
+                            seeds = Arrays.copyOf(seeds, 2 * seeds.length);
+                        }
+                        seeds[size++] = found;
+                        seeds[size++] = foundRow;
+                    }
+                    found = x;
+                    foundRow = next;
+                    final int end = nextClear(open, nextBase, x);
+                    if (end >= right) {
+                        break;
+                    }
+                    x = nextSet(open, nextBase, end, right);
+                }
+            }
+            if (found >= 0) {
+                parentRow = row;
+                parentLeft = left;
+                parentRight = right;
+                seed = found;
+                row = foundRow;
+                continue;
+            }
+            parentRow = -1;
+            parentRight = -1;
+            // Seeds on the stack may have been filled since they were pushed.
+            do {
+                if (size == 0) {
+                    return collectRuns(reached, open, stride, theHeight);
+                }
+                row = seeds[--size];
+                seed = seeds[--size];
+            } while ((open[row * stride + (seed >>> ADDRESS_BITS)] & 1L << seed) == 0);
+        }
+    }
+
+    /**
+     * Compares every pixel with the seed's color, in order, into a bitmap of the pixels
+     * open to the fill.
+     *
+     * @param thePixels The packed ARGB pixels, one row after another.
+     * @param theWidth The number of pixels in each row.
+     * @param theHeight The number of rows.
+     * @param theStride The number of words of the bitmap per row.
+     * @param theTarget The color of the seed pixel.
+     * @param theTolerance The allowed difference of each color channel.
+     * @return The bitmap, with a row of theStride words for each row of pixels.
+     */
+    private static long[] openPixels(final int[] thePixels, final int theWidth,
+                                     final int theHeight, final int theStride,
+                                     final int theTarget, final int theTolerance) {
+
+        final long[] result = new long[theHeight * theStride];
+        for (int row = 0; row < theHeight; row++) {
+            final int rowStart = row * theWidth;
+            final int base = row * theStride;
+            for (int word = 0; word << ADDRESS_BITS < theWidth; word++) {
+                final int start = rowStart + (word << ADDRESS_BITS);
+                final int count = Math.min(Long.SIZE, theWidth - (word << ADDRESS_BITS));
+                long bits = 0;
+                if (theTolerance == 0) {
+                    for (int i = 0; i < count; i++) {
+                        // Without branches: the sign bit is set only if nothing differs.
+                        final int difference = thePixels[start + i] ^ theTarget;
+                        bits |= (long) ((difference - 1 & ~difference) >>> Integer.SIZE - 1)
+                                << i;
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        if (matches(thePixels[start + i], theTarget, theTolerance)) {
+                            bits |= 1L << i;
+                        }
+                    }
+                }
+                result[base + word] = bits;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the first set bit of a bitmap row at or after a column, looking no further
+     * than the word holding another column.
+     *
+     * @param theBits The bitmap.
+     * @param theBase The index of the row's first word.
+     * @param theFrom The first column to look at.
+     * @param theTo The last column of interest, which is no less than theFrom.
+     * @return The column of the set bit, or a column past theTo if there is none up to it.
+     */
+    private static int nextSet(final long[] theBits, final int theBase, final int theFrom,
+                               final int theTo) {
+
+        int index = theBase + (theFrom >>> ADDRESS_BITS);
+        final int end = theBase + (theTo >>> ADDRESS_BITS);
+        long word = theBits[index] & -1L << theFrom;
+        while (word == 0) {
+            if (index == end) {
+                return theTo + 1;
+            }
+            word = theBits[++index];
+        }
+        return (index - theBase << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Finds the first clear bit of a bitmap row at or after a column. The spare bits at the
+     * end of every row keep the search within the row.
+     *
+     * @param theBits The bitmap.
+     * @param theBase The index of the row's first word.
+     * @param theFrom The first column to look at.
+     * @return The column of the clear bit.
+     */
+    private static int nextClear(final long[] theBits, final int theBase, final int theFrom) {
+
+        int index = theBase + (theFrom >>> ADDRESS_BITS);
+        long word = ~theBits[index] & -1L << theFrom;
+        while (word == 0) {
+            word = ~theBits[++index];
+        }
+        return (index - theBase << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Finds the last clear bit of a bitmap row at or before a column.
+     *
+     * @param theBits The bitmap.
+     * @param theBase The index of the row's first word.
+     * @param theFrom The last column to look at.
+     * @return The column of the clear bit, or -1 if every bit up to the column is set.
+     */
+    private static int previousClear(final long[] theBits, final int theBase,
+                                     final int theFrom) {
+
+        int index = theBase + (theFrom >>> ADDRESS_BITS);
+        long word = ~theBits[index] & -1L >>> Long.SIZE - 1 - (theFrom & Long.SIZE - 1);
+        while (word == 0) {
+            if (index == theBase) {
+                return -1;
+            }
+            word = ~theBits[--index];
+        }
+        return (index - theBase << ADDRESS_BITS) + Long.SIZE - 1
+               - Long.numberOfLeadingZeros(word);
+    }
+
+    /**
+     * Flips the bits of a range of a bitmap row, a word at a time.
+     *
+     * @param theBits The bitmap.
+     * @param theBase The index of the row's first word.
+     * @param theFrom The first column of the range.
+     * @param theTo The last column of the range.
+     */
+    private static void toggle(final long[] theBits, final int theBase, final int theFrom,
+                               final int theTo) {
+
+        final int firstWord = theBase + (theFrom >>> ADDRESS_BITS);
+        final int lastWord = theBase + (theTo >>> ADDRESS_BITS);
+        final long firstMask = -1L << theFrom;
+        final long lastMask = -1L >>> Long.SIZE - 1 - (theTo & Long.SIZE - 1);
+        if (firstWord == lastWord) {
+            theBits[firstWord] ^= firstMask & lastMask;
+            return;
+        }
+        theBits[firstWord] ^= firstMask;
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            theBits[i] = ~theBits[i];
+        }
+        theBits[lastWord] ^= lastMask;
+    }
+
+    /**
+     * Determines whether a pixel is close enough to the target color to be filled.
+     *
+     * @param thePixel The packed ARGB pixel.
+     * @param theTarget The packed ARGB target color.
+     * @param theTolerance The allowed difference of each color channel.
+     * @return Whether the pixel should be filled.
+     */
+    private static boolean matches(final int thePixel, final int theTarget,
+                                   final int theTolerance) {
+
+        if (thePixel == theTarget) {
+            return true;
+        }
+        if (theTolerance == 0) {
+            return false;
+        }
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+            final int difference =
+                ((thePixel >>> shift) & 0xFF) - ((theTarget >>> shift) & 0xFF);
+            if (difference > theTolerance || -difference > theTolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the filled pixels back as runs: the pixels that were open before the fill and
+     * are not after it. The fill reaches runs in an order that jumps between rows, so rather
+     * than sorting them, the rows are scanned in order a word of pixels at a time, finding
+     * where runs start and end with shifts and masks. The runs are counted in a first scan
+     * of the words so that the result is allocated once, at its exact size.
+     *
+     * @param theBefore The bitmap of open pixels before the fill.
+     * @param theAfter The bitmap of open pixels after the fill.
+     * @param theStride The number of words of the bitmaps per row.
+     * @param theHeight The number of rows.
+     * @return The filled pixels.
+     */
+    private static SpanShape collectRuns(final long[] theBefore, final long[] theAfter,
+                                         final int theStride, final int theHeight) {
+
+        int top = -1;
+        int bottom = -1;
+        int firstWord = theStride;
+        int lastWord = -1;
+        int count = 0;
+        for (int row = 0; row < theHeight; row++) {
+            final int base = row * theStride;
+            long previous = 0;
+            for (int i = 0; i < theStride; i++) {
+                final long word = theBefore[base + i] & ~theAfter[base + i];
+                if (word != 0) {
+                    if (top < 0) {
+                        top = row;
+                    }
+                    bottom = row;
+                    firstWord = Math.min(firstWord, i);
+                    lastWord = Math.max(lastWord, i);
+                    // A run starts at each filled pixel whose left neighbor is not filled.
+                    count += Long.bitCount(word & ~(word << 1 | previous >>> Long.SIZE - 1));
+                }
+                previous = word;
+            }
+        }
+        if (count == 0) {
+            return SpanShape.wrap(new int[0], new Rectangle());
+        }
+
+        final int[] result = new int[3 * count];
+        count = 0;
+        // The filled pixels of the leftmost and rightmost words holding any.
+        long leftmost = 0;
+        long rightmost = 0;
+        for (int row = top; row <= bottom; row++) {
+            final int base = row * theStride;
+            long previous = 0;
+            long word = theBefore[base + firstWord] & ~theAfter[base + firstWord];
+            boolean inside = false;
+            for (int i = firstWord; i <= lastWord; i++) {
+                // Past the row's last word, nothing is filled.
+                long next = 0;
+                if (i + 1 < theStride) {
+                    next = theBefore[base + i + 1] & ~theAfter[base + i + 1];
+                }
+                long starts = word & ~(word << 1 | previous >>> Long.SIZE - 1);
+                long ends = word & ~(word >>> 1 | next << Long.SIZE - 1);
+                if (i == firstWord) {
+                    leftmost |= word;
+                }
+                if (i == lastWord) {
+                    rightmost |= word;
+                }
+                // Starts and ends alternate along the row, as a run may span words.
+                while (true) {
+                    if (inside) {
+                        if (ends == 0) {
+                            break;
+                        }
+                        result[count++] =
+                            (i << ADDRESS_BITS) + Long.numberOfTrailingZeros(ends);
+                        ends &= ends - 1;
+                        inside = false;
+                    } else {
+                        if (starts == 0) {
+                            break;
+                        }
+                        result[count++] = row;
+                        result[count++] =
+                            (i << ADDRESS_BITS) + Long.numberOfTrailingZeros(starts);
+                        starts &= starts - 1;
+                        inside = true;
+                    }
+                }
+                previous = word;
+                word = next;
+            }
+        }
+        final int first = (firstWord << ADDRESS_BITS) + Long.numberOfTrailingZeros(leftmost);
+        final int last =
+            (lastWord << ADDRESS_BITS) + Long.SIZE - 1 - Long.numberOfLeadingZeros(rightmost);
+        return SpanShape.wrap(result,
+                              new Rectangle(first, top, last - first + 1, bottom - top + 1));
+    }
+}
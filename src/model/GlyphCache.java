@@ -0,0 +1,255 @@
+package model;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared cache of laid out text. Laying out a string in a font is far more expensive than
+ * drawing the result, so each distinct string and font is laid out once into a GlyphVector
+ * and its outline, and every text shape showing the same label reuses them. The least
+ * recently used layouts are dropped once the cache is full; shapes keep their own layout,
+ * so this only costs a new layout the next time the label is created. Safe to use from
+ * any thread.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class GlyphCache {
+
+    // CONSTANTS
+    /** Number of layouts kept before the least recently used are dropped. */
+    private static final int MAX_ENTRIES = 4096;
+
+    /** Antialiased layout with fractional metrics, independent of any screen. */
+    private static final FontRenderContext CONTEXT = new FontRenderContext(null, true, true);
+
+    /** The cached layouts, least recently used first. */
+    private static final Map<Key, Glyphs> CACHE =
+        new LinkedHashMap<Key, Glyphs>(16, 0.75f, true) {
+            /** Auto-generated serial version UID for object serialization. */
+            private static final long serialVersionUID = -4409546093326531357L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Glyphs> theEldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    /** Number of lookups answered from the cache. */
+    private static final AtomicLong HITS = new AtomicLong();
+
+    /** Number of lookups that had to lay the text out. */
+    private static final AtomicLong MISSES = new AtomicLong();
+
+
+    // Private constructor to inhibit external instantiation.
+    private GlyphCache() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Provides the caller with the layout of a string in a font, laying it out only if it
+     * is not cached.
+     *
+     * @param theText The text to lay out.
+     * @param theFont The font, including its size and style.
+     * @return The shared layout of the text.
+     */
+    public static Glyphs get(final String theText, final Font theFont) {
+
+        final Key key = new Key(theText, theFont);
+        synchronized (CACHE) {
+            final Glyphs cached = CACHE.get(key);
+            if (cached != null) {
+                HITS.incrementAndGet();
+                return cached;
+            }
+        }
+        // Lay out without holding the lock; a racing thread's layout is as good as ours.
+        MISSES.incrementAndGet();
+        final Glyphs result = new Glyphs(theFont.createGlyphVector(CONTEXT, theText));
+        synchronized (CACHE) {
+            final Glyphs cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            CACHE.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Provides the caller with the number of lookups answered from the cache.
+     *
+     * @return The number of cache hits so far.
+     */
+    public static long getHits() {
+
+        return HITS.get();
+    }
+
+    /**
+     * Provides the caller with the number of lookups that had to lay text out.
+     *
+     * @return The number of cache misses so far.
+     */
+    public static long getMisses() {
+
+        return MISSES.get();
+    }
+
+    /**
+     * Provides the caller with the number of cached layouts.
+     *
+     * @return The number of cached layouts.
+     */
+    public static int size() {
+
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * Drops every cached layout.
+     */
+    public static void clear() {
+
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+
+    /**
+     * The layout of one string in one font, positioned with its baseline origin at (0, 0).
+     * Everything is computed up front, so instances are never modified once created and
+     * may be shared between threads.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    public static final class Glyphs {
+
+        // INSTANCE FIELDS
+        /** The positioned glyphs of the text. */
+        private final GlyphVector myGlyphVector;
+
+        /** The outline of the glyphs. */
+        private final Shape myOutline;
+
+        /** The bounds of the glyphs' ink. */
+        private final Rectangle2D myVisualBounds;
+
+        /** The distance from the start of the baseline to the start of the next text. */
+        private final double myAdvance;
+
+
+        /**
+         * Constructor that measures a laid out string.
+         *
+         * @param theGlyphVector The positioned glyphs of the text.
+         */
+        Glyphs(final GlyphVector theGlyphVector) {
+
+            myGlyphVector = theGlyphVector;
+            myOutline = theGlyphVector.getOutline();
+            myVisualBounds = theGlyphVector.getVisualBounds();
+            myAdvance = theGlyphVector.getLogicalBounds().getWidth();
+        }
+
+        /**
+         * Provides the caller with the positioned glyphs of the text.
+         *
+         * @return The shared GlyphVector, which must not be modified.
+         */
+        public GlyphVector getGlyphVector() {
+
+            return myGlyphVector;
+        }
+
+        /**
+         * Provides the caller with the outline of the glyphs.
+         *
+         * @return The shared outline, which must not be modified.
+         */
+        public Shape getOutline() {
+
+            return myOutline;
+        }
+
+        /**
+         * Provides the caller with the bounds of the glyphs' ink.
+         *
+         * @return The shared bounds, which must not be modified.
+         */
+        public Rectangle2D getVisualBounds() {
+
+            return myVisualBounds;
+        }
+
+        /**
+         * Provides the caller with the width of the text along its baseline.
+         *
+         * @return The advance of the text.
+         */
+        public double getAdvance() {
+
+            return myAdvance;
+        }
+    }
+
+
+    /**
+     * Cache key made of a string and a font. Fonts are equal when their name, style, size,
+     * and transform are, so differently sized fonts are cached separately.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Key {
+
+        // INSTANCE FIELDS
+        /** The text. */
+        private final String myText;
+
+        /** The font. */
+        private final Font myFont;
+
+
+        /**
+         * Constructor that stores the parts of the key.
+         *
+         * @param theText The text.
+         * @param theFont The font.
+         */
+        Key(final String theText, final Font theFont) {
+
+            myText = theText;
+            myFont = theFont;
+        }
+
+        @Override
+        public boolean equals(final Object theOther) {
+
+            if (!(theOther instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) theOther;
+            return myText.equals(other.myText) && myFont.equals(other.myFont);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return 31 * myText.hashCode() + myFont.hashCode();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package model;
+
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Immutable Shape made of a line of text in a given font, placed with the start of its
+ * baseline at a given point. The text is laid out through the GlyphCache, so any number of
+ * copies of the same label share one layout and moving a label never lays it out again.
+ * As a Shape, the text is the outline of its glyphs.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class GlyphText implements Shape {
+
+    // INSTANCE FIELDS
+    /** The text shown. */
+    private final String myText;
+
+    /** The font of the text. */
+    private final Font myFont;
+
+    /** The x coordinate of the start of the baseline. */
+    private final double myX;
+
+    /** The y coordinate of the baseline. */
+    private final double myY;
+
+    /** The shared layout of the text at the origin. */
+    private final GlyphCache.Glyphs myGlyphs;
+
+
+    /**
+     * Constructor that places a line of text.
+     *
+     * @param theText The text to show.
+     * @param theFont The font of the text, including its size.
+     * @param theX The x coordinate of the start of the baseline.
+     * @param theY The y coordinate of the baseline.
+     */
+    public GlyphText(final String theText, final Font theFont, final double theX,
+                     final double theY) {
+
+        this(theText, theFont, theX, theY, GlyphCache.get(theText, theFont));
+    }
+
+    /**
+     * Constructor that places already laid out text.
+     *
+     * @param theText The text to show.
+     * @param theFont The font of the text.
+     * @param theX The x coordinate of the start of the baseline.
+     * @param theY The y coordinate of the baseline.
+     * @param theGlyphs The layout of the text in the font.
+     */
+    private GlyphText(final String theText, final Font theFont, final double theX,
+                      final double theY, final GlyphCache.Glyphs theGlyphs) {
+
+        myText = theText;
+        myFont = theFont;
+        myX = theX;
+        myY = theY;
+        myGlyphs = theGlyphs;
+    }
+
+    /**
+     * Accessor method that provides the caller with the text shown.
+     *
+     * @return The text.
+     */
+    public String getText() {
+
+        return myText;
+    }
+
+    /**
+     * Accessor method that provides the caller with the font of the text.
+     *
+     * @return The font.
+     */
+    public Font getFont() {
+
+        return myFont;
+    }
+
+    /**
+     * Accessor method that provides the caller with the x coordinate of the baseline.
+     *
+     * @return The x coordinate of the start of the baseline.
+     */
+    public double getX() {
+
+        return myX;
+    }
+
+    /**
+     * Accessor method that provides the caller with the y coordinate of the baseline.
+     *
+     * @return The y coordinate of the baseline.
+     */
+    public double getY() {
+
+        return myY;
+    }
+
+    /**
+     * Provides the caller with the shared layout of the text, positioned at the origin.
+     *
+     * @return The layout of the text.
+     */
+    public GlyphCache.Glyphs getGlyphs() {
+
+        return myGlyphs;
+    }
+
+    /**
+     * Creates a copy of the text moved by the given offset, sharing its layout.
+     *
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved copy.
+     */
+    public GlyphText translated(final double theDeltaX, final double theDeltaY) {
+
+        return new GlyphText(myText, myFont, myX + theDeltaX, myY + theDeltaY, myGlyphs);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+
+        return getBounds2D().getBounds();
+    }
+
+    @Override
+    public Rectangle2D getBounds2D() {
+
+        final Rectangle2D ink = myGlyphs.getVisualBounds();
+        return new Rectangle2D.Double(ink.getX() + myX, ink.getY() + myY, ink.getWidth(),
+                                      ink.getHeight());
+    }
+
+    @Override
+    public boolean contains(final double theX, final double theY) {
+
+        return myGlyphs.getOutline().contains(theX - myX, theY - myY);
+    }
+
+    @Override
+    public boolean contains(final Point2D thePoint) {
+
+        return contains(thePoint.getX(), thePoint.getY());
+    }
+
+    @Override
+    public boolean intersects(final double theX, final double theY, final double theWidth,
+                              final double theHeight) {
+
+        return myGlyphs.getOutline().intersects(theX - myX, theY - myY, theWidth, theHeight);
+    }
+
+    @Override
+    public boolean intersects(final Rectangle2D theRectangle) {
+
+        return intersects(theRectangle.getX(), theRectangle.getY(), theRectangle.getWidth(),
+                          theRectangle.getHeight());
+    }
+
+    @Override
+    public boolean contains(final double theX, final double theY, final double theWidth,
+                            final double theHeight) {
+
+        return myGlyphs.getOutline().contains(theX - myX, theY - myY, theWidth, theHeight);
+    }
+
+    @Override
+    public boolean contains(final Rectangle2D theRectangle) {
+
+        return contains(theRectangle.getX(), theRectangle.getY(), theRectangle.getWidth(),
+                        theRectangle.getHeight());
+    }
+
+    @Override
+    public PathIterator getPathIterator(final AffineTransform theTransform) {
+
+        return myGlyphs.getOutline().getPathIterator(placement(theTransform));
+    }
+
+    @Override
+    public PathIterator getPathIterator(final AffineTransform theTransform,
+                                        final double theFlatness) {
+
+        return myGlyphs.getOutline().getPathIterator(placement(theTransform), theFlatness);
+    }
+
+    /**
+     * Combines the placement of the text with a transform applied after it.
+     *
+     * @param theTransform The transform applied to the placed text, or null for none.
+     * @return A new transform from the layout's coordinates to the requested ones.
+     */
+    private AffineTransform placement(final AffineTransform theTransform) {
+
+        final AffineTransform result = AffineTransform.getTranslateInstance(myX, myY);
+        if (theTransform != null) {
+            result.preConcatenate(theTransform);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,129 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * PaintShape that shows an imported picture stretched over a frame, such as a reference
+ * photo to trace over. An instance stores nothing but the shared RasterImage and the
+ * frame, so moving it copies no pixels, and drawing it reads only the visible part of the
+ * picture's level that suits the drawn size. As a Shape, an instance is its frame.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class ImageShape extends PaintShape {
+
+    // INSTANCE FIELDS
+    /** The shared picture shown. */
+    private final RasterImage myImage;
+
+
+    /**
+     * Constructor that stretches a picture over the given frame.
+     *
+     * @param theImage The shared picture to show.
+     * @param theFrame The rectangle the picture fills.
+     */
+    public ImageShape(final RasterImage theImage, final Rectangle2D theFrame) {
+
+        super(new Rectangle2D.Double(theFrame.getX(), theFrame.getY(), theFrame.getWidth(),
+                                     theFrame.getHeight()),
+              Color.BLACK, Color.BLACK, false, 1);
+        myImage = theImage;
+    }
+
+    /**
+     * Accessor method that provides the caller with the shared picture.
+     *
+     * @return The picture shown.
+     */
+    public RasterImage getImage() {
+
+        return myImage;
+    }
+
+    /**
+     * Accessor method that provides the caller with the rectangle the picture fills.
+     *
+     * @return The frame, which must not be modified.
+     */
+    public Rectangle2D getFrame() {
+
+        return (Rectangle2D) getShape();
+    }
+
+    /**
+     * Draws the visible part of the picture over the frame.
+     *
+     * @param theGraphics The graphics context to draw into.
+     */
+    @Override
+    public void draw(final Graphics2D theGraphics) {
+
+        myImage.draw(theGraphics, getFrame());
+    }
+
+    /**
+     * Creates another instance of the picture with its frame moved by the given offset.
+     *
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved instance.
+     */
+    @Override
+    public ImageShape translated(final double theDeltaX, final double theDeltaY) {
+
+        final Rectangle2D frame = getFrame();
+        return new ImageShape(myImage, new Rectangle2D.Double(frame.getX() + theDeltaX,
+                                                              frame.getY() + theDeltaY,
+                                                              frame.getWidth(),
+                                                              frame.getHeight()));
+    }
+
+    @Override
+    public boolean contains(final Point2D thePoint, final double theTolerance) {
+
+        final Rectangle2D frame = getFrame();
+        return thePoint.getX() >= frame.getMinX() - theTolerance
+               && thePoint.getX() <= frame.getMaxX() + theTolerance
+               && thePoint.getY() >= frame.getMinY() - theTolerance
+               && thePoint.getY() <= frame.getMaxY() + theTolerance;
+    }
+
+    @Override
+    public boolean intersects(final Shape theRegion) {
+
+        return theRegion.intersects(getFrame());
+    }
+
+    /**
+     * Provides the caller with the corners of the frame.
+     *
+     * @return The x and y coordinates of each corner, one pair after another.
+     */
+    @Override
+    public double[] getSnapPoints() {
+
+        final Rectangle2D frame = getFrame();
+        return new double[] {frame.getMinX(), frame.getMinY(), frame.getMaxX(), frame.getMinY(),
+                             frame.getMaxX(), frame.getMaxY(), frame.getMinX(), frame.getMaxY()};
+    }
+
+    /**
+     * Computes the drawn bounds of the instance: the frame and a pixel around it, which
+     * filtering may blend into.
+     *
+     * @return The drawn bounds of the instance.
+     */
+    @Override
+    protected Rectangle2D computeBounds() {
+
+        final Rectangle2D frame = getFrame();
+        return new Rectangle2D.Double(frame.getX() - 1, frame.getY() - 1,
+                                      frame.getWidth() + 2, frame.getHeight() + 2);
+    }
+}
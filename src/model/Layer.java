@@ -0,0 +1,137 @@
+package model;
+
+/**
+ * One layer of a drawing: a ShapeModel of its own along with a name, whether it is shown,
+ * and the opacity it is composited with. Because each layer keeps its own shapes, a change
+ * to one layer leaves the snapshots, and therefore the cached rasters, of every other layer
+ * untouched. Every property is safe to read and change from any thread.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class Layer {
+
+    // INSTANCE FIELDS
+    /** The committed PaintShapes of the layer. */
+    private final ShapeModel myShapes;
+
+    /** The name of the layer. */
+    private volatile String myName;
+
+    /** Whether the layer is shown. */
+    private volatile boolean myVisible;
+
+    /** The opacity the layer is composited with, from 0 to 1. */
+    private volatile float myOpacity;
+
+
+    /**
+     * Constructor that creates an empty, shown, and fully opaque layer.
+     *
+     * @param theName The name of the layer.
+     */
+    public Layer(final String theName) {
+
+        myShapes = new ShapeModel();
+        myName = theName;
+        myVisible = true;
+        myOpacity = 1;
+    }
+
+    /**
+     * Constructor that creates a layer holding the contents of a saved layer.
+     *
+     * @param theLayer The saved layer.
+     */
+    public Layer(final DocumentLayer theLayer) {
+
+        this(theLayer.getName());
+        myVisible = theLayer.isVisible();
+        myOpacity = theLayer.getOpacity();
+        myShapes.replace(theLayer.getShapes());
+    }
+
+    /**
+     * Provides the caller with the committed PaintShapes of the layer.
+     *
+     * @return The model holding the layer's PaintShapes.
+     */
+    public ShapeModel getShapes() {
+
+        return myShapes;
+    }
+
+    /**
+     * Accessor method that provides the caller with the name of the layer.
+     *
+     * @return The name of the layer.
+     */
+    public String getName() {
+
+        return myName;
+    }
+
+    /**
+     * Mutator method that renames the layer.
+     *
+     * @param theName The new name of the layer.
+     */
+    public void setName(final String theName) {
+
+        myName = theName;
+    }
+
+    /**
+     * Accessor method that provides the caller with whether the layer is shown.
+     *
+     * @return Whether the layer is shown.
+     */
+    public boolean isVisible() {
+
+        return myVisible;
+    }
+
+    /**
+     * Mutator method that shows or hides the layer.
+     *
+     * @param theVisible Whether the layer is shown.
+     */
+    public void setVisible(final boolean theVisible) {
+
+        myVisible = theVisible;
+    }
+
+    /**
+     * Accessor method that provides the caller with the opacity of the layer.
+     *
+     * @return The opacity the layer is composited with, from 0 to 1.
+     */
+    public float getOpacity() {
+
+        return myOpacity;
+    }
+
+    /**
+     * Mutator method that sets the opacity the layer is composited with.
+     *
+     * @param theOpacity The new opacity, from 0 to 1.
+     */
+    public void setOpacity(final float theOpacity) {
+
+        if (!(theOpacity >= 0 && theOpacity <= 1)) {
+            throw new IllegalArgumentException("Opacity must be between 0 and 1: "
+                                               + theOpacity);
+        }
+        myOpacity = theOpacity;
+    }
+
+    /**
+     * Takes an immutable snapshot of the layer.
+     *
+     * @return The layer's current settings and PaintShapes.
+     */
+    public DocumentLayer snapshot() {
+
+        return new DocumentLayer(myName, myVisible, myOpacity, myShapes.snapshot());
+    }
+}
@@ -9,12 +9,12 @@ import java.awt.geom.Line2D;
  * @author JJ Coldiron (jj.coldiron@outlook.com)
  * @version 1.0
  */
-public class LineTool extends AbstractTool {
+public class LineTool extends AbstractTool implements SnapTool {
 
     @Override
     public Shape getShape() {
         
-        return new Line2D.Double(getStartPoint(), getEndPoint());
+        return new Line2D.Double(getStartX(), getStartY(), getEndX(), getEndY());
     }
 
     @Override
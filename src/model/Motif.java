@@ -0,0 +1,258 @@
+package model;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable group of PaintShapes shared by every StampShape that shows it. Instances only
+ * store where they are placed, so a motif stamped any number of times is kept in memory
+ * once. The motif is also rasterized once into a sprite the first time it is drawn at a
+ * whole-pixel position, and later instances at whole-pixel positions are drawn by copying
+ * that sprite, so their drawing time does not depend on how complex the motif is.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class Motif {
+
+    // CONSTANTS
+    /** Deepest nesting of motifs, counting a motif holding no stamped copies as depth 1. */
+    public static final int MAX_DEPTH = 32;
+
+    /** Motifs whose sprite would hold more pixels than this are always drawn as shapes. */
+    private static final long MAX_SPRITE_PIXELS = 1L << 22;
+
+
+    // INSTANCE FIELDS
+    /** The shapes of the motif in drawing order, at the positions they were copied from. */
+    private final List<PaintShape> myShapes;
+
+    /** The drawn bounds of all of the shapes. */
+    private final Rectangle2D myBounds;
+
+    /** The snap points of all of the shapes, one coordinate pair after another. */
+    private final double[] mySnapPoints;
+
+    /** The number of motifs nested in this one, counting this one. */
+    private final int myDepth;
+
+    /** The rasterized motif, or null until it is first needed. */
+    private volatile Sprite mySprite;
+
+
+    /**
+     * Constructor that stores a defensive copy of the given shapes.
+     *
+     * @param theShapes The shapes of the motif in drawing order.
+     * @throws IllegalArgumentException If there are no shapes, or stamped copies among
+     * them nest motifs more than MAX_DEPTH deep.
+     */
+    public Motif(final List<PaintShape> theShapes) {
+
+        if (theShapes.isEmpty()) {
+            throw new IllegalArgumentException("A motif needs at least one shape");
+        }
+        myShapes = Collections.unmodifiableList(new ArrayList<PaintShape>(theShapes));
+        Rectangle2D bounds = null;
+        double[] points = new double[0];
+        int depth = 1;
+        for (final PaintShape shape: myShapes) {
+            if (shape instanceof StampShape) {
+                depth = Math.max(depth, ((StampShape) shape).getMotif().getDepth() + 1);
+            }
+            if (bounds == null) {
+                bounds = (Rectangle2D) shape.getBounds().clone();
+            } else {
+                bounds.add(shape.getBounds());
+            }
+            final double[] more = shape.getSnapPoints();
+            final int count = points.length;
+            points = Arrays.copyOf(points, count + more.length);
+            System.arraycopy(more, 0, points, count, more.length);
+        }
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Motifs may be nested at most " + MAX_DEPTH
+                                               + " deep");
+        }
+        myBounds = bounds;
+        mySnapPoints = points;
+        myDepth = depth;
+    }
+
+    /**
+     * Provides the caller with the shapes of the motif.
+     *
+     * @return The read-only list of shapes, in drawing order.
+     */
+    public List<PaintShape> getShapes() {
+
+        return myShapes;
+    }
+
+    /**
+     * Provides the caller with the number of motifs nested in this one, counting this one,
+     * which is never more than MAX_DEPTH.
+     *
+     * @return The depth of the motif.
+     */
+    public int getDepth() {
+
+        return myDepth;
+    }
+
+    /**
+     * Provides the caller with the drawn bounds of all of the motif's shapes.
+     *
+     * @return The shared bounds, which must not be modified.
+     */
+    public Rectangle2D getBounds() {
+
+        return myBounds;
+    }
+
+    /**
+     * Provides the caller with the center of the motif's bounds, which instances are
+     * placed by.
+     *
+     * @return The center of the motif.
+     */
+    public Point2D getCenter() {
+
+        return new Point2D.Double(myBounds.getCenterX(), myBounds.getCenterY());
+    }
+
+    /**
+     * Provides the caller with the snap points of all of the motif's shapes.
+     *
+     * @return The shared coordinates, which must not be modified.
+     */
+    double[] getSnapPoints() {
+
+        return mySnapPoints;
+    }
+
+    /**
+     * Draws the motif moved by the given offset. If the offset, combined with the graphics
+     * context's transform, moves the motif by whole device pixels, the cached sprite is
+     * copied; otherwise every shape is drawn through the transform.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theDeltaX The horizontal offset of the instance.
+     * @param theDeltaY The vertical offset of the instance.
+     */
+    void draw(final Graphics2D theGraphics, final double theDeltaX, final double theDeltaY) {
+
+        final Object antialiasing = theGraphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        final double x = theGraphics.getTransform().getTranslateX() + theDeltaX;
+        final double y = theGraphics.getTransform().getTranslateY() + theDeltaY;
+        if (theGraphics.getTransform().getType() <= 1 && x == Math.rint(x) && y == Math.rint(y)) {
+            final Sprite sprite = spriteFor(antialiasing);
+            if (sprite != null) {
+                theGraphics.drawImage(sprite.myImage, sprite.myX + (int) Math.rint(theDeltaX),
+                                      sprite.myY + (int) Math.rint(theDeltaY), null);
+                return;
+            }
+        }
+        theGraphics.translate(theDeltaX, theDeltaY);
+        try {
+            for (final PaintShape shape: myShapes) {
+                shape.draw(theGraphics);
+            }
+        } finally {
+            theGraphics.translate(-theDeltaX, -theDeltaY);
+        }
+    }
+
+    /**
+     * Provides the caller with the sprite rendered with the given antialiasing, rendering
+     * it on first use.
+     *
+     * @param theAntialiasing The antialiasing hint of the graphics context drawn into.
+     * @return The sprite, or null if the motif is too large to rasterize or was rasterized
+     * with a different hint.
+     */
+    private Sprite spriteFor(final Object theAntialiasing) {
+
+        Sprite result = mySprite;
+        if (result == null) {
+            final int left = (int) Math.floor(myBounds.getMinX());
+            final int top = (int) Math.floor(myBounds.getMinY());
+            final int width = (int) Math.ceil(myBounds.getMaxX()) - left;
+            final int height = (int) Math.ceil(myBounds.getMaxY()) - top;
+            if (width <= 0 || height <= 0 || (long) width * height > MAX_SPRITE_PIXELS) {
+                return null;
+            }
+            final BufferedImage image =
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            final Graphics2D g2d = image.createGraphics();
+            try {
+                g2d.setComposite(AlphaComposite.SrcOver);
+                if (theAntialiasing != null) {
+                    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, theAntialiasing);
+                }
+                g2d.translate(-left, -top);
+                for (final PaintShape shape: myShapes) {
+                    shape.draw(g2d);
+                }
+            } finally {
+                g2d.dispose();
+            }
+            // A racing thread may render its own; either sprite is correct.
+            result = new Sprite(image, left, top, theAntialiasing);
+            mySprite = result;
+        }
+        if (result.myAntialiasing != theAntialiasing) {
+            return null;
+        }
+        return result;
+    }
+
+
+    /**
+     * The rasterized motif along with where its top left pixel belongs.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Sprite {
+
+        // INSTANCE FIELDS
+        /** The motif's pixels. */
+        private final BufferedImage myImage;
+
+        /** The x coordinate of the image's left edge in the motif's coordinates. */
+        private final int myX;
+
+        /** The y coordinate of the image's top edge in the motif's coordinates. */
+        private final int myY;
+
+        /** The antialiasing hint the motif was rendered with. */
+        private final Object myAntialiasing;
+
+
+        /**
+         * Constructor that stores a rendered sprite.
+         *
+         * @param theImage The motif's pixels.
+         * @param theX The x coordinate of the image's left edge.
+         * @param theY The y coordinate of the image's top edge.
+         * @param theAntialiasing The antialiasing hint the motif was rendered with.
+         */
+        Sprite(final BufferedImage theImage, final int theX, final int theY,
+               final Object theAntialiasing) {
+
+            myImage = theImage;
+            myX = theX;
+            myY = theY;
+            myAntialiasing = theAntialiasing;
+        }
+    }
+}
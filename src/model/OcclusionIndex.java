@@ -0,0 +1,582 @@
+package model;
+
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which PaintShapes of a layer are hidden under a later opaque filled rectangle or
+ * ellipse, so that they can be left out when the layer is drawn without changing a single
+ * pixel. The tests are conservative and work in whole pixels: a rectangle, ellipse, or line
+ * touches the pixels of its cached bounds, any other stroke touches its outline grown by
+ * the farthest a miter join can reach, and every opaque fill covers the pixels of a
+ * rectangle inside its interior, all padded by a pixel to allow for the rasterizer's
+ * rounding. A shape is hidden when the pixels it touches lie within those covered by a
+ * fill drawn after it, since a fill replaces every pixel it covers completely. Subclasses
+ * of PaintShape draw in their own ways and are never hidden.
+ *
+ * <p>For each shape the index counts the later fills that hide it, and both shapes and
+ * fills are kept in grids of cells, so committing or removing a shape only visits the
+ * shapes and fills near it. A layer's shapes are followed through {@link #sync}, which
+ * adds appended shapes one at a time and applies other edits by removing and inserting
+ * only the shapes that changed.
+ *
+ * <p>The index only describes drawing onto a pixel grid aligned with the shapes'
+ * coordinates, with source-over blending at full opacity. This class is not thread-safe.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class OcclusionIndex {
+
+    // CONSTANTS
+    /** Width and height of each grid cell. */
+    private static final int CELL_SIZE = 64;
+
+    /** Fills whose interiors cover more cells than this are kept in a separate list. */
+    private static final int MAX_CELLS = 256;
+
+    /** Pixels added around every shape and taken from every interior for rounding. */
+    private static final int MARGIN = 1;
+
+    /**
+     * Farthest a miter join reaches past its corner, in stroke widths, under BasicStroke's
+     * default miter limit of 10.
+     */
+    private static final int MITER_REACH = 5;
+
+    /** Half the side of the square inscribed in a circle, as a fraction of its radius. */
+    private static final double INSCRIBED = Math.sqrt(0.5);
+
+
+    // INSTANCE FIELDS
+    /** Entries of each occupied cell, by the cell holding the top-left of their pixels. */
+    private final Map<Long, List<Entry>> myShapeCells;
+
+    /** Fills of each cell their interiors cover. */
+    private final Map<Long, List<Entry>> myFillCells;
+
+    /** Fills whose interiors cover too many cells to be stored in the grid. */
+    private final List<Entry> myLargeFills;
+
+    /** The entry of every indexed shape. */
+    private final Map<PaintShape, Entry> myEntries;
+
+    /** The order assigned to the next shape added. */
+    private long myNextOrder;
+
+    /** The number of indexed shapes hidden by a later fill. */
+    private int myHidden;
+
+    /** The shapes the index was last synchronized with, or null. */
+    private ShapeList mySynced;
+
+
+    /**
+     * Constructor that creates an empty index.
+     */
+    public OcclusionIndex() {
+
+        myShapeCells = new HashMap<Long, List<Entry>>();
+        myFillCells = new HashMap<Long, List<Entry>>();
+        myLargeFills = new ArrayList<Entry>();
+        myEntries = new IdentityHashMap<PaintShape, Entry>();
+    }
+
+    /**
+     * Removes every shape from the index.
+     */
+    public void clear() {
+
+        myShapeCells.clear();
+        myFillCells.clear();
+        myLargeFills.clear();
+        myEntries.clear();
+        myNextOrder = 0;
+        myHidden = 0;
+        mySynced = null;
+    }
+
+    /**
+     * Provides the caller with the number of indexed shapes.
+     *
+     * @return The number of indexed shapes.
+     */
+    public int size() {
+
+        return myEntries.size();
+    }
+
+    /**
+     * Provides the caller with the number of indexed shapes hidden by a later fill.
+     *
+     * @return The number of hidden shapes.
+     */
+    public int getHiddenCount() {
+
+        return myHidden;
+    }
+
+    /**
+     * Determines whether a shape is hidden by a fill drawn after it, and so need not be
+     * drawn. Shapes that are not indexed are never hidden.
+     *
+     * @param theShape The shape.
+     * @return Whether the shape is hidden.
+     */
+    public boolean isHidden(final PaintShape theShape) {
+
+        final Entry entry = myEntries.get(theShape);
+        return entry != null && entry.myCovers > 0;
+    }
+
+    /**
+     * Adds a shape on top of every shape already indexed.
+     *
+     * @param theShape The shape to add.
+     */
+    public void add(final PaintShape theShape) {
+
+        insert(theShape, myNextOrder++);
+        mySynced = null;
+    }
+
+    /**
+     * Removes a shape from the index, revealing the shapes only it hid.
+     *
+     * @param theShape The shape to remove.
+     * @return Whether the shape was indexed.
+     */
+    public boolean remove(final PaintShape theShape) {
+
+        final Entry entry = myEntries.get(theShape);
+        if (entry == null) {
+            return false;
+        }
+        delete(entry);
+        mySynced = null;
+        return true;
+    }
+
+    /**
+     * Brings the index up to date with a layer's shapes. Shapes appended since the last
+     * call are added; after any other edit, the shapes no longer present are removed and
+     * the new ones inserted at their places, unless most of the shapes changed or the
+     * survivors changed order, in which case the index is rebuilt.
+     *
+     * @param theShapes The layer's shapes in drawing order.
+     */
+    public void sync(final ShapeList theShapes) {
+
+        final ShapeList synced = mySynced;
+        if (theShapes == synced) {
+            return;
+        }
+        if (synced != null && theShapes.getGeneration() == synced.getGeneration()
+            && theShapes.size() >= synced.size()) {
+            for (int i = synced.size(); i < theShapes.size(); i++) {
+                insert(theShapes.get(i), myNextOrder++);
+            }
+        } else if (!edit(theShapes)) {
+            clear();
+            for (final PaintShape shape: theShapes) {
+                insert(shape, myNextOrder++);
+            }
+        }
+        mySynced = theShapes;
+    }
+
+    /**
+     * Applies an edit of the layer by removing and inserting the shapes that changed.
+     *
+     * @param theShapes The layer's shapes after the edit.
+     * @return Whether the edit was applied; false if the index must be rebuilt instead.
+     */
+    private boolean edit(final ShapeList theShapes) {
+
+        // Where a shape is drawn more than once, only its last place matters: if a fill
+        // hides it there, the same fill hides it everywhere before.
+        final Map<PaintShape, Integer> places = new IdentityHashMap<PaintShape, Integer>();
+        for (int i = 0; i < theShapes.size(); i++) {
+            places.put(theShapes.get(i), i);
+        }
+        final List<Entry> gone = new ArrayList<Entry>();
+        for (final Entry entry: myEntries.values()) {
+            if (!places.containsKey(entry.myShape)) {
+                gone.add(entry);
+            }
+        }
+        final int kept = myEntries.size() - gone.size();
+        if (kept * 2 < myEntries.size() || kept * 2 < theShapes.size()) {
+            return false;
+        }
+        // The survivors keep their counts only if they keep their order.
+        long previous = -1;
+        for (int i = 0; i < theShapes.size(); i++) {
+            final Entry entry = myEntries.get(theShapes.get(i));
+            if (entry != null && places.get(entry.myShape) == i) {
+                if (entry.myOrder < previous) {
+                    return false;
+                }
+                previous = entry.myOrder;
+            }
+        }
+
+        for (final Entry entry: gone) {
+            delete(entry);
+        }
+        final List<Integer> added = new ArrayList<Integer>();
+        for (int i = 0; i < theShapes.size(); i++) {
+            final Entry entry = myEntries.get(theShapes.get(i));
+            if (entry == null) {
+                added.add(i);
+            } else if (places.get(entry.myShape) == i) {
+                entry.myOrder = i;
+            }
+        }
+        for (final int place: added) {
+            final PaintShape shape = theShapes.get(place);
+            if (places.get(shape) == place) {
+                insert(shape, place);
+            }
+        }
+        myNextOrder = theShapes.size();
+        return true;
+    }
+
+    /**
+     * Indexes a shape at a place in the drawing order, counting the later fills that hide
+     * it and, if it is itself an opaque fill, counting it against the earlier shapes it
+     * hides.
+     *
+     * @param theShape The shape.
+     * @param theOrder The shape's place in the drawing order.
+     */
+    private void insert(final PaintShape theShape, final long theOrder) {
+
+        // A shape drawn twice is only indexed at its newest place.
+        remove(theShape);
+        final Entry entry = new Entry(theShape, theOrder);
+        if (entry.myPixels != null) {
+            final Long key = key(cell(entry.myPixels[0]), cell(entry.myPixels[1]));
+            final List<Entry> fills = myFillCells.get(key);
+            if (fills != null) {
+                for (final Entry fill: fills) {
+                    entry.countCover(fill, 1);
+                }
+            }
+            for (final Entry fill: myLargeFills) {
+                entry.countCover(fill, 1);
+            }
+            if (entry.myCovers > 0) {
+                myHidden++;
+            }
+            cellFor(myShapeCells, key).add(entry);
+        }
+        if (entry.myInterior != null) {
+            cover(entry, 1);
+            if (entry.isLarge()) {
+                myLargeFills.add(entry);
+            } else {
+                final int[] interior = entry.myInterior;
+                for (int row = cell(interior[1]); row <= cell(interior[3] - 1); row++) {
+                    for (int column = cell(interior[0]); column <= cell(interior[2] - 1);
+                         column++) {
+                        cellFor(myFillCells, key(column, row)).add(entry);
+                    }
+                }
+            }
+        }
+        myEntries.put(theShape, entry);
+    }
+
+    /**
+     * Removes an entry from the index and from the counts of the shapes it hid.
+     *
+     * @param theEntry The entry.
+     */
+    private void delete(final Entry theEntry) {
+
+        myEntries.remove(theEntry.myShape);
+        if (theEntry.myPixels != null) {
+            final Long key = key(cell(theEntry.myPixels[0]), cell(theEntry.myPixels[1]));
+            removeFrom(myShapeCells, key, theEntry);
+            if (theEntry.myCovers > 0) {
+                myHidden--;
+            }
+        }
+        if (theEntry.myInterior != null) {
+            cover(theEntry, -1);
+            if (theEntry.isLarge()) {
+                myLargeFills.remove(theEntry);
+            } else {
+                final int[] interior = theEntry.myInterior;
+                for (int row = cell(interior[1]); row <= cell(interior[3] - 1); row++) {
+                    for (int column = cell(interior[0]); column <= cell(interior[2] - 1);
+                         column++) {
+                        removeFrom(myFillCells, key(column, row), theEntry);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a fill to, or takes it from, the counts of the earlier shapes it hides. Only
+     * shapes whose pixels start inside the fill's interior can be hidden by it, so only
+     * the cells of the interior are visited.
+     *
+     * @param theFill The entry of the fill.
+     * @param theDelta 1 to add the fill, -1 to take it away.
+     */
+    private void cover(final Entry theFill, final int theDelta) {
+
+        final int[] interior = theFill.myInterior;
+        final int left = cell(interior[0]);
+        final int top = cell(interior[1]);
+        final int right = cell(interior[2] - 1);
+        final int bottom = cell(interior[3] - 1);
+        final long cells = ((long) right - left + 1) * ((long) bottom - top + 1);
+        if (cells > myShapeCells.size()) {
+            // Cheaper to walk the occupied cells than every cell of a huge interior.
+            for (final List<Entry> cell: myShapeCells.values()) {
+                coverAll(cell, theFill, theDelta);
+            }
+        } else {
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    final List<Entry> cell = myShapeCells.get(key(column, row));
+                    if (cell != null) {
+                        coverAll(cell, theFill, theDelta);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a fill to, or takes it from, the counts of the shapes of one cell it hides.
+     *
+     * @param theCell The entries of the cell.
+     * @param theFill The entry of the fill.
+     * @param theDelta 1 to add the fill, -1 to take it away.
+     */
+    private void coverAll(final List<Entry> theCell, final Entry theFill, final int theDelta) {
+
+        for (final Entry entry: theCell) {
+            final boolean wasHidden = entry.myCovers > 0;
+            entry.countCover(theFill, theDelta);
+            if (wasHidden != entry.myCovers > 0) {
+                myHidden += wasHidden ? -1 : 1;
+            }
+        }
+    }
+
+    /**
+     * Finds or creates the list of entries of a cell.
+     *
+     * @param theCells The grid.
+     * @param theKey The key of the cell.
+     * @return The entries of the cell.
+     */
+    private static List<Entry> cellFor(final Map<Long, List<Entry>> theCells,
+                                       final Long theKey) {
+
+        List<Entry> result = theCells.get(theKey);
+        if (result == null) {
+            result = new ArrayList<Entry>(4);
+            theCells.put(theKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Removes an entry from a cell, forgetting the cell once it is empty.
+     *
+     * @param theCells The grid.
+     * @param theKey The key of the cell.
+     * @param theEntry The entry.
+     */
+    private static void removeFrom(final Map<Long, List<Entry>> theCells, final Long theKey,
+                                   final Entry theEntry) {
+
+        final List<Entry> cell = theCells.get(theKey);
+        cell.remove(theEntry);
+        if (cell.isEmpty()) {
+            theCells.remove(theKey);
+        }
+    }
+
+    /**
+     * Converts a pixel coordinate to the index of the cell containing it.
+     *
+     * @param theCoordinate The coordinate.
+     * @return The index of the cell along that axis.
+     */
+    private static int cell(final int theCoordinate) {
+
+        return Math.floorDiv(theCoordinate, CELL_SIZE);
+    }
+
+    /**
+     * Packs cell coordinates into a single map key.
+     *
+     * @param theColumn The column of the cell.
+     * @param theRow The row of the cell.
+     * @return The key of the cell.
+     */
+    private static Long key(final int theColumn, final int theRow) {
+
+        return ((long) theColumn << 32) | (theRow & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Finds the pixels a drawn shape may touch.
+     *
+     * @param theShape The shape.
+     * @return The left, top, right, and bottom of the pixels, the last two exclusive, or
+     * null if the shape draws nothing or is never to be hidden.
+     */
+    private static int[] pixels(final PaintShape theShape) {
+
+        if (theShape.getClass() != PaintShape.class || theShape.getWidth() <= 0) {
+            return null;
+        }
+        final Shape shape = theShape.getShape();
+        final Rectangle2D bounds;
+        if (shape instanceof Rectangle2D || shape instanceof Ellipse2D
+            || shape instanceof Line2D) {
+            bounds = theShape.getBounds();
+        } else {
+            // The rasterizer rounds coordinates before stroking, which can turn a corner the
+            // measured bounds saw bevelled into a miter reaching well past them.
+            bounds = shape.getBounds2D();
+            final double reach = MITER_REACH * theShape.getWidth() + 1;
+            bounds.setRect(bounds.getX() - reach, bounds.getY() - reach,
+                           bounds.getWidth() + 2 * reach, bounds.getHeight() + 2 * reach);
+        }
+        return new int[] {(int) Math.floor(bounds.getMinX()) - MARGIN,
+                          (int) Math.floor(bounds.getMinY()) - MARGIN,
+                          (int) Math.ceil(bounds.getMaxX()) + MARGIN,
+                          (int) Math.ceil(bounds.getMaxY()) + MARGIN};
+    }
+
+    /**
+     * Finds the pixels an opaque filled rectangle or ellipse is sure to cover completely.
+     * Only plain PaintShapes qualify, as subclasses draw differently.
+     *
+     * @param theShape The shape.
+     * @return The left, top, right, and bottom of the pixels, the last two exclusive, or
+     * null if the shape is not an opaque fill or covers no whole pixel.
+     */
+    private static int[] interior(final PaintShape theShape) {
+
+        if (theShape.getClass() != PaintShape.class || !theShape.isFilled()
+            || theShape.getWidth() <= 0 || theShape.getFillColor() == null
+            || theShape.getFillColor().getAlpha() != 255) {
+            return null;
+        }
+        final Rectangle2D area;
+        if (theShape.getShape() instanceof Rectangle2D) {
+            area = (Rectangle2D) theShape.getShape();
+        } else if (theShape.getShape() instanceof Ellipse2D) {
+            // The largest rectangle inside an ellipse reaches the ellipse at 45 degrees.
+            final Ellipse2D ellipse = (Ellipse2D) theShape.getShape();
+            final double halfWidth = ellipse.getWidth() / 2 * INSCRIBED;
+            final double halfHeight = ellipse.getHeight() / 2 * INSCRIBED;
+            area = new Rectangle2D.Double(ellipse.getCenterX() - halfWidth,
+                                          ellipse.getCenterY() - halfHeight,
+                                          2 * halfWidth, 2 * halfHeight);
+        } else {
+            return null;
+        }
+        if (!(area.getWidth() > 0 && area.getHeight() > 0)) {
+            return null;
+        }
+        final int[] result = {(int) Math.ceil(area.getMinX()) + MARGIN,
+                              (int) Math.ceil(area.getMinY()) + MARGIN,
+                              (int) Math.floor(area.getMaxX()) - MARGIN,
+                              (int) Math.floor(area.getMaxY()) - MARGIN};
+        if (result[2] <= result[0] || result[3] <= result[1]) {
+            return null;
+        }
+        return result;
+    }
+
+
+    /**
+     * An indexed shape along with its drawing order, the pixels it touches, the pixels it
+     * covers if it is an opaque fill, and the number of later fills that hide it.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Entry {
+
+        // INSTANCE FIELDS
+        /** The indexed shape. */
+        private final PaintShape myShape;
+
+        /** The pixels the shape touches, or null if it draws nothing. */
+        private final int[] myPixels;
+
+        /** The pixels the shape covers completely, or null if it is not an opaque fill. */
+        private final int[] myInterior;
+
+        /** The position of the shape in drawing order. */
+        private long myOrder;
+
+        /** The number of indexed fills drawn after the shape that hide it. */
+        private int myCovers;
+
+
+        /**
+         * Constructor that measures the shape.
+         *
+         * @param theShape The indexed shape.
+         * @param theOrder The position of the shape in drawing order.
+         */
+        Entry(final PaintShape theShape, final long theOrder) {
+
+            myShape = theShape;
+            myOrder = theOrder;
+            myPixels = pixels(theShape);
+            myInterior = interior(theShape);
+        }
+
+        /**
+         * Adds a fill to, or takes it from, this shape's count if the fill is drawn after
+         * the shape and hides it.
+         *
+         * @param theFill The entry of the fill.
+         * @param theDelta 1 to add the fill, -1 to take it away.
+         */
+        void countCover(final Entry theFill, final int theDelta) {
+
+            final int[] interior = theFill.myInterior;
+            if (theFill.myOrder > myOrder && myPixels != null
+                && myPixels[0] >= interior[0] && myPixels[1] >= interior[1]
+                && myPixels[2] <= interior[2] && myPixels[3] <= interior[3]) {
+                myCovers += theDelta;
+            }
+        }
+
+        /**
+         * Determines whether the shape's interior covers too many cells to be stored in
+         * the grid.
+         *
+         * @return Whether the entry belongs in the large list.
+         */
+        boolean isLarge() {
+
+            return ((long) cell(myInterior[2] - 1) - cell(myInterior[0]) + 1)
+                   * ((long) cell(myInterior[3] - 1) - cell(myInterior[1]) + 1) > MAX_CELLS;
+        }
+    }
+}
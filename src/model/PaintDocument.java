@@ -0,0 +1,136 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a drawing: the size of the canvas it was drawn on and its layers,
+ * each holding PaintShapes in the order they were drawn. This is the unit that is saved to
+ * and loaded from disk by PaintDocumentIO.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class PaintDocument {
+
+    // CONSTANTS
+    /** Name of the layer holding the shapes of a document built without layers. */
+    public static final String DEFAULT_LAYER_NAME = "Layer 1";
+
+
+    // INSTANCE FIELDS
+    /** The width of the canvas the document was drawn on. */
+    private final int myWidth;
+
+    /** The height of the canvas the document was drawn on. */
+    private final int myHeight;
+
+    /** The layers of the document, from bottom to top. */
+    private final List<DocumentLayer> myLayers;
+
+    /** The PaintShapes of every layer in drawing order. */
+    private final List<PaintShape> myShapes;
+
+
+    /**
+     * Constructor that stores a defensive copy of the given shapes as a single, fully
+     * opaque layer along with the canvas size.
+     *
+     * @param theWidth The width of the canvas the document was drawn on.
+     * @param theHeight The height of the canvas the document was drawn on.
+     * @param theShapes The PaintShapes of the document in drawing order.
+     */
+    public PaintDocument(final int theWidth, final int theHeight,
+                         final List<PaintShape> theShapes) {
+
+        this(Collections.singletonList(new DocumentLayer(DEFAULT_LAYER_NAME, true, 1,
+                                                         theShapes)), theWidth, theHeight);
+    }
+
+    /**
+     * Constructor that stores the given layers along with the canvas size.
+     *
+     * @param theLayers The layers of the document, from bottom to top.
+     * @param theWidth The width of the canvas the document was drawn on.
+     * @param theHeight The height of the canvas the document was drawn on.
+     */
+    private PaintDocument(final List<DocumentLayer> theLayers, final int theWidth,
+                          final int theHeight) {
+
+        if (theWidth <= 0 || theHeight <= 0) {
+            throw new IllegalArgumentException("Canvas size must be positive: "
+                                               + theWidth + "x" + theHeight);
+        }
+        if (theLayers.isEmpty()) {
+            throw new IllegalArgumentException("A document needs at least one layer");
+        }
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myLayers = Collections.unmodifiableList(new ArrayList<DocumentLayer>(theLayers));
+        if (myLayers.size() == 1) {
+            myShapes = myLayers.get(0).getShapes();
+        } else {
+            final List<PaintShape> shapes = new ArrayList<PaintShape>();
+            for (final DocumentLayer layer: myLayers) {
+                shapes.addAll(layer.getShapes());
+            }
+            myShapes = Collections.unmodifiableList(shapes);
+        }
+    }
+
+    /**
+     * Creates a document made of the given layers.
+     *
+     * @param theWidth The width of the canvas the document was drawn on.
+     * @param theHeight The height of the canvas the document was drawn on.
+     * @param theLayers The layers of the document, from bottom to top; at least one.
+     * @return The new document.
+     */
+    public static PaintDocument ofLayers(final int theWidth, final int theHeight,
+                                         final List<DocumentLayer> theLayers) {
+
+        return new PaintDocument(theLayers, theWidth, theHeight);
+    }
+
+    /**
+     * Accessor method that provides the caller with the width of the canvas.
+     *
+     * @return The width of the canvas the document was drawn on.
+     */
+    public int getWidth() {
+
+        return myWidth;
+    }
+
+    /**
+     * Accessor method that provides the caller with the height of the canvas.
+     *
+     * @return The height of the canvas the document was drawn on.
+     */
+    public int getHeight() {
+
+        return myHeight;
+    }
+
+    /**
+     * Accessor method that provides the caller with the read-only list of layers.
+     *
+     * @return The layers of the document, from bottom to top.
+     */
+    public List<DocumentLayer> getLayers() {
+
+        return myLayers;
+    }
+
+    /**
+     * Accessor method that provides the caller with the read-only list of PaintShapes of
+     * every layer, hidden or not, one layer after another.
+     *
+     * @return The PaintShapes of the document in drawing order.
+     */
+    public List<PaintShape> getShapes() {
+
+        return myShapes;
+    }
+}
@@ -0,0 +1,643 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes PaintDocuments using a compact binary format. A document is stored as
+ * its canvas size followed by each layer's settings and shapes. Lines, rectangles, and
+ * ellipses are stored by their frames, flood fills by their runs of pixels, text by its
+ * string, font, and baseline, and any other Shape as the segments of its PathIterator.
+ * Stamped copies store their offset and the number of their Motif, whose shapes are
+ * written once per document where the motif first appears. Imported pictures store their
+ * frame and the bytes they were decoded from, in the format they were imported in.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class PaintDocumentIO {
+
+    // CONSTANTS
+    /** File extension used for saved PowerPaint documents. */
+    public static final String EXTENSION = "ppaint";
+
+    /** Marker at the beginning of every document ("PPNT"). */
+    private static final int MAGIC = 0x50504E54;
+
+    /** Version of the format written by this class; older versions can still be read. */
+    private static final int VERSION = 6;
+
+    /** First version storing layers; earlier documents hold a single list of shapes. */
+    private static final int LAYERED_VERSION = 3;
+
+    /** Geometry tag for Line2D shapes. */
+    private static final byte LINE = 1;
+
+    /** Geometry tag for Rectangle2D shapes. */
+    private static final byte RECTANGLE = 2;
+
+    /** Geometry tag for Ellipse2D shapes. */
+    private static final byte ELLIPSE = 3;
+
+    /** Geometry tag for arbitrary shapes stored as path segments. */
+    private static final byte PATH = 4;
+
+    /** Geometry tag for flood fills stored as runs of pixels, added in version 2. */
+    private static final byte SPANS = 5;
+
+    /** Geometry tag for text stored as its string, font, and baseline, added in version 4. */
+    private static final byte TEXT = 6;
+
+    /** Tag for stamped copies stored as their motif and offset, added in version 5. */
+    private static final byte STAMP = 7;
+
+    /** Tag for imported pictures stored as their frame and encoded bytes, added in version 6. */
+    private static final byte IMAGE = 8;
+
+    /** Number of coordinates used by each PathIterator segment type. */
+    private static final int[] SEGMENT_COORDS = {2, 2, 4, 6, 0};
+
+
+    // Private constructor to inhibit external instantiation.
+    private PaintDocumentIO() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Reads the document stored in the given file.
+     *
+     * @param theFile The file to read.
+     * @return The document stored in the file.
+     * @throws IOException If the file cannot be read or is not a PowerPaint document.
+     */
+    public static PaintDocument read(final Path theFile) throws IOException {
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(theFile))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a document from the given stream. The stream is not closed.
+     *
+     * @param theStream The stream to read from.
+     * @return The document read from the stream.
+     * @throws IOException If the stream cannot be read or does not hold a document.
+     */
+    public static PaintDocument read(final InputStream theStream) throws IOException {
+
+        final DataInputStream in = new DataInputStream(theStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a PowerPaint document");
+        }
+        final int version = in.readUnsignedShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported document version " + version);
+        }
+        final int width = in.readInt();
+        final int height = in.readInt();
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Corrupt document header");
+        }
+        final List<Motif> motifs = new ArrayList<Motif>();
+        if (version < LAYERED_VERSION) {
+            return new PaintDocument(width, height, readShapes(in, motifs, 0));
+        }
+        final int count = in.readInt();
+        if (count <= 0) {
+            throw new IOException("Corrupt layer count " + count);
+        }
+        final List<DocumentLayer> layers =
+            new ArrayList<DocumentLayer>(Math.min(count, 1 << 8));
+        for (int i = 0; i < count; i++) {
+            final String name = in.readUTF();
+            final boolean visible = in.readBoolean();
+            final float opacity = in.readFloat();
+            if (!(opacity >= 0 && opacity <= 1)) {
+                throw new IOException("Corrupt opacity " + opacity + " of layer " + name);
+            }
+            layers.add(new DocumentLayer(name, visible, opacity, readShapes(in, motifs, 0)));
+        }
+        return PaintDocument.ofLayers(width, height, layers);
+    }
+
+    /**
+     * Reads a count of PaintShapes followed by the PaintShapes themselves.
+     *
+     * @param theInput The input to read from.
+     * @param theMotifs The motifs read so far from the document, by number.
+     * @param theDepth The number of motif definitions the shapes are nested in.
+     * @return The PaintShapes that were read, in order.
+     * @throws IOException If the input cannot be read or holds an unknown geometry.
+     */
+    private static List<PaintShape> readShapes(final DataInput theInput,
+                                               final List<Motif> theMotifs,
+                                               final int theDepth) throws IOException {
+
+        final int count = theInput.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt shape count " + count);
+        }
+        final List<PaintShape> shapes = new ArrayList<PaintShape>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            shapes.add(readShape(theInput, theMotifs, theDepth));
+        }
+        return shapes;
+    }
+
+    /**
+     * Writes the given document to a file, replacing any existing contents.
+     *
+     * @param theDocument The document to write.
+     * @param theFile The file to write to.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(final PaintDocument theDocument, final Path theFile)
+        throws IOException {
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(theFile))) {
+            write(theDocument, out);
+        }
+    }
+
+    /**
+     * Writes the given document to a stream. The stream is flushed but not closed.
+     *
+     * @param theDocument The document to write.
+     * @param theStream The stream to write to.
+     * @throws IOException If the stream cannot be written.
+     */
+    public static void write(final PaintDocument theDocument, final OutputStream theStream)
+        throws IOException {
+
+        final DataOutputStream out = new DataOutputStream(theStream);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(theDocument.getWidth());
+        out.writeInt(theDocument.getHeight());
+        out.writeInt(theDocument.getLayers().size());
+        final Map<Motif, Integer> motifs = new IdentityHashMap<Motif, Integer>();
+        for (final DocumentLayer layer: theDocument.getLayers()) {
+            out.writeUTF(layer.getName());
+            out.writeBoolean(layer.isVisible());
+            out.writeFloat(layer.getOpacity());
+            out.writeInt(layer.getShapes().size());
+            for (final PaintShape shape: layer.getShapes()) {
+                writeShape(shape, out, motifs);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a single PaintShape previously written by writeShape.
+     *
+     * @param theInput The input to read from.
+     * @return The PaintShape that was read.
+     * @throws IOException If the input cannot be read or holds an unknown geometry.
+     */
+    public static PaintShape readShape(final DataInput theInput) throws IOException {
+
+        return readShape(theInput, new ArrayList<Motif>(), 0);
+    }
+
+    /**
+     * Reads a single PaintShape, resolving stamped copies against the motifs read so far.
+     *
+     * @param theInput The input to read from.
+     * @param theMotifs The motifs read so far, by number; motifs defined by the shape are
+     * added to it.
+     * @param theDepth The number of motif definitions the shape is nested in.
+     * @return The PaintShape that was read.
+     * @throws IOException If the input cannot be read or holds a negative stroke width or an
+     * unknown or corrupt geometry.
+     */
+    private static PaintShape readShape(final DataInput theInput,
+                                        final List<Motif> theMotifs,
+                                        final int theDepth) throws IOException {
+
+        final Color color = new Color(theInput.readInt(), true);
+        final Color fillColor = new Color(theInput.readInt(), true);
+        final boolean filled = theInput.readBoolean();
+        final int width = theInput.readInt();
+        if (width < 0) {
+            throw new IOException("Corrupt stroke width " + width);
+        }
+        final byte tag = theInput.readByte();
+        if (tag == STAMP) {
+            return readStamp(theInput, theMotifs, theDepth);
+        }
+        if (tag == IMAGE) {
+            return readImage(theInput);
+        }
+        final Shape geometry = readGeometry(tag, theInput);
+        if (geometry instanceof SpanShape) {
+            return new FillShape((SpanShape) geometry, color);
+        }
+        if (geometry instanceof GlyphText) {
+            return new TextShape((GlyphText) geometry, color);
+        }
+        return new PaintShape(geometry, color, fillColor, filled, width);
+    }
+
+    /**
+     * Writes a single PaintShape so that it can be restored by readShape. The motifs of
+     * stamped copies are written in full.
+     *
+     * @param theShape The PaintShape to write.
+     * @param theOutput The output to write to.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void writeShape(final PaintShape theShape, final DataOutput theOutput)
+        throws IOException {
+
+        writeShape(theShape, theOutput, new IdentityHashMap<Motif, Integer>());
+    }
+
+    /**
+     * Writes a single PaintShape, writing the motif of a stamped copy in full only if it
+     * has not been written before.
+     *
+     * @param theShape The PaintShape to write.
+     * @param theOutput The output to write to.
+     * @param theMotifs The numbers of the motifs written so far; motifs written by the
+     * shape are added to it.
+     * @throws IOException If the output cannot be written.
+     */
+    private static void writeShape(final PaintShape theShape, final DataOutput theOutput,
+                                   final Map<Motif, Integer> theMotifs) throws IOException {
+
+        theOutput.writeInt(theShape.getColor().getRGB());
+        theOutput.writeInt(theShape.getFillColor().getRGB());
+        theOutput.writeBoolean(theShape.isFilled());
+        theOutput.writeInt(theShape.getWidth());
+        if (theShape instanceof StampShape) {
+            writeStamp((StampShape) theShape, theOutput, theMotifs);
+        } else if (theShape instanceof ImageShape) {
+            writeImage((ImageShape) theShape, theOutput);
+        } else {
+            writeGeometry(theShape.getShape(), theOutput);
+        }
+    }
+
+    /**
+     * Reads a stamped copy stored as the number of its motif, the motif's shapes if this
+     * is where the motif first appears, and the copy's offset.
+     *
+     * @param theInput The input to read from.
+     * @param theMotifs The motifs read so far, by number.
+     * @param theDepth The number of motif definitions the copy is nested in.
+     * @return The stamped copy that was read.
+     * @throws IOException If the input cannot be read, refers to an unknown motif, or
+     * nests motifs more than Motif.MAX_DEPTH deep.
+     */
+    private static StampShape readStamp(final DataInput theInput,
+                                        final List<Motif> theMotifs,
+                                        final int theDepth) throws IOException {
+
+        final int number = theInput.readInt();
+        final Motif motif;
+        if (number == theMotifs.size()) {
+            // Checked before the shapes are read so corrupt input cannot overflow the stack.
+            if (theDepth >= Motif.MAX_DEPTH) {
+                throw new IOException("Motif " + number + " is nested too deeply");
+            }
+            // Reserved while its shapes are read so that nested motifs are numbered after it.
+            theMotifs.add(null);
+            final List<PaintShape> shapes = readShapes(theInput, theMotifs, theDepth + 1);
+            if (shapes.isEmpty()) {
+                throw new IOException("Empty motif " + number);
+            }
+            try {
+                motif = new Motif(shapes);
+            } catch (final IllegalArgumentException e) {
+                throw new IOException("Motif " + number + " is nested too deeply", e);
+            }
+            theMotifs.set(number, motif);
+        } else if (number >= 0 && number < theMotifs.size()
+                   && theMotifs.get(number) != null) {
+            motif = theMotifs.get(number);
+        } else {
+            throw new IOException("Unknown motif " + number);
+        }
+        return new StampShape(motif, theInput.readDouble(), theInput.readDouble());
+    }
+
+    /**
+     * Writes a stamped copy so that it can be restored by readStamp.
+     *
+     * @param theStamp The stamped copy to write.
+     * @param theOutput The output to write to.
+     * @param theMotifs The numbers of the motifs written so far.
+     * @throws IOException If the output cannot be written.
+     */
+    private static void writeStamp(final StampShape theStamp, final DataOutput theOutput,
+                                   final Map<Motif, Integer> theMotifs) throws IOException {
+
+        theOutput.writeByte(STAMP);
+        final Integer number = theMotifs.get(theStamp.getMotif());
+        if (number == null) {
+            final List<PaintShape> shapes = theStamp.getMotif().getShapes();
+            theOutput.writeInt(theMotifs.size());
+            theMotifs.put(theStamp.getMotif(), theMotifs.size());
+            theOutput.writeInt(shapes.size());
+            for (final PaintShape shape: shapes) {
+                writeShape(shape, theOutput, theMotifs);
+            }
+        } else {
+            theOutput.writeInt(number);
+        }
+        writeDoubles(theOutput, theStamp.getDeltaX(), theStamp.getDeltaY());
+    }
+
+    /**
+     * Reads an imported picture stored as its frame followed by the length and bytes of
+     * the encoded picture, and decodes the picture.
+     *
+     * @param theInput The input to read from.
+     * @return The imported picture that was read.
+     * @throws IOException If the input cannot be read or the picture cannot be decoded.
+     */
+    private static ImageShape readImage(final DataInput theInput) throws IOException {
+
+        final Rectangle2D frame = new Rectangle2D.Double(theInput.readDouble(),
+                                                         theInput.readDouble(),
+                                                         theInput.readDouble(),
+                                                         theInput.readDouble());
+        final int length = theInput.readInt();
+        if (length <= 0) {
+            throw new IOException("Corrupt picture length " + length);
+        }
+        // Grown as bytes arrive so that a corrupt length cannot force a huge allocation.
+        byte[] encoded = new byte[Math.min(length, 1 << 16)];
+        int read = 0;
+        while (read < length) {
+            if (read == encoded.length) {
+                encoded = Arrays.copyOf(encoded, (int) Math.min(length, 2L * read));
+            }
+            theInput.readFully(encoded, read, encoded.length - read);
+            read = encoded.length;
+        }
+        return new ImageShape(RasterImage.decode(encoded), frame);
+    }
+
+    /**
+     * Writes an imported picture so that it can be restored by readImage.
+     *
+     * @param theImage The imported picture to write.
+     * @param theOutput The output to write to.
+     * @throws IOException If the output cannot be written.
+     */
+    private static void writeImage(final ImageShape theImage, final DataOutput theOutput)
+        throws IOException {
+
+        final Rectangle2D frame = theImage.getFrame();
+        final byte[] encoded = theImage.getImage().getEncoded();
+        theOutput.writeByte(IMAGE);
+        writeDoubles(theOutput, frame.getX(), frame.getY(), frame.getWidth(), frame.getHeight());
+        theOutput.writeInt(encoded.length);
+        theOutput.write(encoded);
+    }
+
+    /**
+     * Reads the geometry of a PaintShape following its tag.
+     *
+     * @param theTag The tag of the geometry, already read.
+     * @param theInput The input to read from.
+     * @return The Shape that was read.
+     * @throws IOException If the input cannot be read or holds an unknown geometry.
+     */
+    private static Shape readGeometry(final byte theTag, final DataInput theInput)
+        throws IOException {
+
+        final Shape result;
+        if (theTag == LINE) {
+            result = new Line2D.Double(theInput.readDouble(), theInput.readDouble(),
+                                       theInput.readDouble(), theInput.readDouble());
+        } else if (theTag == RECTANGLE) {
+            result = new Rectangle2D.Double(theInput.readDouble(), theInput.readDouble(),
+                                            theInput.readDouble(), theInput.readDouble());
+        } else if (theTag == ELLIPSE) {
+            result = new Ellipse2D.Double(theInput.readDouble(), theInput.readDouble(),
+                                          theInput.readDouble(), theInput.readDouble());
+        } else if (theTag == PATH) {
+            result = readPath(theInput);
+        } else if (theTag == SPANS) {
+            result = readSpans(theInput);
+        } else if (theTag == TEXT) {
+            final String text = theInput.readUTF();
+            final String name = theInput.readUTF();
+            final int style = theInput.readInt();
+            final float size = theInput.readFloat();
+            if (!(size > 0) || Float.isInfinite(size)) {
+                throw new IOException("Corrupt font size " + size);
+            }
+            result = new GlyphText(text, new Font(name, style, 1).deriveFont(size),
+                                   theInput.readDouble(), theInput.readDouble());
+        } else {
+            throw new IOException("Unknown geometry tag " + theTag);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a Path2D stored as its winding rule and segments.
+     *
+     * @param theInput The input to read from.
+     * @return The path that was read.
+     * @throws IOException If the input cannot be read or holds an unknown winding rule,
+     * segment count, or segment, or a path that does not start with a move.
+     */
+    private static Shape readPath(final DataInput theInput) throws IOException {
+
+        final int rule = theInput.readByte();
+        if (rule != Path2D.WIND_EVEN_ODD && rule != Path2D.WIND_NON_ZERO) {
+            throw new IOException("Unknown winding rule " + rule);
+        }
+        final int segments = theInput.readInt();
+        if (segments < 0) {
+            throw new IOException("Corrupt segment count " + segments);
+        }
+        // The path grows as segments arrive, so a corrupt count cannot force a huge one.
+        final Path2D.Double path =
+            new Path2D.Double(rule, Math.max(Math.min(segments, 1 << 16), 2));
+        final double[] coords = new double[6];
+        for (int i = 0; i < segments; i++) {
+            final int type = theInput.readByte();
+            if (type < 0 || type >= SEGMENT_COORDS.length) {
+                throw new IOException("Unknown path segment " + type);
+            }
+            if (i == 0 && type != PathIterator.SEG_MOVETO) {
+                throw new IOException("Path does not start with a move");
+            }
+            for (int c = 0; c < SEGMENT_COORDS[type]; c++) {
+                coords[c] = theInput.readDouble();
+            }
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                    path.moveTo(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    path.lineTo(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    path.quadTo(coords[0], coords[1], coords[2], coords[3]);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    path.curveTo(coords[0], coords[1], coords[2], coords[3],
+                                 coords[4], coords[5]);
+                    break;
+                default:
+                    path.closePath();
+                    break;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Reads a SpanShape stored as its number of runs followed by each run.
+     *
+     * @param theInput The input to read from.
+     * @return The runs that were read.
+     * @throws IOException If the input cannot be read or the runs are out of order.
+     */
+    private static Shape readSpans(final DataInput theInput) throws IOException {
+
+        final int count = theInput.readInt();
+        if (count < 0 || count > Integer.MAX_VALUE / 3) {
+            throw new IOException("Corrupt run count " + count);
+        }
+        // Grown as runs arrive so that a corrupt count cannot force a huge allocation.
+        int[] runs = new int[3 * Math.min(count, 1 << 16)];
+        for (int i = 0; i < 3 * count; i += 3) {
+            if (i == runs.length) {
+                runs = Arrays.copyOf(runs, (int) Math.min(3L * count, 2L * runs.length));
+            }
+            runs[i] = theInput.readInt();
+            runs[i + 1] = theInput.readInt();
+            runs[i + 2] = theInput.readInt();
+            if (runs[i + 2] < runs[i + 1]
+                || (i > 0 && (runs[i] < runs[i - 3]
+                              || (runs[i] == runs[i - 3] && runs[i + 1] <= runs[i - 1])))) {
+                throw new IOException("Corrupt run at " + i / 3);
+            }
+        }
+        return new SpanShape(runs);
+    }
+
+    /**
+     * Writes the tagged geometry of a PaintShape.
+     *
+     * @param theShape The Shape to write.
+     * @param theOutput The output to write to.
+     * @throws IOException If the output cannot be written.
+     */
+    private static void writeGeometry(final Shape theShape, final DataOutput theOutput)
+        throws IOException {
+
+        if (theShape instanceof Line2D) {
+            final Line2D line = (Line2D) theShape;
+            theOutput.writeByte(LINE);
+            writeDoubles(theOutput, line.getX1(), line.getY1(), line.getX2(), line.getY2());
+        } else if (theShape instanceof Rectangle2D) {
+            final Rectangle2D rectangle = (Rectangle2D) theShape;
+            theOutput.writeByte(RECTANGLE);
+            writeDoubles(theOutput, rectangle.getX(), rectangle.getY(),
+                         rectangle.getWidth(), rectangle.getHeight());
+        } else if (theShape instanceof Ellipse2D) {
+            final Ellipse2D ellipse = (Ellipse2D) theShape;
+            theOutput.writeByte(ELLIPSE);
+            writeDoubles(theOutput, ellipse.getX(), ellipse.getY(),
+                         ellipse.getWidth(), ellipse.getHeight());
+        } else if (theShape instanceof SpanShape) {
+            final int[] runs = ((SpanShape) theShape).getRuns();
+            theOutput.writeByte(SPANS);
+            theOutput.writeInt(runs.length / 3);
+            for (final int value: runs) {
+                theOutput.writeInt(value);
+            }
+        } else if (theShape instanceof GlyphText) {
+            final GlyphText text = (GlyphText) theShape;
+            theOutput.writeByte(TEXT);
+            theOutput.writeUTF(text.getText());
+            theOutput.writeUTF(text.getFont().getName());
+            theOutput.writeInt(text.getFont().getStyle());
+            theOutput.writeFloat(text.getFont().getSize2D());
+            writeDoubles(theOutput, text.getX(), text.getY());
+        } else {
+            writePath(theShape, theOutput);
+        }
+    }
+
+    /**
+     * Writes an arbitrary Shape as its winding rule followed by its path segments.
+     *
+     * @param theShape The Shape to write.
+     * @param theOutput The output to write to.
+     * @throws IOException If the output cannot be written.
+     */
+    private static void writePath(final Shape theShape, final DataOutput theOutput)
+        throws IOException {
+
+        final List<double[]> segments = new ArrayList<double[]>();
+        final double[] coords = new double[6];
+        final PathIterator iterator = theShape.getPathIterator(null);
+        final int rule = iterator.getWindingRule();
+        while (!iterator.isDone()) {
+            final int type = iterator.currentSegment(coords);
+            final double[] segment = new double[SEGMENT_COORDS[type] + 1];
+            segment[0] = type;
+            System.arraycopy(coords, 0, segment, 1, SEGMENT_COORDS[type]);
+            segments.add(segment);
+            iterator.next();
+        }
+        theOutput.writeByte(PATH);
+        theOutput.writeByte(rule);
+        theOutput.writeInt(segments.size());
+        for (final double[] segment: segments) {
+            theOutput.writeByte((int) segment[0]);
+            for (int i = 1; i < segment.length; i++) {
+                theOutput.writeDouble(segment[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes each of the given values as a double.
+     *
+     * @param theOutput The output to write to.
+     * @param theValues The values to write.
+     * @throws IOException If the output cannot be written.
+     */
+    private static void writeDoubles(final DataOutput theOutput, final double... theValues)
+        throws IOException {
+
+        for (final double value: theValues) {
+            theOutput.writeDouble(value);
+        }
+    }
+}
@@ -1,7 +1,18 @@
 package model;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 
 /**
  * Object that stores the Shape, Color, and stroke width of a shape made within the
@@ -13,6 +24,14 @@ import java.awt.Shape;
  */
 public class PaintShape {
 
+    // CONSTANTS
+    /** Widest stroke shared between PaintShapes rather than made for each draw. */
+    private static final int MAX_SHARED_WIDTH = 64;
+    
+    /** Strokes of the common widths, shared so that drawing a shape allocates none. */
+    private static final BasicStroke[] STROKES = createStrokes();
+    
+    
 	// INSTANCE FIELDS
     /** The Shape drawn. */
     private final Shape myShape;
@@ -29,6 +48,9 @@ public class PaintShape {
     /** The stroke width of the PaintShape. */
     private final int myWidth;
     
+    /** Area covered by the PaintShape when drawn, computed on first use. */
+    private volatile Rectangle2D myBounds;
+    
     
     /**
      * Constructor that stores initializes the instance fields of the PaintShape to the given
@@ -47,6 +69,207 @@ public class PaintShape {
         myWidth = theWidth;
     }
     
+    /**
+     * Creates a copy of this PaintShape moved by the given offset. The copy's bounds are
+     * derived from this PaintShape's bounds instead of being measured again.
+     * 
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved copy.
+     */
+    public PaintShape translated(final double theDeltaX, final double theDeltaY) {
+        
+        final PaintShape result = new PaintShape(translate(myShape, theDeltaX, theDeltaY),
+                                                 myColor, myFillColor, myFillStatus, myWidth);
+        final Rectangle2D bounds = getBounds();
+        result.myBounds = new Rectangle2D.Double(bounds.getX() + theDeltaX,
+                                                 bounds.getY() + theDeltaY,
+                                                 bounds.getWidth(), bounds.getHeight());
+        return result;
+    }
+    
+    /**
+     * Draws the PaintShape: its stroke, then its interior if it is filled. PaintShapes with a
+     * stroke width of zero are not drawn.
+     * 
+     * @param theGraphics The graphics context to draw into.
+     */
+    public void draw(final Graphics2D theGraphics) {
+        
+        if (myWidth > 0) {
+            theGraphics.setPaint(myColor);
+            theGraphics.setStroke(stroke(myWidth));
+            theGraphics.draw(myShape);
+            if (myFillStatus) {
+                theGraphics.setColor(myFillColor);
+                theGraphics.fill(myShape);
+            }
+        }
+    }
+    
+    /**
+     * Creates the shared strokes of every width up to MAX_SHARED_WIDTH.
+     * 
+     * @return The strokes, indexed by width.
+     */
+    private static BasicStroke[] createStrokes() {
+        
+        final BasicStroke[] result = new BasicStroke[MAX_SHARED_WIDTH + 1];
+        for (int width = 0; width < result.length; width++) {
+            result[width] = new BasicStroke(width);
+        }
+        return result;
+    }
+    
+    /**
+     * Provides the caller with a stroke of the given width, shared for common widths.
+     * 
+     * @param theWidth The stroke width.
+     * @return The stroke.
+     */
+    private static BasicStroke stroke(final int theWidth) {
+        
+        if (theWidth < STROKES.length) {
+            return STROKES[theWidth];
+        }
+        return new BasicStroke(theWidth);
+    }
+    
+    /**
+     * Determines whether the given point touches the drawn PaintShape: its stroke, or its
+     * interior if it is filled. The cached bounds reject distant points before the exact
+     * geometry is consulted.
+     * 
+     * @param thePoint The point to test.
+     * @param theTolerance How far from the stroke a point may be and still count as a hit.
+     * @return Whether the point hits the PaintShape.
+     */
+    public boolean contains(final Point2D thePoint, final double theTolerance) {
+        
+        final Rectangle2D bounds = getBounds();
+        if (bounds.isEmpty()
+            || thePoint.getX() < bounds.getMinX() - theTolerance
+            || thePoint.getX() > bounds.getMaxX() + theTolerance
+            || thePoint.getY() < bounds.getMinY() - theTolerance
+            || thePoint.getY() > bounds.getMaxY() + theTolerance) {
+            return false;
+        }
+        if (myFillStatus && myShape.contains(thePoint)) {
+            return true;
+        }
+        final float reach = (float) (myWidth + 2 * theTolerance);
+        if (myShape instanceof Line2D) {
+            return ((Line2D) myShape).ptSegDist(thePoint) <= reach / 2;
+        }
+        return new BasicStroke(reach).createStrokedShape(myShape).contains(thePoint);
+    }
+    
+    /**
+     * Determines whether the drawn PaintShape, its stroke or its interior if it is filled,
+     * overlaps the given region. The cached bounds reject distant regions before the exact
+     * geometry is compared.
+     * 
+     * @param theRegion The region to test.
+     * @return Whether the PaintShape overlaps the region.
+     */
+    public boolean intersects(final Shape theRegion) {
+        
+        final Rectangle2D bounds = getBounds();
+        if (bounds.isEmpty() || !bounds.intersects(theRegion.getBounds2D())) {
+            return false;
+        }
+        final Area drawn = new Area(new BasicStroke(myWidth).createStrokedShape(myShape));
+        if (myFillStatus) {
+            drawn.add(new Area(myShape));
+        }
+        drawn.intersect(new Area(theRegion));
+        return !drawn.isEmpty();
+    }
+    
+    /**
+     * Provides the caller with the points that new shapes may snap to: the end of every
+     * segment of the outline, such as the ends of a line, the corners of a rectangle, or
+     * the four extremes of an ellipse. Curve control points are left out, and a closing
+     * point that repeats the start is reported once. PaintShapes that are not drawn have
+     * no snap points.
+     * 
+     * @return The x and y coordinates of each snap point, one pair after another.
+     */
+    public double[] getSnapPoints() {
+        
+        if (myWidth <= 0) {
+            return new double[0];
+        }
+        double[] result = new double[8];
+        int count = 0;
+        final double[] coordinates = new double[6];
+        double startX = 0;
+        double startY = 0;
+        for (final PathIterator path = myShape.getPathIterator(null); !path.isDone();
+             path.next()) {
+            final int type = path.currentSegment(coordinates);
+            final int end;
+            if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+                end = 0;
+            } else if (type == PathIterator.SEG_QUADTO) {
+                end = 2;
+            } else if (type == PathIterator.SEG_CUBICTO) {
+                end = 4;
+            } else {
+                continue;
+            }
+            final double x = coordinates[end];
+            final double y = coordinates[end + 1];
+            if (type == PathIterator.SEG_MOVETO) {
+                startX = x;
+                startY = y;
+            } else if (x == startX && y == startY
+                       || count > 0 && x == result[count - 2] && y == result[count - 1]) {
+                continue;
+            }
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = x;
+            result[count++] = y;
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    /**
+     * Creates a copy of a Shape moved by the given offset, keeping its class where possible
+     * so that it is still recognized as a line, rectangle, or ellipse.
+     * 
+     * @param theShape The Shape to move.
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved copy.
+     */
+    protected static Shape translate(final Shape theShape, final double theDeltaX,
+                                     final double theDeltaY) {
+        
+        final Shape result;
+        if (theShape instanceof Line2D) {
+            final Line2D line = (Line2D) theShape;
+            result = new Line2D.Double(line.getX1() + theDeltaX, line.getY1() + theDeltaY,
+                                       line.getX2() + theDeltaX, line.getY2() + theDeltaY);
+        } else if (theShape instanceof Rectangle2D) {
+            final Rectangle2D rectangle = (Rectangle2D) theShape;
+            result = new Rectangle2D.Double(rectangle.getX() + theDeltaX,
+                                            rectangle.getY() + theDeltaY,
+                                            rectangle.getWidth(), rectangle.getHeight());
+        } else if (theShape instanceof Ellipse2D) {
+            final Ellipse2D ellipse = (Ellipse2D) theShape;
+            result = new Ellipse2D.Double(ellipse.getX() + theDeltaX,
+                                          ellipse.getY() + theDeltaY,
+                                          ellipse.getWidth(), ellipse.getHeight());
+        } else {
+            result = new Path2D.Double(theShape,
+                AffineTransform.getTranslateInstance(theDeltaX, theDeltaY));
+        }
+        return result;
+    }
+    
     /**
      * Accessor method that provides the caller with the stored Shape.
      * 
@@ -97,4 +320,50 @@ public class PaintShape {
         
         return myWidth;
     }
+    
+    /**
+     * Provides the caller with a rectangle enclosing every pixel the PaintShape touches when
+     * drawn, including its stroke and anti-aliasing. The rectangle is computed once and
+     * shared, so it must not be modified. PaintShapes with a stroke width of zero are not
+     * drawn and have empty bounds.
+     * 
+     * @return The drawn bounds of the PaintShape.
+     */
+    public Rectangle2D getBounds() {
+        
+        Rectangle2D result = myBounds;
+        if (result == null) {
+            result = computeBounds();
+            myBounds = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Computes the drawn bounds of the PaintShape. Rectangles, ellipses, and lines never
+     * extend more than the stroke width past their geometry, so they are padded directly;
+     * the stroke of any other Shape is measured exactly because miter joins can reach
+     * much further. Subclasses that draw differently override this along with draw.
+     * 
+     * @return The drawn bounds of the PaintShape.
+     */
+    protected Rectangle2D computeBounds() {
+        
+        if (myWidth <= 0) {
+            return new Rectangle2D.Double();
+        }
+        final Rectangle2D result;
+        if (myShape instanceof Rectangle2D || myShape instanceof Ellipse2D
+            || myShape instanceof Line2D) {
+            result = myShape.getBounds2D();
+            result.setRect(result.getX() - myWidth, result.getY() - myWidth,
+                           result.getWidth() + 2 * myWidth, result.getHeight() + 2 * myWidth);
+        } else {
+            result = new BasicStroke(myWidth).createStrokedShape(myShape).getBounds2D();
+        }
+        // One extra pixel on each side for anti-aliasing.
+        result.setRect(result.getX() - 1, result.getY() - 1,
+                       result.getWidth() + 2, result.getHeight() + 2);
+        return result;
+    }
 }
@@ -16,7 +16,7 @@ public class PencilTool extends AbstractTool {
 	
 	// INSTANCE FIELDS
 	/** The current Path being drawn by the user. */
-	Path2D.Double myShape;
+	Path2D.Double myShape = new Path2D.Double();
 	
 	
 	@Override
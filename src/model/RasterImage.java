@@ -0,0 +1,589 @@
+package model;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Immutable decoded picture shared by every ImageShape that shows it. Besides the encoded
+ * bytes it was decoded from, which are what documents store, the picture is kept as a
+ * chain of levels, each half the width and height of the one before, down to a single
+ * pixel. Drawing picks the level closest to the scale the picture is drawn at and reads
+ * only the part of it that is visible, and a picture drawn at the same size again is
+ * copied from a resampled image of that size, so drawing a picture costs about as much
+ * as copying the area it covers on the screen, whatever its resolution.
+ *
+ * <p>Levels of more than RESIDENT_PIXELS pixels, such as the full resolution of a photo,
+ * are written to a temporary file and mapped into memory instead of being kept on the
+ * heap, so the operating system reads in only the pages that are drawn and can drop them
+ * again when memory is short. Setting the system property powerpaint.spillImages to false
+ * keeps every level on the heap.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class RasterImage {
+
+    // CONSTANTS
+    /** System property that keeps every level on the heap when set to false. */
+    public static final String SPILL_PROPERTY = "powerpaint.spillImages";
+
+    /** Levels of at most this many pixels are kept on the heap. */
+    private static final long RESIDENT_PIXELS = 1L << 20;
+
+    /** Pictures drawn with at most this many pixels are resampled once and copied. */
+    private static final long MAX_RESAMPLED_PIXELS = 1L << 22;
+
+    /** Rows of the resampled picture drawn from a level at a time. */
+    private static final int BAND = 256;
+
+    /** Pictures with more pixels than this are refused rather than decoded. */
+    private static final long MAX_PIXELS = 1L << 28;
+
+    /** Most bytes of heap decoding takes per pixel: the decoded picture, its ints, a level. */
+    private static final long DECODING_BYTES = 16;
+
+    /** Bits in a color channel. */
+    private static final int CHANNEL = 8;
+
+    /** The largest value of a color channel. */
+    private static final int CHANNEL_MAX = 0xFF;
+
+
+    // INSTANCE FIELDS
+    /** The bytes the picture was decoded from, in their original format. */
+    private final byte[] myEncoded;
+
+    /** The levels, from full resolution down to a single pixel. */
+    private final Level[] myLevels;
+
+    /** The picture resampled to the size it was last drawn at, or null; guarded by this. */
+    private BufferedImage myResampled;
+
+
+    /**
+     * Constructor that stores the encoded bytes and the levels made from them.
+     *
+     * @param theEncoded The bytes the picture was decoded from.
+     * @param theLevels The levels, from full resolution down.
+     */
+    private RasterImage(final byte[] theEncoded, final List<Level> theLevels) {
+
+        myEncoded = theEncoded;
+        myLevels = theLevels.toArray(new Level[theLevels.size()]);
+    }
+
+    /**
+     * Decodes a picture in any format ImageIO reads, such as PNG, JPEG, GIF, or BMP, and
+     * makes its levels. Decoding a large picture takes a while, so this is best called
+     * off the event dispatch thread.
+     *
+     * @param theEncoded The encoded picture, which is kept and must not be modified.
+     * @return The decoded picture.
+     * @throws IOException If the bytes do not hold a picture that can be decoded, or the
+     * picture has too many pixels to decode in the heap.
+     */
+    public static RasterImage decode(final byte[] theEncoded) throws IOException {
+
+        final BufferedImage decoded = read(theEncoded);
+        final int width = decoded.getWidth();
+        final int height = decoded.getHeight();
+        int[] pixels = decoded.getRGB(0, 0, width, height, null, 0, width);
+        // Opaque pictures are drawn without blending, which is much faster.
+        final int type;
+        if (decoded.getColorModel().hasAlpha()) {
+            type = BufferedImage.TYPE_INT_ARGB_PRE;
+            premultiply(pixels);
+        } else {
+            type = BufferedImage.TYPE_INT_RGB;
+        }
+        final boolean spill = !"false".equalsIgnoreCase(System.getProperty(SPILL_PROPERTY));
+        final List<Level> levels = new ArrayList<Level>();
+        int levelWidth = width;
+        int levelHeight = height;
+        while (true) {
+            levels.add(Level.of(pixels, levelWidth, levelHeight, type, spill));
+            if (levelWidth == 1 && levelHeight == 1) {
+                break;
+            }
+            final int halfWidth = Math.max(1, (levelWidth + 1) / 2);
+            final int halfHeight = Math.max(1, (levelHeight + 1) / 2);
+            pixels = halve(pixels, levelWidth, levelHeight, halfWidth, halfHeight);
+            levelWidth = halfWidth;
+            levelHeight = halfHeight;
+        }
+        return new RasterImage(theEncoded, levels);
+    }
+
+    /**
+     * Decodes the first picture of the given bytes. Its size is read from its header and
+     * checked before its pixels are decoded, so that a small file declaring a huge picture
+     * is refused before it can fill the heap.
+     *
+     * @param theEncoded The encoded picture.
+     * @return The decoded picture.
+     * @throws IOException If the bytes do not hold a picture that can be decoded, or the
+     * picture has too many pixels.
+     */
+    private static BufferedImage read(final byte[] theEncoded) throws IOException {
+
+        final ImageInputStream input =
+            ImageIO.createImageInputStream(new ByteArrayInputStream(theEncoded));
+        if (input == null) {
+            throw new IOException("Not a picture in a known format");
+        }
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("Not a picture in a known format");
+        }
+        final ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            final int width = reader.getWidth(0);
+            final int height = reader.getHeight(0);
+            final long limit = Math.min(MAX_PIXELS,
+                                        Runtime.getRuntime().maxMemory() / DECODING_BYTES);
+            if ((long) width * height > limit) {
+                throw new IOException("Picture too large: " + width + " x " + height);
+            }
+            return reader.read(0);
+        } catch (final RuntimeException e) {
+            // Decoders report some corrupt pictures with unchecked exceptions.
+            throw new IOException("Corrupt picture: " + e.getMessage(), e);
+        } finally {
+            reader.dispose();
+            input.close();
+        }
+    }
+
+    /**
+     * Provides the caller with the bytes the picture was decoded from.
+     *
+     * @return The shared bytes, which must not be modified.
+     */
+    public byte[] getEncoded() {
+
+        return myEncoded;
+    }
+
+    /**
+     * Provides the caller with the width of the picture at full resolution.
+     *
+     * @return The width in pixels.
+     */
+    public int getWidth() {
+
+        return myLevels[0].myWidth;
+    }
+
+    /**
+     * Provides the caller with the height of the picture at full resolution.
+     *
+     * @return The height in pixels.
+     */
+    public int getHeight() {
+
+        return myLevels[0].myHeight;
+    }
+
+    /**
+     * Provides the caller with the number of levels of the picture.
+     *
+     * @return The number of levels, the first being full resolution.
+     */
+    public int getLevels() {
+
+        return myLevels.length;
+    }
+
+    /**
+     * Provides the caller with the bytes of the picture's pixels held on the heap.
+     *
+     * @return The bytes of the levels that were not written to a file and of the
+     * resampled picture.
+     */
+    public synchronized long getResidentBytes() {
+
+        long result = 0;
+        for (final Level level: myLevels) {
+            if (level.myImage != null) {
+                result += (long) Integer.BYTES * level.myWidth * level.myHeight;
+            }
+        }
+        if (myResampled != null) {
+            result += (long) Integer.BYTES * myResampled.getWidth() * myResampled.getHeight();
+        }
+        return result;
+    }
+
+    /**
+     * Provides the caller with the level drawn when the picture is shown at the given
+     * scale: the smallest level with at least one pixel for each pixel drawn.
+     *
+     * @param theScale Device pixels per pixel of the full-resolution picture.
+     * @return The number of the level, 0 being full resolution.
+     */
+    public int levelFor(final double theScale) {
+
+        if (!(theScale > 0) || theScale >= 1) {
+            return 0;
+        }
+        final int level = (int) Math.floor(-Math.log(theScale) / Math.log(2));
+        return Math.max(0, Math.min(level, myLevels.length - 1));
+    }
+
+    /**
+     * Draws the picture stretched over the given frame, through the graphics context's
+     * transform and within its clip. Where the transform neither rotates nor shears and
+     * the drawn picture is small enough, the picture is resampled once to its drawn size
+     * and copied from then on, until it is drawn at another size; otherwise only the
+     * visible part of the level picked for the drawn scale is read and filtered.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theFrame The rectangle the picture fills.
+     */
+    void draw(final Graphics2D theGraphics, final Rectangle2D theFrame) {
+
+        if (theFrame.isEmpty()) {
+            return;
+        }
+        final AffineTransform transform = theGraphics.getTransform();
+        if ((transform.getType() & ~(AffineTransform.TYPE_TRANSLATION
+                                     | AffineTransform.TYPE_MASK_SCALE)) == 0
+            && transform.getScaleX() > 0 && transform.getScaleY() > 0) {
+            final double deviceX = transform.getTranslateX()
+                                   + theFrame.getX() * transform.getScaleX();
+            final double deviceY = transform.getTranslateY()
+                                   + theFrame.getY() * transform.getScaleY();
+            final int width = (int) Math.round(theFrame.getWidth() * transform.getScaleX());
+            final int height = (int) Math.round(theFrame.getHeight() * transform.getScaleY());
+            if (width > 0 && height > 0 && (long) width * height <= MAX_RESAMPLED_PIXELS) {
+                theGraphics.setTransform(new AffineTransform());
+                try {
+                    theGraphics.drawImage(resampled(width, height), (int) Math.round(deviceX),
+                                          (int) Math.round(deviceY), null);
+                } finally {
+                    theGraphics.setTransform(transform);
+                }
+                return;
+            }
+        }
+        final double scaleX = Math.hypot(transform.getScaleX(), transform.getShearY())
+                              * theFrame.getWidth() / getWidth();
+        final double scaleY = Math.hypot(transform.getShearX(), transform.getScaleY())
+                              * theFrame.getHeight() / getHeight();
+        drawLevel(theGraphics, theFrame, myLevels[levelFor(Math.max(scaleX, scaleY))]);
+    }
+
+    /**
+     * Provides the caller with the picture resampled to the given size, resampling it
+     * unless it was last resampled to that size. Large levels are read a band at a time
+     * so that no more than a band of a mapped level is copied at once.
+     *
+     * @param theWidth The width to resample to.
+     * @param theHeight The height to resample to.
+     * @return The resampled picture, which must not be modified.
+     */
+    private synchronized BufferedImage resampled(final int theWidth, final int theHeight) {
+
+        BufferedImage result = myResampled;
+        if (result == null || result.getWidth() != theWidth
+            || result.getHeight() != theHeight) {
+            final Level level = myLevels[levelFor(Math.max((double) theWidth / getWidth(),
+                                                           (double) theHeight / getHeight()))];
+            result = new BufferedImage(theWidth, theHeight, level.myType);
+            final Graphics2D g2d = result.createGraphics();
+            try {
+                final Rectangle2D frame = new Rectangle2D.Double(0, 0, theWidth, theHeight);
+                for (int y = 0; y < theHeight; y += BAND) {
+                    g2d.setClip(0, y, theWidth, Math.min(BAND, theHeight - y));
+                    drawLevel(g2d, frame, level);
+                }
+            } finally {
+                g2d.dispose();
+            }
+            myResampled = result;
+        }
+        return result;
+    }
+
+    /**
+     * Draws the visible part of a level stretched over the given frame, filtered
+     * bilinearly.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theFrame The rectangle the picture fills.
+     * @param theLevel The level to draw.
+     */
+    private static void drawLevel(final Graphics2D theGraphics, final Rectangle2D theFrame,
+                                  final Level theLevel) {
+
+        Rectangle2D visible = theFrame;
+        final Rectangle clip = theGraphics.getClipBounds();
+        if (clip != null) {
+            visible = theFrame.createIntersection(clip);
+            if (visible.isEmpty()) {
+                return;
+            }
+        }
+        final double toLevelX = theLevel.myWidth / theFrame.getWidth();
+        final double toLevelY = theLevel.myHeight / theFrame.getHeight();
+        // One more pixel on each side, which bilinear filtering blends into the edge.
+        final int x1 = Math.max(0, (int) Math.floor(
+            (visible.getMinX() - theFrame.getX()) * toLevelX) - 1);
+        final int y1 = Math.max(0, (int) Math.floor(
+            (visible.getMinY() - theFrame.getY()) * toLevelY) - 1);
+        final int x2 = Math.min(theLevel.myWidth, (int) Math.ceil(
+            (visible.getMaxX() - theFrame.getX()) * toLevelX) + 1);
+        final int y2 = Math.min(theLevel.myHeight, (int) Math.ceil(
+            (visible.getMaxY() - theFrame.getY()) * toLevelY) + 1);
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+
+        final AffineTransform transform = theGraphics.getTransform();
+        final Object interpolation =
+            theGraphics.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        theGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                     RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        theGraphics.translate(theFrame.getX(), theFrame.getY());
+        theGraphics.scale(1 / toLevelX, 1 / toLevelY);
+        try {
+            theLevel.draw(theGraphics, x1, y1, x2, y2);
+        } finally {
+            theGraphics.setTransform(transform);
+            // Java2D draws images nearest neighbor unless told otherwise.
+            theGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                interpolation == null ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                                      : interpolation);
+        }
+    }
+
+    /**
+     * Converts pixels from ARGB to premultiplied ARGB in place, so that averaging them
+     * weighs each color by how opaque it is.
+     *
+     * @param thePixels The pixels.
+     */
+    private static void premultiply(final int[] thePixels) {
+
+        for (int i = 0; i < thePixels.length; i++) {
+            final int pixel = thePixels[i];
+            final int alpha = pixel >>> (3 * CHANNEL);
+            if (alpha != CHANNEL_MAX) {
+                thePixels[i] = alpha << (3 * CHANNEL)
+                    | scale(pixel >> (2 * CHANNEL), alpha) << (2 * CHANNEL)
+                    | scale(pixel >> CHANNEL, alpha) << CHANNEL
+                    | scale(pixel, alpha);
+            }
+        }
+    }
+
+    /**
+     * Multiplies a color channel by an alpha, rounding to the nearest value.
+     *
+     * @param theChannel The pixel holding the channel in its lowest byte.
+     * @param theAlpha The alpha, from 0 to 255.
+     * @return The scaled channel.
+     */
+    private static int scale(final int theChannel, final int theAlpha) {
+
+        return ((theChannel & CHANNEL_MAX) * theAlpha + CHANNEL_MAX / 2) / CHANNEL_MAX;
+    }
+
+    /**
+     * Makes the next level from a level by averaging each square of two by two pixels. A
+     * level with an odd width or height repeats its last column or row.
+     *
+     * @param thePixels The premultiplied pixels of the level, row by row.
+     * @param theWidth The width of the level.
+     * @param theHeight The height of the level.
+     * @param theHalfWidth The width of the next level.
+     * @param theHalfHeight The height of the next level.
+     * @return The premultiplied pixels of the next level.
+     */
+    private static int[] halve(final int[] thePixels, final int theWidth, final int theHeight,
+                               final int theHalfWidth, final int theHalfHeight) {
+
+        final int[] result = new int[theHalfWidth * theHalfHeight];
+        for (int y = 0; y < theHalfHeight; y++) {
+            final int top = Math.min(2 * y, theHeight - 1) * theWidth;
+            final int bottom = Math.min(2 * y + 1, theHeight - 1) * theWidth;
+            for (int x = 0; x < theHalfWidth; x++) {
+                final int left = Math.min(2 * x, theWidth - 1);
+                final int right = Math.min(2 * x + 1, theWidth - 1);
+                final int a = thePixels[top + left];
+                final int b = thePixels[top + right];
+                final int c = thePixels[bottom + left];
+                final int d = thePixels[bottom + right];
+                int pixel = 0;
+                for (int shift = 0; shift < 4 * CHANNEL; shift += CHANNEL) {
+                    final int sum = (a >>> shift & CHANNEL_MAX) + (b >>> shift & CHANNEL_MAX)
+                                    + (c >>> shift & CHANNEL_MAX) + (d >>> shift & CHANNEL_MAX);
+                    pixel |= (sum + 2) / 4 << shift;
+                }
+                result[y * theHalfWidth + x] = pixel;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * One level of a picture, held either as an image on the heap or as pixels mapped
+     * from a temporary file.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Level {
+
+        // INSTANCE FIELDS
+        /** The width of the level. */
+        private final int myWidth;
+
+        /** The height of the level. */
+        private final int myHeight;
+
+        /** The type of image the level is drawn as. */
+        private final int myType;
+
+        /** The level, or null if it is mapped from a file. */
+        private final BufferedImage myImage;
+
+        /** The premultiplied pixels mapped from a file, or null if the level is an image. */
+        private final IntBuffer myPixels;
+
+        /** The part of a mapped level copied for the last draw; guarded by this level. */
+        private Rectangle myCopied;
+
+        /** The copy of that part, reused while the same part is drawn again. */
+        private BufferedImage myCopy;
+
+
+        /**
+         * Constructor that stores the level.
+         *
+         * @param theWidth The width of the level.
+         * @param theHeight The height of the level.
+         * @param theType The type of image the level is drawn as.
+         * @param theImage The level, or null if it is mapped from a file.
+         * @param thePixels The mapped pixels, or null if the level is an image.
+         */
+        private Level(final int theWidth, final int theHeight, final int theType,
+                      final BufferedImage theImage, final IntBuffer thePixels) {
+
+            myWidth = theWidth;
+            myHeight = theHeight;
+            myType = theType;
+            myImage = theImage;
+            myPixels = thePixels;
+        }
+
+        /**
+         * Makes a level of the given pixels, mapping it from a temporary file if it is
+         * too large to keep on the heap and spilling is allowed.
+         *
+         * @param thePixels The premultiplied pixels, row by row.
+         * @param theWidth The width of the level.
+         * @param theHeight The height of the level.
+         * @param theType The type of image the level is drawn as: TYPE_INT_RGB for an
+         * opaque picture, otherwise TYPE_INT_ARGB_PRE.
+         * @param theSpill Whether large levels may be written to a file.
+         * @return The level.
+         * @throws IOException If the temporary file cannot be written or mapped.
+         */
+        static Level of(final int[] thePixels, final int theWidth, final int theHeight,
+                        final int theType, final boolean theSpill) throws IOException {
+
+            if (!theSpill || (long) theWidth * theHeight <= RESIDENT_PIXELS) {
+                final BufferedImage image = new BufferedImage(theWidth, theHeight, theType);
+                image.getRaster().setDataElements(0, 0, theWidth, theHeight, thePixels);
+                return new Level(theWidth, theHeight, theType, image, null);
+            }
+            final Path file = Files.createTempFile("powerpaint", ".pixels");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE)) {
+                final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) Integer.BYTES * thePixels.length);
+                mapped.order(ByteOrder.nativeOrder());
+                mapped.asIntBuffer().put(thePixels);
+                return new Level(theWidth, theHeight, theType, null, mapped.asIntBuffer());
+            } finally {
+                // The mapping outlives the file's name, so nothing is left behind on disk.
+                try {
+                    Files.delete(file);
+                } catch (final IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            }
+        }
+
+        /**
+         * Draws a part of the level at its own coordinates.
+         *
+         * @param theGraphics The graphics context, transformed to the level's coordinates.
+         * @param theX1 The left of the part.
+         * @param theY1 The top of the part.
+         * @param theX2 The right of the part.
+         * @param theY2 The bottom of the part.
+         */
+        void draw(final Graphics2D theGraphics, final int theX1, final int theY1,
+                  final int theX2, final int theY2) {
+
+            if (myImage != null) {
+                theGraphics.drawImage(myImage, theX1, theY1, theX2, theY2,
+                                      theX1, theY1, theX2, theY2, null);
+                return;
+            }
+            final BufferedImage copy = copy(theX1, theY1, theX2 - theX1, theY2 - theY1);
+            theGraphics.drawImage(copy, theX1, theY1, null);
+        }
+
+        /**
+         * Provides the caller with an image of a part of a mapped level, reading the part
+         * from the mapping unless it was the part read last.
+         *
+         * @param theX The left of the part.
+         * @param theY The top of the part.
+         * @param theWidth The width of the part.
+         * @param theHeight The height of the part.
+         * @return An image of the part, which must not be modified.
+         */
+        private synchronized BufferedImage copy(final int theX, final int theY,
+                                                final int theWidth, final int theHeight) {
+
+            final Rectangle part = new Rectangle(theX, theY, theWidth, theHeight);
+            if (!part.equals(myCopied)) {
+                final BufferedImage image = new BufferedImage(theWidth, theHeight, myType);
+                final int[] row = new int[theWidth];
+                for (int y = 0; y < theHeight; y++) {
+                    myPixels.get((theY + y) * myWidth + theX, row);
+                    image.getRaster().setDataElements(0, y, theWidth, 1, row);
+                }
+                myCopy = image;
+                myCopied = part;
+            }
+            return myCopy;
+        }
+    }
+}
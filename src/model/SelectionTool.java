@@ -0,0 +1,257 @@
+package model;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EditTool for selecting and moving committed shapes. Clicking a shape selects it, dragging
+ * from empty space selects every shape that lies entirely within the dragged rectangle, and
+ * dragging a selected shape moves the whole selection.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class SelectionTool extends AbstractTool implements EditTool {
+
+    // CONSTANTS
+    /** How far from a shape's stroke a click may land and still select it. */
+    private static final double TOLERANCE = 3;
+
+    /** Color of the selection outlines and the selection rectangle. */
+    private static final Color OUTLINE_COLOR = new Color(0, 120, 215);
+
+    /** Dashed stroke used for the selection outlines and the selection rectangle. */
+    private static final Stroke OUTLINE_STROKE =
+        new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10,
+                        new float[] {4, 4}, 0);
+
+    /** Extra space repainted around outlines so their stroke is fully covered. */
+    private static final double OUTLINE_PAD = 2;
+
+
+    // INSTANCE FIELDS
+    /** The currently selected shapes, in drawing order. */
+    private List<PaintShape> mySelection;
+
+    /** The point at which the current selection rectangle started. */
+    private Point2D myAnchor;
+
+    /** The selection rectangle being dragged, or null if none. */
+    private Rectangle2D myBand;
+
+    /** The last point the selection was moved to, or null if it is not being moved. */
+    private Point2D myLast;
+
+
+    /**
+     * Constructor that starts with nothing selected.
+     */
+    public SelectionTool() {
+
+        super();
+        mySelection = new ArrayList<PaintShape>();
+    }
+
+    @Override
+    public Shape getShape() {
+
+        if (myBand == null) {
+            return new Rectangle2D.Double();
+        }
+        return (Shape) myBand.clone();
+    }
+
+    @Override
+    public String getName() {
+
+        return "Select";
+    }
+
+    /**
+     * Provides the caller with the currently selected shapes.
+     *
+     * @return A read-only view of the selection, in drawing order.
+     */
+    public List<PaintShape> getSelection() {
+
+        return Collections.unmodifiableList(mySelection);
+    }
+
+    @Override
+    public void press(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        final PaintShape hit = hitTest(thePoint, theEditor);
+        if (hit == null) {
+            select(new ArrayList<PaintShape>(), theEditor);
+            myAnchor = thePoint;
+            myBand = new Rectangle2D.Double(thePoint.getX(), thePoint.getY(), 0, 0);
+        } else {
+            if (!isSelected(hit)) {
+                final List<PaintShape> selection = new ArrayList<PaintShape>();
+                selection.add(hit);
+                select(selection, theEditor);
+            }
+            myLast = thePoint;
+        }
+    }
+
+    @Override
+    public void drag(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        if (myLast != null) {
+            final double deltaX = thePoint.getX() - myLast.getX();
+            final double deltaY = thePoint.getY() - myLast.getY();
+            if (deltaX != 0 || deltaY != 0) {
+                // The editor repaints the shapes; only the outlines are repainted here.
+                final Rectangle2D before = outlineArea();
+                mySelection = new ArrayList<PaintShape>(
+                    theEditor.moveShapes(mySelection, deltaX, deltaY));
+                myLast = thePoint;
+                repaint(before, theEditor);
+                repaint(outlineArea(), theEditor);
+            }
+        } else if (myBand != null) {
+            final Rectangle2D before = myBand;
+            myBand = new Rectangle2D.Double();
+            myBand.setFrameFromDiagonal(myAnchor, thePoint);
+            repaint(before.createUnion(myBand), theEditor);
+        }
+    }
+
+    @Override
+    public void release(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        if (myBand != null) {
+            final Rectangle2D band = myBand;
+            myBand = null;
+            repaint(band, theEditor);
+            final List<PaintShape> selection = new ArrayList<PaintShape>();
+            if (!band.isEmpty()) {
+                for (final PaintShape shape: theEditor.shapesIn(band)) {
+                    if (band.contains(shape.getBounds())) {
+                        selection.add(shape);
+                    }
+                }
+            }
+            select(selection, theEditor);
+        }
+        myLast = null;
+    }
+
+    @Override
+    public void paintOverlay(final Graphics2D theGraphics) {
+
+        if (mySelection.isEmpty() && myBand == null) {
+            return;
+        }
+        theGraphics.setColor(OUTLINE_COLOR);
+        theGraphics.setStroke(OUTLINE_STROKE);
+        for (final PaintShape shape: mySelection) {
+            theGraphics.draw(shape.getBounds());
+        }
+        if (myBand != null) {
+            theGraphics.draw(myBand);
+        }
+    }
+
+    @Override
+    public void reset() {
+
+        mySelection = new ArrayList<PaintShape>();
+        myAnchor = null;
+        myBand = null;
+        myLast = null;
+    }
+
+    /**
+     * Finds the topmost shape touched by the given point.
+     *
+     * @param thePoint The point to test.
+     * @param theEditor Access to the committed shapes.
+     * @return The topmost shape hit, or null if there is none.
+     */
+    private PaintShape hitTest(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        final List<PaintShape> candidates = theEditor.shapesIn(
+            new Rectangle2D.Double(thePoint.getX() - TOLERANCE, thePoint.getY() - TOLERANCE,
+                                   2 * TOLERANCE, 2 * TOLERANCE));
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            if (candidates.get(i).contains(thePoint, TOLERANCE)) {
+                return candidates.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determines whether the given shape is part of the selection.
+     *
+     * @param theShape The shape to look for.
+     * @return Whether the shape is selected.
+     */
+    private boolean isSelected(final PaintShape theShape) {
+
+        for (final PaintShape shape: mySelection) {
+            if (shape == theShape) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the selection and repaints the outlines of the old and new selections.
+     *
+     * @param theSelection The new selection.
+     * @param theEditor Access to the canvas.
+     */
+    private void select(final List<PaintShape> theSelection, final ShapeEditor theEditor) {
+
+        repaint(outlineArea(), theEditor);
+        mySelection = theSelection;
+        repaint(outlineArea(), theEditor);
+    }
+
+    /**
+     * Computes the area covered by the outlines of the selected shapes.
+     *
+     * @return The area covered by the outlines, or null if nothing is selected.
+     */
+    private Rectangle2D outlineArea() {
+
+        Rectangle2D result = null;
+        for (final PaintShape shape: mySelection) {
+            if (result == null) {
+                result = (Rectangle2D) shape.getBounds().clone();
+            } else {
+                result.add(shape.getBounds());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Repaints an area padded so that outlines along its edges are covered.
+     *
+     * @param theArea The area to repaint, or null to do nothing.
+     * @param theEditor Access to the canvas.
+     */
+    private static void repaint(final Rectangle2D theArea, final ShapeEditor theEditor) {
+
+        if (theArea != null) {
+            theEditor.repaintArea(new Rectangle2D.Double(theArea.getX() - OUTLINE_PAD,
+                                                         theArea.getY() - OUTLINE_PAD,
+                                                         theArea.getWidth() + 2 * OUTLINE_PAD,
+                                                         theArea.getHeight()
+                                                         + 2 * OUTLINE_PAD));
+        }
+    }
+}
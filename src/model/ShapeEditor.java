@@ -0,0 +1,116 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Operations on the committed PaintShapes of a drawing that EditTools use to find and
+ * change existing shapes. Implemented by the canvas, which keeps its caches and indexes up
+ * to date and repaints only the areas that change.
+ * 
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public interface ShapeEditor {
+    
+    /**
+     * Finds the committed PaintShapes whose drawn bounds intersect the given area. The
+     * result only narrows down candidates; callers test the exact geometry themselves.
+     * 
+     * @param theArea The area to search.
+     * @return The PaintShapes found, in drawing order.
+     */
+    List<PaintShape> shapesIn(Rectangle2D theArea);
+    
+    /**
+     * Moves committed PaintShapes by the given offset, keeping their place in the drawing
+     * order.
+     * 
+     * @param theShapes The PaintShapes to move.
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved PaintShapes that now replace the given ones, in the same order.
+     * Shapes that are no longer part of the drawing are left out.
+     */
+    List<PaintShape> moveShapes(List<PaintShape> theShapes, double theDeltaX,
+                                double theDeltaY);
+    
+    /**
+     * Removes committed PaintShapes from the drawing.
+     * 
+     * @param theShapes The PaintShapes to remove; shapes that are no longer part of the
+     * drawing are ignored.
+     */
+    void removeShapes(List<PaintShape> theShapes);
+    
+    /**
+     * Appends a PaintShape on top of the committed shapes.
+     * 
+     * @param theShape The PaintShape to append.
+     */
+    void addShape(PaintShape theShape);
+    
+    /**
+     * Provides the caller with the committed PaintShapes of the active layer as the canvas
+     * caches them for painting, brought up to date first: an image the size of the canvas
+     * with the shapes drawn at full opacity over transparent pixels.
+     * 
+     * @return The shared image, premultiplied and backed by one int per pixel, which must
+     * not be modified.
+     */
+    BufferedImage getActiveRaster();
+    
+    /**
+     * Provides the caller with the paint color currently selected by the user.
+     * 
+     * @return The selected paint color.
+     */
+    Color getPaintColor();
+    
+    /**
+     * Provides the caller with the font currently selected by the user for text.
+     * 
+     * @return The selected font, including its size.
+     */
+    Font getFont();
+    
+    /**
+     * Asks the user for a line of text to place in the drawing.
+     * 
+     * @return The text entered, or null if the user cancelled.
+     */
+    String requestText();
+
+    /**
+     * Provides the caller with the motif currently chosen by the user for stamping.
+     *
+     * @return The chosen motif, or null if none has been chosen.
+     */
+    Motif getMotif();
+
+    /**
+     * Provides the caller with the fill color currently selected by the user.
+     * 
+     * @return The selected fill color.
+     */
+    Color getFillColor();
+    
+    /**
+     * Provides the caller with the fill tolerance currently selected by the user: how far
+     * each color channel of a pixel may differ from the clicked pixel's and still be filled.
+     * 
+     * @return The selected fill tolerance, from 0 to FloodFill.MAX_TOLERANCE.
+     */
+    int getFillTolerance();
+    
+    /**
+     * Requests that the given area of the canvas be repainted, such as when a tool's
+     * overlay changes.
+     * 
+     * @param theArea The area to repaint.
+     */
+    void repaintArea(Rectangle2D theArea);
+}
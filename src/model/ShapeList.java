@@ -0,0 +1,466 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of PaintShapes that can be extended cheaply. Appending returns a new list
+ * that shares all but one path of a 32-way tree with the original, so taking a snapshot of
+ * a document is free and readers never see a list change underneath them.
+ *
+ * <p>Every list carries a generation. Appending keeps the generation, while any change
+ * that is not a pure append (such as clearing the document) produces a list with a new
+ * generation. Caches built from a list can therefore tell whether they only need to add
+ * the shapes past the point they last saw or must start over.
+ *
+ * <p>Removing PaintShapes shares every block before the first one removed with the
+ * original, so only the PaintShapes after it are copied.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class ShapeList extends AbstractList<PaintShape> implements RandomAccess {
+
+    // CONSTANTS
+    /** Number of index bits consumed by each level of the tree. */
+    private static final int BITS = 5;
+
+    /** Number of children of each tree node. */
+    private static final int WIDTH = 1 << BITS;
+
+    /** Mask selecting the child index within a level. */
+    private static final int MASK = WIDTH - 1;
+
+    /** The empty list of the first generation. */
+    public static final ShapeList EMPTY = empty(0);
+
+
+    // INSTANCE FIELDS
+    /** The number of PaintShapes in the list. */
+    private final int mySize;
+
+    /** The number of index bits below the root. */
+    private final int myShift;
+
+    /** The root of the tree holding every full block of 32 PaintShapes. */
+    private final Object[] myRoot;
+
+    /** The last, partially filled block of PaintShapes, kept outside the tree. */
+    private final Object[] myTail;
+
+    /** The generation of the list, which changes whenever the list is not just extended. */
+    private final long myGeneration;
+
+
+    /**
+     * Constructor that assembles a list from its parts.
+     *
+     * @param theSize The number of PaintShapes in the list.
+     * @param theShift The number of index bits below the root.
+     * @param theRoot The root of the tree.
+     * @param theTail The last block of PaintShapes.
+     * @param theGeneration The generation of the list.
+     */
+    private ShapeList(final int theSize, final int theShift, final Object[] theRoot,
+                      final Object[] theTail, final long theGeneration) {
+
+        super();
+        mySize = theSize;
+        myShift = theShift;
+        myRoot = theRoot;
+        myTail = theTail;
+        myGeneration = theGeneration;
+    }
+
+    /**
+     * Creates an empty list of the given generation.
+     *
+     * @param theGeneration The generation of the new list.
+     * @return An empty list.
+     */
+    public static ShapeList empty(final long theGeneration) {
+
+        return new ShapeList(0, BITS, new Object[WIDTH], new Object[0], theGeneration);
+    }
+
+    /**
+     * Provides the caller with the generation of the list.
+     *
+     * @return The generation of the list.
+     */
+    public long getGeneration() {
+
+        return myGeneration;
+    }
+
+    @Override
+    public int size() {
+
+        return mySize;
+    }
+
+    @Override
+    public PaintShape get(final int theIndex) {
+
+        if (theIndex < 0 || theIndex >= mySize) {
+            throw new IndexOutOfBoundsException("Index " + theIndex + ", size " + mySize);
+        }
+        return (PaintShape) blockFor(theIndex)[theIndex & MASK];
+    }
+
+    @Override
+    public Iterator<PaintShape> iterator() {
+
+        return new BlockIterator();
+    }
+
+    /**
+     * Returns a list holding the PaintShapes of this list followed by the given PaintShape.
+     * This list is left unchanged.
+     *
+     * @param theShape The PaintShape to append.
+     * @return The extended list, of the same generation as this one.
+     */
+    public ShapeList append(final PaintShape theShape) {
+
+        if (theShape == null) {
+            throw new NullPointerException("theShape");
+        }
+        if (mySize - tailOffset() < WIDTH) {
+            final Object[] tail = new Object[myTail.length + 1];
+            System.arraycopy(myTail, 0, tail, 0, myTail.length);
+            tail[myTail.length] = theShape;
+            return new ShapeList(mySize + 1, myShift, myRoot, tail, myGeneration);
+        }
+
+        return withNewTail(new Object[] {theShape});
+    }
+
+    /**
+     * Returns a list holding the PaintShapes of this list followed by the given PaintShapes,
+     * in iteration order. Whole blocks of 32 are moved into the tree at once, so appending
+     * many PaintShapes costs little more than copying their references. This list is left
+     * unchanged.
+     *
+     * @param theShapes The PaintShapes to append, none of which may be null.
+     * @return The extended list, of the same generation as this one.
+     */
+    public ShapeList appendAll(final Collection<? extends PaintShape> theShapes) {
+
+        final Iterator<? extends PaintShape> iterator = theShapes.iterator();
+        ShapeList result = this;
+        while (iterator.hasNext() && result.mySize - result.tailOffset() < WIDTH) {
+            result = result.append(iterator.next());
+        }
+        while (iterator.hasNext()) {
+            Object[] block = new Object[WIDTH];
+            int count = 0;
+            while (count < WIDTH && iterator.hasNext()) {
+                final PaintShape shape = iterator.next();
+                if (shape == null) {
+                    throw new NullPointerException("theShapes contains null");
+                }
+                block[count++] = shape;
+            }
+            if (count < WIDTH) {
+                block = Arrays.copyOf(block, count);
+            }
+            result = result.withNewTail(block);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a list in which the PaintShapes at the given positions are replaced. Only the
+     * paths leading to the replaced positions are copied. This list is left unchanged.
+     *
+     * @param thePositions The positions to replace.
+     * @param theShapes The PaintShapes to place at those positions, none of which may be
+     * null.
+     * @return The updated list, of the same generation as this one.
+     */
+    public ShapeList replaceAt(final int[] thePositions, final PaintShape[] theShapes) {
+
+        Object[] root = myRoot;
+        Object[] tail = myTail;
+        final int tailOffset = tailOffset();
+        for (int i = 0; i < thePositions.length; i++) {
+            final int position = thePositions[i];
+            if (position < 0 || position >= mySize) {
+                throw new IndexOutOfBoundsException("Index " + position + ", size " + mySize);
+            }
+            if (theShapes[i] == null) {
+                throw new NullPointerException("theShapes[" + i + "]");
+            }
+            if (position >= tailOffset) {
+                if (tail == myTail) {
+                    tail = myTail.clone();
+                }
+                tail[position & MASK] = theShapes[i];
+            } else {
+                root = assoc(myShift, root, position, theShapes[i]);
+            }
+        }
+        return new ShapeList(mySize, myShift, root, tail, myGeneration);
+    }
+
+    /**
+     * Returns a list without the PaintShapes at the given positions. The blocks before the
+     * first position removed are shared with this list, and only the PaintShapes after it
+     * are copied. This list is left unchanged.
+     *
+     * @param thePositions The positions to remove, in any order; repeats are ignored.
+     * @return The shortened list, of the same generation as this one.
+     */
+    public ShapeList removeAt(final int[] thePositions) {
+
+        if (thePositions.length == 0) {
+            return this;
+        }
+        final int[] positions = thePositions.clone();
+        Arrays.sort(positions);
+        if (positions[0] < 0 || positions[positions.length - 1] >= mySize) {
+            final int bad = positions[0] < 0 ? positions[0] : positions[positions.length - 1];
+            throw new IndexOutOfBoundsException("Index " + bad + ", size " + mySize);
+        }
+        final int first = positions[0];
+        final List<PaintShape> kept = new ArrayList<PaintShape>(mySize - first);
+        int next = 0;
+        for (int i = first; i < mySize; i++) {
+            if (next < positions.length && positions[next] == i) {
+                while (next < positions.length && positions[next] == i) {
+                    next++;
+                }
+            } else {
+                kept.add(get(i));
+            }
+        }
+        return take(first).appendAll(kept);
+    }
+
+    /**
+     * Returns a list with the same PaintShapes as this one but a different generation.
+     *
+     * @param theGeneration The generation of the new list.
+     * @return The relabeled list.
+     */
+    public ShapeList withGeneration(final long theGeneration) {
+
+        return new ShapeList(mySize, myShift, myRoot, myTail, theGeneration);
+    }
+
+    /**
+     * Returns a list holding the first PaintShapes of this list. Only the path to the last
+     * full block kept is copied; the blocks before it are shared.
+     *
+     * @param theCount The number of PaintShapes to keep, from 0 to the size of this list.
+     * @return The truncated list, of the same generation as this one.
+     */
+    private ShapeList take(final int theCount) {
+
+        if (theCount == mySize) {
+            return this;
+        }
+        if (theCount == 0) {
+            return empty(myGeneration);
+        }
+        final int tailOffset = ((theCount - 1) >>> BITS) << BITS;
+        final Object[] tail = Arrays.copyOf(blockFor(theCount - 1), theCount - tailOffset);
+        if (tailOffset == 0) {
+            return new ShapeList(theCount, BITS, new Object[WIDTH], tail, myGeneration);
+        }
+        Object[] root = trim(myShift, myRoot, tailOffset - 1);
+        int shift = myShift;
+        while (shift > BITS && root[1] == null) {
+            root = (Object[]) root[0];
+            shift -= BITS;
+        }
+        return new ShapeList(theCount, shift, root, tail, myGeneration);
+    }
+
+    /**
+     * Copies the path from the given node down to a position, dropping every child after
+     * that path.
+     *
+     * @param theLevel The level of the node.
+     * @param theNode The node to copy.
+     * @param theLast The last position to keep, at the end of a block.
+     * @return The copied node.
+     */
+    private static Object[] trim(final int theLevel, final Object[] theNode,
+                                 final int theLast) {
+
+        final int index = (theLast >>> theLevel) & MASK;
+        final Object[] result = new Object[WIDTH];
+        System.arraycopy(theNode, 0, result, 0, index);
+        if (theLevel == BITS) {
+            result[index] = theNode[index];
+        } else {
+            result[index] = trim(theLevel - BITS, (Object[]) theNode[index], theLast);
+        }
+        return result;
+    }
+
+    /**
+     * Copies the path from the given node down to a position and replaces the PaintShape
+     * stored there.
+     *
+     * @param theLevel The level of the node.
+     * @param theNode The node to copy.
+     * @param thePosition The position to replace.
+     * @param theShape The replacement PaintShape.
+     * @return The copied node.
+     */
+    private static Object[] assoc(final int theLevel, final Object[] theNode,
+                                  final int thePosition, final PaintShape theShape) {
+
+        final Object[] result = theNode.clone();
+        if (theLevel == 0) {
+            result[thePosition & MASK] = theShape;
+        } else {
+            final int index = (thePosition >>> theLevel) & MASK;
+            result[index] = assoc(theLevel - BITS, (Object[]) theNode[index], thePosition,
+                                  theShape);
+        }
+        return result;
+    }
+
+    /**
+     * Moves the full tail of this list into the tree and starts a new tail.
+     *
+     * @param theTail The new tail block, holding between 1 and 32 PaintShapes.
+     * @return The extended list, of the same generation as this one.
+     */
+    private ShapeList withNewTail(final Object[] theTail) {
+
+        final Object[] root;
+        int shift = myShift;
+        if ((mySize >>> BITS) > (1 << myShift)) {
+            root = new Object[WIDTH];
+            root[0] = myRoot;
+            root[1] = newPath(myShift, myTail);
+            shift += BITS;
+        } else {
+            root = pushTail(myShift, myRoot, myTail);
+        }
+        return new ShapeList(mySize + theTail.length, shift, root, theTail, myGeneration);
+    }
+
+    /**
+     * Returns the index of the first PaintShape of the tail block.
+     *
+     * @return The index at which the tail begins.
+     */
+    private int tailOffset() {
+
+        if (mySize < WIDTH) {
+            return 0;
+        }
+        return ((mySize - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * Returns the block of 32 PaintShapes holding the given index.
+     *
+     * @param theIndex An index within the list.
+     * @return The block holding that index.
+     */
+    private Object[] blockFor(final int theIndex) {
+
+        if (theIndex >= tailOffset()) {
+            return myTail;
+        }
+        Object[] node = myRoot;
+        for (int level = myShift; level > 0; level -= BITS) {
+            node = (Object[]) node[(theIndex >>> level) & MASK];
+        }
+        return node;
+    }
+
+    /**
+     * Copies the path from the given node down to where the full tail belongs and inserts it.
+     *
+     * @param theLevel The level of the node.
+     * @param theParent The node to copy.
+     * @param theTail The full tail block to insert.
+     * @return The copied node with the tail inserted below it.
+     */
+    private Object[] pushTail(final int theLevel, final Object[] theParent,
+                              final Object[] theTail) {
+
+        final int index = ((mySize - 1) >>> theLevel) & MASK;
+        final Object[] result = theParent.clone();
+        if (theLevel == BITS) {
+            result[index] = theTail;
+        } else {
+            final Object[] child = (Object[]) theParent[index];
+            if (child == null) {
+                result[index] = newPath(theLevel - BITS, theTail);
+            } else {
+                result[index] = pushTail(theLevel - BITS, child, theTail);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds a chain of single-child nodes leading down to the given block.
+     *
+     * @param theLevel The level of the top of the chain.
+     * @param theBlock The block at the bottom of the chain.
+     * @return The top of the chain.
+     */
+    private static Object[] newPath(final int theLevel, final Object[] theBlock) {
+
+        if (theLevel == 0) {
+            return theBlock;
+        }
+        final Object[] result = new Object[WIDTH];
+        result[0] = newPath(theLevel - BITS, theBlock);
+        return result;
+    }
+
+
+    /**
+     * Iterates over the list a block at a time so each step is a single array access.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private final class BlockIterator implements Iterator<PaintShape> {
+
+        // INSTANCE FIELDS
+        /** The index of the next PaintShape. */
+        private int myIndex;
+
+        /** The block holding the next PaintShape. */
+        private Object[] myBlock;
+
+
+        @Override
+        public boolean hasNext() {
+
+            return myIndex < mySize;
+        }
+
+        @Override
+        public PaintShape next() {
+
+            if (myIndex >= mySize) {
+                throw new NoSuchElementException();
+            }
+            if ((myIndex & MASK) == 0 || myBlock == null) {
+                myBlock = blockFor(myIndex);
+            }
+            final PaintShape result = (PaintShape) myBlock[myIndex & MASK];
+            myIndex++;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The committed PaintShapes of a drawing, safe to read and extend from any thread. The
+ * current contents are held as an immutable ShapeList, so readers such as renderers,
+ * exporters, and savers take a snapshot and work on it without locking while other threads
+ * keep appending. Appends are lock-free, and clearing swaps in an empty list of a new
+ * generation in a single atomic step.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class ShapeModel {
+
+    // CONSTANTS
+    /** Batch size from which bounds are computed on multiple threads. */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+
+    // INSTANCE FIELDS
+    /** The current contents of the model. */
+    private final AtomicReference<ShapeList> myShapes;
+
+
+    /**
+     * Constructor that creates an empty model.
+     */
+    public ShapeModel() {
+
+        myShapes = new AtomicReference<ShapeList>(ShapeList.EMPTY);
+    }
+
+    /**
+     * Provides the caller with an immutable snapshot of the current contents.
+     *
+     * @return The PaintShapes currently in the model.
+     */
+    public ShapeList snapshot() {
+
+        return myShapes.get();
+    }
+
+    /**
+     * Appends a PaintShape. May be called from any thread.
+     *
+     * @param theShape The PaintShape to append.
+     * @return The contents of the model immediately after the append.
+     */
+    public ShapeList add(final PaintShape theShape) {
+
+        ShapeList current = myShapes.get();
+        ShapeList update = current.append(theShape);
+        while (!myShapes.compareAndSet(current, update)) {
+            current = myShapes.get();
+            update = current.append(theShape);
+        }
+        return update;
+    }
+
+    /**
+     * Validates and appends a batch of PaintShapes in one atomic step, so readers see either
+     * none or all of them. The drawn bounds of every PaintShape are computed up front, in
+     * parallel for large batches, so the first repaint after a bulk load does not pay for
+     * them. May be called from any thread.
+     *
+     * @param theShapes The PaintShapes to append, in drawing order.
+     * @return The contents of the model immediately after the append.
+     * @throws IllegalArgumentException If any PaintShape is incomplete or has a negative
+     * stroke width; nothing is appended in that case.
+     */
+    public ShapeList addAll(final Collection<? extends PaintShape> theShapes) {
+
+        int index = 0;
+        for (final PaintShape shape: theShapes) {
+            if (shape == null || shape.getShape() == null || shape.getColor() == null
+                || shape.getFillColor() == null || shape.getWidth() < 0) {
+                throw new IllegalArgumentException("Invalid PaintShape at index " + index);
+            }
+            index++;
+        }
+        if (theShapes.size() >= PARALLEL_THRESHOLD) {
+            theShapes.parallelStream().forEach(new Consumer<PaintShape>() {
+                @Override
+                public void accept(final PaintShape theShape) {
+                    theShape.getBounds();
+                }
+            });
+        } else {
+            for (final PaintShape shape: theShapes) {
+                shape.getBounds();
+            }
+        }
+
+        ShapeList current = myShapes.get();
+        ShapeList update = current.appendAll(theShapes);
+        while (!myShapes.compareAndSet(current, update)) {
+            current = myShapes.get();
+            update = current.appendAll(theShapes);
+        }
+        return update;
+    }
+
+    /**
+     * Validates and appends every PaintShape of a stream in one atomic step.
+     *
+     * @param theShapes The PaintShapes to append, in drawing order.
+     * @return The contents of the model immediately after the append.
+     * @throws IllegalArgumentException If any PaintShape is incomplete or has a negative
+     * stroke width; nothing is appended in that case.
+     * @see #addAll(Collection)
+     */
+    public ShapeList addAll(final Stream<? extends PaintShape> theShapes) {
+
+        final List<PaintShape> shapes = new ArrayList<PaintShape>();
+        theShapes.forEachOrdered(new Consumer<PaintShape>() {
+            @Override
+            public void accept(final PaintShape theShape) {
+                shapes.add(theShape);
+            }
+        });
+        return addAll(shapes);
+    }
+
+    /**
+     * Replaces PaintShapes at known positions in one atomic step, such as when moving a
+     * selection. The replacement only happens if every position still holds the expected
+     * PaintShape; otherwise the positions are stale and the caller must find them again.
+     * The new contents start a new generation.
+     *
+     * @param thePositions The positions to replace.
+     * @param theExpected The PaintShapes expected at those positions.
+     * @param theShapes The replacement PaintShapes.
+     * @return The contents of the model after the replacement, or null if a position did
+     * not hold the expected PaintShape.
+     */
+    public ShapeList replace(final int[] thePositions, final PaintShape[] theExpected,
+                             final PaintShape[] theShapes) {
+
+        while (true) {
+            final ShapeList current = myShapes.get();
+            for (int i = 0; i < thePositions.length; i++) {
+                if (thePositions[i] >= current.size()
+                    || current.get(thePositions[i]) != theExpected[i]) {
+                    return null;
+                }
+            }
+            final ShapeList update = current.replaceAt(thePositions, theShapes)
+                .withGeneration(current.getGeneration() + 1);
+            if (myShapes.compareAndSet(current, update)) {
+                return update;
+            }
+        }
+    }
+
+    /**
+     * Removes PaintShapes at known positions in one atomic step, such as when erasing. The
+     * removal only happens if every position still holds the expected PaintShape;
+     * otherwise the positions are stale and the caller must find them again. Only the
+     * PaintShapes after the first position removed are copied. The new contents start a
+     * new generation.
+     *
+     * @param thePositions The positions to remove.
+     * @param theExpected The PaintShapes expected at those positions.
+     * @return The contents of the model after the removal, or null if a position did not
+     * hold the expected PaintShape.
+     */
+    public ShapeList remove(final int[] thePositions, final PaintShape[] theExpected) {
+
+        while (true) {
+            final ShapeList current = myShapes.get();
+            for (int i = 0; i < thePositions.length; i++) {
+                if (thePositions[i] >= current.size()
+                    || current.get(thePositions[i]) != theExpected[i]) {
+                    return null;
+                }
+            }
+            final ShapeList update = current.removeAt(thePositions)
+                .withGeneration(current.getGeneration() + 1);
+            if (myShapes.compareAndSet(current, update)) {
+                return update;
+            }
+        }
+    }
+
+    /**
+     * Removes the given PaintShapes, compared by identity, in one atomic step. Their
+     * positions are found by scanning the model, after which only the PaintShapes after
+     * the first one removed are copied. The new contents start a new generation.
+     *
+     * @param theShapes The PaintShapes to remove; shapes not in the model are ignored.
+     * @return The contents of the model after the removal.
+     */
+    public ShapeList removeAll(final Collection<PaintShape> theShapes) {
+
+        final Map<PaintShape, Boolean> doomed = new IdentityHashMap<PaintShape, Boolean>();
+        for (final PaintShape shape: theShapes) {
+            doomed.put(shape, Boolean.TRUE);
+        }
+        while (true) {
+            final ShapeList current = myShapes.get();
+            int[] positions = new int[doomed.size()];
+            int count = 0;
+            int position = 0;
+            for (final PaintShape shape: current) {
+                if (doomed.containsKey(shape)) {
+                    if (count == positions.length) {
+                        // The same PaintShape may have been added more than once.
+                        positions = Arrays.copyOf(positions, 2 * count + 1);
+                    }
+                    positions[count++] = position;
+                }
+                position++;
+            }
+            final ShapeList update = current.removeAt(Arrays.copyOf(positions, count))
+                .withGeneration(current.getGeneration() + 1);
+            if (myShapes.compareAndSet(current, update)) {
+                return update;
+            }
+        }
+    }
+
+    /**
+     * Removes every PaintShape by swapping in an empty list of the next generation.
+     *
+     * @return The contents of the model immediately before it was cleared.
+     */
+    public ShapeList clear() {
+
+        return replace(Collections.<PaintShape>emptyList());
+    }
+
+    /**
+     * Replaces the whole contents of the model with the given PaintShapes in one atomic
+     * step. The new contents start a new generation.
+     *
+     * @param theShapes The new contents of the model.
+     * @return The contents of the model immediately before they were replaced.
+     */
+    public ShapeList replace(final List<PaintShape> theShapes) {
+
+        ShapeList current = myShapes.get();
+        ShapeList update = build(current.getGeneration() + 1, theShapes);
+        while (!myShapes.compareAndSet(current, update)) {
+            current = myShapes.get();
+            update = build(current.getGeneration() + 1, theShapes);
+        }
+        return current;
+    }
+
+    /**
+     * Builds a list of the given generation holding the given PaintShapes.
+     *
+     * @param theGeneration The generation of the new list.
+     * @param theShapes The PaintShapes of the new list.
+     * @return The new list.
+     */
+    private static ShapeList build(final long theGeneration,
+                                   final List<PaintShape> theShapes) {
+
+        return ShapeList.empty(theGeneration).appendAll(theShapes);
+    }
+}
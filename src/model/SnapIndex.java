@@ -0,0 +1,301 @@
+package model;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Uniform grid hash of the snap points of PaintShapes, used to find the vertex nearest to
+ * the mouse without visiting every shape of the document. Each cell keeps the coordinates
+ * of its points in a flat array, so a query only reads the few cells around the point it
+ * is given. Shapes can be added, removed, and replaced one at a time, so committing or
+ * editing a shape never requires rebuilding the whole index.
+ *
+ * <p>This class is not thread-safe; PaintPanel only uses it on the event dispatch thread.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class SnapIndex {
+
+    // CONSTANTS
+    /** Width and height of each grid cell. */
+    private static final int CELL_SIZE = 32;
+
+    /** Number of points a new cell has room for. */
+    private static final int INITIAL_CAPACITY = 4;
+
+
+    // INSTANCE FIELDS
+    /** The points of each occupied grid cell, keyed by packed cell coordinates. */
+    private final Map<Long, Cell> myCells;
+
+    /** The snap points of every indexed shape. */
+    private final Map<PaintShape, double[]> myPoints;
+
+    /** The number of indexed points. */
+    private int mySize;
+
+
+    /**
+     * Constructor that creates an empty index.
+     */
+    public SnapIndex() {
+
+        myCells = new HashMap<Long, Cell>();
+        myPoints = new IdentityHashMap<PaintShape, double[]>();
+    }
+
+    /**
+     * Removes every point from the index.
+     */
+    public void clear() {
+
+        myCells.clear();
+        myPoints.clear();
+        mySize = 0;
+    }
+
+    /**
+     * Provides the caller with the number of indexed points.
+     *
+     * @return The number of indexed points.
+     */
+    public int size() {
+
+        return mySize;
+    }
+
+    /**
+     * Adds the snap points of a shape.
+     *
+     * @param theShape The shape to add.
+     */
+    public void add(final PaintShape theShape) {
+
+        // A shape drawn twice is only indexed once.
+        remove(theShape);
+        final double[] points = theShape.getSnapPoints();
+        myPoints.put(theShape, points);
+        for (int i = 0; i < points.length; i += 2) {
+            final Long key = key(cell(points[i]), cell(points[i + 1]));
+            Cell cell = myCells.get(key);
+            if (cell == null) {
+                cell = new Cell();
+                myCells.put(key, cell);
+            }
+            cell.add(points[i], points[i + 1], theShape);
+        }
+        mySize += points.length / 2;
+    }
+
+    /**
+     * Adds the snap points of each of the given shapes.
+     *
+     * @param theShapes The shapes to add.
+     */
+    public void addAll(final Iterable<PaintShape> theShapes) {
+
+        for (final PaintShape shape: theShapes) {
+            add(shape);
+        }
+    }
+
+    /**
+     * Removes the snap points of a shape.
+     *
+     * @param theShape The shape to remove.
+     * @return Whether the shape was indexed.
+     */
+    public boolean remove(final PaintShape theShape) {
+
+        final double[] points = myPoints.remove(theShape);
+        if (points == null) {
+            return false;
+        }
+        for (int i = 0; i < points.length; i += 2) {
+            final Long key = key(cell(points[i]), cell(points[i + 1]));
+            final Cell cell = myCells.get(key);
+            // Points sharing a cell are all removed on the first visit.
+            if (cell != null && cell.removeAll(theShape) && cell.myCount == 0) {
+                myCells.remove(key);
+            }
+        }
+        mySize -= points.length / 2;
+        return true;
+    }
+
+    /**
+     * Replaces the snap points of an indexed shape with those of another, such as a moved
+     * copy of it.
+     *
+     * @param theOld The indexed shape.
+     * @param theNew The shape that replaces it.
+     * @return Whether the old shape was indexed; if not, nothing is changed.
+     */
+    public boolean replace(final PaintShape theOld, final PaintShape theNew) {
+
+        if (!remove(theOld)) {
+            return false;
+        }
+        add(theNew);
+        return true;
+    }
+
+    /**
+     * Finds the indexed point nearest to the given point. Cells are searched in rings
+     * around the point, stopping as soon as no unsearched cell can hold a nearer point.
+     *
+     * @param theX The x coordinate to search from.
+     * @param theY The y coordinate to search from.
+     * @param theMaxDistance How far away a point may be and still be found.
+     * @return The nearest point no further than the maximum distance, or null if there is
+     * none.
+     */
+    public Point2D nearest(final double theX, final double theY, final double theMaxDistance) {
+
+        final int column = cell(theX);
+        final int row = cell(theY);
+        final double[] best = {Double.NaN, Double.NaN, theMaxDistance * theMaxDistance};
+        final long rings = (long) Math.ceil(theMaxDistance / CELL_SIZE);
+        for (long ring = 0; ring <= rings; ring++) {
+            // Every point of this ring and beyond is at least this far away.
+            final double reach = Math.max(ring - 1, 0) * (double) CELL_SIZE;
+            if (reach * reach > best[2]) {
+                break;
+            }
+            if ((2 * ring + 1) * (2 * ring + 1) > 2L * myCells.size()) {
+                // Cheaper to visit every occupied cell than every cell of a huge ring.
+                for (final Cell cell: myCells.values()) {
+                    cell.nearest(theX, theY, best);
+                }
+                break;
+            }
+            final int r = (int) ring;
+            for (int y = row - r; y <= row + r; y++) {
+                final boolean edge = y == row - r || y == row + r;
+                for (int x = column - r; x <= column + r; x += edge ? 1 : 2 * r) {
+                    final Cell cell = myCells.get(key(x, y));
+                    if (cell != null) {
+                        cell.nearest(theX, theY, best);
+                    }
+                }
+            }
+        }
+        if (Double.isNaN(best[0])) {
+            return null;
+        }
+        return new Point2D.Double(best[0], best[1]);
+    }
+
+    /**
+     * Converts a coordinate to the index of the cell containing it.
+     *
+     * @param theCoordinate The coordinate.
+     * @return The index of the cell along that axis.
+     */
+    private static int cell(final double theCoordinate) {
+
+        return (int) Math.floor(theCoordinate / CELL_SIZE);
+    }
+
+    /**
+     * Packs cell coordinates into a single map key.
+     *
+     * @param theColumn The column of the cell.
+     * @param theRow The row of the cell.
+     * @return The key of the cell.
+     */
+    private static Long key(final int theColumn, final int theRow) {
+
+        return ((long) theColumn << 32) | (theRow & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * The points of one grid cell along with the shapes they belong to.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Cell {
+
+        // INSTANCE FIELDS
+        /** The x and y coordinates of each point, one pair after another. */
+        private double[] myCoordinates = new double[2 * INITIAL_CAPACITY];
+
+        /** The shape each point belongs to. */
+        private PaintShape[] myOwners = new PaintShape[INITIAL_CAPACITY];
+
+        /** The number of points in the cell. */
+        private int myCount;
+
+
+        /**
+         * Adds a point to the cell.
+         *
+         * @param theX The x coordinate of the point.
+         * @param theY The y coordinate of the point.
+         * @param theOwner The shape the point belongs to.
+         */
+        void add(final double theX, final double theY, final PaintShape theOwner) {
+
+            if (myCount == myOwners.length) {
+                myOwners = Arrays.copyOf(myOwners, myCount * 2);
+                myCoordinates = Arrays.copyOf(myCoordinates, myCount * 4);
+            }
+            myCoordinates[2 * myCount] = theX;
+            myCoordinates[2 * myCount + 1] = theY;
+            myOwners[myCount++] = theOwner;
+        }
+
+        /**
+         * Removes every point of a shape from the cell, moving the last points into the
+         * gaps.
+         *
+         * @param theOwner The shape whose points are removed.
+         * @return Whether any point was removed.
+         */
+        boolean removeAll(final PaintShape theOwner) {
+
+            final int before = myCount;
+            int i = 0;
+            while (i < myCount) {
+                if (myOwners[i] == theOwner) {
+                    myCount--;
+                    myOwners[i] = myOwners[myCount];
+                    myCoordinates[2 * i] = myCoordinates[2 * myCount];
+                    myCoordinates[2 * i + 1] = myCoordinates[2 * myCount + 1];
+                    myOwners[myCount] = null;
+                } else {
+                    i++;
+                }
+            }
+            return myCount != before;
+        }
+
+        /**
+         * Updates the nearest point found so far with any nearer point of the cell.
+         *
+         * @param theX The x coordinate to search from.
+         * @param theY The y coordinate to search from.
+         * @param theBest The x and y coordinates of the nearest point so far followed by its
+         * squared distance.
+         */
+        void nearest(final double theX, final double theY, final double[] theBest) {
+
+            for (int i = 0; i < 2 * myCount; i += 2) {
+                final double dx = myCoordinates[i] - theX;
+                final double dy = myCoordinates[i + 1] - theY;
+                final double distance = dx * dx + dy * dy;
+                if (distance <= theBest[2]) {
+                    theBest[0] = myCoordinates[i];
+                    theBest[1] = myCoordinates[i + 1];
+                    theBest[2] = distance;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * Interface for DrawingTools whose shape is defined entirely by its start and end points,
+ * such as lines, rectangles, and ellipses. The canvas may move both points onto a nearby
+ * vertex of the drawing or onto a grid before handing them to such tools.
+ * 
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public interface SnapTool extends DrawingTool {
+
+}
@@ -0,0 +1,456 @@
+package model;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Pixel-aligned Shape stored as horizontal runs of pixels, the compact form produced by a
+ * flood fill. Each run covers the pixels from x0 to x1 inclusive on row y, and runs are
+ * kept sorted by row and then by column, so point and rectangle tests only look at the
+ * rows they touch. Runs of the same extent on consecutive rows are merged into rectangles
+ * for drawing and path iteration.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class SpanShape implements Shape {
+
+    // CONSTANTS
+    /** Number of ints describing each run: y, x0, and x1. */
+    private static final int RUN = 3;
+
+
+    // INSTANCE FIELDS
+    /** The runs as consecutive (y, x0, x1) triples, sorted by row and column. */
+    private final int[] myRuns;
+
+    /** The smallest rectangle enclosing every run. */
+    private final Rectangle myBounds;
+
+    /** The runs merged into (x, y, width, height) rectangles, built on first use. */
+    private volatile int[] myRectangles;
+
+
+    /**
+     * Constructor that stores a copy of runs which are already sorted by row and column.
+     *
+     * @param theRuns The runs as consecutive (y, x0, x1) triples.
+     */
+    public SpanShape(final int[] theRuns) {
+
+        myRuns = checked(theRuns.clone());
+        myBounds = boundsOf(myRuns);
+    }
+
+    /**
+     * Constructor that takes ownership of runs whose bounds are already known.
+     *
+     * @param theRuns The runs, which must not be modified afterwards.
+     * @param theBounds The smallest rectangle enclosing every run.
+     */
+    private SpanShape(final int[] theRuns, final Rectangle theBounds) {
+
+        myRuns = theRuns;
+        myBounds = theBounds;
+    }
+
+    /**
+     * Creates a SpanShape that takes ownership of runs built by a caller in this package,
+     * avoiding a copy of what may be a very large array and a pass over it for its bounds.
+     *
+     * @param theRuns The runs as consecutive (y, x0, x1) triples, sorted by row and column,
+     * which must not be modified afterwards.
+     * @param theBounds The smallest rectangle enclosing every run.
+     * @return The new SpanShape.
+     */
+    static SpanShape wrap(final int[] theRuns, final Rectangle theBounds) {
+
+        return new SpanShape(checked(theRuns), theBounds);
+    }
+
+    /**
+     * Provides the caller with a copy of the runs.
+     *
+     * @return The runs as consecutive (y, x0, x1) triples.
+     */
+    public int[] getRuns() {
+
+        return myRuns.clone();
+    }
+
+    /**
+     * Provides the caller with the number of runs.
+     *
+     * @return The number of runs.
+     */
+    public int getRunCount() {
+
+        return myRuns.length / RUN;
+    }
+
+    /**
+     * Provides the caller with the runs merged into rectangles. The array is shared and must
+     * not be modified.
+     *
+     * @return The rectangles as consecutive (x, y, width, height) quadruples.
+     */
+    public int[] getRectangles() {
+
+        int[] result = myRectangles;
+        if (result == null) {
+            result = merge();
+            myRectangles = result;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a copy of this shape moved by a whole number of pixels.
+     *
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved copy.
+     */
+    public SpanShape translated(final int theDeltaX, final int theDeltaY) {
+
+        final int[] runs = myRuns.clone();
+        for (int i = 0; i < runs.length; i += RUN) {
+            runs[i] += theDeltaY;
+            runs[i + 1] += theDeltaX;
+            runs[i + 2] += theDeltaX;
+        }
+        final Rectangle bounds = new Rectangle(myBounds);
+        bounds.translate(theDeltaX, theDeltaY);
+        return new SpanShape(runs, bounds);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+
+        return new Rectangle(myBounds);
+    }
+
+    @Override
+    public Rectangle2D getBounds2D() {
+
+        return new Rectangle(myBounds);
+    }
+
+    @Override
+    public boolean contains(final double theX, final double theY) {
+
+        final int x = (int) Math.floor(theX);
+        final int y = (int) Math.floor(theY);
+        for (int i = firstRun(y); i < myRuns.length && myRuns[i] == y; i += RUN) {
+            if (myRuns[i + 1] <= x && x <= myRuns[i + 2]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(final Point2D thePoint) {
+
+        return contains(thePoint.getX(), thePoint.getY());
+    }
+
+    @Override
+    public boolean intersects(final double theX, final double theY, final double theWidth,
+                              final double theHeight) {
+
+        if (theWidth <= 0 || theHeight <= 0
+            || !myBounds.intersects(theX, theY, theWidth, theHeight)) {
+            return false;
+        }
+        final int top = (int) Math.floor(theY);
+        final double right = theX + theWidth;
+        final double bottom = theY + theHeight;
+        for (int i = firstRun(top); i < myRuns.length && myRuns[i] < bottom; i += RUN) {
+            if (myRuns[i + 1] < right && myRuns[i + 2] + 1 > theX) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean intersects(final Rectangle2D theRectangle) {
+
+        return intersects(theRectangle.getX(), theRectangle.getY(),
+                          theRectangle.getWidth(), theRectangle.getHeight());
+    }
+
+    /**
+     * Determines whether any run overlaps the given region. Only the runs on rows crossed by
+     * the region's bounds are tested.
+     *
+     * @param theRegion The region to test.
+     * @return Whether the region overlaps a run.
+     */
+    public boolean overlaps(final Shape theRegion) {
+
+        final Rectangle2D area = theRegion.getBounds2D();
+        if (!intersects(area)) {
+            return false;
+        }
+        final int top = (int) Math.floor(area.getMinY());
+        for (int i = firstRun(top); i < myRuns.length && myRuns[i] < area.getMaxY();
+             i += RUN) {
+            if (myRuns[i + 1] < area.getMaxX() && myRuns[i + 2] + 1 > area.getMinX()
+                && theRegion.intersects(myRuns[i + 1], myRuns[i],
+                                        myRuns[i + 2] - myRuns[i + 1] + 1, 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(final double theX, final double theY, final double theWidth,
+                            final double theHeight) {
+
+        if (theWidth <= 0 || theHeight <= 0) {
+            return false;
+        }
+        final int left = (int) Math.floor(theX);
+        final int right = (int) Math.ceil(theX + theWidth) - 1;
+        final int bottom = (int) Math.ceil(theY + theHeight);
+        // Every row the rectangle touches needs a single run covering its whole width.
+        for (int y = (int) Math.floor(theY); y < bottom; y++) {
+            boolean covered = false;
+            for (int i = firstRun(y); i < myRuns.length && myRuns[i] == y; i += RUN) {
+                if (myRuns[i + 1] <= left && right <= myRuns[i + 2]) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(final Rectangle2D theRectangle) {
+
+        return contains(theRectangle.getX(), theRectangle.getY(),
+                        theRectangle.getWidth(), theRectangle.getHeight());
+    }
+
+    @Override
+    public PathIterator getPathIterator(final AffineTransform theTransform) {
+
+        return new RectangleIterator(getRectangles(), theTransform);
+    }
+
+    @Override
+    public PathIterator getPathIterator(final AffineTransform theTransform,
+                                        final double theFlatness) {
+
+        return getPathIterator(theTransform);
+    }
+
+    /**
+     * Checks that an array holds whole runs.
+     *
+     * @param theRuns The array to check.
+     * @return The same array.
+     */
+    private static int[] checked(final int[] theRuns) {
+
+        if (theRuns.length % RUN != 0) {
+            throw new IllegalArgumentException("Runs must be (y, x0, x1) triples");
+        }
+        return theRuns;
+    }
+
+    /**
+     * Computes the smallest rectangle enclosing every run.
+     *
+     * @param theRuns The runs, sorted by row.
+     * @return The enclosing rectangle, empty if there are no runs.
+     */
+    private static Rectangle boundsOf(final int[] theRuns) {
+
+        if (theRuns.length == 0) {
+            return new Rectangle();
+        }
+        int left = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        for (int i = 0; i < theRuns.length; i += RUN) {
+            left = Math.min(left, theRuns[i + 1]);
+            right = Math.max(right, theRuns[i + 2]);
+        }
+        final int top = theRuns[0];
+        final int bottom = theRuns[theRuns.length - RUN];
+        return new Rectangle(left, top, right - left + 1, bottom - top + 1);
+    }
+
+    /**
+     * Finds the offset of the first run on or after the given row.
+     *
+     * @param theRow The row to look for.
+     * @return The offset into the runs of the first run whose row is not above theRow.
+     */
+    private int firstRun(final int theRow) {
+
+        int low = 0;
+        int high = myRuns.length / RUN;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (myRuns[middle * RUN] < theRow) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low * RUN;
+    }
+
+    /**
+     * Merges runs with the same extent on consecutive rows into rectangles.
+     *
+     * @return The rectangles as consecutive (x, y, width, height) quadruples.
+     */
+    private int[] merge() {
+
+        final int[] result = new int[myRuns.length / RUN * 4];
+        int count = 0;
+        int previousStart = 0;
+        int previousEnd = 0;
+        // The rectangle each run of the previous row belongs to, by the run's position.
+        int[] previousRects = new int[0];
+        int i = 0;
+        while (i < myRuns.length) {
+            final int row = myRuns[i];
+            int end = i;
+            while (end < myRuns.length && myRuns[end] == row) {
+                end += RUN;
+            }
+            final int[] rowRects = new int[(end - i) / RUN];
+            int p = previousStart;
+            for (int r = i; r < end; r += RUN) {
+                // Advance through the previous row's runs, which are sorted by column.
+                while (p < previousEnd && myRuns[p + 1] < myRuns[r + 1]) {
+                    p += RUN;
+                }
+                final int slot = (r - i) / RUN;
+                if (p < previousEnd && myRuns[p] == row - 1 && myRuns[p + 1] == myRuns[r + 1]
+                    && myRuns[p + 2] == myRuns[r + 2]) {
+                    final int rect = previousRects[(p - previousStart) / RUN];
+                    result[rect + 3]++;
+                    rowRects[slot] = rect;
+                } else {
+                    result[count] = myRuns[r + 1];
+                    result[count + 1] = row;
+                    result[count + 2] = myRuns[r + 2] - myRuns[r + 1] + 1;
+                    result[count + 3] = 1;
+                    rowRects[slot] = count;
+                    count += 4;
+                }
+            }
+            previousStart = i;
+            previousEnd = end;
+            previousRects = rowRects;
+            i = end;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+
+    /**
+     * Iterates over the outlines of a list of rectangles.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class RectangleIterator implements PathIterator {
+
+        // CONSTANTS
+        /** Number of segments describing each rectangle. */
+        private static final int SEGMENTS = 5;
+
+
+        // INSTANCE FIELDS
+        /** The rectangles as consecutive (x, y, width, height) quadruples. */
+        private final int[] myRectangles;
+
+        /** The transform applied to each point, or null. */
+        private final AffineTransform myTransform;
+
+        /** The index of the current segment over all rectangles. */
+        private int mySegment;
+
+
+        /**
+         * Constructor that stores the rectangles and transform.
+         *
+         * @param theRectangles The rectangles to iterate over.
+         * @param theTransform The transform applied to each point, or null.
+         */
+        RectangleIterator(final int[] theRectangles, final AffineTransform theTransform) {
+
+            myRectangles = theRectangles;
+            myTransform = theTransform;
+        }
+
+        @Override
+        public int getWindingRule() {
+
+            return WIND_NON_ZERO;
+        }
+
+        @Override
+        public boolean isDone() {
+
+            return mySegment >= myRectangles.length / 4 * SEGMENTS;
+        }
+
+        @Override
+        public void next() {
+
+            mySegment++;
+        }
+
+        @Override
+        public int currentSegment(final float[] theCoords) {
+
+            final double[] coords = new double[2];
+            final int result = currentSegment(coords);
+            theCoords[0] = (float) coords[0];
+            theCoords[1] = (float) coords[1];
+            return result;
+        }
+
+        @Override
+        public int currentSegment(final double[] theCoords) {
+
+            if (isDone()) {
+                throw new NoSuchElementException("Iterator out of bounds");
+            }
+            final int rect = mySegment / SEGMENTS * 4;
+            final int corner = mySegment % SEGMENTS;
+            if (corner == SEGMENTS - 1) {
+                return SEG_CLOSE;
+            }
+            final int x = myRectangles[rect];
+            final int y = myRectangles[rect + 1];
+            final int right = x + myRectangles[rect + 2];
+            final int bottom = y + myRectangles[rect + 3];
+            theCoords[0] = corner == 1 || corner == 2 ? right : x;
+            theCoords[1] = corner >= 2 ? bottom : y;
+            if (myTransform != null) {
+                myTransform.transform(theCoords, 0, theCoords, 0, 1);
+            }
+            return corner == 0 ? SEG_MOVETO : SEG_LINETO;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package model;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over the drawn bounds of PaintShapes, used to find the shapes near a point
+ * or inside an area without visiting every shape of the document. Shapes are tracked by
+ * identity and remember the order they were added in, so queries report them in drawing
+ * order. Shapes can be added, removed, and replaced one at a time, so edits never require
+ * rebuilding the whole index.
+ *
+ * <p>This class is not thread-safe; PaintPanel only uses it on the event dispatch thread.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class SpatialIndex {
+
+    // CONSTANTS
+    /** Width and height of each grid cell. */
+    private static final int CELL_SIZE = 64;
+
+    /** Shapes covering more cells than this are kept in a separate list instead. */
+    private static final int MAX_CELLS = 64;
+
+    /** Orders entries by when their shapes were drawn. */
+    private static final Comparator<Entry> DRAWING_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry theFirst, final Entry theSecond) {
+            return Long.compare(theFirst.myOrder, theSecond.myOrder);
+        }
+    };
+
+
+    // INSTANCE FIELDS
+    /** Entries of each occupied grid cell, keyed by packed cell coordinates. */
+    private final Map<Long, List<Entry>> myCells;
+
+    /** Entries whose bounds cover too many cells to be stored in the grid. */
+    private final List<Entry> myLarge;
+
+    /** The entry of every indexed shape. */
+    private final Map<PaintShape, Entry> myEntries;
+
+    /** The order assigned to the next shape added. */
+    private long myNextOrder;
+
+
+    /**
+     * Constructor that creates an empty index.
+     */
+    public SpatialIndex() {
+
+        myCells = new HashMap<Long, List<Entry>>();
+        myLarge = new ArrayList<Entry>();
+        myEntries = new IdentityHashMap<PaintShape, Entry>();
+    }
+
+    /**
+     * Removes every shape from the index.
+     */
+    public void clear() {
+
+        myCells.clear();
+        myLarge.clear();
+        myEntries.clear();
+        myNextOrder = 0;
+    }
+
+    /**
+     * Provides the caller with the number of indexed shapes.
+     *
+     * @return The number of indexed shapes.
+     */
+    public int size() {
+
+        return myEntries.size();
+    }
+
+    /**
+     * Adds a shape on top of every shape already indexed.
+     *
+     * @param theShape The shape to add.
+     */
+    public void add(final PaintShape theShape) {
+
+        insert(new Entry(theShape, myNextOrder++));
+    }
+
+    /**
+     * Adds each of the given shapes in order.
+     *
+     * @param theShapes The shapes to add.
+     */
+    public void addAll(final Iterable<PaintShape> theShapes) {
+
+        for (final PaintShape shape: theShapes) {
+            add(shape);
+        }
+    }
+
+    /**
+     * Removes a shape from the index.
+     *
+     * @param theShape The shape to remove.
+     * @return Whether the shape was indexed.
+     */
+    public boolean remove(final PaintShape theShape) {
+
+        final Entry entry = myEntries.remove(theShape);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.isLarge()) {
+            myLarge.remove(entry);
+        } else {
+            for (int row = entry.myTop; row <= entry.myBottom; row++) {
+                for (int column = entry.myLeft; column <= entry.myRight; column++) {
+                    final Long key = key(column, row);
+                    final List<Entry> cell = myCells.get(key);
+                    cell.remove(entry);
+                    if (cell.isEmpty()) {
+                        myCells.remove(key);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces an indexed shape with another that takes its place in the drawing order,
+     * such as a moved copy of it.
+     *
+     * @param theOld The indexed shape.
+     * @param theNew The shape that replaces it.
+     * @return Whether the old shape was indexed; if not, nothing is changed.
+     */
+    public boolean replace(final PaintShape theOld, final PaintShape theNew) {
+
+        final Entry entry = myEntries.get(theOld);
+        if (entry == null) {
+            return false;
+        }
+        remove(theOld);
+        insert(new Entry(theNew, entry.myOrder));
+        return true;
+    }
+
+    /**
+     * Finds every indexed shape whose drawn bounds intersect the given area.
+     *
+     * @param theArea The area to search.
+     * @return The shapes found, in drawing order.
+     */
+    public List<PaintShape> query(final Rectangle2D theArea) {
+
+        final List<Entry> found = new ArrayList<Entry>();
+        final int left = cell(theArea.getMinX());
+        final int top = cell(theArea.getMinY());
+        final int right = cell(theArea.getMaxX());
+        final int bottom = cell(theArea.getMaxY());
+        final long cells = ((long) right - left + 1) * ((long) bottom - top + 1);
+
+        if (cells > myCells.size()) {
+            // Cheaper to walk the occupied cells than every cell of a huge area.
+            for (final List<Entry> cell: myCells.values()) {
+                for (final Entry entry: cell) {
+                    collect(entry, theArea, Math.max(entry.myLeft, left),
+                            Math.max(entry.myTop, top), cell, found);
+                }
+            }
+        } else {
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    final List<Entry> cell = myCells.get(key(column, row));
+                    if (cell != null) {
+                        for (final Entry entry: cell) {
+                            // Report each entry once: from the first cell shared by the
+                            // entry and the area.
+                            if (column == Math.max(entry.myLeft, left)
+                                && row == Math.max(entry.myTop, top)
+                                && entry.myShape.getBounds().intersects(theArea)) {
+                                found.add(entry);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (final Entry entry: myLarge) {
+            if (entry.myShape.getBounds().intersects(theArea)) {
+                found.add(entry);
+            }
+        }
+
+        Collections.sort(found, DRAWING_ORDER);
+        final List<PaintShape> result = new ArrayList<PaintShape>(found.size());
+        for (final Entry entry: found) {
+            result.add(entry.myShape);
+        }
+        return result;
+    }
+
+    /**
+     * Adds an entry found while walking occupied cells, once, from its first cell inside
+     * the area.
+     *
+     * @param theEntry The entry to consider.
+     * @param theArea The area being searched.
+     * @param theColumn The column of the first cell shared by the entry and the area.
+     * @param theRow The row of the first cell shared by the entry and the area.
+     * @param theCell The cell currently being walked.
+     * @param theFound The entries found so far.
+     */
+    private void collect(final Entry theEntry, final Rectangle2D theArea, final int theColumn,
+                         final int theRow, final List<Entry> theCell,
+                         final List<Entry> theFound) {
+
+        if (myCells.get(key(theColumn, theRow)) == theCell
+            && theEntry.myShape.getBounds().intersects(theArea)) {
+            theFound.add(theEntry);
+        }
+    }
+
+    /**
+     * Stores an entry in the grid cells its bounds cover, or in the large list.
+     *
+     * @param theEntry The entry to store.
+     */
+    private void insert(final Entry theEntry) {
+
+        // A shape drawn twice is only indexed at its newest position.
+        remove(theEntry.myShape);
+        myEntries.put(theEntry.myShape, theEntry);
+        if (theEntry.isLarge()) {
+            myLarge.add(theEntry);
+            return;
+        }
+        for (int row = theEntry.myTop; row <= theEntry.myBottom; row++) {
+            for (int column = theEntry.myLeft; column <= theEntry.myRight; column++) {
+                final Long key = key(column, row);
+                List<Entry> cell = myCells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<Entry>(4);
+                    myCells.put(key, cell);
+                }
+                cell.add(theEntry);
+            }
+        }
+    }
+
+    /**
+     * Converts a coordinate to the index of the cell containing it.
+     *
+     * @param theCoordinate The coordinate.
+     * @return The index of the cell along that axis.
+     */
+    private static int cell(final double theCoordinate) {
+
+        return (int) Math.floor(theCoordinate / CELL_SIZE);
+    }
+
+    /**
+     * Packs cell coordinates into a single map key.
+     *
+     * @param theColumn The column of the cell.
+     * @param theRow The row of the cell.
+     * @return The key of the cell.
+     */
+    private static Long key(final int theColumn, final int theRow) {
+
+        return ((long) theColumn << 32) | (theRow & 0xFFFFFFFFL);
+    }
+
+
+    /**
+     * An indexed shape along with its drawing order and the range of cells it covers.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Entry {
+
+        // INSTANCE FIELDS
+        /** The indexed shape. */
+        private final PaintShape myShape;
+
+        /** The position of the shape in drawing order. */
+        private final long myOrder;
+
+        /** The first column covered by the shape. */
+        private final int myLeft;
+
+        /** The first row covered by the shape. */
+        private final int myTop;
+
+        /** The last column covered by the shape. */
+        private final int myRight;
+
+        /** The last row covered by the shape. */
+        private final int myBottom;
+
+
+        /**
+         * Constructor that computes the cells covered by the shape.
+         *
+         * @param theShape The indexed shape.
+         * @param theOrder The position of the shape in drawing order.
+         */
+        Entry(final PaintShape theShape, final long theOrder) {
+
+            myShape = theShape;
+            myOrder = theOrder;
+            final Rectangle2D bounds = theShape.getBounds();
+            myLeft = cell(bounds.getMinX());
+            myTop = cell(bounds.getMinY());
+            myRight = cell(bounds.getMaxX());
+            myBottom = cell(bounds.getMaxY());
+        }
+
+        /**
+         * Determines whether the shape covers too many cells to be stored in the grid.
+         *
+         * @return Whether the entry belongs in the large list.
+         */
+        boolean isLarge() {
+
+            return ((long) myRight - myLeft + 1) * ((long) myBottom - myTop + 1) > MAX_CELLS;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * PaintShape that shows a shared Motif moved by an offset. An instance stores nothing but
+ * the motif and the offset, so its size does not depend on how complex the motif is, and
+ * instances at whole-pixel offsets are drawn by copying the motif's cached sprite. As a
+ * Shape, an instance is the rectangle around its drawn motif.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class StampShape extends PaintShape {
+
+    // INSTANCE FIELDS
+    /** The shared motif shown. */
+    private final Motif myMotif;
+
+    /** The horizontal offset of the motif. */
+    private final double myDeltaX;
+
+    /** The vertical offset of the motif. */
+    private final double myDeltaY;
+
+
+    /**
+     * Constructor that places a motif at the given offset from where it was copied.
+     *
+     * @param theMotif The shared motif to show.
+     * @param theDeltaX The horizontal offset of the motif.
+     * @param theDeltaY The vertical offset of the motif.
+     */
+    public StampShape(final Motif theMotif, final double theDeltaX, final double theDeltaY) {
+
+        super(translate(theMotif.getBounds(), theDeltaX, theDeltaY), Color.BLACK, Color.BLACK,
+              false, 1);
+        myMotif = theMotif;
+        myDeltaX = theDeltaX;
+        myDeltaY = theDeltaY;
+    }
+
+    /**
+     * Accessor method that provides the caller with the shared motif.
+     *
+     * @return The motif shown.
+     */
+    public Motif getMotif() {
+
+        return myMotif;
+    }
+
+    /**
+     * Accessor method that provides the caller with the horizontal offset of the motif.
+     *
+     * @return The horizontal offset.
+     */
+    public double getDeltaX() {
+
+        return myDeltaX;
+    }
+
+    /**
+     * Accessor method that provides the caller with the vertical offset of the motif.
+     *
+     * @return The vertical offset.
+     */
+    public double getDeltaY() {
+
+        return myDeltaY;
+    }
+
+    /**
+     * Draws the motif at the offset, from its sprite where possible.
+     *
+     * @param theGraphics The graphics context to draw into.
+     */
+    @Override
+    public void draw(final Graphics2D theGraphics) {
+
+        myMotif.draw(theGraphics, myDeltaX, myDeltaY);
+    }
+
+    /**
+     * Creates another instance of the motif moved by the given offset.
+     *
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved instance.
+     */
+    @Override
+    public StampShape translated(final double theDeltaX, final double theDeltaY) {
+
+        return new StampShape(myMotif, myDeltaX + theDeltaX, myDeltaY + theDeltaY);
+    }
+
+    @Override
+    public boolean contains(final Point2D thePoint, final double theTolerance) {
+
+        final Rectangle2D bounds = getBounds();
+        if (thePoint.getX() < bounds.getMinX() - theTolerance
+            || thePoint.getX() > bounds.getMaxX() + theTolerance
+            || thePoint.getY() < bounds.getMinY() - theTolerance
+            || thePoint.getY() > bounds.getMaxY() + theTolerance) {
+            return false;
+        }
+        final Point2D local =
+            new Point2D.Double(thePoint.getX() - myDeltaX, thePoint.getY() - myDeltaY);
+        for (final PaintShape shape: myMotif.getShapes()) {
+            if (shape.contains(local, theTolerance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean intersects(final Shape theRegion) {
+
+        if (!getBounds().intersects(theRegion.getBounds2D())) {
+            return false;
+        }
+        final Shape local = AffineTransform.getTranslateInstance(-myDeltaX, -myDeltaY)
+            .createTransformedShape(theRegion);
+        for (final PaintShape shape: myMotif.getShapes()) {
+            if (shape.intersects(local)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Provides the caller with the snap points of the motif's shapes at the offset.
+     *
+     * @return The x and y coordinates of each snap point, one pair after another.
+     */
+    @Override
+    public double[] getSnapPoints() {
+
+        final double[] result = myMotif.getSnapPoints().clone();
+        for (int i = 0; i < result.length; i += 2) {
+            result[i] += myDeltaX;
+            result[i + 1] += myDeltaY;
+        }
+        return result;
+    }
+
+    /**
+     * Computes the drawn bounds of the instance: the motif's bounds at the offset.
+     *
+     * @return The drawn bounds of the instance.
+     */
+    @Override
+    protected Rectangle2D computeBounds() {
+
+        final Rectangle2D bounds = myMotif.getBounds();
+        return new Rectangle2D.Double(bounds.getX() + myDeltaX, bounds.getY() + myDeltaY,
+                                      bounds.getWidth(), bounds.getHeight());
+    }
+}
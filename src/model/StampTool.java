@@ -0,0 +1,122 @@
+package model;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * EditTool that places copies of the chosen Motif. Pressing the mouse places one copy
+ * centered on the point, and dragging tiles further copies side by side on a grid the size
+ * of the motif, starting from the first one. Every copy is a StampShape sharing the
+ * motif's geometry, and copies are placed at whole-pixel offsets so that they are drawn
+ * from the motif's sprite.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class StampTool extends AbstractTool implements EditTool {
+
+    // INSTANCE FIELDS
+    /** The motif being placed, or null if no copy is being placed. */
+    private Motif myMotif;
+
+    /** The offset of the first copy placed by the current drag. */
+    private Point myOrigin;
+
+    /** The width and height of a cell of the tiling grid. */
+    private Point mySpacing;
+
+    /** The cells of the tiling grid already filled by the current drag. */
+    private final Set<Point> myPlaced;
+
+
+    /**
+     * Constructor that starts with no copy being placed.
+     */
+    public StampTool() {
+
+        super();
+        myPlaced = new HashSet<Point>();
+    }
+
+    @Override
+    public Shape getShape() {
+
+        return new Rectangle2D.Double();
+    }
+
+    @Override
+    public String getName() {
+
+        return "Stamp";
+    }
+
+    @Override
+    public void press(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        reset();
+        myMotif = theEditor.getMotif();
+        if (myMotif == null) {
+            return;
+        }
+        final Point2D center = myMotif.getCenter();
+        myOrigin = new Point((int) Math.round(thePoint.getX() - center.getX()),
+                             (int) Math.round(thePoint.getY() - center.getY()));
+        final Rectangle2D bounds = myMotif.getBounds();
+        mySpacing = new Point(Math.max(1, (int) Math.ceil(bounds.getWidth())),
+                              Math.max(1, (int) Math.ceil(bounds.getHeight())));
+        place(new Point(), theEditor);
+    }
+
+    @Override
+    public void drag(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        if (myMotif == null) {
+            return;
+        }
+        final Point2D center = myMotif.getCenter();
+        final double x = thePoint.getX() - center.getX() - myOrigin.x;
+        final double y = thePoint.getY() - center.getY() - myOrigin.y;
+        place(new Point((int) Math.round(x / mySpacing.x), (int) Math.round(y / mySpacing.y)),
+              theEditor);
+    }
+
+    @Override
+    public void release(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        drag(thePoint, theEditor);
+        reset();
+    }
+
+    @Override
+    public void paintOverlay(final Graphics2D theGraphics) {
+
+        // Copies are committed as soon as they are placed.
+    }
+
+    @Override
+    public void reset() {
+
+        myMotif = null;
+        myPlaced.clear();
+    }
+
+    /**
+     * Places a copy of the motif in a cell of the tiling grid, unless the current drag
+     * already filled it.
+     *
+     * @param theCell The column and row of the cell, counted from the first copy.
+     * @param theEditor The editor of the drawing.
+     */
+    private void place(final Point theCell, final ShapeEditor theEditor) {
+
+        if (myPlaced.add(theCell)) {
+            theEditor.addShape(new StampShape(myMotif, myOrigin.x + theCell.x * mySpacing.x,
+                                              myOrigin.y + theCell.y * mySpacing.y));
+        }
+    }
+}
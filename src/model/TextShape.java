@@ -0,0 +1,115 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * PaintShape holding a line of text. The text is drawn straight from its cached
+ * GlyphVector, so repainting a label never lays it out again, and its bounds are the ink
+ * bounds of the glyphs, so labels outside the clip are culled like any other shape. Hit
+ * testing uses the box around the ink, which is what users aim for when picking text.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class TextShape extends PaintShape {
+
+    // INSTANCE FIELDS
+    /** The placed text. */
+    private final GlyphText myText;
+
+
+    /**
+     * Constructor that stores the placed text and its color.
+     *
+     * @param theText The placed text.
+     * @param theColor The color of the text.
+     */
+    public TextShape(final GlyphText theText, final Color theColor) {
+
+        super(theText, theColor, theColor, true, 1);
+        myText = theText;
+    }
+
+    /**
+     * Provides the caller with the placed text.
+     *
+     * @return The placed text.
+     */
+    public GlyphText getText() {
+
+        return myText;
+    }
+
+    /**
+     * Draws the cached glyphs of the text at its baseline.
+     *
+     * @param theGraphics The graphics context to draw into.
+     */
+    @Override
+    public void draw(final Graphics2D theGraphics) {
+
+        theGraphics.setColor(getColor());
+        theGraphics.drawGlyphVector(myText.getGlyphs().getGlyphVector(), (float) myText.getX(),
+                                    (float) myText.getY());
+    }
+
+    /**
+     * Creates a copy of this TextShape moved by the given offset, sharing its layout.
+     *
+     * @param theDeltaX The horizontal distance to move.
+     * @param theDeltaY The vertical distance to move.
+     * @return The moved copy.
+     */
+    @Override
+    public TextShape translated(final double theDeltaX, final double theDeltaY) {
+
+        return new TextShape(myText.translated(theDeltaX, theDeltaY), getColor());
+    }
+
+    @Override
+    public boolean contains(final Point2D thePoint, final double theTolerance) {
+
+        final Rectangle2D ink = myText.getBounds2D();
+        return thePoint.getX() >= ink.getMinX() - theTolerance
+               && thePoint.getX() <= ink.getMaxX() + theTolerance
+               && thePoint.getY() >= ink.getMinY() - theTolerance
+               && thePoint.getY() <= ink.getMaxY() + theTolerance;
+    }
+
+    @Override
+    public boolean intersects(final Shape theRegion) {
+
+        return theRegion.intersects(myText.getBounds2D());
+    }
+
+    /**
+     * Provides the caller with the two ends of the text's baseline as its snap points.
+     *
+     * @return The coordinates of the start and the end of the baseline.
+     */
+    @Override
+    public double[] getSnapPoints() {
+
+        return new double[] {myText.getX(), myText.getY(),
+                             myText.getX() + myText.getGlyphs().getAdvance(), myText.getY()};
+    }
+
+    /**
+     * Computes the drawn bounds of the text: the ink bounds of its glyphs, padded for
+     * anti-aliasing and for hinting nudging glyphs by a pixel.
+     *
+     * @return The drawn bounds of the text.
+     */
+    @Override
+    protected Rectangle2D computeBounds() {
+
+        final Rectangle2D result = myText.getBounds2D();
+        result.setRect(result.getX() - 2, result.getY() - 2, result.getWidth() + 4,
+                       result.getHeight() + 4);
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package model;
+
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * EditTool that places a line of text where the mouse is pressed. The text is requested
+ * from the user through the ShapeEditor and committed as a TextShape in the current paint
+ * color and font, with its baseline starting at the clicked point.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class TextTool extends AbstractTool implements EditTool {
+
+    @Override
+    public Shape getShape() {
+
+        return new Rectangle2D.Double();
+    }
+
+    @Override
+    public String getName() {
+
+        return "Text";
+    }
+
+    @Override
+    public void press(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        final String text = theEditor.requestText();
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        theEditor.addShape(new TextShape(new GlyphText(text, theEditor.getFont(),
+                                                       thePoint.getX(), thePoint.getY()),
+                                         theEditor.getPaintColor()));
+    }
+
+    @Override
+    public void drag(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        // Text is placed once, when the mouse is pressed.
+    }
+
+    @Override
+    public void release(final Point2D thePoint, final ShapeEditor theEditor) {
+
+        // Text is placed once, when the mouse is pressed.
+    }
+
+    @Override
+    public void paintOverlay(final Graphics2D theGraphics) {
+
+        // The text tool has no overlay.
+    }
+
+    @Override
+    public void reset() {
+
+        // The text tool keeps no state between clicks.
+    }
+}
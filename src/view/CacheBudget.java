@@ -0,0 +1,212 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Memory budget shared by the render caches of every open document, such as the layer
+ * rasters of each PaintPanel's LayerCompositor. Each cache reports the bytes it holds
+ * whenever it paints. Once the caches together hold more than the budget, the caches of
+ * the documents painted least recently are released first, so that the documents in
+ * background tabs give up their memory before the one on screen. The document being
+ * painted is only asked to drop what its current frame does not need, so it may keep more
+ * than the budget on its own rather than rasterize every frame again.
+ *
+ * <p>The default budget is a quarter of the largest heap, or the number of megabytes given
+ * by the "powerpaint.cacheBudget" system property. Like the caches it manages, a budget is
+ * not thread-safe and is meant to be used on the event dispatch thread.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class CacheBudget {
+
+    // CONSTANTS
+    /** Bytes in a megabyte, for reading the budget from the system property. */
+    private static final long BYTES_PER_MEGA = 1024 * 1024;
+
+    /** Fraction of the largest heap used for the default budget. */
+    private static final int HEAP_FRACTION = 4;
+
+
+    // INSTANCE FIELDS
+    /** The most bytes the caches may hold together. */
+    private final long myCapacity;
+
+    /** The bytes held by each cache, least recently painted first. */
+    private final LinkedHashMap<Client, long[]> myUsage;
+
+    /** The cache painted most recently, or null if none has painted. */
+    private Client myLast;
+
+    /** The bytes held by all the caches together. */
+    private long myTotal;
+
+    /** Number of times a whole cache was released to stay within the budget. */
+    private long myEvictions;
+
+
+    /**
+     * Constructor that creates a budget with no caches.
+     *
+     * @param theCapacity The most bytes the caches may hold together.
+     */
+    public CacheBudget(final long theCapacity) {
+
+        if (theCapacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        myCapacity = theCapacity;
+        myUsage = new LinkedHashMap<Client, long[]>();
+    }
+
+    /**
+     * Provides the caller with the default budget: the "powerpaint.cacheBudget" system
+     * property in megabytes if it is set, or else a quarter of the largest heap.
+     *
+     * @return The default capacity in bytes.
+     */
+    public static long defaultCapacity() {
+
+        final Long megabytes = Long.getLong("powerpaint.cacheBudget");
+        if (megabytes != null) {
+            return Math.max(0, megabytes) * BYTES_PER_MEGA;
+        }
+        return Runtime.getRuntime().maxMemory() / HEAP_FRACTION;
+    }
+
+    /**
+     * Records the bytes a cache holds after it painted, making it the most recently
+     * painted cache, and releases the caches painted least recently while the caches hold
+     * more than the budget.
+     *
+     * @param theClient The cache that painted.
+     * @param theBytes The bytes it now holds.
+     */
+    void painted(final Client theClient, final long theBytes) {
+
+        if (theClient != myLast) {
+            // Move the cache to the end of the order, after every other cache.
+            final long[] usage = myUsage.remove(theClient);
+            myUsage.put(theClient, usage == null ? new long[1] : usage);
+            myLast = theClient;
+        }
+        resized(theClient, theBytes);
+        balance(theClient);
+    }
+
+    /**
+     * Records the bytes a cache holds after it changed without painting, such as when a
+     * raster prepared in the background is adopted, without changing its place in the
+     * order.
+     *
+     * @param theClient The cache.
+     * @param theBytes The bytes it now holds.
+     */
+    void resized(final Client theClient, final long theBytes) {
+
+        long[] usage = myUsage.get(theClient);
+        if (usage == null) {
+            usage = new long[1];
+            myUsage.put(theClient, usage);
+        }
+        myTotal += theBytes - usage[0];
+        usage[0] = theBytes;
+    }
+
+    /**
+     * Forgets a cache, such as that of a closed document, and the bytes it holds.
+     *
+     * @param theClient The cache.
+     */
+    void remove(final Client theClient) {
+
+        final long[] usage = myUsage.remove(theClient);
+        if (usage != null) {
+            myTotal -= usage[0];
+        }
+        if (theClient == myLast) {
+            myLast = null;
+        }
+    }
+
+    /**
+     * Provides the caller with the most bytes the caches may hold together.
+     *
+     * @return The capacity in bytes.
+     */
+    public long getCapacity() {
+
+        return myCapacity;
+    }
+
+    /**
+     * Provides the caller with the bytes the caches hold together.
+     *
+     * @return The bytes held.
+     */
+    public long getTotal() {
+
+        return myTotal;
+    }
+
+    /**
+     * Provides the caller with the number of times a whole cache was released to stay
+     * within the budget.
+     *
+     * @return The number of evictions so far.
+     */
+    public long getEvictions() {
+
+        return myEvictions;
+    }
+
+    /**
+     * Releases caches, least recently painted first, until the caches hold no more than
+     * the budget, and then trims the cache on screen if it alone is over.
+     *
+     * @param theShown The cache that just painted.
+     */
+    private void balance(final Client theShown) {
+
+        if (myTotal <= myCapacity) {
+            return;
+        }
+        final List<Client> order = new ArrayList<Client>(myUsage.keySet());
+        for (final Client client: order) {
+            if (myTotal <= myCapacity) {
+                return;
+            }
+            final long[] usage = myUsage.get(client);
+            if (client != theShown && usage[0] > 0) {
+                final long kept = client.release(false);
+                myTotal += kept - usage[0];
+                usage[0] = kept;
+                myEvictions++;
+            }
+        }
+        if (myTotal > myCapacity) {
+            resized(theShown, theShown.release(true));
+        }
+    }
+
+
+    /**
+     * A cache whose memory counts against a CacheBudget.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    interface Client {
+
+        /**
+         * Drops cached data to give memory back to the budget.
+         *
+         * @param theShown Whether the cache is on screen, in which case it keeps what it
+         * needs to paint its current frame; otherwise it drops everything it can rebuild.
+         * @return The bytes the cache still holds.
+         */
+        long release(boolean theShown);
+    }
+}
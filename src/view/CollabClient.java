@@ -0,0 +1,316 @@
+package view;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import model.PaintShape;
+
+/**
+ * Connection of one participant to a collaborative drawing session. Shapes and Clear
+ * commands handed to the client are encoded at once but sent at most once a frame, so that
+ * the messages of a burst share one frame and one write. Messages from the other
+ * participants are decoded on the client's reader thread and handed to its receiver, with
+ * the end of each batch that arrived together marked so the receiver can apply it at once.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class CollabClient {
+
+    // CONSTANTS
+    /** Nanoseconds between frames sent, as at 60 frames per second. */
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    /** Nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    /** Milliseconds to wait for the server to accept the connection. */
+    private static final int CONNECT_TIMEOUT = 5000;
+
+
+    // INSTANCE FIELDS
+    /** The connection to the server. */
+    private final Socket mySocket;
+
+    /** The stream from the server. */
+    private final DataInputStream myIn;
+
+    /** The stream to the server. */
+    private final DataOutputStream myOut;
+
+    /** The receiver of the other participants' messages. */
+    private final CollabProtocol.Receiver myReceiver;
+
+    /** The number the server gave this client. */
+    private final int myId;
+
+    /** Guards the pending messages and the counters. */
+    private final Object myLock = new Object();
+
+    /** The messages waiting for the next frame. */
+    private ByteArrayOutputStream myPending;
+
+    /** The pending messages as a data stream. */
+    private DataOutputStream myPendingOut;
+
+    /** The number of the next message sent. */
+    private int mySequence;
+
+    /** The number of frames sent. */
+    private long myFrames;
+
+    /** Whether the client has been closed. */
+    private boolean myClosed;
+
+
+    /**
+     * Constructor that connects to a session server and starts receiving.
+     *
+     * @param theHost The host of the server.
+     * @param thePort The port of the server.
+     * @param theReceiver The receiver of the other participants' messages, called on the
+     * client's reader thread.
+     * @throws IOException If the server cannot be reached or does not speak the protocol.
+     */
+    public CollabClient(final String theHost, final int thePort,
+                        final CollabProtocol.Receiver theReceiver) throws IOException {
+
+        mySocket = new Socket();
+        try {
+            mySocket.setTcpNoDelay(true);
+            mySocket.connect(new InetSocketAddress(theHost, thePort), CONNECT_TIMEOUT);
+            myIn = new DataInputStream(new BufferedInputStream(mySocket.getInputStream()));
+            myOut = new DataOutputStream(new BufferedOutputStream(mySocket.getOutputStream()));
+            CollabProtocol.writeHello(myOut);
+            myOut.flush();
+            CollabProtocol.readHello(myIn);
+            myId = myIn.readInt();
+        } catch (final IOException e) {
+            mySocket.close();
+            throw e;
+        }
+        myReceiver = theReceiver;
+        myPending = new ByteArrayOutputStream();
+        myPendingOut = new DataOutputStream(myPending);
+
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive();
+            }
+        }, "Session reader " + myId);
+        final Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                send();
+            }
+        }, "Session sender " + myId);
+        reader.setDaemon(true);
+        sender.setDaemon(true);
+        reader.start();
+        sender.start();
+    }
+
+    /**
+     * Provides the caller with the number the server gave this client.
+     *
+     * @return The client's number.
+     */
+    public int getId() {
+
+        return myId;
+    }
+
+    /**
+     * Shares a committed shape with the other participants.
+     *
+     * @param theShape The shape.
+     * @return The client's number of the message, or -1 if the client is closed.
+     */
+    public int sendShape(final PaintShape theShape) {
+
+        synchronized (myLock) {
+            if (myClosed) {
+                return -1;
+            }
+            try {
+                CollabProtocol.writeShape(myPendingOut, mySequence, theShape);
+            } catch (final IOException e) {
+                // Written to memory, which does not fail.
+                throw new IllegalStateException(e);
+            }
+            myLock.notifyAll();
+            return mySequence++;
+        }
+    }
+
+    /**
+     * Shares clearing the drawing with the other participants.
+     *
+     * @return The client's number of the message, or -1 if the client is closed.
+     */
+    public int sendClear() {
+
+        synchronized (myLock) {
+            if (myClosed) {
+                return -1;
+            }
+            try {
+                CollabProtocol.writeClear(myPendingOut, mySequence);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+            myLock.notifyAll();
+            return mySequence++;
+        }
+    }
+
+    /**
+     * Provides the caller with the number of messages sent.
+     *
+     * @return The number of messages sent.
+     */
+    public int getMessagesSent() {
+
+        synchronized (myLock) {
+            return mySequence;
+        }
+    }
+
+    /**
+     * Provides the caller with the number of frames the messages were sent in.
+     *
+     * @return The number of frames sent.
+     */
+    public long getFramesSent() {
+
+        synchronized (myLock) {
+            return myFrames;
+        }
+    }
+
+    /**
+     * Leaves the session. Messages not yet sent are dropped, and the receiver is not told.
+     */
+    public void close() {
+
+        if (markClosed()) {
+            closeSocket();
+        }
+    }
+
+    /**
+     * Sends the pending messages as one frame whenever there are some, waiting until a
+     * frame has passed since the previous one.
+     */
+    private void send() {
+
+        long last = System.nanoTime() - FRAME_NANOS;
+        try {
+            while (true) {
+                synchronized (myLock) {
+                    while (myPending.size() == 0 && !myClosed) {
+                        myLock.wait();
+                    }
+                    if (myClosed) {
+                        return;
+                    }
+                }
+                final long wait = last + FRAME_NANOS - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / NANOS_PER_MILLI, (int) (wait % NANOS_PER_MILLI));
+                }
+                final ByteArrayOutputStream frame;
+                synchronized (myLock) {
+                    frame = myPending;
+                    myPending = new ByteArrayOutputStream(frame.size());
+                    myPendingOut = new DataOutputStream(myPending);
+                    myFrames++;
+                }
+                last = System.nanoTime();
+                myOut.writeInt(frame.size());
+                frame.writeTo(myOut);
+                myOut.flush();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Receives frames until the connection ends, ending a batch whenever no more of the
+     * stream has arrived.
+     */
+    private void receive() {
+
+        try {
+            while (true) {
+                final int length = CollabProtocol.readLength(myIn);
+                final int origin = myIn.readInt();
+                final byte[] frame = new byte[length];
+                myIn.readFully(frame);
+                try {
+                    CollabProtocol.read(frame, origin, myReceiver);
+                } catch (final RuntimeException | StackOverflowError e) {
+                    // Shapes are relayed undecoded, so a peer's corrupt shape surfaces here.
+                    throw new IOException("Corrupt frame from client " + origin, e);
+                }
+                if (myIn.available() == 0) {
+                    myReceiver.endBatch();
+                }
+            }
+        } catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Closes the client after its connection failed and tells the receiver, unless the
+     * client was closed already.
+     *
+     * @param theError The error, which is an end of stream if the server closed the
+     * connection.
+     */
+    private void fail(final IOException theError) {
+
+        if (markClosed()) {
+            closeSocket();
+            myReceiver.disconnected(theError instanceof EOFException ? null : theError);
+        }
+    }
+
+    /**
+     * Marks the client closed and wakes its sender.
+     *
+     * @return Whether the client was open until now.
+     */
+    private boolean markClosed() {
+
+        synchronized (myLock) {
+            final boolean wasOpen = !myClosed;
+            myClosed = true;
+            myLock.notifyAll();
+            return wasOpen;
+        }
+    }
+
+    /**
+     * Closes the connection, which ends the reader.
+     */
+    private void closeSocket() {
+
+        try {
+            mySocket.close();
+        } catch (final IOException e) {
+            // Closing, so there is nothing left to do with the connection.
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package view;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import model.PaintDocumentIO;
+import model.PaintShape;
+
+/**
+ * Binary protocol of collaborative drawing sessions, in which several PaintPanels share
+ * the shapes committed to them and their Clear commands through a CollabServer.
+ *
+ * <p>A client opens its connection with MAGIC and VERSION, and the server answers with
+ * them and the number it gives the client. From then on, a client sends frames, each its
+ * length in bytes followed by its messages, and the server relays each frame to the other
+ * clients as its length, the number of the client it came from, and the frame's messages,
+ * unchanged. A message is a tag, the sender's sequence number of the message, and for a
+ * shape the length of the shape followed by the shape in PaintDocumentIO's format, so the
+ * server can walk a frame without decoding its shapes.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class CollabProtocol {
+
+    // CONSTANTS
+    /** Port of a session server when none is given. */
+    public static final int DEFAULT_PORT = 8718;
+
+    /** Marker at the beginning of every connection ("PPCS"). */
+    public static final int MAGIC = 0x50504353;
+
+    /** Version of the protocol spoken by this class. */
+    public static final int VERSION = 1;
+
+    /** Message of a committed shape. */
+    public static final byte SHAPE = 1;
+
+    /** Message of clearing the drawing. */
+    public static final byte CLEAR = 2;
+
+    /** The largest frame accepted, in bytes. */
+    public static final int MAX_FRAME = 16 << 20;
+
+
+    // Private constructor to inhibit external instantiation.
+    private CollabProtocol() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Writes the marker and version that open a connection.
+     *
+     * @param theOutput The output to write to.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void writeHello(final DataOutputStream theOutput) throws IOException {
+
+        theOutput.writeInt(MAGIC);
+        theOutput.writeShort(VERSION);
+    }
+
+    /**
+     * Reads and checks the marker and version that open a connection.
+     *
+     * @param theInput The input to read from.
+     * @throws IOException If the input cannot be read or is not this protocol.
+     */
+    public static void readHello(final DataInputStream theInput) throws IOException {
+
+        if (theInput.readInt() != MAGIC) {
+            throw new IOException("Not a PowerPaint session");
+        }
+        final int version = theInput.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported session version " + version);
+        }
+    }
+
+    /**
+     * Writes the message of a committed shape.
+     *
+     * @param theOutput The frame being written.
+     * @param theSequence The sender's number of the message.
+     * @param theShape The shape.
+     * @throws IOException If the frame cannot be written.
+     */
+    public static void writeShape(final DataOutputStream theOutput, final int theSequence,
+                                  final PaintShape theShape) throws IOException {
+
+        final ByteArrayOutputStream shape = new ByteArrayOutputStream();
+        PaintDocumentIO.writeShape(theShape, new DataOutputStream(shape));
+        theOutput.writeByte(SHAPE);
+        theOutput.writeInt(theSequence);
+        theOutput.writeInt(shape.size());
+        shape.writeTo(theOutput);
+    }
+
+    /**
+     * Writes the message of clearing the drawing.
+     *
+     * @param theOutput The frame being written.
+     * @param theSequence The sender's number of the message.
+     * @throws IOException If the frame cannot be written.
+     */
+    public static void writeClear(final DataOutputStream theOutput, final int theSequence)
+        throws IOException {
+
+        theOutput.writeByte(CLEAR);
+        theOutput.writeInt(theSequence);
+    }
+
+    /**
+     * Reads the length of a frame and checks it.
+     *
+     * @param theInput The input to read from.
+     * @return The length of the frame in bytes.
+     * @throws IOException If the input cannot be read or the length is out of range.
+     */
+    public static int readLength(final DataInputStream theInput) throws IOException {
+
+        final int length = theInput.readInt();
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Counts the messages of a frame without decoding them.
+     *
+     * @param theFrame The messages of the frame.
+     * @return The number of messages.
+     * @throws IOException If the frame is malformed.
+     */
+    public static int countMessages(final byte[] theFrame) throws IOException {
+
+        return scan(theFrame, false);
+    }
+
+    /**
+     * Tells whether a frame clears the drawing, without decoding it.
+     *
+     * @param theFrame The messages of the frame.
+     * @return Whether the frame holds a CLEAR message.
+     * @throws IOException If the frame is malformed.
+     */
+    public static boolean clears(final byte[] theFrame) throws IOException {
+
+        return scan(theFrame, true) < 0;
+    }
+
+    /**
+     * Decodes the messages of a frame and hands them to a receiver in order.
+     *
+     * @param theFrame The messages of the frame.
+     * @param theOrigin The number of the client the frame came from.
+     * @param theReceiver The receiver of the messages.
+     * @throws IOException If the frame is malformed.
+     */
+    public static void read(final byte[] theFrame, final int theOrigin,
+                            final Receiver theReceiver) throws IOException {
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(theFrame));
+        while (in.available() > 0) {
+            final byte tag = in.readByte();
+            final int sequence = in.readInt();
+            if (tag == SHAPE) {
+                in.readInt();
+                theReceiver.shape(theOrigin, sequence, PaintDocumentIO.readShape(in));
+            } else if (tag == CLEAR) {
+                theReceiver.clear(theOrigin, sequence);
+            } else {
+                throw new IOException("Unknown session message " + tag);
+            }
+        }
+    }
+
+    /**
+     * Walks the messages of a frame by their tags and lengths.
+     *
+     * @param theFrame The messages of the frame.
+     * @param theStopAtClear Whether to stop at the first CLEAR message.
+     * @return The number of messages, or -1 if stopped at a CLEAR message.
+     * @throws IOException If the frame is malformed.
+     */
+    private static int scan(final byte[] theFrame, final boolean theStopAtClear)
+        throws IOException {
+
+        int count = 0;
+        int position = 0;
+        while (position < theFrame.length) {
+            final byte tag = theFrame[position];
+            position += 1 + Integer.BYTES;
+            if (tag == SHAPE) {
+                if (position + Integer.BYTES > theFrame.length) {
+                    throw new IOException("Truncated session message");
+                }
+                final int length = (theFrame[position] & 0xFF) << 24
+                                   | (theFrame[position + 1] & 0xFF) << 16
+                                   | (theFrame[position + 2] & 0xFF) << 8
+                                   | theFrame[position + 3] & 0xFF;
+                if (length < 0) {
+                    throw new IOException("Invalid session message length " + length);
+                }
+                // Compared before advancing so that a huge length cannot overflow position.
+                if (length > theFrame.length - position - Integer.BYTES) {
+                    throw new IOException("Truncated session message");
+                }
+                position += Integer.BYTES + length;
+            } else if (tag == CLEAR) {
+                if (theStopAtClear) {
+                    return -1;
+                }
+            } else {
+                throw new IOException("Unknown session message " + tag);
+            }
+            if (position > theFrame.length) {
+                throw new IOException("Truncated session message");
+            }
+            count++;
+        }
+        return count;
+    }
+
+
+    /**
+     * Receives the messages of a session as they are decoded.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    public interface Receiver {
+
+        /**
+         * Receives a shape another client committed.
+         *
+         * @param theOrigin The number of the client.
+         * @param theSequence The client's number of the message.
+         * @param theShape The shape.
+         */
+        void shape(int theOrigin, int theSequence, PaintShape theShape);
+
+        /**
+         * Receives another client's clearing of the drawing.
+         *
+         * @param theOrigin The number of the client.
+         * @param theSequence The client's number of the message.
+         */
+        void clear(int theOrigin, int theSequence);
+
+        /**
+         * Ends a batch of messages that arrived together, after which the receiver should
+         * apply what it received.
+         */
+        void endBatch();
+
+        /**
+         * Reports that the connection to the server was lost.
+         *
+         * @param theError The error that ended the connection, or null if the server
+         * closed it.
+         */
+        void disconnected(IOException theError);
+    }
+}
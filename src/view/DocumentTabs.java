@@ -0,0 +1,260 @@
+package view;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.swing.JTabbedPane;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import model.Layer;
+
+/**
+ * Tabs holding a PaintPanel for each open document. The panels' cached layer images all
+ * count against one CacheBudget, so the documents in background tabs give up their images
+ * before the one on screen, and a document viewed recently is shown again at once from
+ * the images it kept. The user's tool and drawing settings follow them from tab to tab.
+ * Once registerStats is called, every panel's RenderStats is registered with JMX while its
+ * document is open.
+ *
+ * <p>Listeners added through addDocumentListener hear the PropertyChanges of every panel,
+ * and hear the "document" PropertyChange, with the panel as its source and new value,
+ * when another document is shown.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class DocumentTabs extends JTabbedPane {
+
+    // CONSTANTS
+    /** Auto-generated serial version UID for object serialization. */
+    private static final long serialVersionUID = -2874610394857120543L;
+
+
+    // INSTANCE FIELDS
+    /** The budget shared by the panels' cached images. */
+    private final CacheBudget myBudget;
+
+    /** Listeners to the PropertyChanges of every panel. */
+    private final List<PropertyChangeListener> myListeners;
+
+    /** The file each panel's document was last opened from or saved to, if any. */
+    private final Map<PaintPanel, Path> myFiles;
+
+    /** The panel shown, or null before the first document is added. */
+    private PaintPanel myCurrent;
+
+    /** Number used in the title of the next new document. */
+    private int myNextNumber;
+
+    /** Whether the panels' render statistics are registered with JMX. */
+    private boolean myRegistering;
+
+
+    /**
+     * Constructor method that creates the tabs with no documents.
+     *
+     * @param theBudget The budget shared by the panels' cached images.
+     */
+    public DocumentTabs(final CacheBudget theBudget) {
+
+        super();
+        myBudget = theBudget;
+        myListeners = new ArrayList<PropertyChangeListener>();
+        myFiles = new IdentityHashMap<PaintPanel, Path>();
+        myNextNumber = 1;
+        addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(final ChangeEvent theEvent) {
+                selected();
+            }
+        });
+    }
+
+    /**
+     * Adds a tab holding an empty document and shows it. The new panel takes on the
+     * settings of the panel shown before.
+     *
+     * @return The new document's panel.
+     */
+    public PaintPanel newDocument() {
+
+        final PaintPanel panel = new PaintPanel();
+        panel.setCacheBudget(myBudget);
+        panel.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(final PropertyChangeEvent theEvent) {
+                if (theEvent.getPropertyName().equals("file")) {
+                    named(panel, (Path) theEvent.getNewValue());
+                }
+            }
+        });
+        for (final PropertyChangeListener listener: myListeners) {
+            panel.addPropertyChangeListener(listener);
+        }
+        if (myRegistering) {
+            register(panel);
+        }
+        addTab("Untitled " + myNextNumber++, panel);
+        setSelectedComponent(panel);
+        return panel;
+    }
+
+    /**
+     * Registers the render statistics of every open document with JMX, and of every
+     * document added from now on. Until then none are registered, so that the window need
+     * not wait for the MBean server to start.
+     */
+    public void registerStats() {
+
+        myRegistering = true;
+        for (int i = 0; i < getTabCount(); i++) {
+            register((PaintPanel) getComponentAt(i));
+        }
+    }
+
+    /**
+     * Provides the caller with the panel of the document shown.
+     *
+     * @return The panel shown, or null if there are no documents.
+     */
+    public PaintPanel getCurrent() {
+
+        return myCurrent;
+    }
+
+    /**
+     * Provides the caller with the title of a document's tab.
+     *
+     * @param thePanel The panel of the document.
+     * @return The title, or null if the panel's document is not open.
+     */
+    public String getTitle(final PaintPanel thePanel) {
+
+        final int index = indexOfComponent(thePanel);
+        return index < 0 ? null : getTitleAt(index);
+    }
+
+    /**
+     * Opens a document file in the background. The file replaces the document shown if
+     * that one is empty, untitled, and idle, and otherwise opens in a new tab.
+     *
+     * @param theFile The document file.
+     */
+    public void openDocument(final Path theFile) {
+
+        PaintPanel target = myCurrent;
+        if (target == null || !isBlank(target)) {
+            target = newDocument();
+        }
+        target.openDocument(theFile);
+    }
+
+    /**
+     * Closes the document shown and releases what its panel holds. Closing the last
+     * document leaves a new empty one in its place.
+     *
+     * @throws IOException If the document was being recorded and part of the recording
+     * could not be written; the document is closed regardless.
+     */
+    public void closeCurrent() throws IOException {
+
+        final PaintPanel closed = myCurrent;
+        if (closed == null) {
+            return;
+        }
+        if (getTabCount() == 1) {
+            newDocument();
+        }
+        remove(closed);
+        myFiles.remove(closed);
+        closed.closeDocument();
+    }
+
+    /**
+     * Adds a listener to the PropertyChanges of every panel, present and future, and to
+     * the "document" PropertyChange fired when another document is shown.
+     *
+     * @param theListener The listener.
+     */
+    public void addDocumentListener(final PropertyChangeListener theListener) {
+
+        myListeners.add(theListener);
+        for (int i = 0; i < getTabCount(); i++) {
+            ((PaintPanel) getComponentAt(i)).addPropertyChangeListener(theListener);
+        }
+    }
+
+    /**
+     * Follows the user to the tab selected: hands the settings of the panel shown before
+     * to the panel now shown and tells the listeners of the change.
+     */
+    private void selected() {
+
+        final PaintPanel next = (PaintPanel) getSelectedComponent();
+        if (next == null || next == myCurrent) {
+            return;
+        }
+        final PaintPanel previous = myCurrent;
+        myCurrent = next;
+        if (previous != null) {
+            next.copySettings(previous);
+        }
+        final PropertyChangeEvent event =
+            new PropertyChangeEvent(next, "document", previous, next);
+        for (final PropertyChangeListener listener: new ArrayList<PropertyChangeListener>(
+                myListeners)) {
+            listener.propertyChange(event);
+        }
+    }
+
+    /**
+     * Registers a panel's render statistics with JMX, reporting it if they cannot be.
+     *
+     * @param thePanel The panel.
+     */
+    private static void register(final PaintPanel thePanel) {
+
+        try {
+            thePanel.getRenderStats().register();
+        } catch (final JMException e) {
+            System.out.println("Render statistics are not available through JMX");
+        }
+    }
+
+    /**
+     * Titles a panel's tab after the file its document was opened from or saved to.
+     *
+     * @param thePanel The panel.
+     * @param theFile The file.
+     */
+    private void named(final PaintPanel thePanel, final Path theFile) {
+
+        myFiles.put(thePanel, theFile);
+        final int index = indexOfComponent(thePanel);
+        if (index >= 0) {
+            setTitleAt(index, theFile.getFileName().toString());
+            setToolTipTextAt(index, theFile.toAbsolutePath().toString());
+        }
+    }
+
+    /**
+     * Tells whether a panel holds nothing worth keeping: an untitled document of one empty
+     * layer with no background tasks.
+     *
+     * @param thePanel The panel.
+     * @return Whether a file may be opened in its place.
+     */
+    private boolean isBlank(final PaintPanel thePanel) {
+
+        final List<Layer> layers = thePanel.getLayers();
+        return !myFiles.containsKey(thePanel) && layers.size() == 1
+            && layers.get(0).getShapes().snapshot().isEmpty()
+            && thePanel.getTasks().isEmpty();
+    }
+}
@@ -0,0 +1,235 @@
+package view;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+
+/**
+ * An operation on a document long enough to stall the event dispatch thread, such as
+ * opening, saving, exporting, or rasterizing a large layer. A TaskRunner computes the
+ * result on its worker thread from snapshots taken when the task was made, and then hands
+ * it to commit on the event dispatch thread in a single step, so the drawing is never
+ * seen half changed. A task that is cancelled stops at its next check and is never
+ * committed.
+ *
+ * <p>While computing, a task reports its progress as units of work done out of a total,
+ * such as bytes read or shapes drawn, and checks whether it has been cancelled as it
+ * goes; the streams returned by track and the shapes drawn through ShapeRenderer do both
+ * for it.
+ *
+ * @param <T> The type of the result.
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public abstract class DocumentTask<T> {
+
+    // INSTANCE FIELDS
+    /** What the task does, as shown to the user. */
+    private final String myName;
+
+    /** Whether the task has been cancelled. */
+    private volatile boolean myCancelled;
+
+    /** The units of work done so far. */
+    private volatile long myDone;
+
+    /** The units of work in the whole task, or 0 if unknown. */
+    private volatile long myTotal;
+
+    /** What made the task fail, or null if it has not failed. */
+    private volatile Exception myError;
+
+
+    /**
+     * Constructor of a task that has not started.
+     *
+     * @param theName What the task does, as shown to the user.
+     */
+    protected DocumentTask(final String theName) {
+
+        myName = theName;
+    }
+
+    /**
+     * Computes the result of the task. Called on the TaskRunner's worker thread, so it
+     * must only read snapshots of the drawing.
+     *
+     * @return The result, handed to commit.
+     * @throws IOException If the task fails.
+     * @throws CancellationException If the task notices that it was cancelled.
+     */
+    protected abstract T compute() throws IOException;
+
+    /**
+     * Applies the result of the task to the drawing. Called on the event dispatch thread,
+     * and only if the task was not cancelled.
+     *
+     * @param theResult The result of compute.
+     */
+    protected abstract void commit(T theResult);
+
+    /**
+     * Provides the caller with what the task does.
+     *
+     * @return The name of the task.
+     */
+    public String getName() {
+
+        return myName;
+    }
+
+    /**
+     * Cancels the task. A task that has not started never starts, and a task that has
+     * started stops at its next check and is not committed.
+     */
+    public void cancel() {
+
+        myCancelled = true;
+    }
+
+    /**
+     * Tells whether the task has been cancelled.
+     *
+     * @return Whether cancel has been called.
+     */
+    public boolean isCancelled() {
+
+        return myCancelled;
+    }
+
+    /**
+     * Provides the caller with how much of the task is done.
+     *
+     * @return The fraction done, from 0 to 1, or -1 if the task's size is unknown.
+     */
+    public double getProgress() {
+
+        final long total = myTotal;
+        if (total <= 0) {
+            return -1;
+        }
+        return Math.min(1, (double) myDone / total);
+    }
+
+    /**
+     * Provides the caller with what made the task fail.
+     *
+     * @return The exception thrown by compute, or null if the task has not failed.
+     */
+    public Exception getError() {
+
+        return myError;
+    }
+
+    /**
+     * Sets the units of work in the whole task and starts counting them from none.
+     *
+     * @param theTotal The units of work, or 0 if unknown.
+     */
+    protected final void setTotal(final long theTotal) {
+
+        myTotal = theTotal;
+        myDone = 0;
+    }
+
+    /**
+     * Counts units of work as done, after checking whether the task was cancelled.
+     *
+     * @param theWork The units of work done since the last call.
+     * @throws CancellationException If the task was cancelled.
+     */
+    final void advance(final long theWork) {
+
+        checkCancelled();
+        // Only the worker thread writes the count.
+        myDone += theWork;
+    }
+
+    /**
+     * Stops the task if it was cancelled.
+     *
+     * @throws CancellationException If the task was cancelled.
+     */
+    protected final void checkCancelled() {
+
+        if (myCancelled) {
+            throw new CancellationException(myName + " was cancelled");
+        }
+    }
+
+    /**
+     * Wraps a stream so that every byte read counts as a unit of work.
+     *
+     * @param theStream The stream to read.
+     * @return A stream reading from it that stops the task if it is cancelled.
+     */
+    protected final InputStream track(final InputStream theStream) {
+
+        return new FilterInputStream(theStream) {
+            @Override
+            public int read() throws IOException {
+                final int result = super.read();
+                if (result >= 0) {
+                    advance(1);
+                }
+                return result;
+            }
+
+            @Override
+            public int read(final byte[] theBytes, final int theOffset, final int theLength)
+                throws IOException {
+                final int result = super.read(theBytes, theOffset, theLength);
+                advance(Math.max(result, 0));
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Wraps a stream so that every byte written counts as a unit of work.
+     *
+     * @param theStream The stream to write.
+     * @return A stream writing to it that stops the task if it is cancelled.
+     */
+    protected final OutputStream track(final OutputStream theStream) {
+
+        return new FilterOutputStream(theStream) {
+            @Override
+            public void write(final int theByte) throws IOException {
+                advance(1);
+                out.write(theByte);
+            }
+
+            @Override
+            public void write(final byte[] theBytes, final int theOffset, final int theLength)
+                throws IOException {
+                advance(theLength);
+                out.write(theBytes, theOffset, theLength);
+            }
+        };
+    }
+
+    /**
+     * Computes the result on the calling thread, recording any failure. Called by the
+     * TaskRunner's worker thread.
+     *
+     * @return The result, or null if the task was cancelled or failed.
+     */
+    final T run() {
+
+        if (myCancelled) {
+            return null;
+        }
+        try {
+            return compute();
+        } catch (final CancellationException e) {
+            myCancelled = true;
+        } catch (final IOException | RuntimeException e) {
+            myError = e;
+        }
+        return null;
+    }
+}
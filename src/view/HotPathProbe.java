@@ -0,0 +1,314 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import model.DrawingTool;
+import model.EllipseTool;
+import model.LineTool;
+import model.PaintShape;
+import model.PencilTool;
+import model.RectangleTool;
+
+/**
+ * Measures the bytes allocated by the paths the event dispatch thread runs while the user
+ * draws: painting the canvas, dragging with each drawing tool, asking a tool for its
+ * shape, and committing a shape on release. Allocation on these paths is what makes the
+ * collector pause while the user draws.
+ *
+ * <p>Each path is run on the event dispatch thread, first to warm it up and then under
+ * measurement, and the bytes that thread allocated are divided by the number of runs.
+ * Dragging includes pressing again after every 100 drags, and committing includes
+ * clearing the drawing after every 100 shapes, so that every round does like work.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class HotPathProbe {
+
+    // CONSTANTS
+    /** Width of the canvas painted. */
+    private static final int WIDTH = 800;
+
+    /** Height of the canvas painted. */
+    private static final int HEIGHT = 600;
+
+    /** Number of shapes in the drawing painted. */
+    private static final int SHAPES = 200;
+
+    /** Seed for the drawing, so every run measures the same one. */
+    private static final long SEED = 42;
+
+    /** Number of drags in a stroke, and of shapes committed before the drawing is cleared. */
+    private static final int STROKE = 100;
+
+    /** Number of measured rounds of each path. */
+    private static final int ROUNDS = 5;
+
+
+    // Private constructor to inhibit external instantiation.
+    private HotPathProbe() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Measures every path.
+     *
+     * @param theRuns The number of runs of each path, both to warm up and to measure.
+     * @return The bytes allocated per run of each path, keyed by the path's name.
+     * @throws IllegalStateException If the JVM cannot measure allocations per thread.
+     * @throws InterruptedIOException If interrupted while waiting for the measurements.
+     */
+    public static Map<String, Double> measure(final int theRuns)
+        throws InterruptedIOException {
+
+        final com.sun.management.ThreadMXBean threads = threads();
+        final Map<String, Double> result = new LinkedHashMap<String, Double>();
+        SessionReplayer.runOnEventThread(new Runnable() {
+            @Override
+            public void run() {
+                final ProbePanel panel = new ProbePanel();
+                final List<DrawingTool> tools = new ArrayList<DrawingTool>();
+                tools.add(new LineTool());
+                tools.add(new RectangleTool());
+                tools.add(new EllipseTool());
+                tools.add(new PencilTool());
+                for (final DrawingTool tool: tools) {
+                    panel.setCurrentTool(tool);
+                    result.put("drag." + tool.getName(), measure(threads, theRuns,
+                        new Runnable() {
+                            private int myCount;
+
+                            @Override
+                            public void run() {
+                                // Strokes of a like length, so every round grows a pencil
+                                // path by as much.
+                                if (myCount++ % STROKE == 0) {
+                                    panel.press();
+                                }
+                                panel.drag(myCount & 1);
+                            }
+                        }));
+                    result.put("getShape." + tool.getName(), measure(threads, theRuns,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                tool.getShape();
+                            }
+                        }));
+                }
+                for (final DrawingTool tool: tools) {
+                    panel.setCurrentTool(tool);
+                    panel.clearShapes();
+                    result.put("commit." + tool.getName(), measure(threads, theRuns,
+                        new Runnable() {
+                            private int myCount;
+
+                            @Override
+                            public void run() {
+                                // Kept small so that every round commits to a like drawing.
+                                if (++myCount % STROKE == 0) {
+                                    panel.clearShapes();
+                                }
+                                panel.commit();
+                            }
+                        }));
+                }
+
+                panel.fill();
+                panel.setCurrentTool(tools.get(1));
+                panel.setFillStatus(true);
+                panel.press();
+                panel.drag(1);
+                result.put("paint", measure(threads, theRuns, new Runnable() {
+                    @Override
+                    public void run() {
+                        panel.render();
+                    }
+                }));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Provides the JVM's thread bean, switching on measurement of allocations per thread.
+     *
+     * @return The thread bean.
+     * @throws IllegalStateException If the JVM cannot measure allocations per thread.
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new IllegalStateException("This JVM cannot measure allocations per thread");
+        }
+        final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM cannot measure allocations per thread");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    /**
+     * Runs a path to warm it up, then in several rounds while counting the bytes the
+     * current thread allocates. The least round is kept, since the compiler may still be
+     * at work in the others and allocate on the path's behalf.
+     *
+     * @param theThreads The JVM's thread bean.
+     * @param theRuns The number of runs, both to warm up and in each round.
+     * @param thePath The path.
+     * @return The bytes allocated per run.
+     */
+    private static double measure(final com.sun.management.ThreadMXBean theThreads,
+                                  final int theRuns, final Runnable thePath) {
+
+        for (int i = 0; i < theRuns; i++) {
+            thePath.run();
+        }
+        long least = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long before = theThreads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < theRuns; i++) {
+                thePath.run();
+            }
+            least = Math.min(least, theThreads.getCurrentThreadAllocatedBytes() - before);
+        }
+        return least / (double) theRuns;
+    }
+
+
+    /**
+     * PaintPanel driven directly through its mouse listeners and painted into an image, so
+     * that nothing but the panel's own work is measured. The mouse events are made once.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class ProbePanel extends PaintPanel {
+
+        /** Auto-generated UID for object serialization. */
+        private static final long serialVersionUID = 5209388217441069712L;
+
+        /** The image painted into. */
+        private final transient BufferedImage myFrame;
+
+        /** The graphics context of the image, kept for every paint. */
+        private final transient Graphics2D myGraphics;
+
+        /** The press that starts every drag. */
+        private final transient MouseEvent myPress;
+
+        /** Two drags, to alternate between. */
+        private final transient MouseEvent[] myDrags;
+
+        /** The release that ends every commit. */
+        private final transient MouseEvent myRelease;
+
+
+        /**
+         * Constructor of a panel holding an empty drawing.
+         */
+        private ProbePanel() {
+
+            super();
+            setSize(WIDTH, HEIGHT);
+            myFrame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            myGraphics = myFrame.createGraphics();
+            myPress = event(MouseEvent.MOUSE_PRESSED, 100, 100);
+            myDrags = new MouseEvent[] {event(MouseEvent.MOUSE_DRAGGED, 300, 250),
+                                        event(MouseEvent.MOUSE_DRAGGED, 310, 240)};
+            myRelease = event(MouseEvent.MOUSE_RELEASED, 310, 240);
+        }
+
+        /**
+         * Presses the mouse.
+         */
+        private void press() {
+
+            for (final MouseListener listener: getMouseListeners()) {
+                listener.mousePressed(myPress);
+            }
+        }
+
+        /**
+         * Drags the mouse.
+         *
+         * @param theWhich Which of the two drags to make, 0 or 1.
+         */
+        private void drag(final int theWhich) {
+
+            for (final MouseMotionListener listener: getMouseMotionListeners()) {
+                listener.mouseDragged(myDrags[theWhich]);
+            }
+        }
+
+        /**
+         * Presses, drags, and releases the mouse, committing a shape to the drawing.
+         */
+        private void commit() {
+
+            press();
+            drag(0);
+            for (final MouseListener listener: getMouseListeners()) {
+                listener.mouseReleased(myRelease);
+            }
+        }
+
+        /**
+         * Replaces the drawing with random filled and outlined rectangles.
+         */
+        private void fill() {
+
+            clearShapes();
+            final Random random = new Random(SEED);
+            final List<PaintShape> shapes = new ArrayList<PaintShape>();
+            for (int i = 0; i < SHAPES; i++) {
+                shapes.add(new PaintShape(new Rectangle(random.nextInt(WIDTH),
+                                                        random.nextInt(HEIGHT),
+                                                        random.nextInt(100) + 1,
+                                                        random.nextInt(100) + 1),
+                                          new Color(random.nextInt(1 << 24)),
+                                          new Color(random.nextInt(1 << 24)),
+                                          random.nextBoolean(), random.nextInt(5) + 1));
+            }
+            addShapes(shapes);
+        }
+
+        /**
+         * Paints the panel into the image.
+         */
+        private void render() {
+
+            paintComponent(myGraphics);
+        }
+
+        /**
+         * Makes a mouse event with the first button held, as a drawing stroke has.
+         *
+         * @param theId The kind of MouseEvent.
+         * @param theX The x coordinate of the mouse.
+         * @param theY The y coordinate of the mouse.
+         * @return The event.
+         */
+        private MouseEvent event(final int theId, final int theX, final int theY) {
+
+            return new MouseEvent(this, theId, 0, InputEvent.BUTTON1_DOWN_MASK, theX, theY,
+                                  1, false, MouseEvent.BUTTON1);
+        }
+    }
+}
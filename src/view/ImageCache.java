@@ -0,0 +1,210 @@
+package view;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Thread-safe least-recently-used cache of rendered images bounded by the number of bytes
+ * their pixels occupy. Callers that ask for the same missing key at the same time share a
+ * single computation instead of each rendering the image.
+ *
+ * @param <K> The type of key identifying each image.
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class ImageCache<K> {
+
+    // INSTANCE FIELDS
+    /** Cached images in access order, least recently used first. */
+    private final LinkedHashMap<K, BufferedImage> myImages;
+
+    /** Computations currently producing images that are not cached yet. */
+    private final Map<K, FutureTask<BufferedImage>> myPending;
+
+    /** The maximum number of bytes of pixels kept by the cache. */
+    private final long myCapacity;
+
+    /** The number of bytes of pixels currently kept by the cache. */
+    private long mySize;
+
+    /** The number of lookups satisfied from the cache. */
+    private long myHits;
+
+    /** The number of lookups that had to compute their image. */
+    private long myMisses;
+
+
+    /**
+     * Constructor that creates an empty cache with the given capacity.
+     *
+     * @param theCapacity The maximum number of bytes of pixels to keep.
+     */
+    public ImageCache(final long theCapacity) {
+
+        if (theCapacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        myImages = new LinkedHashMap<K, BufferedImage>(16, 0.75f, true);
+        myPending = new HashMap<K, FutureTask<BufferedImage>>();
+        myCapacity = theCapacity;
+    }
+
+    /**
+     * Returns the image cached for the key, computing and caching it if it is missing.
+     *
+     * @param theKey The key of the image.
+     * @param theLoader Produces the image when it is not cached.
+     * @return The cached or newly computed image.
+     * @throws ExecutionException If the loader fails.
+     * @throws InterruptedException If interrupted while waiting for another caller's
+     * computation of the same image.
+     */
+    public BufferedImage get(final K theKey, final Callable<BufferedImage> theLoader)
+        throws ExecutionException, InterruptedException {
+
+        final FutureTask<BufferedImage> task;
+        final boolean owner;
+        synchronized (this) {
+            final BufferedImage cached = myImages.get(theKey);
+            if (cached != null) {
+                myHits++;
+                return cached;
+            }
+            myMisses++;
+            final FutureTask<BufferedImage> pending = myPending.get(theKey);
+            if (pending == null) {
+                task = new FutureTask<BufferedImage>(theLoader);
+                myPending.put(theKey, task);
+                owner = true;
+            } else {
+                task = pending;
+                owner = false;
+            }
+        }
+
+        if (owner) {
+            task.run();
+            synchronized (this) {
+                myPending.remove(theKey);
+                try {
+                    put(theKey, task.get());
+                } catch (final ExecutionException e) {
+                    // The failure is reported to every caller below.
+                }
+            }
+        }
+        return task.get();
+    }
+
+    /**
+     * Returns the image cached for the key without computing it.
+     *
+     * @param theKey The key of the image.
+     * @return The cached image, or null if it is not cached.
+     */
+    public synchronized BufferedImage peek(final K theKey) {
+
+        final BufferedImage result = myImages.get(theKey);
+        if (result == null) {
+            myMisses++;
+        } else {
+            myHits++;
+        }
+        return result;
+    }
+
+    /**
+     * Caches the image under the key, evicting the least recently used images until the
+     * cache fits within its capacity. Images larger than the whole capacity are not cached.
+     *
+     * @param theKey The key of the image.
+     * @param theImage The image to cache.
+     */
+    public synchronized void put(final K theKey, final BufferedImage theImage) {
+
+        final BufferedImage previous = myImages.remove(theKey);
+        if (previous != null) {
+            mySize -= sizeOf(previous);
+        }
+        final long size = sizeOf(theImage);
+        if (size > myCapacity) {
+            return;
+        }
+        final Iterator<BufferedImage> eldest = myImages.values().iterator();
+        while (mySize + size > myCapacity && eldest.hasNext()) {
+            mySize -= sizeOf(eldest.next());
+            eldest.remove();
+        }
+        myImages.put(theKey, theImage);
+        mySize += size;
+    }
+
+    /**
+     * Removes every cached image.
+     */
+    public synchronized void clear() {
+
+        myImages.clear();
+        mySize = 0;
+    }
+
+    /**
+     * Provides the caller with the number of bytes of pixels currently cached.
+     *
+     * @return The number of bytes currently cached.
+     */
+    public synchronized long getSize() {
+
+        return mySize;
+    }
+
+    /**
+     * Provides the caller with the number of images currently cached.
+     *
+     * @return The number of images currently cached.
+     */
+    public synchronized int getCount() {
+
+        return myImages.size();
+    }
+
+    /**
+     * Provides the caller with the number of lookups satisfied from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public synchronized long getHits() {
+
+        return myHits;
+    }
+
+    /**
+     * Provides the caller with the number of lookups that missed the cache.
+     *
+     * @return The number of cache misses.
+     */
+    public synchronized long getMisses() {
+
+        return myMisses;
+    }
+
+    /**
+     * Estimates the number of bytes occupied by the pixels of an image.
+     *
+     * @param theImage The image to measure.
+     * @return The approximate size of the image's pixels in bytes.
+     */
+    public static long sizeOf(final BufferedImage theImage) {
+
+        final DataBuffer buffer = theImage.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+               * DataBuffer.getDataTypeSize(buffer.getDataType()) / Byte.SIZE;
+    }
+}
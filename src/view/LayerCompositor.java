@@ -0,0 +1,1079 @@
+package view;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import model.Layer;
+import model.OcclusionIndex;
+import model.ShapeList;
+
+/**
+ * Composites the layers of a drawing from a cached raster per layer. A layer is only
+ * rasterized again when its shapes change, and then only as much as the change requires:
+ * appended shapes are drawn onto the raster as they are, and edits reported through
+ * {@link #changed} repaint just the area they touch. The layers below and above the active
+ * layer are further combined into one cached image each, so that editing the active layer
+ * redraws one raster and blends three images no matter how many layers the drawing has.
+ * Whenever a layer is rasterized again, shapes its OcclusionIndex reports as hidden under
+ * later opaque fills are skipped; the index of each layer outlives its raster and is kept
+ * up to date with the shapes committed to and removed from the layer.
+ *
+ * <p>Given a TaskRunner through {@link #setBackground}, the compositor rasterizes whole
+ * layers of many shapes as DocumentTasks on the runner's worker thread, and keeps painting
+ * the layer's previous raster until the new one is adopted. When the canvas is resized,
+ * the existing rasters are likewise painted as they are until they are redrawn.
+ *
+ * <p>Given a CacheBudget through {@link #setBudget}, the compositor reports the bytes of
+ * its images after every paint, and gives them up when the budget needs the memory for
+ * a document painted more recently.
+ *
+ * <p>Rasters are kept in device pixels at the size of the canvas, so the compositor must
+ * be painted with an untransformed graphics context. It is not thread-safe and is meant to
+ * be used on the event dispatch thread.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class LayerCompositor {
+
+    // CONSTANTS
+    /**
+     * Number of reported edits remembered per layer between paints; past this the layer is
+     * simply rasterized again.
+     */
+    private static final int MAX_PENDING = 64;
+
+    /** Number of shapes from which a whole layer is rasterized on the background thread. */
+    private static final int BACKGROUND_SHAPES = 1000;
+
+
+    // INSTANCE FIELDS
+    /** The cached raster of each layer, by layer identity. */
+    private final Map<Layer, LayerRaster> myRasters;
+
+    /** The occlusion index of each layer, by layer identity. */
+    private final Map<Layer, OcclusionIndex> myOcclusion;
+
+    /** The combined image of the shown layers below the active layer. */
+    private final Group myBelow;
+
+    /** The combined image of the shown layers above the active layer. */
+    private final Group myAbove;
+
+    /** The width of every cached image. */
+    private int myWidth;
+
+    /** The height of every cached image. */
+    private int myHeight;
+
+    /** Running count of rasterizations, for telling a layer's rasters apart. */
+    private long myVersion;
+
+    /** Number of times a whole layer has been rasterized. */
+    private long myFullRenders;
+
+    /** Number of times part of a layer has been rasterized. */
+    private long myPartialRenders;
+
+    /** Number of times a shown layer's raster was already up to date when painted. */
+    private long myRasterHits;
+
+    /** Number of shapes considered for drawing while rasterizing layers. */
+    private long myShapesVisited;
+
+    /** Number of shapes drawn while rasterizing layers. */
+    private long myShapesDrawn;
+
+    /** Runs rasterizations of large layers, or null to rasterize every layer inline. */
+    private TaskRunner myRunner;
+
+    /** Asks for another paint once a layer rasterized in the background is adopted. */
+    private Runnable myRepaint;
+
+    /** The budget the cached images count against, or null if they are unbounded. */
+    private CacheBudget myBudget;
+
+    /** Releases cached images when the budget asks. */
+    private final CacheBudget.Client myClient;
+
+    /** The opacity of every layer shown by the last paint, by layer identity. */
+    private Map<Layer, Float> myShown;
+
+
+    /**
+     * Constructor that creates a compositor with nothing cached.
+     */
+    public LayerCompositor() {
+
+        myRasters = new IdentityHashMap<Layer, LayerRaster>();
+        myOcclusion = new IdentityHashMap<Layer, OcclusionIndex>();
+        myBelow = new Group();
+        myAbove = new Group();
+        myShown = new IdentityHashMap<Layer, Float>();
+        myClient = new CacheBudget.Client() {
+            @Override
+            public long release(final boolean theShown) {
+                return releaseImages(theShown);
+            }
+        };
+    }
+
+    /**
+     * Reports an edit of a layer that was not a plain append, such as moving or removing
+     * shapes, so that the next paint can repaint only the affected area of the layer's
+     * raster. Edits that are not reported are still picked up, at the cost of rasterizing
+     * the whole layer again.
+     *
+     * @param theLayer The edited layer.
+     * @param theBefore The layer's shapes immediately before the edit.
+     * @param theAfter The layer's shapes immediately after the edit.
+     * @param theArea The area whose pixels the edit may have changed.
+     */
+    public void changed(final Layer theLayer, final ShapeList theBefore,
+                        final ShapeList theAfter, final Rectangle2D theArea) {
+
+        final LayerRaster raster = myRasters.get(theLayer);
+        if (raster != null) {
+            raster.record(new Change(theBefore, theAfter, theArea));
+        }
+    }
+
+    /**
+     * Rasterizes whole layers of many shapes on a TaskRunner's worker thread from now on,
+     * or inline again.
+     *
+     * @param theRunner The runner to rasterize on, or null to rasterize inline.
+     * @param theRepaint Asks for another paint once a raster is adopted; run on the event
+     * dispatch thread.
+     */
+    void setBackground(final TaskRunner theRunner, final Runnable theRepaint) {
+
+        if (theRunner == null) {
+            cancelRenders(myRasters.values());
+        }
+        myRunner = theRunner;
+        myRepaint = theRepaint;
+    }
+
+    /**
+     * Counts the cached images against a budget shared with other compositors from now
+     * on, or against none.
+     *
+     * @param theBudget The budget, or null to keep images until they are out of date.
+     */
+    void setBudget(final CacheBudget theBudget) {
+
+        if (myBudget != null) {
+            myBudget.remove(myClient);
+        }
+        myBudget = theBudget;
+    }
+
+    /**
+     * Provides the caller with the cached raster of a layer, rasterizing whatever is out of
+     * date inline first, so that its pixels are exactly those of the layer's current shapes
+     * drawn at full opacity. Reading the raster costs nothing more while the layer has not
+     * changed since it was last painted.
+     *
+     * @param theLayer The layer.
+     * @param theWidth The width of the canvas.
+     * @param theHeight The height of the canvas.
+     * @return The layer's raster, premultiplied and backed by one int per pixel, which the
+     * caller must not modify; or null if the canvas is empty.
+     */
+    public BufferedImage exactRaster(final Layer theLayer, final int theWidth,
+                                     final int theHeight) {
+
+        if (theWidth <= 0 || theHeight <= 0) {
+            return null;
+        }
+        if (theWidth != myWidth || theHeight != myHeight) {
+            resize(theWidth, theHeight);
+        }
+        final LayerRaster raster = rasterFor(theLayer);
+        raster.update(theLayer, occlusionFor(theLayer), true);
+        charge();
+        return raster.myImage;
+    }
+
+    /**
+     * Adopts a raster of a layer prepared away from the event dispatch thread, such as
+     * while opening a document, if it still matches the size of the canvas.
+     *
+     * @param theLayer The layer.
+     * @param thePrepared The raster of some snapshot of the layer's shapes.
+     */
+    void adopt(final Layer theLayer, final Prepared thePrepared) {
+
+        if (thePrepared.myWidth != myWidth || thePrepared.myHeight != myHeight) {
+            return;
+        }
+        final LayerRaster raster = rasterFor(theLayer);
+        cancelRenders(Collections.singleton(raster));
+        raster.myPending.clear();
+        raster.myOverflow = false;
+        raster.adopt(thePrepared);
+        myOcclusion.put(theLayer, thePrepared.myHidden);
+        charge();
+    }
+
+    /**
+     * Rasterizes every shape of a layer that is not hidden onto a new image, on any thread.
+     *
+     * @param theShapes A snapshot of the layer's shapes.
+     * @param theWidth The width of the canvas.
+     * @param theHeight The height of the canvas.
+     * @param theTask The task rasterizing the layer, or null if none is.
+     * @return The raster together with the occlusion index built for it.
+     * @throws java.util.concurrent.CancellationException If the task is cancelled.
+     */
+    static Prepared prepare(final ShapeList theShapes, final int theWidth,
+                            final int theHeight, final DocumentTask<?> theTask) {
+
+        final BufferedImage image =
+            new BufferedImage(theWidth, theHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        final OcclusionIndex hidden = new OcclusionIndex();
+        hidden.sync(theShapes);
+        final Graphics2D g2d = image.createGraphics();
+        final int drawn;
+        try {
+            ShapeRenderer.applyHints(g2d);
+            drawn = ShapeRenderer.paintShapes(g2d, theShapes, hidden, theTask);
+        } finally {
+            g2d.dispose();
+        }
+        return new Prepared(theShapes, image, hidden, drawn);
+    }
+
+    /**
+     * Paints the shown layers from bottom to top, bringing every cached image up to date
+     * first. Layers being rasterized in the background are painted as they last were.
+     *
+     * @param theGraphics The untransformed graphics context to draw into.
+     * @param theLayers The layers of the drawing from bottom to top.
+     * @param theActive The layer being edited, or null if none is.
+     * @param theWidth The width of the canvas.
+     * @param theHeight The height of the canvas.
+     */
+    public void paint(final Graphics2D theGraphics, final List<Layer> theLayers,
+                      final Layer theActive, final int theWidth, final int theHeight) {
+
+        if (theWidth <= 0 || theHeight <= 0) {
+            return;
+        }
+        if (theWidth != myWidth || theHeight != myHeight) {
+            resize(theWidth, theHeight);
+        }
+        // Forget the rasters and indexes of layers that are no longer part of the drawing.
+        final Map<Layer, Boolean> present = new IdentityHashMap<Layer, Boolean>();
+        for (final Layer layer: theLayers) {
+            present.put(layer, Boolean.TRUE);
+        }
+        for (final Map.Entry<Layer, LayerRaster> entry: myRasters.entrySet()) {
+            if (!present.containsKey(entry.getKey())) {
+                cancelRenders(Collections.singleton(entry.getValue()));
+            }
+        }
+        forgetAbsent(myRasters, present);
+        forgetAbsent(myOcclusion, present);
+
+        // Read each layer's settings once, as another thread may change them meanwhile.
+        final Map<Layer, Float> shown = new IdentityHashMap<Layer, Float>();
+        int active = theLayers.size();
+        for (int i = 0; i < theLayers.size(); i++) {
+            final Layer layer = theLayers.get(i);
+            final float opacity = layer.getOpacity();
+            if (layer.isVisible() && opacity > 0) {
+                shown.put(layer, opacity);
+                rasterFor(layer).update(layer, occlusionFor(layer), false);
+            }
+            if (layer == theActive) {
+                active = i;
+            }
+        }
+
+        myBelow.update(theLayers.subList(0, active), shown);
+        myBelow.draw(theGraphics);
+        if (shown.containsKey(theActive)) {
+            draw(theGraphics, myRasters.get(theActive).myImage, shown.get(theActive));
+        }
+        myAbove.update(theLayers.subList(Math.min(active + 1, theLayers.size()),
+                                         theLayers.size()), shown);
+        myAbove.draw(theGraphics);
+        myShown = shown;
+        if (myBudget != null) {
+            myBudget.painted(myClient, getRasterBytes());
+        }
+    }
+
+    /**
+     * Discards every cached image, so that the next paint rasterizes every shown layer.
+     */
+    public void invalidate() {
+
+        cancelRenders(myRasters.values());
+        myRasters.clear();
+        myBelow.clear();
+        myAbove.clear();
+    }
+
+    /**
+     * Provides the caller with the number of times a whole layer has been rasterized.
+     *
+     * @return The number of full rasterizations so far.
+     */
+    public long getFullRenders() {
+
+        return myFullRenders;
+    }
+
+    /**
+     * Provides the caller with the number of times new or edited shapes have been drawn
+     * onto part of a layer's existing raster.
+     *
+     * @return The number of partial rasterizations so far.
+     */
+    public long getPartialRenders() {
+
+        return myPartialRenders;
+    }
+
+    /**
+     * Provides the caller with the number of times a shown layer was painted straight
+     * from its cached raster, without rasterizing any of it.
+     *
+     * @return The number of raster hits so far.
+     */
+    public long getRasterHits() {
+
+        return myRasterHits;
+    }
+
+    /**
+     * Provides the caller with the number of shapes considered for drawing while
+     * rasterizing layers, including those culled because they lie outside the redrawn area.
+     *
+     * @return The number of shapes visited so far.
+     */
+    public long getShapesVisited() {
+
+        return myShapesVisited;
+    }
+
+    /**
+     * Provides the caller with the number of shapes drawn while rasterizing layers.
+     *
+     * @return The number of shapes drawn so far.
+     */
+    public long getShapesDrawn() {
+
+        return myShapesDrawn;
+    }
+
+    /**
+     * Provides the caller with the number of shapes currently left out of their layers'
+     * rasters because later opaque fills hide them.
+     *
+     * @return The number of hidden shapes.
+     */
+    public long getHiddenShapes() {
+
+        long result = 0;
+        for (final OcclusionIndex index: myOcclusion.values()) {
+            result += index.getHiddenCount();
+        }
+        return result;
+    }
+
+    /**
+     * Provides the caller with the number of bytes of pixels held by the cached images.
+     *
+     * @return The size of the cached images in bytes.
+     */
+    public long getRasterBytes() {
+
+        long result = sizeOf(myBelow.myImage) + sizeOf(myAbove.myImage);
+        for (final LayerRaster raster: myRasters.values()) {
+            result += sizeOf(raster.myImage);
+        }
+        return result;
+    }
+
+    /**
+     * Gives cached images back to the budget: every image if the compositor is not on
+     * screen, or else only the rasters of layers the last paint did not show.
+     *
+     * @param theShown Whether the compositor's canvas is on screen.
+     * @return The bytes of the images still cached.
+     */
+    private long releaseImages(final boolean theShown) {
+
+        if (!theShown) {
+            invalidate();
+            return 0;
+        }
+        final Iterator<Map.Entry<Layer, LayerRaster>> rasters =
+            myRasters.entrySet().iterator();
+        while (rasters.hasNext()) {
+            final Map.Entry<Layer, LayerRaster> entry = rasters.next();
+            if (!myShown.containsKey(entry.getKey())) {
+                cancelRenders(Collections.singleton(entry.getValue()));
+                rasters.remove();
+            }
+        }
+        return getRasterBytes();
+    }
+
+    /**
+     * Reports the bytes of the cached images to the budget, if there is one, after they
+     * changed outside a paint.
+     */
+    private void charge() {
+
+        if (myBudget != null) {
+            myBudget.resized(myClient, getRasterBytes());
+        }
+    }
+
+    /**
+     * Provides the caller with the bytes of pixels of an image.
+     *
+     * @param theImage The image, or null.
+     * @return The size of the image's pixels in bytes, or 0 if there is no image.
+     */
+    private static long sizeOf(final BufferedImage theImage) {
+
+        if (theImage == null) {
+            return 0;
+        }
+        return (long) theImage.getWidth() * theImage.getHeight() * Integer.BYTES;
+    }
+
+    /**
+     * Changes the size of the canvas. The existing rasters are kept to be painted until
+     * they are redrawn at the new size, which the next update of each does in full.
+     *
+     * @param theWidth The new width of the canvas.
+     * @param theHeight The new height of the canvas.
+     */
+    private void resize(final int theWidth, final int theHeight) {
+
+        cancelRenders(myRasters.values());
+        for (final LayerRaster raster: myRasters.values()) {
+            raster.myOverflow = true;
+        }
+        myBelow.clear();
+        myAbove.clear();
+        myWidth = theWidth;
+        myHeight = theHeight;
+    }
+
+    /**
+     * Cancels the background rasterizations of the given rasters, if any are running.
+     *
+     * @param theRasters The rasters.
+     */
+    private void cancelRenders(final Collection<LayerRaster> theRasters) {
+
+        for (final LayerRaster raster: theRasters) {
+            if (raster.myRendering != null) {
+                myRunner.cancel(raster.myRendering);
+                raster.myRendering = null;
+                // The raster no longer shows the shapes it was last updated with.
+                raster.myOverflow = true;
+            }
+        }
+    }
+
+    /**
+     * Finds or creates the cached raster of a layer.
+     *
+     * @param theLayer The layer.
+     * @return The layer's cached raster.
+     */
+    private LayerRaster rasterFor(final Layer theLayer) {
+
+        LayerRaster result = myRasters.get(theLayer);
+        if (result == null) {
+            result = new LayerRaster();
+            myRasters.put(theLayer, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds or creates the occlusion index of a layer.
+     *
+     * @param theLayer The layer.
+     * @return The layer's occlusion index.
+     */
+    private OcclusionIndex occlusionFor(final Layer theLayer) {
+
+        OcclusionIndex result = myOcclusion.get(theLayer);
+        if (result == null) {
+            result = new OcclusionIndex();
+            myOcclusion.put(theLayer, result);
+        }
+        return result;
+    }
+
+    /**
+     * Removes the entries of layers that are no longer part of the drawing from a map.
+     *
+     * @param theMap The map, by layer identity.
+     * @param thePresent The layers of the drawing.
+     */
+    private static void forgetAbsent(final Map<Layer, ?> theMap,
+                                     final Map<Layer, Boolean> thePresent) {
+
+        final Iterator<Layer> known = theMap.keySet().iterator();
+        while (known.hasNext()) {
+            if (!thePresent.containsKey(known.next())) {
+                known.remove();
+            }
+        }
+    }
+
+    /**
+     * Blends an image over a graphics context at the given opacity.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theImage The image to draw at the origin.
+     * @param theOpacity The opacity to blend with, from 0 to 1.
+     */
+    private static void draw(final Graphics2D theGraphics, final BufferedImage theImage,
+                             final float theOpacity) {
+
+        if (theOpacity == 1) {
+            theGraphics.drawImage(theImage, 0, 0, null);
+        } else {
+            final Composite composite = theGraphics.getComposite();
+            theGraphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+                                                                theOpacity));
+            theGraphics.drawImage(theImage, 0, 0, null);
+            theGraphics.setComposite(composite);
+        }
+    }
+
+    /**
+     * Tells whether one list of shapes can be reached from another by appends alone.
+     *
+     * @param theLater The later list.
+     * @param theEarlier The earlier list.
+     * @return Whether the later list is the earlier list with zero or more shapes appended.
+     */
+    private static boolean extendsList(final ShapeList theLater, final ShapeList theEarlier) {
+
+        return theLater.getGeneration() == theEarlier.getGeneration()
+               && theLater.size() >= theEarlier.size();
+    }
+
+    /**
+     * Adds the bounds of the shapes appended to one list to form another to an area.
+     *
+     * @param theArea The area so far, or null if it is empty.
+     * @param theEarlier The earlier list.
+     * @param theLater The later list, an extension of the earlier one.
+     * @return The enlarged area, or null if it is still empty.
+     */
+    private static Rectangle2D addTail(final Rectangle2D theArea, final ShapeList theEarlier,
+                                       final ShapeList theLater) {
+
+        Rectangle2D result = theArea;
+        for (int i = theEarlier.size(); i < theLater.size(); i++) {
+            result = union(result, theLater.get(i).getBounds());
+        }
+        return result;
+    }
+
+    /**
+     * Combines two areas.
+     *
+     * @param theArea The first area, or null if it is empty.
+     * @param theOther The second area.
+     * @return A new area covering both.
+     */
+    private static Rectangle2D union(final Rectangle2D theArea, final Rectangle2D theOther) {
+
+        if (theArea == null) {
+            return (Rectangle2D) theOther.clone();
+        }
+        theArea.add(theOther);
+        return theArea;
+    }
+
+
+    /**
+     * An edit of a layer reported through {@link LayerCompositor#changed}.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Change {
+
+        /** The layer's shapes immediately before the edit. */
+        private final ShapeList myBefore;
+
+        /** The layer's shapes immediately after the edit. */
+        private final ShapeList myAfter;
+
+        /** The area whose pixels the edit may have changed. */
+        private final Rectangle2D myArea;
+
+
+        /**
+         * Constructor that stores the details of an edit.
+         *
+         * @param theBefore The layer's shapes immediately before the edit.
+         * @param theAfter The layer's shapes immediately after the edit.
+         * @param theArea The area whose pixels the edit may have changed.
+         */
+        private Change(final ShapeList theBefore, final ShapeList theAfter,
+                       final Rectangle2D theArea) {
+
+            myBefore = theBefore;
+            myAfter = theAfter;
+            myArea = theArea;
+        }
+    }
+
+
+    /**
+     * The cached raster of one layer together with the shapes it shows.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private final class LayerRaster {
+
+        /** The layer's shapes drawn at full opacity, or null before the first update. */
+        private BufferedImage myImage;
+
+        /** The layer's shapes as of the last update. */
+        private ShapeList mySnapshot;
+
+        /** Identifies the current contents of the raster. */
+        private long myRasterVersion;
+
+        /** Edits reported since the last update, oldest first. */
+        private final List<Change> myPending = new ArrayList<Change>();
+
+        /** Whether more edits were reported than are remembered. */
+        private boolean myOverflow;
+
+        /** The background rasterization the raster awaits, or null if none is running. */
+        private Render myRendering;
+
+
+        /**
+         * Remembers a reported edit until the next update.
+         *
+         * @param theChange The edit.
+         */
+        private void record(final Change theChange) {
+
+            if (myPending.size() < MAX_PENDING) {
+                myPending.add(theChange);
+            } else {
+                myOverflow = true;
+            }
+        }
+
+        /**
+         * Brings the raster up to date with the layer's current shapes, redrawing as
+         * little of it as the reported edits allow.
+         *
+         * @param theLayer The layer the raster belongs to.
+         * @param theHidden The layer's occlusion index.
+         * @param theExact Whether to rasterize inline even if the layer has many shapes.
+         */
+        private void update(final Layer theLayer, final OcclusionIndex theHidden,
+                            final boolean theExact) {
+
+            final ShapeList current = theLayer.getShapes().snapshot();
+            // A rasterization that failed in the background is not tried there again.
+            boolean inline = theExact || myRunner == null;
+            if (myRendering != null) {
+                inline |= myRendering.getError() != null;
+                if (!inline && !myRendering.isCancelled()
+                    && (!myPending.isEmpty() || extendsList(current, myRendering.mySnapshot))) {
+                    // Keep painting the old raster; edits since are applied once it is in.
+                    return;
+                }
+                cancelRenders(Collections.singleton(this));
+            }
+            if (myImage == null || myOverflow) {
+                if (!inline && current.size() >= BACKGROUND_SHAPES) {
+                    renderLater(theLayer, current);
+                    return;
+                }
+                renderAll(current, theHidden);
+            } else if (current != mySnapshot || !myPending.isEmpty()) {
+                // Follow the reported edits from the shapes on the raster to the current
+                // ones, collecting the area they touch; any gap means an unreported edit.
+                ShapeList from = mySnapshot;
+                Rectangle2D area = null;
+                boolean chained = true;
+                for (final Change change: myPending) {
+                    if (!extendsList(change.myBefore, from)) {
+                        chained = false;
+                        break;
+                    }
+                    area = addTail(area, from, change.myBefore);
+                    area = union(area, change.myArea);
+                    from = change.myAfter;
+                }
+                if (chained && extendsList(current, from)) {
+                    area = addTail(area, from, current);
+                    if (myPending.isEmpty()) {
+                        renderTail(mySnapshot, current);
+                    } else if (area != null) {
+                        renderArea(current, area, theHidden);
+                    }
+                } else {
+                    renderAll(current, theHidden);
+                }
+            } else {
+                myRasterHits++;
+            }
+            myPending.clear();
+            myOverflow = false;
+            mySnapshot = current;
+        }
+
+        /**
+         * Starts rasterizing the whole layer on the background thread, painting the old
+         * raster, or a blank one if there is none, until the new one is adopted.
+         *
+         * @param theLayer The layer the raster belongs to.
+         * @param theShapes The layer's shapes.
+         */
+        private void renderLater(final Layer theLayer, final ShapeList theShapes) {
+
+            if (myImage == null) {
+                myImage = new BufferedImage(myWidth, myHeight,
+                                            BufferedImage.TYPE_INT_ARGB_PRE);
+                myRasterVersion = ++myVersion;
+            }
+            myPending.clear();
+            myOverflow = false;
+            myRendering = new Render(theLayer, theShapes, myWidth, myHeight);
+            myRunner.submit(myRendering);
+        }
+
+        /**
+         * Replaces the raster with one rasterized elsewhere. Edits reported since its
+         * snapshot was taken are applied by the next update.
+         *
+         * @param thePrepared The new raster.
+         */
+        private void adopt(final Prepared thePrepared) {
+
+            myImage = thePrepared.myImage;
+            mySnapshot = thePrepared.mySnapshot;
+            myRasterVersion = ++myVersion;
+            myShapesVisited += thePrepared.mySnapshot.size();
+            myShapesDrawn += thePrepared.myDrawn;
+            myFullRenders++;
+        }
+
+        /**
+         * Rasterizes every shape of the layer that is not hidden onto a cleared raster.
+         *
+         * @param theShapes The layer's shapes.
+         * @param theHidden The layer's occlusion index, brought up to date first.
+         */
+        private void renderAll(final ShapeList theShapes, final OcclusionIndex theHidden) {
+
+            if (myImage == null || myImage.getWidth() != myWidth
+                || myImage.getHeight() != myHeight) {
+                myImage = new BufferedImage(myWidth, myHeight,
+                                            BufferedImage.TYPE_INT_ARGB_PRE);
+            }
+            final Graphics2D g2d = myImage.createGraphics();
+            try {
+                g2d.setComposite(AlphaComposite.Clear);
+                g2d.fillRect(0, 0, myWidth, myHeight);
+                g2d.setComposite(AlphaComposite.SrcOver);
+                ShapeRenderer.applyHints(g2d);
+                theHidden.sync(theShapes);
+                myShapesDrawn += ShapeRenderer.paintShapes(g2d, theShapes, theHidden);
+            } finally {
+                g2d.dispose();
+            }
+            myShapesVisited += theShapes.size();
+            myRasterVersion = ++myVersion;
+            myFullRenders++;
+        }
+
+        /**
+         * Draws only the shapes appended since the last update over the existing raster.
+         *
+         * @param theEarlier The shapes already on the raster.
+         * @param theLater The current shapes, an extension of the earlier ones.
+         */
+        private void renderTail(final ShapeList theEarlier, final ShapeList theLater) {
+
+            if (theLater.size() == theEarlier.size()) {
+                return;
+            }
+            final Graphics2D g2d = myImage.createGraphics();
+            try {
+                ShapeRenderer.applyHints(g2d);
+                for (int i = theEarlier.size(); i < theLater.size(); i++) {
+                    theLater.get(i).draw(g2d);
+                }
+            } finally {
+                g2d.dispose();
+            }
+            myShapesVisited += theLater.size() - theEarlier.size();
+            myShapesDrawn += theLater.size() - theEarlier.size();
+            myRasterVersion = ++myVersion;
+            myPartialRenders++;
+        }
+
+        /**
+         * Clears an area of the raster and redraws the shapes that reach into it and are
+         * not hidden.
+         *
+         * @param theShapes The layer's shapes.
+         * @param theArea The area to redraw.
+         * @param theHidden The layer's occlusion index, brought up to date first.
+         */
+        private void renderArea(final ShapeList theShapes, final Rectangle2D theArea,
+                                final OcclusionIndex theHidden) {
+
+            // Round outward so antialiased edges at the border are redrawn too.
+            final Rectangle area = theArea.getBounds();
+            area.grow(1, 1);
+            final Rectangle clip = area.intersection(new Rectangle(0, 0, myWidth, myHeight));
+            if (clip.isEmpty()) {
+                return;
+            }
+            final Graphics2D g2d = myImage.createGraphics();
+            try {
+                g2d.clip(clip);
+                g2d.setComposite(AlphaComposite.Clear);
+                g2d.fill(clip);
+                g2d.setComposite(AlphaComposite.SrcOver);
+                ShapeRenderer.applyHints(g2d);
+                theHidden.sync(theShapes);
+                myShapesDrawn += ShapeRenderer.paintShapes(g2d, theShapes, theHidden);
+            } finally {
+                g2d.dispose();
+            }
+            myShapesVisited += theShapes.size();
+            myRasterVersion = ++myVersion;
+            myPartialRenders++;
+        }
+    }
+
+
+    /**
+     * The raster of every shape of a layer that is not hidden, rasterized away from the
+     * event dispatch thread for the compositor to adopt.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    static final class Prepared {
+
+        /** The layer's shapes drawn onto the raster. */
+        private final ShapeList mySnapshot;
+
+        /** The raster. */
+        private final BufferedImage myImage;
+
+        /** The occlusion index synchronized with the shapes. */
+        private final OcclusionIndex myHidden;
+
+        /** The number of shapes drawn. */
+        private final int myDrawn;
+
+        /** The width of the raster. */
+        private final int myWidth;
+
+        /** The height of the raster. */
+        private final int myHeight;
+
+
+        /**
+         * Constructor that stores a rasterized layer.
+         *
+         * @param theSnapshot The layer's shapes drawn onto the raster.
+         * @param theImage The raster.
+         * @param theHidden The occlusion index synchronized with the shapes.
+         * @param theDrawn The number of shapes drawn.
+         */
+        private Prepared(final ShapeList theSnapshot, final BufferedImage theImage,
+                         final OcclusionIndex theHidden, final int theDrawn) {
+
+            mySnapshot = theSnapshot;
+            myImage = theImage;
+            myHidden = theHidden;
+            myDrawn = theDrawn;
+            myWidth = theImage.getWidth();
+            myHeight = theImage.getHeight();
+        }
+    }
+
+
+    /**
+     * The rasterization of a whole layer on a TaskRunner's worker thread. A cancelled
+     * rasterization is started again by the next paint that needs it.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private final class Render extends DocumentTask<Prepared> {
+
+        /** The layer rasterized. */
+        private final Layer myLayer;
+
+        /** The layer's shapes to rasterize. */
+        private final ShapeList mySnapshot;
+
+        /** The width of the raster. */
+        private final int myRenderWidth;
+
+        /** The height of the raster. */
+        private final int myRenderHeight;
+
+
+        /**
+         * Constructor of a rasterization of a snapshot of a layer.
+         *
+         * @param theLayer The layer.
+         * @param theSnapshot The layer's shapes to rasterize.
+         * @param theWidth The width of the raster.
+         * @param theHeight The height of the raster.
+         */
+        private Render(final Layer theLayer, final ShapeList theSnapshot, final int theWidth,
+                       final int theHeight) {
+
+            super("Drawing " + theLayer.getName());
+            myLayer = theLayer;
+            mySnapshot = theSnapshot;
+            myRenderWidth = theWidth;
+            myRenderHeight = theHeight;
+        }
+
+        @Override
+        protected Prepared compute() {
+
+            setTotal(mySnapshot.size());
+            return prepare(mySnapshot, myRenderWidth, myRenderHeight, this);
+        }
+
+        @Override
+        protected void commit(final Prepared theResult) {
+
+            final LayerRaster raster = myRasters.get(myLayer);
+            if (raster == null || raster.myRendering != this) {
+                return;
+            }
+            raster.myRendering = null;
+            if (theResult.myWidth == myWidth && theResult.myHeight == myHeight) {
+                raster.adopt(theResult);
+                myOcclusion.put(myLayer, theResult.myHidden);
+                charge();
+            } else {
+                raster.myOverflow = true;
+            }
+            myRepaint.run();
+        }
+    }
+
+
+    /**
+     * The cached blend of a run of adjacent layers. Blending is associative, so the run can
+     * be combined once and then drawn as a single image until one of its layers changes.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private final class Group {
+
+        /** The blended layers, or null if no layer of the run is shown. */
+        private BufferedImage myImage;
+
+        /** The layer, raster version, and opacity of each shown layer last blended. */
+        private List<Object> myKey;
+
+
+        /**
+         * Blends the given layers again if any of them changed since the last update.
+         *
+         * @param theLayers The run of layers from bottom to top.
+         * @param theShown The opacity of every shown layer of the drawing.
+         */
+        private void update(final List<Layer> theLayers, final Map<Layer, Float> theShown) {
+
+            final List<Object> key = new ArrayList<Object>();
+            for (final Layer layer: theLayers) {
+                if (theShown.containsKey(layer)) {
+                    key.add(layer);
+                    key.add(myRasters.get(layer).myRasterVersion);
+                    key.add(theShown.get(layer));
+                }
+            }
+            if (key.equals(myKey)) {
+                return;
+            }
+            myKey = key;
+            if (key.isEmpty()) {
+                myImage = null;
+                return;
+            }
+            if (myImage == null) {
+                myImage = new BufferedImage(myWidth, myHeight,
+                                            BufferedImage.TYPE_INT_ARGB_PRE);
+            }
+            final Graphics2D g2d = myImage.createGraphics();
+            try {
+                g2d.setComposite(AlphaComposite.Clear);
+                g2d.fillRect(0, 0, myWidth, myHeight);
+                g2d.setComposite(AlphaComposite.SrcOver);
+                for (final Layer layer: theLayers) {
+                    if (theShown.containsKey(layer)) {
+                        LayerCompositor.draw(g2d, myRasters.get(layer).myImage,
+                                             theShown.get(layer));
+                    }
+                }
+            } finally {
+                g2d.dispose();
+            }
+        }
+
+        /**
+         * Draws the blended layers, if any are shown.
+         *
+         * @param theGraphics The graphics context to draw into.
+         */
+        private void draw(final Graphics2D theGraphics) {
+
+            if (myImage != null) {
+                theGraphics.drawImage(myImage, 0, 0, null);
+            }
+        }
+
+        /**
+         * Discards the blended image.
+         */
+        private void clear() {
+
+            myImage = null;
+            myKey = null;
+        }
+    }
+}
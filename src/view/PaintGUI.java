@@ -2,25 +2,41 @@ package view;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
-import java.awt.Image;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import javax.imageio.ImageIO;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
-import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import model.DrawingTool;
 import model.EllipseTool;
+import model.EraserTool;
+import model.FillTool;
 import model.LineTool;
 import model.PencilTool;
 import model.RectangleTool;
+import model.SelectionTool;
+import model.StampTool;
+import model.TextTool;
 
 /**
  * Presents the GUI for the PowerPaint application and creates the necessary components for
- * the program to be fully-functioned.
+ * the program to be fully-functioned. The window is shown as soon as its components are
+ * built; the icons are decoded, the render statistics registered, and the dialogs prepared
+ * in the background once the canvas has first been painted, and the StartupTimeline is
+ * reported when they are done.
  * 
  * @author JJ Coldiron (jj.coldiron@outlook.com)
  * @version 1.0
@@ -40,13 +56,19 @@ public final class PaintGUI extends JFrame {
     /** int constant for determining the size of the window. Window size = (1/SCALE). */
     private static final int SCALE = 3;
     
+    /** The window's icon. */
+    private static final String LOGO = "icons/brush_logo.png";
+    
+    /** Width of the tool icons in the JToolBar. */
+    private static final int TOOLBAR_ICON_WIDTH = 15;
+    
     
     // INSTANCE FIELDS
     /** List for storing the ToolActions for each DrawingTool Object. */
     private final List<ToolAction> myToolActions;
     
-    /** Canvas in which the user can draw shapes. */
-    private final PaintPanel myPanel;
+    /** Tabs holding a canvas for each open document, sharing one cache budget. */
+    private final DocumentTabs myTabs;
     
     /** DrawingTool for creating lines within the DrawingPanel. */
     private final LineTool myLineTool;
@@ -60,6 +82,21 @@ public final class PaintGUI extends JFrame {
     /** DrawingTool for creating free-form paths within the DrawingPanel. */
     private final PencilTool myPencilTool;
     
+    /** EditTool for selecting and moving shapes within the DrawingPanel. */
+    private final SelectionTool mySelectionTool;
+    
+    /** EditTool for erasing shapes within the DrawingPanel. */
+    private final EraserTool myEraserTool;
+    
+    /** EditTool for filling areas within the DrawingPanel. */
+    private final FillTool myFillTool;
+    
+    /** EditTool for placing text within the DrawingPanel. */
+    private final TextTool myTextTool;
+    
+    /** EditTool for stamping copies of a motif within the DrawingPanel. */
+    private final StampTool myStampTool;
+    
     /** Menu bar containing utility functions of the program. */
     private final PaintMenuBar myMenuBar;
     
@@ -73,18 +110,25 @@ public final class PaintGUI extends JFrame {
         super("PowerPaint");
         myToolActions = new ArrayList<ToolAction>(); 
         myLineTool = new LineTool();
-        myPanel = new PaintPanel();
+        myTabs = new DocumentTabs(new CacheBudget(CacheBudget.defaultCapacity()));
+        myTabs.newDocument();
         myRectangleTool = new RectangleTool();
         myEllipseTool = new EllipseTool();
         myPencilTool = new PencilTool();
+        mySelectionTool = new SelectionTool();
+        myEraserTool = new EraserTool();
+        myFillTool = new FillTool();
+        myTextTool = new TextTool();
+        myStampTool = new StampTool();
         
         createActions();
-        myMenuBar = new PaintMenuBar(myToolActions, myPanel);
+        myMenuBar = new PaintMenuBar(myToolActions, myTabs);
         start();
     }
 
     /**
-     * Sets up the window size, close operation, image icon, JMenuBar, and JToolBar.
+     * Sets up the window size, close operation, image icon, JMenuBar, JToolBar, the
+     * TaskStatusBar beside it, and the DocumentTabs.
      */
     protected void start() {
 
@@ -93,15 +137,95 @@ public final class PaintGUI extends JFrame {
                             SCREEN_SIZE.height / 2 - getHeight() / 2);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         
-        final ImageIcon icon = new ImageIcon("icons/brush_logo.png");
-        setIconImage(icon.getImage());
-        
         setJMenuBar(myMenuBar);
-        add(new PaintToolBar(myToolActions), BorderLayout.SOUTH);
-        add(myPanel, BorderLayout.CENTER);
-        myPanel.setCurrentTool(myLineTool);
-        myPanel.addPropertyChangeListener(myMenuBar);
+        final PaintPanel panel = myTabs.getCurrent();
+        final TaskStatusBar status = new TaskStatusBar(panel);
+        final JPanel south = new JPanel(new BorderLayout());
+        south.add(new PaintToolBar(myToolActions), BorderLayout.CENTER);
+        south.add(status, BorderLayout.EAST);
+        add(south, BorderLayout.SOUTH);
+        add(myTabs, BorderLayout.CENTER);
+        panel.setCurrentTool(myLineTool);
+        myTabs.addDocumentListener(myMenuBar);
+        myTabs.addDocumentListener(status);
+        panel.whenPainted(new Runnable() {
+            @Override
+            public void run() {
+                StartupTimeline.mark(StartupTimeline.FIRST_FRAME);
+                final Thread loader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishStartup();
+                    }
+                }, "Startup loader");
+                loader.setDaemon(true);
+                loader.start();
+            }
+        });
         setVisible(true);
+        StartupTimeline.mark(StartupTimeline.WINDOW);
+    }
+    
+    /**
+     * Does the work of startup that the window need not wait for: decodes the icons,
+     * starts the MBean server, and then, on the event dispatch thread, puts the icons in
+     * place and registers the render statistics of every document before preparing the
+     * dialogs. Reports the StartupTimeline when done.
+     * Runs on a background thread once the canvas has first been painted.
+     */
+    private void finishStartup() {
+        
+        final List<BufferedImage> icons = new ArrayList<BufferedImage>();
+        for (final ToolAction action: myToolActions) {
+            icons.add(readImage(action.myIconFile));
+        }
+        final BufferedImage logo = readImage(LOGO);
+        // Starting the platform MBean server is slow; registering with it once started is not.
+        ManagementFactory.getPlatformMBeanServer();
+        
+        try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < icons.size(); i++) {
+                        myToolActions.get(i).setIcon(icons.get(i));
+                    }
+                    if (logo != null) {
+                        setIconImage(logo);
+                    }
+                    myTabs.registerStats();
+                    StartupTimeline.mark(StartupTimeline.INTERACTIVE);
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            myMenuBar.prepareDialogs();
+                        }
+                    });
+                }
+            });
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (final InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        StartupTimeline.report();
+    }
+    
+    /**
+     * Decodes an image file.
+     * 
+     * @param theFile The path of the file.
+     * @return The image, or null if the file cannot be read.
+     */
+    private static BufferedImage readImage(final String theFile) {
+        
+        try {
+            return ImageIO.read(new File(theFile));
+        } catch (final IOException e) {
+            System.out.println("Could not read " + theFile);
+            return null;
+        }
     }
     
     /**
@@ -110,21 +234,25 @@ public final class PaintGUI extends JFrame {
      */
     private void createActions() {
         
-        final Icon lineIcon = new ImageIcon("./icons/line_bw.gif");
-        final Icon rectangleIcon = new ImageIcon("./icons/rectangle_bw.gif");
-        final Icon ellipseIcon = new ImageIcon("./icons/ellipse_bw.gif");
-        final Icon pencilIcon = new ImageIcon("./icons/pencil_bw.gif");
-        
-        myToolActions.add(new ToolAction("Line", lineIcon, myLineTool));
-        myToolActions.add(new ToolAction("Rectangle", rectangleIcon, myRectangleTool));
-        myToolActions.add(new ToolAction("Ellipse", ellipseIcon, myEllipseTool));
-        myToolActions.add(new ToolAction("Pencil", pencilIcon, myPencilTool));
+        myToolActions.add(new ToolAction("Line", "./icons/line_bw.gif", myLineTool));
+        myToolActions.add(new ToolAction("Rectangle", "./icons/rectangle_bw.gif",
+                                         myRectangleTool));
+        myToolActions.add(new ToolAction("Ellipse", "./icons/ellipse_bw.gif",
+                                         myEllipseTool));
+        myToolActions.add(new ToolAction("Pencil", "./icons/pencil_bw.gif", myPencilTool));
+        myToolActions.add(new ToolAction("Select", "./icons/select_bw.gif",
+                                         mySelectionTool));
+        myToolActions.add(new ToolAction("Eraser", "./icons/eraser_bw.gif", myEraserTool));
+        myToolActions.add(new ToolAction("Fill", "./icons/fill_bw.gif", myFillTool));
+        myToolActions.add(new ToolAction("Text", "./icons/text_bw.gif", myTextTool));
+        myToolActions.add(new ToolAction("Stamp", "./icons/stamp_bw.gif", myStampTool));
     }
     
     
     /**
      * Action containing all distinct data for each of the DrawingTools. In the program's
-     * current state, these are the line, rectangle, ellipse, and pencil tools.
+     * current state, these are the line, rectangle, ellipse, pencil, selection, eraser,
+     * fill, text, and stamp tools.
      * 
      * @author JJ Coldiron (jj.coldiron@outlook.com)
      * @version 1.0
@@ -139,37 +267,63 @@ public final class PaintGUI extends JFrame {
         // INSTANCE FIELDS
         /** The DrawingTool the Action is being tied to. */
         private final DrawingTool myTool;
+        
+        /** The file of the icon to be associated with the ToolAction. */
+        private final String myIconFile;
 
         
         /**
-         * Constructor that sets the name, icon, and DrawingTool for each ToolAction.
+         * Constructor that sets the name, icon file, and DrawingTool for each ToolAction.
+         * The icon itself is set once it has been decoded.
          * 
          * @param theName The name of the ToolAction.
-         * @param theIcon The icon to be associated with the ToolAction.
+         * @param theIconFile The file of the icon to be associated with the ToolAction.
          * @param theTool The tool to be associated with the ToolAction.
          */
-        ToolAction(final String theName, final Icon theIcon, final DrawingTool theTool) {
+        ToolAction(final String theName, final String theIconFile,
+                   final DrawingTool theTool) {
             
             super(theName);
-
-            putValue(Action.SMALL_ICON, theIcon);
-            final ImageIcon icon = (ImageIcon) theIcon;
-            final Image largeImage =
-                icon.getImage().getScaledInstance(15, -1, Image.SCALE_SMOOTH);
-            final ImageIcon largeIcon = new ImageIcon(largeImage);
-            putValue(Action.LARGE_ICON_KEY, largeIcon);
             
             // Ensures that the ToolBar and MenuBar tool buttons are synchronized.
             putValue(Action.SELECTED_KEY, true);
             
             myTool = theTool;
-
+            myIconFile = theIconFile;
+        }
+        
+        /**
+         * Sets the icon of the ToolAction as is for menus and scaled down for the
+         * JToolBar. Scales with a single bicubic pass, which matches a smooth scaling at
+         * these sizes without its wait for an asynchronous filter.
+         * 
+         * @param theImage The decoded icon, or null to leave the ToolAction without one.
+         */
+        void setIcon(final BufferedImage theImage) {
+            
+            if (theImage == null) {
+                return;
+            }
+            putValue(Action.SMALL_ICON, new ImageIcon(theImage));
+            final int height = Math.max(1, Math.round(
+                (float) theImage.getHeight() * TOOLBAR_ICON_WIDTH / theImage.getWidth()));
+            final BufferedImage large =
+                new BufferedImage(TOOLBAR_ICON_WIDTH, height, BufferedImage.TYPE_INT_ARGB);
+            final Graphics2D g2d = large.createGraphics();
+            try {
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                     RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                g2d.drawImage(theImage, 0, 0, TOOLBAR_ICON_WIDTH, height, null);
+            } finally {
+                g2d.dispose();
+            }
+            putValue(Action.LARGE_ICON_KEY, new ImageIcon(large));
         }
         
         @Override
         public void actionPerformed(final ActionEvent theEvent) {
             
-            myPanel.setCurrentTool(myTool);
+            myTabs.getCurrent().setCurrentTool(myTool);
         }
     }
 }
@@ -1,32 +1,55 @@
 package view;
 
 import java.awt.Color;
-import java.awt.Point;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
+import javax.imageio.ImageIO;
 import javax.swing.AbstractButton;
 import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JColorChooser;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
+import javax.swing.colorchooser.AbstractColorChooserPanel;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import model.EditTool;
+import model.Layer;
+import model.Motif;
+import model.PaintDocumentIO;
 import view.PaintGUI.ToolAction;
 
 /**
  * JMenuBar containing all of the options listed within the code specifications. The more
  * notable of these include "Color..." and "Fill Color..." options which presents a 
- * JColorChooser prompt, a "Clear" button to clear all previously drawn shapes, and 
- * JRadioButtons for DrawingTool selection.
+ * JColorChooser prompt, a "Clear" button to clear all previously drawn shapes, a "Layers"
+ * menu for arranging the layers of the drawing, and JRadioButtons for DrawingTool
+ * selection.
  * 
  * @author JJ Coldiron (jj.coldiron@outlook.com)
  * @version 1.0
@@ -46,19 +69,49 @@ public class PaintMenuBar extends JMenuBar implements PropertyChangeListener {
     /** Distance between major ticks for JSlider readability. */
     private static final int SLIDER_SCALE = 5;
     
-    /** Off-screen point for clearing the user's active tool from the DrawingPanel. */
-    private static final Point CLEAR = new Point(-100, -100);
+    /** Default fill tolerance prior to user-prompted tolerance change. */
+    private static final int DEFAULT_TOLERANCE = 32;
     
-    /** "W" logo to be displayed in the "About..." JOptionPane. */
-    private static final ImageIcon LOGO = new ImageIcon("./icons/brush_logo.png");
+    /** The maximum tolerance offered by the fill tolerance slider. */
+    private static final int MAX_TOLERANCE = 128;
+    
+    /** Distance between major ticks of the fill tolerance slider. */
+    private static final int TOLERANCE_SCALE = 32;
+    
+    /** Default font size for text prior to user-prompted size change. */
+    private static final int DEFAULT_FONT_SIZE = 18;
+    
+    /** The smallest font size offered by the text size slider. */
+    private static final int MIN_FONT_SIZE = 8;
+    
+    /** The largest font size offered by the text size slider. */
+    private static final int MAX_FONT_SIZE = 72;
+    
+    /** Distance between major ticks of the text size slider. */
+    private static final int FONT_SIZE_SCALE = 16;
+    
+    /** Spacing of the grid offered by the "Snap to Grid" checkbox. */
+    private static final int GRID_SIZE = 16;
+    
+    /** The value of the layer opacity slider for a fully opaque layer. */
+    private static final int MAX_OPACITY = 100;
+    
+    /** Distance between major ticks of the layer opacity slider. */
+    private static final int OPACITY_SCALE = 25;
+    
+    /** "W" logo to be displayed in the "About..." JOptionPane; loaded when shown. */
+    private static final String LOGO = "./icons/brush_logo.png";
     
     
     // INSTANCE FIELDS
     /** List containing the ToolActions for each DrawingTool Object. */
     private final List<ToolAction> myActions;
     
-    /** DrawingPanel so that the previously-drawn PaintShapes can be accessed and cleared. */
-    private final PaintPanel myPanel;
+    /** The open documents, so that documents can be opened, added, and closed. */
+    private final DocumentTabs myTabs;
+    
+    /** The panel of the document shown, so its PaintShapes can be accessed and cleared. */
+    private PaintPanel myPanel;
     
     /** The currently selected outline color for the PaintShape to be drawn. */
     private Color myColor;
@@ -75,42 +128,275 @@ public class PaintMenuBar extends JMenuBar implements PropertyChangeListener {
     /** ButtonGroup to ensure that the JRadioButtonMenuItems perform as intended. */
     private final ButtonGroup myGroup;
     
+    /**
+     * File chooser shared by "Open..." and "Save..." so the last directory is kept; made
+     * when first needed, since making one is slow.
+     */
+    private JFileChooser myChooser;
+    
+    /** File chooser of "Import Image..."; made when first needed. */
+    private JFileChooser myImageChooser;
+    
+    /** File chooser of "Export PNG..."; made when first needed. */
+    private JFileChooser myExportChooser;
+    
+    /** Color chooser shared by "Color..." and "Fill Color..."; made when first needed. */
+    private JColorChooser myColorChooser;
+    
+    /** The button used to leave the collaborative session. */
+    private final JMenuItem myLeaveSession;
+    
+    /** The button used to stop recording the session. */
+    private final JMenuItem myStopRecording;
+    
+    /** Menu listing the layers of the drawing after the fixed layer commands. */
+    private final JMenu myLayerMenu;
+    
+    /** Number of fixed items at the top of the layer menu. */
+    private int myLayerCommands;
+    
+    /** The button used to delete the active layer. */
+    private final JMenuItem myDeleteLayer;
+    
+    /** The button used to move the active layer up. */
+    private final JMenuItem myMoveUp;
+    
+    /** The button used to move the active layer down. */
+    private final JMenuItem myMoveDown;
+    
+    /** Checkbox that shows or hides the active layer. */
+    private final JCheckBoxMenuItem myLayerVisible;
+    
+    /** Slider that sets the opacity of the active layer, in percent. */
+    private final JSlider myOpacitySlider;
+    
     
     /**
      * Constructor method to initialize fields to parameters or reasonable initial values.
      * Calls private helper method to set up components of the JMenuBar.
      * 
      * @param theActions
-     * @param thePanel
+     * @param theTabs
      */
-    protected PaintMenuBar(final List<ToolAction> theActions, final PaintPanel thePanel) {
+    protected PaintMenuBar(final List<ToolAction> theActions, final DocumentTabs theTabs) {
         
         super();
         myActions = theActions;
-        myPanel = thePanel;
+        myTabs = theTabs;
+        myPanel = theTabs.getCurrent();
         myColor = Color.BLACK;
         myFillColor = Color.BLACK;
         myFillCheckBox = new JCheckBoxMenuItem("Fill");
         myClearButton = new JMenuItem("Clear");
         myGroup = new ButtonGroup();
+        myLeaveSession = new JMenuItem("Leave Session");
+        myStopRecording = new JMenuItem("Stop Recording");
+        myLayerMenu = new JMenu("Layers");
+        myDeleteLayer = new JMenuItem("Delete Layer");
+        myMoveUp = new JMenuItem("Move Layer Up");
+        myMoveDown = new JMenuItem("Move Layer Down");
+        myLayerVisible = new JCheckBoxMenuItem("Visible");
+        myOpacitySlider = new JSlider(0, 0, MAX_OPACITY, MAX_OPACITY);
         setup();
+        layerSetup();
+        updateLayerMenu();
     }
     
     /**
      * Private helper method to set up components and listeners within the JMenuBar. Includes
-     * 6 anonymous inner listener classes that are then attached to their respective menu
+     * 23 anonymous inner listener classes that are then attached to their respective menu
      * items.
      */
     private void setup() {
         
+        final JMenu fileMenu = new JMenu("File");
+        final JMenuItem newDocument = new JMenuItem("New");
+        
+        newDocument.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myTabs.newDocument();
+            }
+        });
+        
+        final JMenuItem open = new JMenuItem("Open...");
+        
+        open.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final JFileChooser chooser = fileChooser();
+                if (chooser.showOpenDialog(myPanel) == JFileChooser.APPROVE_OPTION) {
+                    myTabs.openDocument(chooser.getSelectedFile().toPath());
+                }
+            }
+        });
+        
+        final JMenuItem save = new JMenuItem("Save...");
+        
+        save.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final JFileChooser chooser = fileChooser();
+                if (chooser.showSaveDialog(myPanel) == JFileChooser.APPROVE_OPTION) {
+                    File file = chooser.getSelectedFile();
+                    if (!file.getName().endsWith("." + PaintDocumentIO.EXTENSION)) {
+                        file = new File(file.getPath() + "." + PaintDocumentIO.EXTENSION);
+                    }
+                    myPanel.saveDocument(file.toPath());
+                }
+            }
+        });
+        
+        final JMenuItem close = new JMenuItem("Close");
+        
+        close.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                try {
+                    myTabs.closeCurrent();
+                } catch (final IOException e) {
+                    showError("The recording is incomplete", e);
+                }
+            }
+        });
+        
+        final JMenuItem export = new JMenuItem("Export PNG...");
+        
+        export.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final JFileChooser chooser = exportChooser();
+                if (chooser.showSaveDialog(myPanel) == JFileChooser.APPROVE_OPTION) {
+                    File file = chooser.getSelectedFile();
+                    if (!file.getName().toLowerCase(Locale.ROOT).endsWith(".png")) {
+                        file = new File(file.getPath() + ".png");
+                    }
+                    myPanel.exportImage(file.toPath());
+                }
+            }
+        });
+        
+        final JMenuItem importImage = new JMenuItem("Import Image...");
+        
+        importImage.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final JFileChooser chooser = imageChooser();
+                if (chooser.showOpenDialog(myPanel) == JFileChooser.APPROVE_OPTION) {
+                    myPanel.importImage(chooser.getSelectedFile().toPath());
+                }
+            }
+        });
+        
+        final JMenuItem pasteImage = new JMenuItem("Paste Image");
+        
+        pasteImage.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+                try {
+                    final Image image = (Image) clipboard.getData(DataFlavor.imageFlavor);
+                    if (image instanceof BufferedImage) {
+                        myPanel.pasteImage((BufferedImage) image);
+                    } else {
+                        throw new IOException("The picture is not ready to paste");
+                    }
+                } catch (final UnsupportedFlavorException | IllegalStateException
+                               | IOException e) {
+                    JOptionPane.showMessageDialog(myPanel, "The clipboard holds no picture.",
+                                                  "PowerPaint", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        });
+        
+        final JMenuItem record = new JMenuItem("Record Session...");
+        myStopRecording.setEnabled(false);
+        
+        record.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final JFileChooser chooser = new JFileChooser(".");
+                if (chooser.showSaveDialog(myPanel) == JFileChooser.APPROVE_OPTION) {
+                    final File file = chooser.getSelectedFile();
+                    try {
+                        myPanel.startRecording(
+                            new BufferedOutputStream(new FileOutputStream(file)));
+                        myStopRecording.setEnabled(true);
+                    } catch (final IOException e) {
+                        showError("Could not record to " + file, e);
+                    }
+                }
+            }
+        });
+        
+        myStopRecording.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myStopRecording.setEnabled(false);
+                try {
+                    myPanel.stopRecording();
+                } catch (final IOException e) {
+                    showError("The recording is incomplete", e);
+                }
+            }
+        });
+        
+        final JMenuItem join = new JMenuItem("Join Session...");
+        myLeaveSession.setEnabled(false);
+        
+        join.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final String address = (String) JOptionPane.showInputDialog(myPanel,
+                    "Session server (host:port):", "PowerPaint", JOptionPane.PLAIN_MESSAGE,
+                    null, null, "localhost:" + CollabProtocol.DEFAULT_PORT);
+                if (address == null) {
+                    return;
+                }
+                final int colon = address.lastIndexOf(':');
+                try {
+                    if (colon < 0) {
+                        myPanel.joinSession(address.trim(), CollabProtocol.DEFAULT_PORT);
+                    } else {
+                        myPanel.joinSession(address.substring(0, colon).trim(),
+                            Integer.parseInt(address.substring(colon + 1).trim()));
+                    }
+                    myLeaveSession.setEnabled(true);
+                } catch (final IOException | IllegalArgumentException e) {
+                    showError("Could not join the session at " + address, e);
+                }
+            }
+        });
+        
+        myLeaveSession.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myLeaveSession.setEnabled(false);
+                myPanel.leaveSession();
+            }
+        });
+        
+        fileMenu.add(newDocument);
+        fileMenu.add(open);
+        fileMenu.add(save);
+        fileMenu.add(close);
+        fileMenu.add(export);
+        fileMenu.addSeparator();
+        fileMenu.add(importImage);
+        fileMenu.add(pasteImage);
+        fileMenu.addSeparator();
+        fileMenu.add(record);
+        fileMenu.add(myStopRecording);
+        fileMenu.addSeparator();
+        fileMenu.add(join);
+        fileMenu.add(myLeaveSession);
+        
         final JMenu optionMenu = new JMenu("Options");
         final JMenu thickSubmenu = new JMenu("Thickness");
         final JSlider slider = new JSlider(0, 0, MAX_THICKNESS, DEFAULT_THICKNESS);
         slider.setMinorTickSpacing(1);
         slider.setMajorTickSpacing(SLIDER_SCALE);
-        slider.setLabelTable(slider.createStandardLabels(SLIDER_SCALE));
-        slider.setPaintTicks(true);
-        slider.setPaintLabels(true);
+        labelWhenOpened(thickSubmenu, slider);
         
         slider.addChangeListener(new ChangeListener() {
             @Override
@@ -122,14 +408,46 @@ public class PaintMenuBar extends JMenuBar implements PropertyChangeListener {
         
         thickSubmenu.add(slider);
         
+        final JMenu toleranceSubmenu = new JMenu("Fill Tolerance");
+        final JSlider toleranceSlider = new JSlider(0, 0, MAX_TOLERANCE, DEFAULT_TOLERANCE);
+        toleranceSlider.setMinorTickSpacing(TOLERANCE_SCALE / 4);
+        toleranceSlider.setMajorTickSpacing(TOLERANCE_SCALE);
+        labelWhenOpened(toleranceSubmenu, toleranceSlider);
+        
+        toleranceSlider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(final ChangeEvent theEvent) {
+                myPanel.setFillTolerance(toleranceSlider.getValue());
+            }
+        });
+        
+        toleranceSubmenu.add(toleranceSlider);
+        
+        final JMenu fontSubmenu = new JMenu("Text Size");
+        final JSlider fontSlider = new JSlider(0, MIN_FONT_SIZE, MAX_FONT_SIZE,
+                                               DEFAULT_FONT_SIZE);
+        fontSlider.setMinorTickSpacing(FONT_SIZE_SCALE / 4);
+        fontSlider.setMajorTickSpacing(FONT_SIZE_SCALE);
+        labelWhenOpened(fontSubmenu, fontSlider);
+        
+        fontSlider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(final ChangeEvent theEvent) {
+                myPanel.setFontSize(fontSlider.getValue());
+            }
+        });
+        
+        fontSubmenu.add(fontSlider);
+        
         final JMenuItem drawColor = new JMenuItem("Draw Color...");
         
         drawColor.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(final ActionEvent theEvent) {
-                myColor = JColorChooser.showDialog(myPanel, "Draw Color", myColor, true);
-                if (myColor != null) {
-                	myPanel.setPaintColor(myColor);	
+                final Color color = chooseColor("Draw Color", myColor);
+                if (color != null) {
+                    myColor = color;
+                    myPanel.setPaintColor(myColor);
                 }
             }
         });
@@ -139,9 +457,9 @@ public class PaintMenuBar extends JMenuBar implements PropertyChangeListener {
         fillColor.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(final ActionEvent theEvent) {
-                myFillColor = JColorChooser.showDialog(myPanel, "Fill Color", myFillColor,
-                                                       true);
-                if (myFillColor != null) {
+                final Color color = chooseColor("Fill Color", myFillColor);
+                if (color != null) {
+                    myFillColor = color;
                     myPanel.setFillColor(myFillColor);
                 }
             }
@@ -157,6 +475,8 @@ public class PaintMenuBar extends JMenuBar implements PropertyChangeListener {
         });
         
         optionMenu.add(thickSubmenu);
+        optionMenu.add(toleranceSubmenu);
+        optionMenu.add(fontSubmenu);
         optionMenu.addSeparator();
         optionMenu.add(drawColor);
         optionMenu.add(fillColor);
@@ -164,14 +484,62 @@ public class PaintMenuBar extends JMenuBar implements PropertyChangeListener {
         optionMenu.add(myFillCheckBox);
         optionMenu.addSeparator();
         
+        final JCheckBoxMenuItem snapToShapes = new JCheckBoxMenuItem("Snap to Shapes");
+        
+        snapToShapes.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myPanel.setSnapToShapes(snapToShapes.getState());
+            }
+        });
+        
+        final JCheckBoxMenuItem snapToGrid = new JCheckBoxMenuItem("Snap to Grid");
+        
+        snapToGrid.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myPanel.setSnapGrid(snapToGrid.getState() ? GRID_SIZE : 0);
+            }
+        });
+        
+        optionMenu.add(snapToShapes);
+        optionMenu.add(snapToGrid);
+        optionMenu.addSeparator();
+        
+        final JMenuItem stampFromSelection = new JMenuItem("Stamp From Selection");
+        
+        stampFromSelection.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                if (!myPanel.setMotifFromSelection()) {
+                    JOptionPane.showMessageDialog(myPanel,
+                                                  "Select the shapes to stamp first. Stamps "
+                                                  + "may be nested at most "
+                                                  + Motif.MAX_DEPTH + " deep.",
+                                                  "PowerPaint", JOptionPane.PLAIN_MESSAGE);
+                }
+            }
+        });
+        
+        optionMenu.add(stampFromSelection);
+        optionMenu.addSeparator();
+        
+        final JCheckBoxMenuItem showStats = new JCheckBoxMenuItem("Show Render Stats");
+        
+        showStats.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myPanel.setStatsVisible(showStats.getState());
+            }
+        });
+        
+        optionMenu.add(showStats);
+        optionMenu.addSeparator();
+        
         myClearButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(final ActionEvent theEvent) {
-                myPanel.getShapes().clear();
-                myPanel.getActiveTool().setStartPoint(CLEAR);
-                myPanel.getActiveTool().setEndPoint(CLEAR);
-                myPanel.repaint();
-                myClearButton.setEnabled(false);
+                myPanel.clearShapes();
             }
         });
         
@@ -195,26 +563,329 @@ public class PaintMenuBar extends JMenuBar implements PropertyChangeListener {
                                               "Email: jj.coldiron@outlook.com\n" +
                                               "GitHub: https://github.com/jahn-junior",
                                               "PowerPaint", JOptionPane.PLAIN_MESSAGE, 
-                                              LOGO);
+                                              new ImageIcon(LOGO));
             }
         });
         
         helpMenu.add(about);
+        add(fileMenu);
         add(optionMenu);
+        add(myLayerMenu);
         add(toolMenu);
         add(helpMenu);
     }
     
+    /**
+     * Private helper method to set up the fixed commands of the "Layers" menu. Includes 6
+     * anonymous inner listener classes that act on the panel's active layer.
+     */
+    private void layerSetup() {
+        
+        final JMenuItem newLayer = new JMenuItem("New Layer");
+        
+        newLayer.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myPanel.addLayer();
+            }
+        });
+        
+        myDeleteLayer.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myPanel.removeLayer(myPanel.getActiveLayer());
+            }
+        });
+        
+        myMoveUp.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final Layer layer = myPanel.getActiveLayer();
+                myPanel.moveLayer(layer, myPanel.getLayers().indexOf(layer) + 1);
+            }
+        });
+        
+        myMoveDown.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                final Layer layer = myPanel.getActiveLayer();
+                myPanel.moveLayer(layer, myPanel.getLayers().indexOf(layer) - 1);
+            }
+        });
+        
+        myLayerVisible.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                myPanel.setLayerVisible(myPanel.getActiveLayer(), myLayerVisible.getState());
+            }
+        });
+        
+        final JMenu opacitySubmenu = new JMenu("Opacity");
+        myOpacitySlider.setMinorTickSpacing(OPACITY_SCALE / 5);
+        myOpacitySlider.setMajorTickSpacing(OPACITY_SCALE);
+        labelWhenOpened(opacitySubmenu, myOpacitySlider);
+        
+        myOpacitySlider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(final ChangeEvent theEvent) {
+                final float opacity = (float) myOpacitySlider.getValue() / MAX_OPACITY;
+                if (opacity != myPanel.getActiveLayer().getOpacity()) {
+                    myPanel.setLayerOpacity(myPanel.getActiveLayer(), opacity);
+                }
+            }
+        });
+        
+        opacitySubmenu.add(myOpacitySlider);
+        
+        myLayerMenu.add(newLayer);
+        myLayerMenu.add(myDeleteLayer);
+        myLayerMenu.addSeparator();
+        myLayerMenu.add(myMoveUp);
+        myLayerMenu.add(myMoveDown);
+        myLayerMenu.addSeparator();
+        myLayerMenu.add(myLayerVisible);
+        myLayerMenu.add(opacitySubmenu);
+        myLayerMenu.addSeparator();
+        myLayerCommands = myLayerMenu.getMenuComponentCount();
+    }
+    
+    /**
+     * Follows the user to another document: brings the items that depend on the document,
+     * such as "Clear", "Stop Recording", and the "Layers" menu, up to date with its panel.
+     * 
+     * @param thePanel The panel of the document now shown.
+     */
+    private void documentShown(final PaintPanel thePanel) {
+        
+        myPanel = thePanel;
+        boolean empty = true;
+        for (final Layer layer: myPanel.getLayers()) {
+            empty &= layer.getShapes().snapshot().isEmpty();
+        }
+        myClearButton.setEnabled(!empty);
+        myStopRecording.setEnabled(myPanel.isRecording());
+        myLeaveSession.setEnabled(myPanel.isInSession());
+        updateLayerMenu();
+    }
+    
+    /**
+     * Brings the "Layers" menu up to date with the panel's layers: enables the commands
+     * that apply to the active layer and lists every layer, topmost first, for selecting
+     * the active one.
+     */
+    private void updateLayerMenu() {
+        
+        final List<Layer> layers = myPanel.getLayers();
+        final Layer active = myPanel.getActiveLayer();
+        final int index = layers.indexOf(active);
+        myDeleteLayer.setEnabled(layers.size() > 1);
+        myMoveUp.setEnabled(index < layers.size() - 1);
+        myMoveDown.setEnabled(index > 0);
+        myLayerVisible.setState(active.isVisible());
+        myOpacitySlider.setValue(Math.round(active.getOpacity() * MAX_OPACITY));
+        
+        while (myLayerMenu.getMenuComponentCount() > myLayerCommands) {
+            myLayerMenu.remove(myLayerCommands);
+        }
+        final ButtonGroup group = new ButtonGroup();
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            final Layer layer = layers.get(i);
+            final JRadioButtonMenuItem item = new JRadioButtonMenuItem(layer.getName(),
+                                                                       layer == active);
+            item.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(final ActionEvent theEvent) {
+                    myPanel.setActiveLayer(layer);
+                }
+            });
+            group.add(item);
+            myLayerMenu.add(item);
+        }
+    }
+    
+    /**
+     * Labels a slider and paints its ticks the first time the submenu holding it opens.
+     * Labelling the first slider is slow enough to matter at startup, and most sessions
+     * never open most of these submenus.
+     * 
+     * @param theMenu The submenu holding the slider.
+     * @param theSlider The slider, labelled at every major tick from its minimum.
+     */
+    private static void labelWhenOpened(final JMenu theMenu, final JSlider theSlider) {
+        
+        theMenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(final MenuEvent theEvent) {
+                theMenu.removeMenuListener(this);
+                theSlider.setLabelTable(theSlider.createStandardLabels(
+                    theSlider.getMajorTickSpacing(), theSlider.getMinimum()));
+                theSlider.setPaintTicks(true);
+                theSlider.setPaintLabels(true);
+            }
+            
+            @Override
+            public void menuDeselected(final MenuEvent theEvent) {
+                // Only the first opening matters.
+            }
+            
+            @Override
+            public void menuCanceled(final MenuEvent theEvent) {
+                // Only the first opening matters.
+            }
+        });
+    }
+    
+    /**
+     * Makes the file and color choosers ahead of their first use, one per turn of the
+     * event dispatch thread so that events waiting in between are not held up by both.
+     * Called once startup is over, since each takes long enough to stall a first "Open..."
+     * or "Color..." noticeably.
+     */
+    void prepareDialogs() {
+        
+        colorChooser();
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                fileChooser();
+            }
+        });
+    }
+    
+    /**
+     * Provides the file chooser shared by "Open..." and "Save...", making it if needed.
+     * 
+     * @return The file chooser.
+     */
+    private JFileChooser fileChooser() {
+        
+        if (myChooser == null) {
+            myChooser = new JFileChooser(".");
+            myChooser.setFileFilter(new FileNameExtensionFilter("PowerPaint documents",
+                                                                PaintDocumentIO.EXTENSION));
+        }
+        return myChooser;
+    }
+    
+    /**
+     * Provides the file chooser of "Import Image...", making it if needed. It is kept
+     * apart from the document chooser so that each remembers its own directory.
+     * 
+     * @return The file chooser.
+     */
+    private JFileChooser imageChooser() {
+        
+        if (myImageChooser == null) {
+            myImageChooser = new JFileChooser(".");
+            myImageChooser.setFileFilter(new FileNameExtensionFilter("Pictures",
+                ImageIO.getReaderFileSuffixes()));
+        }
+        return myImageChooser;
+    }
+    
+    /**
+     * Provides the file chooser of "Export PNG...", making it if needed.
+     * 
+     * @return The file chooser.
+     */
+    private JFileChooser exportChooser() {
+        
+        if (myExportChooser == null) {
+            myExportChooser = new JFileChooser(".");
+            myExportChooser.setFileFilter(new FileNameExtensionFilter("PNG pictures", "png"));
+        }
+        return myExportChooser;
+    }
+    
+    /**
+     * Provides the color chooser shared by "Color..." and "Fill Color...", making it if
+     * needed. Reusing one chooser spares every later dialog the cost of making its panels.
+     * 
+     * @return The color chooser.
+     */
+    private JColorChooser colorChooser() {
+        
+        if (myColorChooser == null) {
+            myColorChooser = new JColorChooser();
+            for (final AbstractColorChooserPanel panel: myColorChooser.getChooserPanels()) {
+                panel.setColorTransparencySelectionEnabled(true);
+            }
+        }
+        return myColorChooser;
+    }
+    
+    /**
+     * Asks the user for a color with the shared color chooser.
+     * 
+     * @param theTitle The title of the dialog.
+     * @param theInitial The color initially chosen.
+     * @return The color chosen, or null if the user cancelled.
+     */
+    private Color chooseColor(final String theTitle, final Color theInitial) {
+        
+        final JColorChooser chooser = colorChooser();
+        chooser.setColor(theInitial);
+        final Color[] result = new Color[1];
+        final JDialog dialog = JColorChooser.createDialog(myPanel, theTitle, true, chooser,
+            new ActionListener() {
+                @Override
+                public void actionPerformed(final ActionEvent theEvent) {
+                    result[0] = chooser.getColor();
+                }
+            }, null);
+        dialog.setVisible(true);
+        dialog.dispose();
+        return result[0];
+    }
+    
+    /**
+     * Reports a failed file operation to the user.
+     * 
+     * @param theMessage Description of the operation that failed.
+     * @param theException The exception that caused the failure.
+     */
+    private void showError(final String theMessage, final Exception theException) {
+        
+        JOptionPane.showMessageDialog(myPanel, theMessage + "\n" + theException.getMessage(),
+                                      "PowerPaint", JOptionPane.ERROR_MESSAGE);
+    }
+    
     @Override
     public void propertyChange(final PropertyChangeEvent theEvent) {
         
-    	// Enables the Clear button once a shape is drawn.
-        if (theEvent.getPropertyName().equals("shapes")) {
-            myClearButton.setEnabled(true);
+        if (theEvent.getPropertyName().equals("document")) {
+            documentShown((PaintPanel) theEvent.getNewValue());
+        } else if (theEvent.getPropertyName().equals("import")) {
+            showError("Could not import the picture", (Exception) theEvent.getNewValue());
+        } else if (theEvent.getPropertyName().equals("taskFailed")) {
+            final DocumentTask<?> task = (DocumentTask<?>) theEvent.getNewValue();
+            showError(task.getName() + " failed", task.getError());
+        } else if (theEvent.getPropertyName().equals("session")) {
+            // The connection to the session server was lost, perhaps in another tab.
+            final PaintPanel panel = (PaintPanel) theEvent.getSource();
+            if (panel == myPanel) {
+                myLeaveSession.setEnabled(panel.isInSession());
+            }
+            JOptionPane.showMessageDialog(myPanel, "The connection to the session of "
+                                          + myTabs.getTitle(panel) + " was lost.",
+                                          "PowerPaint", JOptionPane.WARNING_MESSAGE);
+        } else if (theEvent.getSource() != myPanel) {
+            // The other events only concern the document shown.
+            return;
+        } else if (theEvent.getPropertyName().equals("shapes")) {
+            // Enables the Clear button once a shape is drawn.
+            myClearButton.setEnabled(!Integer.valueOf(0).equals(theEvent.getNewValue()));
+        } else if (theEvent.getPropertyName().equals("layers")) {
+            updateLayerMenu();
+        } else if (theEvent.getPropertyName().equals("tasks")
+                   || theEvent.getPropertyName().equals("file")) {
+            // Background tasks are shown by the TaskStatusBar, and files by the tabs.
+            return;
         } else {
         	// Enables/Disables the Fill checkbox depending on the Shape being drawn.
             myFillCheckBox.setEnabled(!theEvent.getPropertyName().equals("Line") &&
-                                      !theEvent.getPropertyName().equals("Pencil"));
+                                      !theEvent.getPropertyName().equals("Pencil") &&
+                                      !(theEvent.getNewValue() instanceof EditTool));
         }
     }
 }
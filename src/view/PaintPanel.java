@@ -4,24 +4,72 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import model.DocumentLayer;
 import model.DrawingTool;
+import model.EditTool;
+import model.ImageShape;
+import model.Layer;
 import model.LineTool;
+import model.Motif;
+import model.PaintDocument;
+import model.PaintDocumentIO;
 import model.PaintShape;
+import model.RasterImage;
+import model.SelectionTool;
+import model.ShapeEditor;
+import model.ShapeList;
+import model.ShapeModel;
+import model.SnapIndex;
+import model.SnapTool;
+import model.SpatialIndex;
 
 /**
  * Canvas in which the user may draw shapes using the selected DrawingTool, color, and stroke
- * width.
+ * width. The drawing is made of layers; new shapes and edits go to the active layer, and
+ * the layers are painted through a LayerCompositor so that only edited layers are drawn
+ * again.
  * 
  * @author JJ Coldiron (jj.coldiron@outlook.com)
  * @version 1.0
@@ -35,18 +83,58 @@ public class PaintPanel extends JPanel {
     /** Default Toolkit for utility purposes within the class. */
     private static final Toolkit KIT = Toolkit.getDefaultToolkit();
     
-    /** Screen size constant for proper window scaling. */
-    private static final Dimension SCREEN_SIZE = KIT.getScreenSize();
+    /** Screen size constant for proper window scaling; a typical size when headless. */
+    private static final Dimension SCREEN_SIZE =
+        GraphicsEnvironment.isHeadless() ? new Dimension(1920, 1080) : KIT.getScreenSize();
     
     /** int constant for determining the size of the window. Window size = (1/SCALE). */
     private static final int SCALE = 3;
     
     /** Background color for the DrawingPanel. */
-    private static final Color BACKGROUND_COLOR = Color.WHITE;
+    private static final Color BACKGROUND_COLOR = ShapeRenderer.BACKGROUND_COLOR;
     
     /** Default stroke width for drawing prior to user-prompted width change. */
     private static final int DEFAULT_THICKNESS = 3;
     
+    /** Default fill tolerance prior to user-prompted tolerance change. */
+    private static final int DEFAULT_TOLERANCE = 32;
+    
+    /** Default font for text prior to user-prompted size change. */
+    private static final Font DEFAULT_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 18);
+    
+    /** Off-screen point for clearing the active tool's preview from the panel. */
+    private static final Point OFFSCREEN = new Point(-100, -100);
+    
+    /** How far from a vertex of the drawing a point may be and still snap to it. */
+    private static final double SNAP_RADIUS = 8;
+    
+    /** Width and height of the marker shown around the vertex snapped to. */
+    private static final int MARKER_SIZE = 8;
+    
+    /** Color of the snap grid. */
+    private static final Color GRID_COLOR = new Color(0, 0, 255, 40);
+    
+    /** Color of the marker shown around the vertex snapped to. */
+    private static final Color MARKER_COLOR = GRID_COLOR.darker();
+    
+    /** Stroke of the snap grid and of the snap marker. */
+    private static final BasicStroke THIN_STROKE = new BasicStroke(1);
+    
+    /** Background color of the render statistics overlay. */
+    private static final Color STATS_BACKGROUND = new Color(0, 0, 0, 170);
+    
+    /** Font of the render statistics overlay. */
+    private static final Font STATS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    
+    /** Distance of the render statistics overlay from the corner of the canvas. */
+    private static final int STATS_MARGIN = 6;
+    
+    /** Milliseconds between refreshes of the render statistics overlay. */
+    private static final int STATS_REFRESH = 500;
+    
+    /** Encoded bytes of the largest imported picture shared with a session. */
+    private static final int MAX_SHARED_IMAGE = CollabProtocol.MAX_FRAME / 2;
+    
     
     // INSTANCE FIELDS
     /** Support for firing PropertyChangeEvents. */
@@ -55,8 +143,20 @@ public class PaintPanel extends JPanel {
     /** The DrawingTool currently in use by the user. */
     private DrawingTool myActiveTool;
     
-    /** List of previously drawn shapes so that graphics are persistent. */
-    private final List<PaintShape> myDrawnShapes;
+    /** The layers of the drawing from bottom to top; replaced, never changed in place. */
+    private volatile List<Layer> myLayers;
+    
+    /** The layer that new shapes and edits go to. */
+    private volatile Layer myActiveLayer;
+    
+    /** Number used in the name of the next new layer. */
+    private int myNextLayerNumber;
+    
+    /** Cached rasters of the layers, so that only edited layers are drawn again. */
+    private final LayerCompositor myCompositor;
+    
+    /** Opens, saves, exports, and rasterizes large layers away from the event thread. */
+    private final TaskRunner myTasks;
     
     /** The currently selected color for the PaintShape to be drawn. */
     private Color myColor;
@@ -69,6 +169,66 @@ public class PaintPanel extends JPanel {
     
     /** The currently selected stroke width for the PaintShape to be drawn. */
     private int myWidth;
+    
+    /** Stroke of the selected width, kept so that painting the preview allocates none. */
+    private BasicStroke myStroke;
+    
+    /** The currently selected color tolerance for filling areas. */
+    private int myTolerance;
+    
+    /** The currently selected font for placing text. */
+    private Font myFont;
+    
+    /** The motif placed by the stamp tool, or null if none has been chosen. */
+    private Motif myMotif;
+    
+    /** Grid of the active layer's shapes' bounds for hit-testing by EditTools. */
+    private final SpatialIndex myIndex;
+    
+    /** Snap points of the active layer's shapes, kept in step with the spatial index. */
+    private final SnapIndex mySnapIndex;
+    
+    /** The layer whose shapes are in the index. */
+    private Layer myIndexedLayer;
+    
+    /** The generation of the shapes last added to the index. */
+    private long myIndexedGeneration;
+    
+    /** The number of shapes of that generation added to the index. */
+    private int myIndexedSize;
+    
+    /** Known positions in the drawing of recently edited shapes. */
+    private final Map<PaintShape, Integer> myPositions;
+    
+    /** The ShapeEditor handed to EditTools. */
+    private final ShapeEditor myEditor;
+    
+    /** Whether the points of SnapTools snap to nearby vertices of the drawing. */
+    private boolean mySnapToShapes;
+    
+    /** Spacing of the grid the points of SnapTools snap to, or 0 if there is none. */
+    private int myGridSize;
+    
+    /** The vertex the last point snapped to, or null if it did not snap to one. */
+    private Point2D mySnapMarker;
+    
+    /** Rendering statistics of the canvas. */
+    private final RenderStats myStats;
+    
+    /** Records the user's session when asked to; otherwise ignores what it is told. */
+    private final SessionRecorder myRecorder;
+    
+    /** The collaborative session the drawing is shared through, or null if it is not. */
+    private CollabClient myCollab;
+    
+    /** Runs once the panel next finishes painting, or null if nothing is waiting. */
+    private Runnable myPainted;
+    
+    /** Refreshes the render statistics overlay, or null if the overlay is hidden. */
+    private Timer myStatsTimer;
+    
+    /** The area covered by the render statistics overlay when it was last painted. */
+    private Rectangle myStatsArea;
 
     
     /**
@@ -79,11 +239,37 @@ public class PaintPanel extends JPanel {
     protected PaintPanel() {
         
         super();
-        myDrawnShapes = new ArrayList<PaintShape>();
+        myActiveLayer = new Layer(PaintDocument.DEFAULT_LAYER_NAME);
+        myLayers = Collections.singletonList(myActiveLayer);
+        myNextLayerNumber = 2;
+        myCompositor = new LayerCompositor();
+        myTasks = new TaskRunner(new TaskRunner.Listener() {
+            @Override
+            public void tasksChanged() {
+                myPCS.firePropertyChange("tasks", null, myTasks.getTasks());
+            }
+            
+            @Override
+            public void failed(final DocumentTask<?> theTask) {
+                myPCS.firePropertyChange("taskFailed", null, theTask);
+            }
+        });
+        setBackgroundRendering(true);
         myColor = Color.BLACK;
         myFillColor = Color.BLACK;
         myWidth = DEFAULT_THICKNESS;
+        myStroke = new BasicStroke(myWidth);
+        myTolerance = DEFAULT_TOLERANCE;
+        myFont = DEFAULT_FONT;
         myActiveTool = new LineTool();
+        myIndex = new SpatialIndex();
+        mySnapIndex = new SnapIndex();
+        myIndexedGeneration = -1;
+        myPositions = new IdentityHashMap<PaintShape, Integer>();
+        myEditor = new PanelEditor();
+        myStats = new RenderStats(this);
+        myRecorder = new SessionRecorder();
+        myStatsArea = new Rectangle();
         panelSetup();
     }
     
@@ -105,37 +291,127 @@ public class PaintPanel extends JPanel {
     @Override
     protected void paintComponent(final Graphics theGraphics) {
         
+        final long start = System.nanoTime();
         super.paintComponent(theGraphics);
         final Graphics2D g2d = (Graphics2D) theGraphics;
+        paintCanvas(g2d);
+        if (myStats.isEnabled()) {
+            myStats.framePainted(System.nanoTime() - start, myCompositor);
+        }
+        if (myStatsTimer != null) {
+            paintStats(g2d);
+        }
+        if (myPainted != null) {
+            // Run after the frame is shown, rather than while it is still being painted.
+            SwingUtilities.invokeLater(myPainted);
+            myPainted = null;
+        }
+    }
+    
+    /**
+     * Runs a task on the event dispatch thread once the panel next finishes painting and
+     * the frame has been shown. Replaces any task still waiting.
+     * 
+     * @param theTask The task.
+     */
+    protected void whenPainted(final Runnable theTask) {
         
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        for (final PaintShape shape: myDrawnShapes) {
-            if (shape.getWidth() > 0) {
-                g2d.setPaint(shape.getColor());
-                g2d.setStroke(new BasicStroke(shape.getWidth()));
-                g2d.draw(shape.getShape());
-                if (shape.isFilled()) {
-                    g2d.setColor(shape.getFillColor());
-                    g2d.fill(shape.getShape());
-                }
-            }
+        myPainted = theTask;
+    }
+    
+    /**
+     * Paints the layers, the snap grid, and the active tool's preview or overlay.
+     * 
+     * @param theGraphics The graphics context to draw into.
+     */
+    private void paintCanvas(final Graphics2D theGraphics) {
+        
+        myCompositor.paint(theGraphics, myLayers, myActiveLayer, getWidth(), getHeight());
+        paintGrid(theGraphics);
+        ShapeRenderer.applyHints(theGraphics);
+        
+        if (myActiveTool instanceof EditTool) {
+            ((EditTool) myActiveTool).paintOverlay(theGraphics);
+            return;
         }
         
-        g2d.setPaint(myColor);
-        g2d.setStroke(new BasicStroke(myWidth));
+        theGraphics.setPaint(myColor);
+        theGraphics.setStroke(myStroke);
         
         if (myWidth > 0) {
+            final Shape preview = myActiveTool.getShape();
+            theGraphics.draw(preview);
             if (myFillStatus) {
-                g2d.setColor(myColor);
-                g2d.draw(myActiveTool.getShape());
-                g2d.setColor(myFillColor);
-                g2d.fill(myActiveTool.getShape());
-            } else {
-                g2d.draw(myActiveTool.getShape());
+                theGraphics.setColor(myFillColor);
+                theGraphics.fill(preview);
             }
         }
+        
+        if (mySnapMarker != null) {
+            theGraphics.setColor(MARKER_COLOR);
+            theGraphics.setStroke(THIN_STROKE);
+            theGraphics.drawRect((int) Math.round(mySnapMarker.getX()) - MARKER_SIZE / 2,
+                                 (int) Math.round(mySnapMarker.getY()) - MARKER_SIZE / 2,
+                                 MARKER_SIZE, MARKER_SIZE);
+        }
+    }
+    
+    /**
+     * Draws the render statistics overlay in the top left corner of the canvas and
+     * remembers the area it covers, so that the refresh timer can repaint just that area.
+     * 
+     * @param theGraphics The graphics context to draw into.
+     */
+    private void paintStats(final Graphics2D theGraphics) {
+        
+        final List<String> lines = myStats.describe();
+        theGraphics.setFont(STATS_FONT);
+        final FontMetrics metrics = theGraphics.getFontMetrics();
+        int width = 0;
+        for (final String line: lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        final Rectangle area = new Rectangle(STATS_MARGIN, STATS_MARGIN,
+                                             width + 2 * STATS_MARGIN,
+                                             lines.size() * metrics.getHeight()
+                                                 + 2 * STATS_MARGIN);
+        theGraphics.setColor(STATS_BACKGROUND);
+        theGraphics.fill(area);
+        theGraphics.setColor(Color.WHITE);
+        int y = area.y + STATS_MARGIN + metrics.getAscent();
+        for (final String line: lines) {
+            theGraphics.drawString(line, area.x + STATS_MARGIN, y);
+            y += metrics.getHeight();
+        }
+        myStatsArea = area.union(myStatsArea);
+    }
+    
+    /**
+     * Draws the snap grid, if there is one, over the part of the canvas being repainted.
+     * 
+     * @param theGraphics The graphics context to draw into.
+     */
+    private void paintGrid(final Graphics2D theGraphics) {
+        
+        if (myGridSize <= 0) {
+            return;
+        }
+        Rectangle2D area = theGraphics.getClipBounds();
+        if (area == null) {
+            area = new Rectangle2D.Double(0, 0, getWidth(), getHeight());
+        }
+        theGraphics.setColor(GRID_COLOR);
+        theGraphics.setStroke(THIN_STROKE);
+        final int top = (int) area.getMinY();
+        final int bottom = (int) Math.ceil(area.getMaxY());
+        final int left = (int) area.getMinX();
+        final int right = (int) Math.ceil(area.getMaxX());
+        for (int x = left - left % myGridSize; x <= right; x += myGridSize) {
+            theGraphics.drawLine(x, top, x, bottom);
+        }
+        for (int y = top - top % myGridSize; y <= bottom; y += myGridSize) {
+            theGraphics.drawLine(left, y, right, y);
+        }
     }
     
     /**
@@ -148,6 +424,8 @@ public class PaintPanel extends JPanel {
     protected void setCurrentTool(final DrawingTool theTool) {
         
         myPCS.firePropertyChange(theTool.getName(), myActiveTool, theTool);
+        myRecorder.tool(theTool.getName());
+        resetEditTool();
         myActiveTool = theTool;
     }
     
@@ -159,6 +437,7 @@ public class PaintPanel extends JPanel {
      */
     protected void setPaintColor(final Color theColor) {
         
+        myRecorder.color(SessionRecorder.PAINT_COLOR, theColor);
         myColor = theColor;
     }
     
@@ -169,6 +448,7 @@ public class PaintPanel extends JPanel {
      */
     protected void setFillColor(final Color theColor) {
         
+        myRecorder.color(SessionRecorder.FILL_COLOR, theColor);
         myFillColor = theColor;
     }
     
@@ -179,6 +459,7 @@ public class PaintPanel extends JPanel {
      */
     protected void setFillStatus(final boolean theBool) {
         
+        myRecorder.flag(SessionRecorder.FILL, theBool);
         myFillStatus = theBool;
     }
     
@@ -189,7 +470,149 @@ public class PaintPanel extends JPanel {
      */
     protected void setStrokeWidth(final int theWidth) {
         
+        myRecorder.value(SessionRecorder.STROKE, theWidth);
         myWidth = theWidth;
+        myStroke = new BasicStroke(theWidth);
+    }
+    
+    /**
+     * Mutator method that sets the fill tolerance to the tolerance provided in the parameter.
+     * 
+     * @param theTolerance How far each color channel may differ from the clicked pixel's
+     * and still be filled, from 0 to FloodFill.MAX_TOLERANCE.
+     */
+    protected void setFillTolerance(final int theTolerance) {
+        
+        myRecorder.value(SessionRecorder.TOLERANCE, theTolerance);
+        myTolerance = theTolerance;
+    }
+    
+    /**
+     * Mutator method that sets the size of the font used for placing text.
+     * 
+     * @param theSize The desired font size, in points.
+     */
+    protected void setFontSize(final int theSize) {
+        
+        myRecorder.value(SessionRecorder.FONT_SIZE, theSize);
+        myFont = myFont.deriveFont((float) theSize);
+    }
+    
+    /**
+     * Makes the shapes selected with the selection tool the motif placed by the stamp tool.
+     * Stamped copies share the motif's geometry instead of copying it.
+     * 
+     * @return Whether the motif was set; false if the selection tool is not in use, nothing
+     * is selected, or the selection holds stamped copies nested Motif.MAX_DEPTH deep.
+     */
+    protected boolean setMotifFromSelection() {
+        
+        myRecorder.command(SessionRecorder.MOTIF);
+        if (!(myActiveTool instanceof SelectionTool)) {
+            return false;
+        }
+        final List<PaintShape> selection = ((SelectionTool) myActiveTool).getSelection();
+        if (selection.isEmpty()) {
+            return false;
+        }
+        try {
+            myMotif = new Motif(selection);
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Provides the caller with the rendering statistics of the canvas, which are recorded
+     * only while enabled.
+     * 
+     * @return The rendering statistics.
+     */
+    protected RenderStats getRenderStats() {
+        
+        return myStats;
+    }
+    
+    /**
+     * Mutator method that shows or hides the render statistics overlay. Showing the overlay
+     * also starts recording statistics; hiding it leaves recording as it is, as a JMX
+     * client may still be reading them.
+     * 
+     * @param theShow Whether to show the overlay.
+     */
+    protected void setStatsVisible(final boolean theShow) {
+        
+        if (theShow && myStatsTimer == null) {
+            myStats.setEnabled(true);
+            myStatsTimer = new Timer(STATS_REFRESH, new ActionListener() {
+                @Override
+                public void actionPerformed(final ActionEvent theEvent) {
+                    repaint(myStatsArea);
+                }
+            });
+            myStatsTimer.start();
+            repaint();
+        } else if (!theShow && myStatsTimer != null) {
+            myStatsTimer.stop();
+            myStatsTimer = null;
+            repaint(myStatsArea);
+            myStatsArea = new Rectangle();
+        }
+    }
+    
+    /**
+     * Mutator method that sets whether the start and end points of SnapTools snap to
+     * nearby vertices of the active layer's shapes.
+     * 
+     * @param theSnap Whether points snap to the vertices of the drawing.
+     */
+    protected void setSnapToShapes(final boolean theSnap) {
+        
+        myRecorder.flag(SessionRecorder.SNAP_SHAPES, theSnap);
+        mySnapToShapes = theSnap;
+    }
+    
+    /**
+     * Mutator method that sets the spacing of the grid that the start and end points of
+     * SnapTools snap to. Vertices of the drawing, when snapped to, take precedence over the
+     * grid.
+     * 
+     * @param theSize The spacing of the grid, or 0 for no grid.
+     */
+    protected void setSnapGrid(final int theSize) {
+        
+        myRecorder.value(SessionRecorder.SNAP_GRID, theSize);
+        myGridSize = theSize;
+        repaint();
+    }
+    
+    /**
+     * Moves a point onto the nearest vertex of the active layer within the snap radius if
+     * snapping to shapes is on, or else onto the nearest grid point if there is a grid.
+     * Remembers the vertex snapped to so it can be marked.
+     * 
+     * @param thePoint The point to snap.
+     * @return The snapped point, or the given point if it does not snap.
+     */
+    private Point snap(final Point thePoint) {
+        
+        mySnapMarker = null;
+        if (mySnapToShapes) {
+            syncIndex();
+            final Point2D vertex = mySnapIndex.nearest(thePoint.getX(), thePoint.getY(),
+                                                       SNAP_RADIUS);
+            if (vertex != null) {
+                mySnapMarker = vertex;
+                return new Point((int) Math.round(vertex.getX()),
+                                 (int) Math.round(vertex.getY()));
+            }
+        }
+        if (myGridSize > 0) {
+            return new Point(Math.round((float) thePoint.x / myGridSize) * myGridSize,
+                             Math.round((float) thePoint.y / myGridSize) * myGridSize);
+        }
+        return thePoint;
     }
     
     /**
@@ -203,67 +626,1296 @@ public class PaintPanel extends JPanel {
     }
     
     /**
-     * Provides the caller with the list of previously drawn PaintShapes.
+     * Provides the caller with the layers of the drawing from bottom to top. Safe to call
+     * from any thread; the returned list does not change.
      * 
-     * @return The list of previously drawn PaintShapes.
+     * @return The read-only list of layers.
      */
-    protected List<PaintShape> getShapes() {
+    public List<Layer> getLayers() {
         
-        return myDrawnShapes;
+        return myLayers;
     }
     
     /**
-     * Adds a listener for property change events from this class.
+     * Provides the caller with the layer that new shapes and edits go to.
      * 
-     * @param theListener a PropertyChangeListener to add.
+     * @return The active layer.
      */
-    @Override
-    public void addPropertyChangeListener(final PropertyChangeListener theListener) {
-        myPCS.addPropertyChangeListener(theListener);
+    public Layer getActiveLayer() {
+        
+        return myActiveLayer;
     }
     
     /**
-     * Removes a listener for property change events from this class.
+     * Makes one of the drawing's layers the one that new shapes and edits go to.
      * 
-     * @param theListener a PropertyChangeListener to remove.
+     * @param theLayer The layer to activate.
+     * @throws IllegalArgumentException If the layer is not part of the drawing.
      */
-    @Override
-    public void removePropertyChangeListener(final PropertyChangeListener theListener) {
-        myPCS.removePropertyChangeListener(theListener);
+    protected void setActiveLayer(final Layer theLayer) {
+        
+        myRecorder.value(SessionRecorder.ACTIVE_LAYER, indexOf(theLayer));
+        if (theLayer != myActiveLayer) {
+            myActiveLayer = theLayer;
+            // The active EditTool's selection belongs to the previous layer.
+            resetEditTool();
+            layersChanged();
+        }
     }
     
+    /**
+     * Adds a new, empty layer directly above the active layer and activates it.
+     * 
+     * @return The new layer.
+     */
+    protected Layer addLayer() {
+        
+        myRecorder.command(SessionRecorder.ADD_LAYER);
+        final Layer layer = new Layer("Layer " + myNextLayerNumber++);
+        final List<Layer> layers = new ArrayList<Layer>(myLayers);
+        layers.add(indexOf(myActiveLayer) + 1, layer);
+        myLayers = Collections.unmodifiableList(layers);
+        myActiveLayer = layer;
+        resetEditTool();
+        layersChanged();
+        return layer;
+    }
     
     /**
-     * Mouse listener for recording the points at which the mouse is pressed, dragged, and
-     * released. These points are then relayed to the currently active DrawingTool so that
-     * the shape may be displayed on screen.
+     * Removes a layer and its shapes from the drawing. The last remaining layer cannot be
+     * removed. If the active layer is removed, the layer below it becomes active.
      * 
-     * @author JJ Coldiron (jj.coldiron@outlook.com)
-     * @version 1.0
+     * @param theLayer The layer to remove.
+     * @throws IllegalArgumentException If the layer is not part of the drawing.
+     * @throws IllegalStateException If it is the only layer.
      */
-    private class ShapeListener extends MouseAdapter {
+    protected void removeLayer(final Layer theLayer) {
         
-        @Override
-        public void mousePressed(final MouseEvent theEvent) {
-            
-            myActiveTool.setStartPoint(theEvent.getPoint());
-            myActiveTool.setEndPoint(theEvent.getPoint());
-            repaint();
+        final int index = indexOf(theLayer);
+        if (myLayers.size() == 1) {
+            throw new IllegalStateException("A drawing needs at least one layer");
+        }
+        myRecorder.value(SessionRecorder.REMOVE_LAYER, index);
+        final List<Layer> layers = new ArrayList<Layer>(myLayers);
+        layers.remove(index);
+        myLayers = Collections.unmodifiableList(layers);
+        if (theLayer == myActiveLayer) {
+            myActiveLayer = layers.get(Math.max(index - 1, 0));
+            resetEditTool();
         }
+        layersChanged();
+        fireShapesChanged();
+    }
+    
+    /**
+     * Moves a layer to a new position in the stack of layers.
+     * 
+     * @param theLayer The layer to move.
+     * @param theIndex The new position of the layer, 0 being the bottom.
+     * @throws IllegalArgumentException If the layer is not part of the drawing.
+     * @throws IndexOutOfBoundsException If the position is outside the stack.
+     */
+    protected void moveLayer(final Layer theLayer, final int theIndex) {
         
-        @Override
-        public void mouseDragged(final MouseEvent theEvent) {
-            
-            myActiveTool.setEndPoint(theEvent.getPoint());
-            repaint();
+        final List<Layer> layers = new ArrayList<Layer>(myLayers);
+        final int index = indexOf(theLayer);
+        layers.remove(index);
+        layers.add(theIndex, theLayer);
+        myRecorder.moveLayer(index, theIndex);
+        myLayers = Collections.unmodifiableList(layers);
+        layersChanged();
+    }
+    
+    /**
+     * Shows or hides a layer.
+     * 
+     * @param theLayer The layer to show or hide.
+     * @param theVisible Whether the layer is shown.
+     */
+    protected void setLayerVisible(final Layer theLayer, final boolean theVisible) {
+        
+        myRecorder.layerVisible(myLayers.indexOf(theLayer), theVisible);
+        theLayer.setVisible(theVisible);
+        layersChanged();
+    }
+    
+    /**
+     * Sets the opacity a layer is composited with.
+     * 
+     * @param theLayer The layer to change.
+     * @param theOpacity The new opacity, from 0 to 1.
+     */
+    protected void setLayerOpacity(final Layer theLayer, final float theOpacity) {
+        
+        myRecorder.layerOpacity(myLayers.indexOf(theLayer), theOpacity);
+        theLayer.setOpacity(theOpacity);
+        layersChanged();
+    }
+    
+    /**
+     * Provides the caller with an immutable snapshot of the active layer's PaintShapes.
+     * Safe to call from any thread; later changes to the drawing do not affect it.
+     * 
+     * @return The PaintShapes of the active layer.
+     */
+    public ShapeList getShapes() {
+        
+        return myActiveLayer.getShapes().snapshot();
+    }
+    
+    /**
+     * Appends a PaintShape to the active layer. Safe to call from any thread; the "shapes"
+     * PropertyChange and the repaint are delivered on the event dispatch thread.
+     * 
+     * @param theShape The PaintShape to append.
+     */
+    public void addShape(final PaintShape theShape) {
+        
+        myActiveLayer.getShapes().add(theShape);
+        shapesChanged();
+    }
+    
+    /**
+     * Validates and appends a batch of PaintShapes to the active layer in one operation,
+     * firing a single "shapes" PropertyChange and a single repaint however many shapes are
+     * added. Safe to call from any thread.
+     * 
+     * @param theShapes The PaintShapes to append, in drawing order.
+     * @throws IllegalArgumentException If any PaintShape is invalid; none are added then.
+     */
+    public void addShapes(final Collection<? extends PaintShape> theShapes) {
+        
+        if (!theShapes.isEmpty()) {
+            myActiveLayer.getShapes().addAll(theShapes);
+            shapesChanged();
         }
+    }
+    
+    /**
+     * Validates and appends every PaintShape of a stream to the active layer in one
+     * operation, firing a single "shapes" PropertyChange and a single repaint. Safe to call
+     * from any thread.
+     * 
+     * @param theShapes The PaintShapes to append, in drawing order.
+     * @throws IllegalArgumentException If any PaintShape is invalid; none are added then.
+     */
+    public void addShapes(final Stream<? extends PaintShape> theShapes) {
         
-        @Override
-        public void mouseReleased(final MouseEvent theEvent) {
+        final ShapeModel shapes = myActiveLayer.getShapes();
+        final int before = shapes.snapshot().size();
+        if (shapes.addAll(theShapes).size() != before) {
+            shapesChanged();
+        }
+    }
+    
+    /**
+     * Removes every previously drawn PaintShape from every layer and clears the active
+     * tool's preview. The layers themselves are kept.
+     */
+    protected void clearShapes() {
+        
+        myRecorder.command(SessionRecorder.CLEAR);
+        if (myCollab != null) {
+            myCollab.sendClear();
+        }
+        clearLayers();
+    }
+    
+    /**
+     * Removes every PaintShape from every layer and clears the active tool's preview,
+     * without recording or sharing it.
+     */
+    private void clearLayers() {
+        
+        for (final Layer layer: myLayers) {
+            layer.getShapes().clear();
+        }
+        myActiveTool.setStartPoint(OFFSCREEN);
+        myActiveTool.setEndPoint(OFFSCREEN);
+        resetEditTool();
+        shapesChanged();
+    }
+    
+    /**
+     * Provides the caller with a snapshot of the drawing sized to the current canvas.
+     * 
+     * @return A document holding the layers and their PaintShapes.
+     */
+    protected PaintDocument getDocument() {
+        
+        final List<DocumentLayer> layers = new ArrayList<DocumentLayer>();
+        for (final Layer layer: myLayers) {
+            layers.add(layer.snapshot());
+        }
+        return PaintDocument.ofLayers(Math.max(getWidth(), 1), Math.max(getHeight(), 1),
+                                      layers);
+    }
+    
+    /**
+     * Replaces the layers of the drawing with those of the given document and activates
+     * its top layer.
+     * 
+     * @param theDocument The document to display.
+     */
+    protected void setDocument(final PaintDocument theDocument) {
+        
+        myRecorder.document(theDocument);
+        final List<Layer> layers = new ArrayList<Layer>();
+        for (final DocumentLayer layer: theDocument.getLayers()) {
+            layers.add(new Layer(layer));
+        }
+        setLayers(layers);
+    }
+    
+    /**
+     * Replaces the layers of the drawing and activates the top one.
+     * 
+     * @param theLayers The new layers from bottom to top; at least one.
+     */
+    private void setLayers(final List<Layer> theLayers) {
+        
+        myLayers = Collections.unmodifiableList(theLayers);
+        myActiveLayer = theLayers.get(theLayers.size() - 1);
+        myNextLayerNumber = theLayers.size() + 1;
+        myActiveTool.setStartPoint(OFFSCREEN);
+        myActiveTool.setEndPoint(OFFSCREEN);
+        resetEditTool();
+        layersChanged();
+        shapesChanged();
+    }
+    
+    /**
+     * Opens a document file as a background task. The file is read and its shown layers
+     * are rasterized at the canvas size on the worker thread, and the drawing is then
+     * replaced as setDocument does, in one step, firing the "file" PropertyChange with the
+     * file. Fires the "taskFailed" PropertyChange instead if the file cannot be read.
+     * 
+     * @param theFile The document file.
+     */
+    protected void openDocument(final Path theFile) {
+        
+        final int width = Math.max(getWidth(), 1);
+        final int height = Math.max(getHeight(), 1);
+        myTasks.submit(new DocumentTask<OpenedDocument>("Opening " + theFile.getFileName()) {
+            @Override
+            protected OpenedDocument compute() throws IOException {
+                setTotal(Files.size(theFile));
+                final PaintDocument document;
+                try (InputStream in =
+                         new BufferedInputStream(track(Files.newInputStream(theFile)))) {
+                    document = PaintDocumentIO.read(in);
+                }
+                long shapes = 0;
+                for (final DocumentLayer layer: document.getLayers()) {
+                    shapes += layer.getShapes().size();
+                }
+                setTotal(shapes);
+                final OpenedDocument result = new OpenedDocument(document);
+                for (final DocumentLayer layer: document.getLayers()) {
+                    final Layer opened = new Layer(layer);
+                    result.myLayers.add(opened);
+                    if (layer.isVisible() && layer.getOpacity() > 0) {
+                        result.myRasters.add(LayerCompositor.prepare(
+                            opened.getShapes().snapshot(), width, height, this));
+                    } else {
+                        advance(layer.getShapes().size());
+                        result.myRasters.add(null);
+                    }
+                }
+                return result;
+            }
             
-            myDrawnShapes.add(new PaintShape(myActiveTool.getShape(), myColor, myFillColor,
-                                             myFillStatus, myWidth));
-            myPCS.firePropertyChange("shapes", 0, myDrawnShapes.size());
+            @Override
+            protected void commit(final OpenedDocument theResult) {
+                myRecorder.document(theResult.myDocument);
+                setLayers(theResult.myLayers);
+                for (int i = 0; i < theResult.myLayers.size(); i++) {
+                    if (theResult.myRasters.get(i) != null) {
+                        myCompositor.adopt(theResult.myLayers.get(i),
+                                           theResult.myRasters.get(i));
+                    }
+                }
+                myPCS.firePropertyChange("file", null, theFile);
+            }
+        });
+    }
+    
+    /**
+     * Saves a snapshot of the drawing to a document file as a background task. The file
+     * is replaced only once the whole document is written, so a cancelled or failed save
+     * leaves any earlier file as it was. Fires the "file" PropertyChange with the file once
+     * it is saved, or the "taskFailed" PropertyChange if it cannot be written.
+     * 
+     * @param theFile The document file.
+     */
+    protected void saveDocument(final Path theFile) {
+        
+        final PaintDocument document = getDocument();
+        myTasks.submit(new FileTask("Saving " + theFile.getFileName(), theFile) {
+            @Override
+            protected void write(final OutputStream theStream) throws IOException {
+                PaintDocumentIO.write(document, theStream);
+            }
+            
+            @Override
+            protected void commit(final Path theResult) {
+                myPCS.firePropertyChange("file", null, theResult);
+            }
+        });
+    }
+    
+    /**
+     * Renders a snapshot of the drawing to a PNG file as a background task, replacing the
+     * file as saveDocument does. Fires the "taskFailed" PropertyChange if the file cannot
+     * be written.
+     * 
+     * @param theFile The PNG file.
+     */
+    protected void exportImage(final Path theFile) {
+        
+        final PaintDocument document = getDocument();
+        myTasks.submit(new FileTask("Exporting " + theFile.getFileName(), theFile) {
+            @Override
+            protected void write(final OutputStream theStream) throws IOException {
+                long shapes = 0;
+                for (final DocumentLayer layer: document.getLayers()) {
+                    if (layer.isVisible() && layer.getOpacity() > 0) {
+                        shapes += layer.getShapes().size();
+                    }
+                }
+                setTotal(shapes);
+                final BufferedImage image = ShapeRenderer.render(document, document.getWidth(),
+                                                                 document.getHeight(), this);
+                if (!ImageIO.write(image, "png", theStream)) {
+                    throw new IOException("The drawing cannot be stored as PNG");
+                }
+            }
+        });
+    }
+    
+    /**
+     * Provides the caller with the background tasks that are queued or running.
+     * 
+     * @return The read-only list of unfinished tasks, oldest first.
+     */
+    protected List<DocumentTask<?>> getTasks() {
+        
+        return myTasks.getTasks();
+    }
+    
+    /**
+     * Cancels a background task. Its result is never applied, and any file it was writing
+     * is left as it was.
+     * 
+     * @param theTask The task.
+     */
+    protected void cancelTask(final DocumentTask<?> theTask) {
+        
+        myTasks.cancel(theTask);
+    }
+    
+    /**
+     * Sets whether whole layers of many shapes are rasterized on the background thread,
+     * painting their previous rasters meanwhile, or inline so every frame is exact.
+     * 
+     * @param theBackground Whether to rasterize large layers in the background.
+     */
+    protected void setBackgroundRendering(final boolean theBackground) {
+        
+        if (theBackground) {
+            myCompositor.setBackground(myTasks, new Runnable() {
+                @Override
+                public void run() {
+                    repaint();
+                }
+            });
+        } else {
+            myCompositor.setBackground(null, null);
+        }
+    }
+    
+    /**
+     * Counts the panel's cached layer images against a budget shared with other panels,
+     * so that they are released when panels painted more recently need the memory.
+     * 
+     * @param theBudget The budget, or null to keep images until they are out of date.
+     */
+    protected void setCacheBudget(final CacheBudget theBudget) {
+        
+        myCompositor.setBudget(theBudget);
+    }
+    
+    /**
+     * Takes on another panel's tool, drawing settings, and statistics overlay, such as when
+     * the user switches from that panel's document to this one, as though the user had
+     * chosen each of them.
+     * 
+     * @param theOther The panel whose settings to copy.
+     */
+    protected void copySettings(final PaintPanel theOther) {
+        
+        setCurrentTool(theOther.myActiveTool);
+        setPaintColor(theOther.myColor);
+        setFillColor(theOther.myFillColor);
+        setFillStatus(theOther.myFillStatus);
+        setStrokeWidth(theOther.myWidth);
+        setFillTolerance(theOther.myTolerance);
+        setFontSize(Math.round(theOther.myFont.getSize2D()));
+        setSnapToShapes(theOther.mySnapToShapes);
+        setSnapGrid(theOther.myGridSize);
+        myMotif = theOther.myMotif;
+        setStatsVisible(theOther.myStatsTimer != null);
+    }
+    
+    /**
+     * Releases what the panel holds once its document is closed: cancels its background
+     * tasks and ends their thread, leaves any session, gives its cached images back to its
+     * budget, unregisters its render statistics from JMX, and stops any recording. The
+     * panel must not be used afterwards.
+     * 
+     * @throws IOException If any part of the recording could not be written.
+     */
+    protected void closeDocument() throws IOException {
+        
+        myTasks.shutdown();
+        leaveSession();
+        myCompositor.setBudget(null);
+        myCompositor.invalidate();
+        setStatsVisible(false);
+        myStats.unregister();
+        stopRecording();
+    }
+    
+    /**
+     * Imports a picture file, such as a reference photo to trace over. The file is read
+     * and decoded on a background thread, and the picture is then placed on the active
+     * layer by placeImage, centered and shrunk to fit the canvas. Fires the "import"
+     * PropertyChange with the exception on the event dispatch thread if the file cannot be
+     * read or decoded.
+     * 
+     * @param theFile The picture file, in any format ImageIO reads.
+     */
+    protected void importImage(final Path theFile) {
+        
+        decodeImage(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return Files.readAllBytes(theFile);
+            }
+        });
+    }
+    
+    /**
+     * Imports a picture taken from the clipboard, as importImage does for files. The
+     * picture is stored as PNG, encoded on the background thread.
+     * 
+     * @param theImage The picture.
+     */
+    protected void pasteImage(final BufferedImage theImage) {
+        
+        decodeImage(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                if (!ImageIO.write(theImage, "png", bytes)) {
+                    throw new IOException("The picture cannot be stored as PNG");
+                }
+                return bytes.toByteArray();
+            }
+        });
+    }
+    
+    /**
+     * Reads and decodes a picture on a background thread, then places it on the event
+     * dispatch thread, or fires the "import" PropertyChange if it fails.
+     * 
+     * @param theSource Provides the encoded picture; called on the background thread.
+     */
+    private void decodeImage(final Callable<byte[]> theSource) {
+        
+        final Thread decoder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final RasterImage image = RasterImage.decode(theSource.call());
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            placeImage(new ImageShape(image, fit(image)));
+                        }
+                    });
+                } catch (final Exception e) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            myPCS.firePropertyChange("import", null, e);
+                        }
+                    });
+                }
+            }
+        }, "Image decoder");
+        decoder.setDaemon(true);
+        decoder.start();
+    }
+    
+    /**
+     * Provides the caller with the frame an imported picture is first placed in: centered
+     * on the canvas at full size, or shrunk to fit it.
+     * 
+     * @param theImage The picture.
+     * @return The frame of the picture.
+     */
+    private Rectangle2D fit(final RasterImage theImage) {
+        
+        final double width = Math.max(getWidth(), 1);
+        final double height = Math.max(getHeight(), 1);
+        final double scale = Math.min(1, Math.min(width / theImage.getWidth(),
+                                                  height / theImage.getHeight()));
+        final double fitWidth = theImage.getWidth() * scale;
+        final double fitHeight = theImage.getHeight() * scale;
+        return new Rectangle2D.Double(Math.rint((width - fitWidth) / 2),
+                                      Math.rint((height - fitHeight) / 2),
+                                      fitWidth, fitHeight);
+    }
+    
+    /**
+     * Places an imported picture on the active layer, recording and sharing it like any
+     * other committed shape. Must be called on the event dispatch thread.
+     * 
+     * @param theImage The imported picture in its frame.
+     */
+    protected void placeImage(final ImageShape theImage) {
+        
+        myRecorder.image(theImage);
+        myEditor.addShape(theImage);
+    }
+    
+    /**
+     * Starts recording the user's session to a stream, beginning with the panel's current
+     * settings and drawing, so that it can be replayed by SessionReplayer. Any recording
+     * in progress is stopped first.
+     * 
+     * @param theStream The stream to write to; closed when recording stops.
+     * @throws IOException If the recording cannot be written.
+     */
+    protected void startRecording(final OutputStream theStream) throws IOException {
+        
+        myRecorder.start(theStream, getWidth(), getHeight());
+        myRecorder.document(getDocument());
+        myRecorder.value(SessionRecorder.ACTIVE_LAYER, indexOf(myActiveLayer));
+        myRecorder.tool(myActiveTool.getName());
+        myRecorder.color(SessionRecorder.PAINT_COLOR, myColor);
+        myRecorder.color(SessionRecorder.FILL_COLOR, myFillColor);
+        myRecorder.flag(SessionRecorder.FILL, myFillStatus);
+        myRecorder.value(SessionRecorder.STROKE, myWidth);
+        myRecorder.value(SessionRecorder.TOLERANCE, myTolerance);
+        myRecorder.value(SessionRecorder.FONT_SIZE, Math.round(myFont.getSize2D()));
+        myRecorder.flag(SessionRecorder.SNAP_SHAPES, mySnapToShapes);
+        myRecorder.value(SessionRecorder.SNAP_GRID, myGridSize);
+    }
+    
+    /**
+     * Stops recording the user's session, if it is being recorded.
+     * 
+     * @throws IOException If any part of the recording could not be written.
+     */
+    protected void stopRecording() throws IOException {
+        
+        myRecorder.stop();
+    }
+    
+    /**
+     * Tells whether the user's session is being recorded.
+     * 
+     * @return Whether recording has been started and not stopped.
+     */
+    protected boolean isRecording() {
+        
+        return myRecorder.isRecording();
+    }
+    
+    /**
+     * Joins a collaborative session, after which the shapes committed to the drawing and
+     * Clear are shared with the other participants and theirs are applied to the drawing.
+     * Shapes received are added to the active layer. Any session joined before is left
+     * first. Fires the "session" PropertyChange if the connection to the server is lost.
+     * 
+     * @param theHost The host of the session server.
+     * @param thePort The port of the session server.
+     * @throws IOException If the server cannot be reached.
+     */
+    protected void joinSession(final String theHost, final int thePort) throws IOException {
+        
+        leaveSession();
+        final RemoteChanges changes = new RemoteChanges();
+        myCollab = new CollabClient(theHost, thePort, changes);
+        changes.myClient = myCollab;
+    }
+    
+    /**
+     * Leaves the collaborative session, if the drawing is shared. The drawing is kept.
+     */
+    protected void leaveSession() {
+        
+        if (myCollab != null) {
+            myCollab.close();
+            myCollab = null;
+        }
+    }
+    
+    /**
+     * Tells whether the drawing is shared through a collaborative session.
+     * 
+     * @return Whether a session has been joined and not left.
+     */
+    protected boolean isInSession() {
+        
+        return myCollab != null;
+    }
+    
+    /**
+     * Shares a PaintShape committed to the drawing, if the drawing is shared. Imported
+     * pictures too large for the session's frames are kept to this drawing.
+     * 
+     * @param theShape The PaintShape.
+     */
+    private void share(final PaintShape theShape) {
+        
+        if (theShape instanceof ImageShape && ((ImageShape) theShape).getImage()
+                .getEncoded().length > MAX_SHARED_IMAGE) {
+            return;
+        }
+        if (myCollab != null) {
+            myCollab.sendShape(theShape);
+        }
+    }
+    
+    /**
+     * Asks the user for a line of text to place in the drawing.
+     * 
+     * @return The text entered, or null if the user cancelled.
+     */
+    protected String promptText() {
+        
+        return JOptionPane.showInputDialog(this, "Text:", "PowerPaint",
+                                           JOptionPane.PLAIN_MESSAGE);
+    }
+    
+    /**
+     * Fires the "shapes" PropertyChange with the current number of shapes across all
+     * layers. Must be called on the event dispatch thread.
+     */
+    private void fireShapesChanged() {
+        
+        int count = 0;
+        for (final Layer layer: myLayers) {
+            count += layer.getShapes().snapshot().size();
+        }
+        myPCS.firePropertyChange("shapes", null, count);
+    }
+    
+    /**
+     * Fires the "layers" PropertyChange and repaints. Must be called on the event dispatch
+     * thread.
+     */
+    private void layersChanged() {
+        
+        myPCS.firePropertyChange("layers", null, myLayers);
+        repaint();
+    }
+    
+    /**
+     * Finds the position of a layer in the stack of layers.
+     * 
+     * @param theLayer The layer to find.
+     * @return The position of the layer, 0 being the bottom.
+     * @throws IllegalArgumentException If the layer is not part of the drawing.
+     */
+    private int indexOf(final Layer theLayer) {
+        
+        final List<Layer> layers = myLayers;
+        for (int i = 0; i < layers.size(); i++) {
+            if (layers.get(i) == theLayer) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a layer of this drawing: " + theLayer);
+    }
+    
+    /**
+     * Discards the state of the active tool if it is an EditTool, such as its selection,
+     * and repaints so that its overlay disappears.
+     */
+    private void resetEditTool() {
+        
+        if (myActiveTool instanceof EditTool) {
+            ((EditTool) myActiveTool).reset();
+            repaint();
+        }
+    }
+    
+    /**
+     * Brings the spatial and snap indexes up to date with the active layer. Shapes appended
+     * since the last call are added to them; any other change to the layer, or a change of
+     * active layer, rebuilds them.
+     */
+    private void syncIndex() {
+        
+        final Layer layer = myActiveLayer;
+        final ShapeList shapes = layer.getShapes().snapshot();
+        if (layer != myIndexedLayer || shapes.getGeneration() != myIndexedGeneration
+            || shapes.size() < myIndexedSize) {
+            myIndex.clear();
+            myIndex.addAll(shapes);
+            mySnapIndex.clear();
+            mySnapIndex.addAll(shapes);
+            myPositions.clear();
+        } else {
+            for (int i = myIndexedSize; i < shapes.size(); i++) {
+                myIndex.add(shapes.get(i));
+                mySnapIndex.add(shapes.get(i));
+            }
+        }
+        myIndexedLayer = layer;
+        myIndexedGeneration = shapes.getGeneration();
+        myIndexedSize = shapes.size();
+    }
+    
+    /**
+     * Finds the positions of the given shapes in the active layer, using the remembered
+     * positions of recently edited shapes and scanning the drawing only for the rest, up
+     * to the last of them.
+     * 
+     * @param theShapes The shapes to locate.
+     * @param theFound Receives the shapes that are part of the layer, in the order given.
+     * @return The positions of the found shapes, in the same order.
+     */
+    private int[] locate(final List<PaintShape> theShapes, final List<PaintShape> theFound) {
+        
+        final Map<PaintShape, Boolean> missing = new IdentityHashMap<PaintShape, Boolean>();
+        for (final PaintShape shape: theShapes) {
+            if (!myPositions.containsKey(shape)) {
+                missing.put(shape, Boolean.TRUE);
+            }
+        }
+        if (!missing.isEmpty()) {
+            int position = 0;
+            for (final PaintShape shape: myIndexedLayer.getShapes().snapshot()) {
+                if (missing.remove(shape) != null) {
+                    myPositions.put(shape, position);
+                    if (missing.isEmpty()) {
+                        break;
+                    }
+                }
+                position++;
+            }
+        }
+        final int[] result = new int[theShapes.size()];
+        int count = 0;
+        for (final PaintShape shape: theShapes) {
+            final Integer position = myPositions.get(shape);
+            if (position != null) {
+                theFound.add(shape);
+                result[count++] = position;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    /**
+     * Fires the "shapes" PropertyChange with the current number of shapes and repaints the
+     * panel, hopping to the event dispatch thread if necessary.
+     */
+    private void shapesChanged() {
+        
+        if (SwingUtilities.isEventDispatchThread()) {
+            fireShapesChanged();
+            repaint();
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    shapesChanged();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Adds a listener for property change events from this class.
+     * 
+     * @param theListener a PropertyChangeListener to add.
+     */
+    @Override
+    public void addPropertyChangeListener(final PropertyChangeListener theListener) {
+        myPCS.addPropertyChangeListener(theListener);
+    }
+    
+    /**
+     * Removes a listener for property change events from this class.
+     * 
+     * @param theListener a PropertyChangeListener to remove.
+     */
+    @Override
+    public void removePropertyChangeListener(final PropertyChangeListener theListener) {
+        myPCS.removePropertyChangeListener(theListener);
+    }
+    
+    
+    /**
+     * A document read by openDocument, with its layers and the rasters prepared for them.
+     * 
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class OpenedDocument {
+        
+        /** The document read. */
+        private final PaintDocument myDocument;
+        
+        /** The new layers holding the document's layers, from bottom to top. */
+        private final List<Layer> myLayers = new ArrayList<Layer>();
+        
+        /** The raster of each new layer, or null for layers that are not shown. */
+        private final List<LayerCompositor.Prepared> myRasters =
+            new ArrayList<LayerCompositor.Prepared>();
+        
+        
+        /**
+         * Constructor of a document read but not yet turned into layers.
+         * 
+         * @param theDocument The document read.
+         */
+        private OpenedDocument(final PaintDocument theDocument) {
+            
+            myDocument = theDocument;
+        }
+    }
+    
+    
+    /**
+     * DocumentTask that writes a file by writing a temporary file beside it and moving it
+     * into place, deleting the temporary file instead if the task is cancelled or fails.
+     * 
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private abstract static class FileTask extends DocumentTask<Path> {
+        
+        /** The file written. */
+        private final Path myFile;
+        
+        
+        /**
+         * Constructor of a task writing the given file.
+         * 
+         * @param theName What the task does, as shown to the user.
+         * @param theFile The file to write.
+         */
+        private FileTask(final String theName, final Path theFile) {
+            
+            super(theName);
+            myFile = theFile.toAbsolutePath();
+        }
+        
+        /**
+         * Writes the contents of the file.
+         * 
+         * @param theStream The buffered stream to write to, counting bytes as work done.
+         * @throws IOException If the contents cannot be written.
+         */
+        protected abstract void write(OutputStream theStream) throws IOException;
+        
+        @Override
+        protected Path compute() throws IOException {
+            
+            final Path temp = Files.createTempFile(myFile.getParent(),
+                                                   myFile.getFileName().toString(), ".tmp");
+            boolean moved = false;
+            try {
+                try (OutputStream out =
+                         new BufferedOutputStream(track(Files.newOutputStream(temp)))) {
+                    write(out);
+                }
+                checkCancelled();
+                try {
+                    Files.move(temp, myFile, StandardCopyOption.REPLACE_EXISTING,
+                               StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(temp, myFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                moved = true;
+            } finally {
+                if (!moved) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            return myFile;
+        }
+        
+        @Override
+        protected void commit(final Path theResult) {
+            
+            // The file is complete once it is moved into place; nothing else changes.
+        }
+    }
+    
+    
+    /**
+     * Mouse listener for recording the points at which the mouse is pressed, dragged, and
+     * released. These points are then relayed to the currently active DrawingTool, snapped
+     * first for SnapTools, so that the shape may be displayed on screen.
+     * 
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private class ShapeListener extends MouseAdapter {
+        
+        /** The point of the latest event, reused since DrawingTools copy what they keep. */
+        private final Point myPoint = new Point();
+        
+        
+        @Override
+        public void mousePressed(final MouseEvent theEvent) {
+            
+            myStats.eventReceived(theEvent);
+            myRecorder.mouse(SessionRecorder.PRESS, theEvent.getX(), theEvent.getY());
+            if (myActiveTool instanceof EditTool) {
+                ((EditTool) myActiveTool).press(theEvent.getPoint(), myEditor);
+                return;
+            }
+            myPoint.setLocation(theEvent.getX(), theEvent.getY());
+            final Point point = snapped(myPoint);
+            myActiveTool.setStartPoint(point);
+            myActiveTool.setEndPoint(point);
+            repaint();
+        }
+        
+        @Override
+        public void mouseDragged(final MouseEvent theEvent) {
+            
+            myStats.eventReceived(theEvent);
+            myRecorder.mouse(SessionRecorder.DRAG, theEvent.getX(), theEvent.getY());
+            if (myActiveTool instanceof EditTool) {
+                ((EditTool) myActiveTool).drag(theEvent.getPoint(), myEditor);
+                return;
+            }
+            myPoint.setLocation(theEvent.getX(), theEvent.getY());
+            myActiveTool.setEndPoint(snapped(myPoint));
+            repaint();
+        }
+        
+        @Override
+        public void mouseReleased(final MouseEvent theEvent) {
+            
+            myStats.eventReceived(theEvent);
+            myRecorder.mouse(SessionRecorder.RELEASE, theEvent.getX(), theEvent.getY());
+            if (myActiveTool instanceof EditTool) {
+                ((EditTool) myActiveTool).release(theEvent.getPoint(), myEditor);
+                return;
+            }
+            mySnapMarker = null;
+            final PaintShape shape = new PaintShape(myActiveTool.getShape(), myColor,
+                                                    myFillColor, myFillStatus, myWidth);
+            addShape(shape);
+            share(shape);
+        }
+        
+        /**
+         * Snaps a point of the mouse if the active tool is a SnapTool.
+         * 
+         * @param thePoint The point of the mouse.
+         * @return The point to hand to the active tool.
+         */
+        private Point snapped(final Point thePoint) {
+            
+            if (myActiveTool instanceof SnapTool) {
+                return snap(thePoint);
+            }
+            return thePoint;
+        }
+    }
+    
+    
+    /**
+     * ShapeEditor through which EditTools query and change the active layer's shapes. Keeps
+     * the spatial index current incrementally, reports edits to the compositor, and
+     * repaints only the areas that change.
+     * 
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private class PanelEditor implements ShapeEditor {
+        
+        @Override
+        public List<PaintShape> shapesIn(final Rectangle2D theArea) {
+            
+            syncIndex();
+            return myIndex.query(theArea);
+        }
+        
+        @Override
+        public List<PaintShape> moveShapes(final List<PaintShape> theShapes,
+                                           final double theDeltaX, final double theDeltaY) {
+            
+            syncIndex();
+            final ShapeModel shapes = myIndexedLayer.getShapes();
+            final ShapeList before = shapes.snapshot();
+            List<PaintShape> found = new ArrayList<PaintShape>(theShapes.size());
+            int[] positions = locate(theShapes, found);
+            PaintShape[] moved = translate(found, theDeltaX, theDeltaY);
+            ShapeList result =
+                shapes.replace(positions, found.toArray(new PaintShape[0]), moved);
+            if (result == null) {
+                // Remembered positions are stale; find the shapes again and retry once.
+                myPositions.clear();
+                found = new ArrayList<PaintShape>(theShapes.size());
+                positions = locate(theShapes, found);
+                moved = translate(found, theDeltaX, theDeltaY);
+                result = shapes.replace(positions, found.toArray(new PaintShape[0]), moved);
+                if (result == null) {
+                    return new ArrayList<PaintShape>();
+                }
+            }
+            
+            Rectangle2D dirty = null;
+            for (int i = 0; i < moved.length; i++) {
+                final PaintShape old = found.get(i);
+                myIndex.replace(old, moved[i]);
+                mySnapIndex.replace(old, moved[i]);
+                myPositions.remove(old);
+                myPositions.put(moved[i], positions[i]);
+                if (dirty == null) {
+                    dirty = (Rectangle2D) old.getBounds().clone();
+                } else {
+                    dirty.add(old.getBounds());
+                }
+                dirty.add(moved[i].getBounds());
+            }
+            // The index matches the result only if no one else changed the drawing between
+            // the last sync and this move.
+            if (result.getGeneration() == myIndexedGeneration + 1) {
+                myIndexedGeneration = result.getGeneration();
+            } else {
+                myIndexedGeneration = -1;
+            }
+            if (dirty != null) {
+                edited(before, result, 0, dirty);
+            }
+            return Arrays.asList(moved);
+        }
+        
+        @Override
+        public void removeShapes(final List<PaintShape> theShapes) {
+            
+            syncIndex();
+            final ShapeModel shapes = myIndexedLayer.getShapes();
+            final ShapeList before = shapes.snapshot();
+            final List<PaintShape> found = new ArrayList<PaintShape>(theShapes.size());
+            ShapeList result =
+                shapes.remove(locate(theShapes, found), found.toArray(new PaintShape[0]));
+            if (result == null) {
+                // Remembered positions are stale; fall back to finding every shape again.
+                result = shapes.removeAll(theShapes);
+            }
+            Rectangle2D dirty = null;
+            int removed = 0;
+            for (final PaintShape shape: theShapes) {
+                mySnapIndex.remove(shape);
+                if (myIndex.remove(shape)) {
+                    removed++;
+                    if (dirty == null) {
+                        dirty = (Rectangle2D) shape.getBounds().clone();
+                    } else {
+                        dirty.add(shape.getBounds());
+                    }
+                }
+            }
+            // Positions after the removed shapes have shifted.
+            myPositions.clear();
+            if (result.getGeneration() == myIndexedGeneration + 1) {
+                myIndexedGeneration = result.getGeneration();
+                myIndexedSize -= removed;
+            } else {
+                myIndexedGeneration = -1;
+            }
+            if (dirty != null) {
+                edited(before, result, removed, dirty);
+            }
+            fireShapesChanged();
+        }
+        
+        @Override
+        public void addShape(final PaintShape theShape) {
+            
+            // Appended shapes reach the index and the layer's raster on their next update.
+            myActiveLayer.getShapes().add(theShape);
+            repaintArea(theShape.getBounds());
+            fireShapesChanged();
+            share(theShape);
+        }
+        
+        @Override
+        public BufferedImage getActiveRaster() {
+            
+            return myCompositor.exactRaster(myActiveLayer, Math.max(getWidth(), 1),
+                                            Math.max(getHeight(), 1));
+        }
+        
+        @Override
+        public Color getPaintColor() {
+            
+            return myColor;
+        }
+        
+        @Override
+        public Font getFont() {
+            
+            return myFont;
+        }
+        
+        @Override
+        public String requestText() {
+            
+            final String result = promptText();
+            myRecorder.text(result);
+            return result;
+        }
+        
+        @Override
+        public Motif getMotif() {
+            
+            return myMotif;
+        }
+        
+        @Override
+        public Color getFillColor() {
+            
+            return myFillColor;
+        }
+        
+        @Override
+        public int getFillTolerance() {
+            
+            return myTolerance;
+        }
+        
+        @Override
+        public void repaintArea(final Rectangle2D theArea) {
+            
+            repaint(theArea.getBounds());
+        }
+        
+        /**
+         * Reports an edit of the indexed layer to the compositor and repaints its area. The
+         * edit is only reported if nothing else changed the layer between the two
+         * snapshots, since the compositor then redraws the area alone.
+         * 
+         * @param theBefore The layer's shapes immediately before the edit.
+         * @param theAfter The layer's shapes immediately after the edit.
+         * @param theRemoved The number of shapes the edit removed.
+         * @param theArea The area the edit changed.
+         */
+        private void edited(final ShapeList theBefore, final ShapeList theAfter,
+                            final int theRemoved, final Rectangle2D theArea) {
+            
+            if (theAfter.getGeneration() == theBefore.getGeneration() + 1
+                && theBefore.size() - theAfter.size() == theRemoved) {
+                myCompositor.changed(myIndexedLayer, theBefore, theAfter, theArea);
+            }
+            repaintArea(theArea);
+        }
+        
+        /**
+         * Creates moved copies of the given shapes.
+         * 
+         * @param theShapes The shapes to move.
+         * @param theDeltaX The horizontal distance to move.
+         * @param theDeltaY The vertical distance to move.
+         * @return The moved copies, in the same order.
+         */
+        private PaintShape[] translate(final List<PaintShape> theShapes,
+                                       final double theDeltaX, final double theDeltaY) {
+            
+            final PaintShape[] result = new PaintShape[theShapes.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = theShapes.get(i).translated(theDeltaX, theDeltaY);
+            }
+            return result;
+        }
+    }
+    
+    
+    /**
+     * Receives the changes other participants of the collaborative session make. Each batch
+     * that arrived together is applied on the event dispatch thread in one go: a Clear
+     * among them, then the shapes that followed it through the bulk path, so the batch
+     * costs one "shapes" PropertyChange and one repaint. Shapes before a Clear in the same
+     * batch are dropped, since the Clear would remove them.
+     * 
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private class RemoteChanges implements CollabProtocol.Receiver {
+        
+        /** The client receiving the changes; used on the event dispatch thread only. */
+        private CollabClient myClient;
+        
+        /** The shapes received in the current batch; used on the reader thread only. */
+        private List<PaintShape> myShapes = new ArrayList<PaintShape>();
+        
+        /** Whether the current batch clears the drawing; used on the reader thread only. */
+        private boolean myClear;
+        
+        
+        @Override
+        public void shape(final int theOrigin, final int theSequence,
+                          final PaintShape theShape) {
+            
+            myShapes.add(theShape);
+        }
+        
+        @Override
+        public void clear(final int theOrigin, final int theSequence) {
+            
+            myShapes.clear();
+            myClear = true;
+        }
+        
+        @Override
+        public void endBatch() {
+            
+            final List<PaintShape> shapes = myShapes;
+            final boolean clear = myClear;
+            myShapes = new ArrayList<PaintShape>();
+            myClear = false;
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    // Batches still on their way when the session was left are dropped.
+                    if (myClient != myCollab) {
+                        return;
+                    }
+                    if (clear) {
+                        clearLayers();
+                    }
+                    addShapes(shapes);
+                }
+            });
+        }
+        
+        @Override
+        public void disconnected(final IOException theError) {
+            
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (myClient == myCollab) {
+                        myCollab = null;
+                        myPCS.firePropertyChange("session", true, false);
+                    }
+                }
+            });
         }
     }
 }
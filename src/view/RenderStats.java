@@ -0,0 +1,613 @@
+package view;
+
+import java.awt.event.InputEvent;
+import java.awt.geom.PathIterator;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import model.FillShape;
+import model.GlyphCache;
+import model.ImageShape;
+import model.Layer;
+import model.Motif;
+import model.PaintShape;
+import model.RasterImage;
+import model.StampShape;
+import model.TextShape;
+
+/**
+ * Rendering statistics of a PaintPanel: how long frames take to paint, how long mouse
+ * events wait to be painted, how much work the LayerCompositor does, how well the caches
+ * hit, and how large the document is. The panel reports each frame from the event
+ * dispatch thread, and the statistics can be read from any thread, through JMX once
+ * registered, or on the canvas itself as an overlay.
+ *
+ * <p>Recording is off until enabled. While off, the panel's only cost is one volatile read
+ * per frame and per mouse event.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class RenderStats implements RenderStatsMBean {
+
+    // CONSTANTS
+    /** Domain and type of the JMX names of every RenderStats. */
+    private static final String NAME_PREFIX = "PowerPaint:type=RenderStats,id=";
+
+    /** Source of the numbers that keep the JMX names of different canvases apart. */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /** Index of the number of shapes visited among the compositor counters. */
+    private static final int VISITED = 0;
+
+    /** Index of the number of shapes drawn among the compositor counters. */
+    private static final int DRAWN = 1;
+
+    /** Index of the number of full layer renders among the compositor counters. */
+    private static final int FULL = 2;
+
+    /** Index of the number of partial layer renders among the compositor counters. */
+    private static final int PARTIAL = 3;
+
+    /** Index of the number of layer raster hits among the compositor counters. */
+    private static final int HITS = 4;
+
+    /** Index of the glyph cache hits among the counters. */
+    private static final int GLYPH_HITS = 5;
+
+    /** Index of the glyph cache misses among the counters. */
+    private static final int GLYPH_MISSES = 6;
+
+    /** Number of counters. */
+    private static final int COUNTERS = 7;
+
+    /** Estimated bytes of every shape: the PaintShape, its bounds, and its Shape object. */
+    private static final long SHAPE_BYTES = 128;
+
+    /** Estimated bytes of each stored path coordinate. */
+    private static final long COORDINATE_BYTES = Double.BYTES;
+
+    /** Estimated bytes of each run of a flood fill. */
+    private static final long RUN_BYTES = 3 * Integer.BYTES;
+
+    /** Nanoseconds between refreshes of the estimate of the document's size. */
+    private static final long FOOTPRINT_INTERVAL = 1_000_000_000L;
+
+    /** Microseconds in a millisecond. */
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    /** Nanoseconds in a microsecond. */
+    private static final long NANOS_PER_MICRO = 1000;
+
+    /** Bytes in a megabyte, for the overlay. */
+    private static final double BYTES_PER_MEGA = 1024.0 * 1024.0;
+
+
+    // INSTANCE FIELDS
+    /** The canvas whose statistics are recorded. */
+    private final PaintPanel myPanel;
+
+    /** Whether statistics are being recorded. */
+    private volatile boolean myEnabled;
+
+    /** Paint times of the frames, in microseconds. */
+    private final Histogram myPaintTimes;
+
+    /** Latencies of mouse events, in microseconds. */
+    private final Histogram myLatencies;
+
+    /** The time of the earliest mouse event not yet painted, or 0 if there is none. */
+    private long myPendingEvent;
+
+    /** The compositor and glyph cache counters as of the last frame. */
+    private final long[] myTotals;
+
+    /** The counters as of the last reset. */
+    private final long[] myBase;
+
+    /** The bytes of pixels cached by the compositor as of the last frame. */
+    private volatile long myRasterBytes;
+
+    /** The estimated size of the document in bytes, as of the last estimate. */
+    private long myDocumentBytes;
+
+    /** The time of the last estimate of the document's size, from System.nanoTime. */
+    private long myFootprintTime;
+
+    /** Whether the document's size has been estimated yet. */
+    private boolean myFootprintKnown;
+
+    /** The name the statistics are registered under, or null if they are not. */
+    private ObjectName myName;
+
+
+    /**
+     * Constructor that starts with recording off.
+     *
+     * @param thePanel The canvas whose statistics are recorded.
+     */
+    RenderStats(final PaintPanel thePanel) {
+
+        myPanel = thePanel;
+        myPaintTimes = new Histogram();
+        myLatencies = new Histogram();
+        myTotals = new long[COUNTERS];
+        myBase = new long[COUNTERS];
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server under a name of their own,
+     * unless they are registered already.
+     *
+     * @return The name the statistics are registered under.
+     * @throws JMException If the statistics cannot be registered.
+     */
+    public synchronized ObjectName register() throws JMException {
+
+        if (myName == null) {
+            final ObjectName name = new ObjectName(NAME_PREFIX + NEXT_ID.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            myName = name;
+        }
+        return myName;
+    }
+
+    /**
+     * Unregisters the statistics from the platform MBean server, if they are registered,
+     * so that the server no longer holds on to the canvas, such as once its document is
+     * closed.
+     */
+    public synchronized void unregister() {
+
+        if (myName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(myName);
+        } catch (final JMException e) {
+            // Only fails if the name was unregistered elsewhere, so the server has let go.
+            System.out.println("Render statistics " + myName + " were already unregistered");
+        }
+        myName = null;
+    }
+
+    @Override
+    public boolean isEnabled() {
+
+        return myEnabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean theEnabled) {
+
+        myEnabled = theEnabled;
+    }
+
+    @Override
+    public synchronized void reset() {
+
+        myPaintTimes.clear();
+        myLatencies.clear();
+        myTotals[GLYPH_HITS] = GlyphCache.getHits();
+        myTotals[GLYPH_MISSES] = GlyphCache.getMisses();
+        System.arraycopy(myTotals, 0, myBase, 0, COUNTERS);
+    }
+
+    /**
+     * Notes a mouse event, so that its latency is measured when the next frame has been
+     * painted. Called on the event dispatch thread.
+     *
+     * @param theEvent The mouse event.
+     */
+    void eventReceived(final InputEvent theEvent) {
+
+        if (myEnabled && myPendingEvent == 0) {
+            myPendingEvent = theEvent.getWhen();
+        }
+    }
+
+    /**
+     * Records a painted frame along with the compositor's counters after it. Called on the
+     * event dispatch thread at the end of every paint while recording.
+     *
+     * @param theNanos The time taken to paint the frame, in nanoseconds.
+     * @param theCompositor The compositor that painted the frame.
+     */
+    void framePainted(final long theNanos, final LayerCompositor theCompositor) {
+
+        myPaintTimes.record(theNanos / NANOS_PER_MICRO);
+        if (myPendingEvent != 0) {
+            final long waited = System.currentTimeMillis() - myPendingEvent;
+            myLatencies.record((long) (Math.max(waited, 0) * MICROS_PER_MILLI));
+            myPendingEvent = 0;
+        }
+        myRasterBytes = theCompositor.getRasterBytes();
+        synchronized (this) {
+            myTotals[VISITED] = theCompositor.getShapesVisited();
+            myTotals[DRAWN] = theCompositor.getShapesDrawn();
+            myTotals[FULL] = theCompositor.getFullRenders();
+            myTotals[PARTIAL] = theCompositor.getPartialRenders();
+            myTotals[HITS] = theCompositor.getRasterHits();
+        }
+    }
+
+    @Override
+    public long getFrames() {
+
+        return myPaintTimes.getCount();
+    }
+
+    @Override
+    public double getMeanPaintMillis() {
+
+        return myPaintTimes.getMean() / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getMedianPaintMillis() {
+
+        return myPaintTimes.getPercentile(0.5) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99PaintMillis() {
+
+        return myPaintTimes.getPercentile(0.99) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxPaintMillis() {
+
+        return myPaintTimes.getMax() / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public long[] getPaintHistogram() {
+
+        return myPaintTimes.getCounts();
+    }
+
+    @Override
+    public long getEvents() {
+
+        return myLatencies.getCount();
+    }
+
+    @Override
+    public double getMedianEventLatencyMillis() {
+
+        return myLatencies.getPercentile(0.5) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99EventLatencyMillis() {
+
+        return myLatencies.getPercentile(0.99) / MICROS_PER_MILLI;
+    }
+
+    @Override
+    public long getShapesVisited() {
+
+        return counter(VISITED);
+    }
+
+    @Override
+    public long getShapesDrawn() {
+
+        return counter(DRAWN);
+    }
+
+    @Override
+    public long getFullLayerRenders() {
+
+        return counter(FULL);
+    }
+
+    @Override
+    public long getPartialLayerRenders() {
+
+        return counter(PARTIAL);
+    }
+
+    @Override
+    public synchronized double getLayerCacheHitRatio() {
+
+        return ratio(counter(HITS), counter(FULL) + counter(PARTIAL));
+    }
+
+    @Override
+    public synchronized double getGlyphCacheHitRatio() {
+
+        return ratio(GlyphCache.getHits() - myBase[GLYPH_HITS],
+                     GlyphCache.getMisses() - myBase[GLYPH_MISSES]);
+    }
+
+    @Override
+    public long getRasterBytes() {
+
+        return myRasterBytes;
+    }
+
+    @Override
+    public long getDocumentShapes() {
+
+        long result = 0;
+        for (final Layer layer: myPanel.getLayers()) {
+            result += layer.getShapes().snapshot().size();
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the heap taken by the document's shapes. Walking every shape takes time,
+     * so the estimate is refreshed at most once a second.
+     *
+     * @return The estimated size of the document in bytes.
+     */
+    @Override
+    public synchronized long getDocumentBytes() {
+
+        final long now = System.nanoTime();
+        if (!myFootprintKnown || now - myFootprintTime >= FOOTPRINT_INTERVAL) {
+            final Map<Object, Boolean> counted = new IdentityHashMap<Object, Boolean>();
+            long bytes = 0;
+            for (final Layer layer: myPanel.getLayers()) {
+                for (final PaintShape shape: layer.getShapes().snapshot()) {
+                    bytes += estimate(shape, counted);
+                }
+            }
+            myDocumentBytes = bytes;
+            myFootprintTime = now;
+            myFootprintKnown = true;
+        }
+        return myDocumentBytes;
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Describes the statistics in a few short lines for the overlay on the canvas. The
+     * document's size is left out, as estimating it is too slow to do for every frame.
+     *
+     * @return The lines of the description.
+     */
+    List<String> describe() {
+
+        final List<String> result = new ArrayList<String>();
+        result.add(String.format(Locale.ROOT,
+                                 "%d frames  paint %.2f ms mean  %.2f p99  %.2f max",
+                                 getFrames(), getMeanPaintMillis(), getP99PaintMillis(),
+                                 getMaxPaintMillis()));
+        result.add(String.format(Locale.ROOT, "input latency %.1f ms median  %.1f p99",
+                                 getMedianEventLatencyMillis(), getP99EventLatencyMillis()));
+        result.add(String.format(Locale.ROOT, "shapes drawn %d of %d visited",
+                                 getShapesDrawn(), getShapesVisited()));
+        result.add(String.format(Locale.ROOT, "layer cache %.1f%% hit  %d full  %d partial",
+                                 100 * getLayerCacheHitRatio(), getFullLayerRenders(),
+                                 getPartialLayerRenders()));
+        result.add(String.format(Locale.ROOT, "glyph cache %.1f%% hit",
+                                 100 * getGlyphCacheHitRatio()));
+        result.add(String.format(Locale.ROOT, "%d shapes  rasters %.1f MB  heap %.1f MB",
+                                 getDocumentShapes(), getRasterBytes() / BYTES_PER_MEGA,
+                                 getHeapUsedBytes() / BYTES_PER_MEGA));
+        return result;
+    }
+
+    /**
+     * Provides the caller with a counter's change since the last reset.
+     *
+     * @param theIndex The index of the counter.
+     * @return The counter's value less its value at the last reset.
+     */
+    private synchronized long counter(final int theIndex) {
+
+        return myTotals[theIndex] - myBase[theIndex];
+    }
+
+    /**
+     * Computes the fraction of lookups that hit.
+     *
+     * @param theHits The number of hits.
+     * @param theMisses The number of misses.
+     * @return The hit ratio, or 0 if there were no lookups.
+     */
+    private static double ratio(final long theHits, final long theMisses) {
+
+        if (theHits + theMisses <= 0) {
+            return 0;
+        }
+        return (double) theHits / (theHits + theMisses);
+    }
+
+    /**
+     * Estimates the heap taken by one shape and by any motif or imported picture it shows
+     * that has not been counted yet.
+     *
+     * @param theShape The shape.
+     * @param theCounted The motifs and pictures already counted.
+     * @return The estimated size of the shape in bytes.
+     */
+    private static long estimate(final PaintShape theShape,
+                                 final Map<Object, Boolean> theCounted) {
+
+        long result = SHAPE_BYTES;
+        if (theShape instanceof StampShape) {
+            final Motif motif = ((StampShape) theShape).getMotif();
+            if (theCounted.put(motif, Boolean.TRUE) == null) {
+                for (final PaintShape shape: motif.getShapes()) {
+                    result += estimate(shape, theCounted);
+                }
+            }
+        } else if (theShape instanceof ImageShape) {
+            // Levels mapped from files are left to the operating system to page.
+            final RasterImage image = ((ImageShape) theShape).getImage();
+            if (theCounted.put(image, Boolean.TRUE) == null) {
+                result += image.getEncoded().length + image.getResidentBytes();
+            }
+        } else if (theShape instanceof FillShape) {
+            result += RUN_BYTES * ((FillShape) theShape).getSpans().getRunCount();
+        } else if (!(theShape instanceof TextShape)) {
+            // Text shares its layout through the glyph cache, so only paths are counted.
+            final double[] coordinates = new double[6];
+            for (final PathIterator path = theShape.getShape().getPathIterator(null);
+                 !path.isDone(); path.next()) {
+                final int type = path.currentSegment(coordinates);
+                result += 1 + COORDINATE_BYTES * coordinateCount(type);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Provides the caller with the number of coordinates a path segment stores.
+     *
+     * @param theType The type of the segment.
+     * @return The number of coordinates.
+     */
+    private static int coordinateCount(final int theType) {
+
+        final int result;
+        if (theType == PathIterator.SEG_QUADTO) {
+            result = 4;
+        } else if (theType == PathIterator.SEG_CUBICTO) {
+            result = 6;
+        } else if (theType == PathIterator.SEG_CLOSE) {
+            result = 0;
+        } else {
+            result = 2;
+        }
+        return result;
+    }
+
+
+    /**
+     * Thread-safe histogram of durations in microseconds with one bucket per power of
+     * two, which keeps recording cheap and the percentiles within a factor of two.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Histogram {
+
+        // CONSTANTS
+        /** Number of buckets; the last one also holds everything longer. */
+        private static final int BUCKETS = 40;
+
+
+        // INSTANCE FIELDS
+        /** The number of durations in each bucket. */
+        private final long[] myCounts = new long[BUCKETS];
+
+        /** The number of durations recorded. */
+        private long myCount;
+
+        /** The sum of the durations recorded. */
+        private long mySum;
+
+        /** The longest duration recorded. */
+        private long myMax;
+
+
+        /**
+         * Records a duration.
+         *
+         * @param theMicros The duration in microseconds.
+         */
+        private synchronized void record(final long theMicros) {
+
+            final int bucket = Math.min(Long.SIZE - Long.numberOfLeadingZeros(theMicros),
+                                        BUCKETS - 1);
+            myCounts[bucket]++;
+            myCount++;
+            mySum += theMicros;
+            myMax = Math.max(myMax, theMicros);
+        }
+
+        /**
+         * Forgets every recorded duration.
+         */
+        private synchronized void clear() {
+
+            Arrays.fill(myCounts, 0);
+            myCount = 0;
+            mySum = 0;
+            myMax = 0;
+        }
+
+        /**
+         * Provides the caller with the number of durations recorded.
+         *
+         * @return The number of durations.
+         */
+        private synchronized long getCount() {
+
+            return myCount;
+        }
+
+        /**
+         * Provides the caller with the mean duration.
+         *
+         * @return The mean in microseconds, or 0 if nothing was recorded.
+         */
+        private synchronized double getMean() {
+
+            if (myCount == 0) {
+                return 0;
+            }
+            return (double) mySum / myCount;
+        }
+
+        /**
+         * Provides the caller with the longest duration.
+         *
+         * @return The longest duration in microseconds.
+         */
+        private synchronized long getMax() {
+
+            return myMax;
+        }
+
+        /**
+         * Provides the caller with the number of durations in each bucket.
+         *
+         * @return A copy of the bucket counts.
+         */
+        private synchronized long[] getCounts() {
+
+            return myCounts.clone();
+        }
+
+        /**
+         * Provides the caller with the duration that the given fraction of the recorded
+         * durations stayed within.
+         *
+         * @param theFraction The fraction, from 0 to 1.
+         * @return The upper end of the bucket holding that percentile, in microseconds,
+         * but no more than the longest duration; 0 if nothing was recorded.
+         */
+        private synchronized long getPercentile(final double theFraction) {
+
+            final long rank = (long) Math.ceil(theFraction * myCount);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += myCounts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(1L << i, myMax);
+                }
+            }
+            return 0;
+        }
+    }
+}
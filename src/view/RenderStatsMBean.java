@@ -0,0 +1,172 @@
+package view;
+
+/**
+ * Management interface of RenderStats, through which JMX clients such as JConsole read the
+ * rendering statistics of a canvas. Times are in milliseconds, and every count covers the
+ * frames painted since statistics were last reset.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public interface RenderStatsMBean {
+
+    /**
+     * Tells whether statistics are being recorded.
+     *
+     * @return Whether statistics are being recorded.
+     */
+    boolean isEnabled();
+
+    /**
+     * Starts or stops recording statistics. While stopped, painting is not measured.
+     *
+     * @param theEnabled Whether to record statistics.
+     */
+    void setEnabled(boolean theEnabled);
+
+    /**
+     * Forgets every statistic recorded so far.
+     */
+    void reset();
+
+    /**
+     * Provides the caller with the number of frames painted.
+     *
+     * @return The number of frames.
+     */
+    long getFrames();
+
+    /**
+     * Provides the caller with the mean time taken to paint a frame.
+     *
+     * @return The mean paint time.
+     */
+    double getMeanPaintMillis();
+
+    /**
+     * Provides the caller with the paint time that half of the frames stayed within.
+     *
+     * @return The median paint time, rounded up to a power of two microseconds.
+     */
+    double getMedianPaintMillis();
+
+    /**
+     * Provides the caller with the paint time that 99 percent of the frames stayed within.
+     *
+     * @return The 99th percentile paint time, rounded up to a power of two microseconds.
+     */
+    double getP99PaintMillis();
+
+    /**
+     * Provides the caller with the longest time taken to paint a frame.
+     *
+     * @return The longest paint time.
+     */
+    double getMaxPaintMillis();
+
+    /**
+     * Provides the caller with the histogram of paint times. Bucket 0 counts frames
+     * painted in under a microsecond, and bucket i counts frames that took at least
+     * 2<sup>i-1</sup> and less than 2<sup>i</sup> microseconds.
+     *
+     * @return The number of frames in each bucket.
+     */
+    long[] getPaintHistogram();
+
+    /**
+     * Provides the caller with the number of mouse events whose latency was measured.
+     *
+     * @return The number of events measured.
+     */
+    long getEvents();
+
+    /**
+     * Provides the caller with the latency, from a mouse event to the end of the next
+     * paint, that half of the measured events stayed within.
+     *
+     * @return The median event latency, rounded up to a power of two microseconds.
+     */
+    double getMedianEventLatencyMillis();
+
+    /**
+     * Provides the caller with the latency that 99 percent of the measured events stayed
+     * within.
+     *
+     * @return The 99th percentile event latency, rounded up to a power of two microseconds.
+     */
+    double getP99EventLatencyMillis();
+
+    /**
+     * Provides the caller with the number of shapes considered for drawing while
+     * rasterizing layers.
+     *
+     * @return The number of shapes visited.
+     */
+    long getShapesVisited();
+
+    /**
+     * Provides the caller with the number of shapes drawn while rasterizing layers.
+     *
+     * @return The number of shapes drawn.
+     */
+    long getShapesDrawn();
+
+    /**
+     * Provides the caller with the number of times a whole layer was rasterized.
+     *
+     * @return The number of full layer renders.
+     */
+    long getFullLayerRenders();
+
+    /**
+     * Provides the caller with the number of times part of a layer was rasterized.
+     *
+     * @return The number of partial layer renders.
+     */
+    long getPartialLayerRenders();
+
+    /**
+     * Provides the caller with the fraction of layer paints served from a cached raster
+     * without rasterizing any of it.
+     *
+     * @return The layer cache hit ratio from 0 to 1, or 0 if no layer was painted.
+     */
+    double getLayerCacheHitRatio();
+
+    /**
+     * Provides the caller with the fraction of text layouts served from the glyph cache.
+     *
+     * @return The glyph cache hit ratio from 0 to 1, or 0 if no text was laid out.
+     */
+    double getGlyphCacheHitRatio();
+
+    /**
+     * Provides the caller with the number of bytes of pixels held by the canvas's cached
+     * layer images.
+     *
+     * @return The size of the cached images in bytes.
+     */
+    long getRasterBytes();
+
+    /**
+     * Provides the caller with the number of shapes in the document.
+     *
+     * @return The number of shapes over all layers.
+     */
+    long getDocumentShapes();
+
+    /**
+     * Provides the caller with an estimate of the heap taken by the document's shapes,
+     * counting each shared motif once.
+     *
+     * @return The estimated size of the document in bytes.
+     */
+    long getDocumentBytes();
+
+    /**
+     * Provides the caller with the heap in use by the whole program.
+     *
+     * @return The used heap in bytes.
+     */
+    long getHeapUsedBytes();
+}
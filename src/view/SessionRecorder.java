@@ -0,0 +1,442 @@
+package view;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import model.ImageShape;
+import model.PaintDocument;
+import model.PaintDocumentIO;
+
+/**
+ * Records what the user does to a PaintPanel, so that a session can be replayed by
+ * SessionReplayer. A recording starts with the panel's size, settings, and document, and
+ * continues with one entry per mouse press, drag, and release, per change of tool or
+ * style, per line of text entered, and per command that changes the drawing, each stamped
+ * with the nanoseconds since recording started.
+ *
+ * <p>The panel reports to its recorder whether or not it is recording; while it is not,
+ * every report returns at once. Reports are made on the event dispatch thread. If the
+ * recording cannot be written, recording stops and the error is thrown by the next call
+ * to stop.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+final class SessionRecorder {
+
+    // CONSTANTS
+    /** Marker at the beginning of every recording ("PPRC"). */
+    static final int MAGIC = 0x50505243;
+
+    /** Version of the format written by this class. */
+    static final int VERSION = 1;
+
+    /** Entry for a mouse press, followed by its x and y coordinates. */
+    static final byte PRESS = 1;
+
+    /** Entry for a mouse drag, followed by its x and y coordinates. */
+    static final byte DRAG = 2;
+
+    /** Entry for a mouse release, followed by its x and y coordinates. */
+    static final byte RELEASE = 3;
+
+    /** Entry for a change of tool, followed by the tool's name. */
+    static final byte TOOL = 4;
+
+    /** Entry for a change of paint color, followed by its ARGB value. */
+    static final byte PAINT_COLOR = 5;
+
+    /** Entry for a change of fill color, followed by its ARGB value. */
+    static final byte FILL_COLOR = 6;
+
+    /** Entry for turning filling on or off, followed by whether it is on. */
+    static final byte FILL = 7;
+
+    /** Entry for a change of stroke width, followed by the width. */
+    static final byte STROKE = 8;
+
+    /** Entry for a change of fill tolerance, followed by the tolerance. */
+    static final byte TOLERANCE = 9;
+
+    /** Entry for a change of font size, followed by the size. */
+    static final byte FONT_SIZE = 10;
+
+    /** Entry for turning snapping to shapes on or off, followed by whether it is on. */
+    static final byte SNAP_SHAPES = 11;
+
+    /** Entry for a change of snap grid, followed by its spacing. */
+    static final byte SNAP_GRID = 12;
+
+    /** Entry for text asked of the user, followed by whether it was entered and the text. */
+    static final byte TEXT = 13;
+
+    /** Entry for making the selection the stamp tool's motif. */
+    static final byte MOTIF = 14;
+
+    /** Entry for clearing the drawing. */
+    static final byte CLEAR = 15;
+
+    /** Entry for opening a document, followed by the stored document. */
+    static final byte DOCUMENT = 16;
+
+    /** Entry for activating a layer, followed by its position. */
+    static final byte ACTIVE_LAYER = 17;
+
+    /** Entry for adding a layer above the active one. */
+    static final byte ADD_LAYER = 18;
+
+    /** Entry for removing a layer, followed by its position. */
+    static final byte REMOVE_LAYER = 19;
+
+    /** Entry for moving a layer, followed by its old and new positions. */
+    static final byte MOVE_LAYER = 20;
+
+    /** Entry for showing or hiding a layer, followed by its position and whether shown. */
+    static final byte LAYER_VISIBLE = 21;
+
+    /** Entry for a change of a layer's opacity, followed by its position and opacity. */
+    static final byte LAYER_OPACITY = 22;
+
+    /** Entry for placing an imported picture, followed by it in PaintDocumentIO's format. */
+    static final byte IMPORT = 23;
+
+
+    // INSTANCE FIELDS
+    /** The recording being written, or null if not recording. */
+    private DataOutputStream myOut;
+
+    /** The time recording started, from System.nanoTime. */
+    private long myStart;
+
+    /** The first error writing the recording, or null if there was none. */
+    private IOException myError;
+
+
+    /**
+     * Tells whether a session is being recorded.
+     *
+     * @return Whether a session is being recorded.
+     */
+    boolean isRecording() {
+
+        return myOut != null;
+    }
+
+    /**
+     * Starts recording a session. Any recording in progress is stopped first. The panel
+     * then reports its current settings and document as the first entries.
+     *
+     * @param theStream The stream to write the recording to; closed when recording stops.
+     * @param theWidth The width of the panel.
+     * @param theHeight The height of the panel.
+     * @throws IOException If the recording cannot be written.
+     */
+    void start(final OutputStream theStream, final int theWidth, final int theHeight)
+        throws IOException {
+
+        stop();
+        final DataOutputStream out = new DataOutputStream(theStream);
+        try {
+            writeHeader(out, theWidth, theHeight);
+        } catch (final IOException e) {
+            out.close();
+            throw e;
+        }
+        myOut = out;
+        myStart = System.nanoTime();
+    }
+
+    /**
+     * Stops recording, if a session is being recorded, and closes the recording.
+     *
+     * @throws IOException If any part of the recording could not be written.
+     */
+    void stop() throws IOException {
+
+        if (myOut != null) {
+            try {
+                myOut.close();
+            } catch (final IOException e) {
+                fail(e);
+            }
+            myOut = null;
+        }
+        final IOException error = myError;
+        myError = null;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Records a mouse press, drag, or release.
+     *
+     * @param theTag PRESS, DRAG, or RELEASE.
+     * @param theX The x coordinate of the mouse.
+     * @param theY The y coordinate of the mouse.
+     */
+    void mouse(final byte theTag, final int theX, final int theY) {
+
+        if (begin(theTag)) {
+            try {
+                myOut.writeInt(theX);
+                myOut.writeInt(theY);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records a change of tool.
+     *
+     * @param theName The name of the new tool.
+     */
+    void tool(final String theName) {
+
+        if (begin(TOOL)) {
+            try {
+                myOut.writeUTF(theName);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records a change of color.
+     *
+     * @param theTag PAINT_COLOR or FILL_COLOR.
+     * @param theColor The new color.
+     */
+    void color(final byte theTag, final Color theColor) {
+
+        value(theTag, theColor.getRGB());
+    }
+
+    /**
+     * Records a change of a setting held as a number, or a command on a layer.
+     *
+     * @param theTag The entry, such as STROKE or REMOVE_LAYER.
+     * @param theValue The new value, or the position of the layer.
+     */
+    void value(final byte theTag, final int theValue) {
+
+        if (begin(theTag)) {
+            try {
+                myOut.writeInt(theValue);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records a change of a setting that is on or off.
+     *
+     * @param theTag The entry, such as FILL or SNAP_SHAPES.
+     * @param theOn Whether the setting is now on.
+     */
+    void flag(final byte theTag, final boolean theOn) {
+
+        if (begin(theTag)) {
+            try {
+                myOut.writeBoolean(theOn);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records a command that takes no arguments.
+     *
+     * @param theTag The entry, such as CLEAR or ADD_LAYER.
+     */
+    void command(final byte theTag) {
+
+        begin(theTag);
+    }
+
+    /**
+     * Records the answer the user gave when asked for text.
+     *
+     * @param theText The text entered, or null if the user cancelled.
+     */
+    void text(final String theText) {
+
+        if (begin(TEXT)) {
+            try {
+                myOut.writeBoolean(theText != null);
+                if (theText != null) {
+                    myOut.writeUTF(theText);
+                }
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records the opening of a document.
+     *
+     * @param theDocument The document opened.
+     */
+    void document(final PaintDocument theDocument) {
+
+        if (begin(DOCUMENT)) {
+            try {
+                writeDocument(myOut, theDocument);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records a move of a layer.
+     *
+     * @param theFrom The old position of the layer.
+     * @param theTo The new position of the layer.
+     */
+    void moveLayer(final int theFrom, final int theTo) {
+
+        if (begin(MOVE_LAYER)) {
+            try {
+                myOut.writeInt(theFrom);
+                myOut.writeInt(theTo);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records showing or hiding a layer.
+     *
+     * @param theIndex The position of the layer.
+     * @param theVisible Whether the layer is now shown.
+     */
+    void layerVisible(final int theIndex, final boolean theVisible) {
+
+        if (begin(LAYER_VISIBLE)) {
+            try {
+                myOut.writeInt(theIndex);
+                myOut.writeBoolean(theVisible);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records a change of a layer's opacity.
+     *
+     * @param theIndex The position of the layer.
+     * @param theOpacity The new opacity.
+     */
+    void layerOpacity(final int theIndex, final float theOpacity) {
+
+        if (begin(LAYER_OPACITY)) {
+            try {
+                myOut.writeInt(theIndex);
+                myOut.writeFloat(theOpacity);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records placing an imported picture. The picture is recorded whole, since the file
+     * or clipboard it came from may be gone when the session is replayed.
+     *
+     * @param theImage The imported picture in its frame.
+     */
+    void image(final ImageShape theImage) {
+
+        if (begin(IMPORT)) {
+            try {
+                PaintDocumentIO.writeShape(theImage, myOut);
+            } catch (final IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the tag and time of a new entry, if a session is being recorded.
+     *
+     * @param theTag The entry.
+     * @return Whether the entry was begun, so that its arguments should follow.
+     */
+    private boolean begin(final byte theTag) {
+
+        if (myOut == null) {
+            return false;
+        }
+        try {
+            myOut.writeByte(theTag);
+            myOut.writeLong(System.nanoTime() - myStart);
+            return true;
+        } catch (final IOException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    /**
+     * Stops recording after an error, keeping the first error for stop to throw.
+     *
+     * @param theError The error.
+     */
+    private void fail(final IOException theError) {
+
+        if (myError == null) {
+            myError = theError;
+        }
+        final DataOutputStream out = myOut;
+        myOut = null;
+        try {
+            out.close();
+        } catch (final IOException e) {
+            myError.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Writes the header every recording begins with.
+     *
+     * @param theOutput The output to write to.
+     * @param theWidth The width of the panel.
+     * @param theHeight The height of the panel.
+     * @throws IOException If the output cannot be written.
+     */
+    static void writeHeader(final DataOutputStream theOutput, final int theWidth,
+                            final int theHeight) throws IOException {
+
+        theOutput.writeInt(MAGIC);
+        theOutput.writeShort(VERSION);
+        theOutput.writeInt(theWidth);
+        theOutput.writeInt(theHeight);
+    }
+
+    /**
+     * Writes a document as its length in bytes followed by the document in
+     * PaintDocumentIO's format.
+     *
+     * @param theOutput The output to write to.
+     * @param theDocument The document to write.
+     * @throws IOException If the output cannot be written.
+     */
+    private static void writeDocument(final DataOutputStream theOutput,
+                                      final PaintDocument theDocument) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PaintDocumentIO.write(theDocument, bytes);
+        theOutput.writeInt(bytes.size());
+        bytes.writeTo(theOutput);
+    }
+}
@@ -0,0 +1,738 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.zip.CRC32;
+import javax.swing.SwingUtilities;
+import model.DrawingTool;
+import model.EllipseTool;
+import model.EraserTool;
+import model.FillTool;
+import model.ImageShape;
+import model.Layer;
+import model.LineTool;
+import model.PaintDocument;
+import model.PaintDocumentIO;
+import model.PaintShape;
+import model.PencilTool;
+import model.RectangleTool;
+import model.SelectionTool;
+import model.StampTool;
+import model.TextTool;
+
+/**
+ * Replays sessions recorded by SessionRecorder against a PaintPanel without showing it,
+ * either at the pace they were recorded or as fast as possible. Every entry is handed to
+ * the panel on the event dispatch thread, mouse entries as the MouseEvents the user caused,
+ * and the panel is painted after each one. The report gives the time each kind of entry
+ * took to handle and paint, and a checksum of the final frame, which is the same on every
+ * replay of a recording unless rendering has changed.
+ *
+ * <p>A replayer keeps its panel from one recording to the next, so that long runs can be
+ * fed to the same drawing in pieces; the static methods replay a single recording against
+ * a fresh panel.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class SessionReplayer {
+
+    // CONSTANTS
+    /** Nanoseconds in a millisecond, for reporting timings. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+
+    // INSTANCE FIELDS
+    /** The text entered during the recordings, in order, not yet asked for. */
+    private final Queue<String> myAnswers;
+
+    /** The panel the recordings are replayed into. */
+    private final ReplayPanel myPanel;
+
+    /** One of each drawing tool, keyed by the name the recordings know it by. */
+    private final Map<String, DrawingTool> myTools;
+
+    /** The image the panel is painted into, the size of the panel. */
+    private BufferedImage myFrame;
+
+
+    /**
+     * Constructor of a replayer with a fresh panel holding an empty drawing.
+     */
+    public SessionReplayer() {
+
+        myAnswers = new ArrayDeque<String>();
+        myPanel = new ReplayPanel(myAnswers);
+        myTools = createTools();
+    }
+
+    /**
+     * Replays a recorded session from a file against a fresh panel.
+     *
+     * @param theFile The recording.
+     * @param theRealTime Whether to keep the pace of the recording rather than replay it as
+     * fast as possible.
+     * @return The timings and final checksum of the replay.
+     * @throws IOException If the file cannot be read or is not a valid recording.
+     */
+    public static Report replay(final Path theFile, final boolean theRealTime)
+        throws IOException {
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(theFile))) {
+            return replay(in, theRealTime);
+        }
+    }
+
+    /**
+     * Replays a recorded session from a stream against a fresh panel.
+     *
+     * @param theStream The recording; not closed.
+     * @param theRealTime Whether to keep the pace of the recording rather than replay it as
+     * fast as possible.
+     * @return The timings and final checksum of the replay.
+     * @throws IOException If the stream cannot be read or is not a valid recording.
+     */
+    public static Report replay(final InputStream theStream, final boolean theRealTime)
+        throws IOException {
+
+        return new SessionReplayer().play(theStream, theRealTime);
+    }
+
+    /**
+     * Replays a recorded session from a stream against this replayer's panel, continuing
+     * from whatever drawing and settings earlier recordings left it with. The whole
+     * recording is read before the replay starts, so that reading does not count towards
+     * the timings.
+     *
+     * @param theStream The recording; not closed.
+     * @param theRealTime Whether to keep the pace of the recording rather than replay it as
+     * fast as possible.
+     * @return The timings and final checksum of the replay.
+     * @throws IOException If the stream cannot be read or is not a valid recording.
+     */
+    public Report play(final InputStream theStream, final boolean theRealTime)
+        throws IOException {
+
+        final DataInputStream in = new DataInputStream(theStream);
+        if (in.readInt() != SessionRecorder.MAGIC) {
+            throw new IOException("Not a PowerPaint session recording");
+        }
+        final int version = in.readUnsignedShort();
+        if (version != SessionRecorder.VERSION) {
+            throw new IOException("Unsupported recording version " + version);
+        }
+        final int width = in.readInt();
+        final int height = in.readInt();
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Invalid canvas size " + width + "x" + height);
+        }
+        final List<Entry> entries = readEntries(in, myAnswers);
+
+        if (myFrame == null || myFrame.getWidth() != width
+            || myFrame.getHeight() != height) {
+            myPanel.setSize(width, height);
+            myFrame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        final BufferedImage frame = myFrame;
+        final Map<String, List<Long>> latencies = new LinkedHashMap<String, List<Long>>();
+
+        final long start = System.nanoTime();
+        for (final Entry entry: entries) {
+            if (theRealTime) {
+                pause(start + entry.myTime - System.nanoTime());
+            }
+            final long[] latency = new long[1];
+            runOnEventThread(new Runnable() {
+                @Override
+                public void run() {
+                    final long begin = System.nanoTime();
+                    apply(entry, myPanel, myTools);
+                    myPanel.render(frame);
+                    latency[0] = System.nanoTime() - begin;
+                }
+            });
+            List<Long> kind = latencies.get(kindOf(entry.myTag));
+            if (kind == null) {
+                kind = new ArrayList<Long>();
+                latencies.put(kindOf(entry.myTag), kind);
+            }
+            kind.add(latency[0]);
+        }
+        final long total = System.nanoTime() - start;
+
+        int shapes = 0;
+        for (final Layer layer: myPanel.getLayers()) {
+            shapes += layer.getShapes().snapshot().size();
+        }
+        return new Report(latencies, total, checksum(frame), shapes);
+    }
+
+    /**
+     * Reads the entries of a recording up to its end. The answers to requests for text are
+     * taken out of the entries, since they are given when the panel asks for them rather
+     * than when they were recorded.
+     *
+     * @param theInput The recording, past its header.
+     * @param theAnswers Receives the text entered, in order, or null where cancelled.
+     * @return The other entries in order.
+     * @throws IOException If the recording cannot be read or is invalid.
+     */
+    private static List<Entry> readEntries(final DataInputStream theInput,
+                                           final Queue<String> theAnswers)
+        throws IOException {
+
+        final List<Entry> entries = new ArrayList<Entry>();
+        while (true) {
+            final int tag = theInput.read();
+            if (tag < 0) {
+                return entries;
+            }
+            final Entry entry = new Entry((byte) tag, theInput.readLong());
+            switch (entry.myTag) {
+                case SessionRecorder.PRESS:
+                case SessionRecorder.DRAG:
+                case SessionRecorder.RELEASE:
+                case SessionRecorder.MOVE_LAYER:
+                    entry.myFirst = theInput.readInt();
+                    entry.mySecond = theInput.readInt();
+                    break;
+                case SessionRecorder.TOOL:
+                    entry.myText = theInput.readUTF();
+                    break;
+                case SessionRecorder.PAINT_COLOR:
+                case SessionRecorder.FILL_COLOR:
+                case SessionRecorder.STROKE:
+                case SessionRecorder.TOLERANCE:
+                case SessionRecorder.FONT_SIZE:
+                case SessionRecorder.SNAP_GRID:
+                case SessionRecorder.ACTIVE_LAYER:
+                case SessionRecorder.REMOVE_LAYER:
+                    entry.myFirst = theInput.readInt();
+                    break;
+                case SessionRecorder.FILL:
+                case SessionRecorder.SNAP_SHAPES:
+                    entry.myFlag = theInput.readBoolean();
+                    break;
+                case SessionRecorder.TEXT:
+                    theAnswers.add(theInput.readBoolean() ? theInput.readUTF() : null);
+                    continue;
+                case SessionRecorder.MOTIF:
+                case SessionRecorder.CLEAR:
+                case SessionRecorder.ADD_LAYER:
+                    break;
+                case SessionRecorder.DOCUMENT:
+                    entry.myDocument = readDocument(theInput);
+                    break;
+                case SessionRecorder.LAYER_VISIBLE:
+                    entry.myFirst = theInput.readInt();
+                    entry.myFlag = theInput.readBoolean();
+                    break;
+                case SessionRecorder.LAYER_OPACITY:
+                    entry.myFirst = theInput.readInt();
+                    entry.myOpacity = theInput.readFloat();
+                    break;
+                case SessionRecorder.IMPORT:
+                    final PaintShape shape = PaintDocumentIO.readShape(theInput);
+                    if (!(shape instanceof ImageShape)) {
+                        throw new IOException("Imported shape is not a picture");
+                    }
+                    entry.myImage = (ImageShape) shape;
+                    break;
+                default:
+                    throw new IOException("Unknown recording entry " + tag);
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Reads a document stored as its length in bytes followed by the document in
+     * PaintDocumentIO's format.
+     *
+     * @param theInput The recording.
+     * @return The document.
+     * @throws IOException If the document cannot be read or is invalid.
+     */
+    private static PaintDocument readDocument(final DataInputStream theInput)
+        throws IOException {
+
+        final int length = theInput.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid document length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        theInput.readFully(bytes);
+        return PaintDocumentIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Creates one of each drawing tool, keyed by the name the recording knows it by.
+     *
+     * @return The tools.
+     */
+    private static Map<String, DrawingTool> createTools() {
+
+        final Map<String, DrawingTool> tools = new LinkedHashMap<String, DrawingTool>();
+        for (final DrawingTool tool: Arrays.asList(new LineTool(), new RectangleTool(),
+                                                   new EllipseTool(), new PencilTool(),
+                                                   new SelectionTool(), new EraserTool(),
+                                                   new FillTool(), new TextTool(),
+                                                   new StampTool())) {
+            tools.put(tool.getName(), tool);
+        }
+        return tools;
+    }
+
+    /**
+     * Hands one entry of the recording to the panel, as the user once did.
+     *
+     * @param theEntry The entry.
+     * @param thePanel The panel being replayed into.
+     * @param theTools The drawing tools by name.
+     */
+    private static void apply(final Entry theEntry, final ReplayPanel thePanel,
+                              final Map<String, DrawingTool> theTools) {
+
+        final List<Layer> layers = thePanel.getLayers();
+        switch (theEntry.myTag) {
+            case SessionRecorder.PRESS:
+                thePanel.mouse(MouseEvent.MOUSE_PRESSED, theEntry);
+                break;
+            case SessionRecorder.DRAG:
+                thePanel.mouse(MouseEvent.MOUSE_DRAGGED, theEntry);
+                break;
+            case SessionRecorder.RELEASE:
+                thePanel.mouse(MouseEvent.MOUSE_RELEASED, theEntry);
+                break;
+            case SessionRecorder.TOOL:
+                final DrawingTool tool = theTools.get(theEntry.myText);
+                if (tool == null) {
+                    throw new IllegalStateException("Unknown tool " + theEntry.myText);
+                }
+                thePanel.setCurrentTool(tool);
+                break;
+            case SessionRecorder.PAINT_COLOR:
+                thePanel.setPaintColor(new Color(theEntry.myFirst, true));
+                break;
+            case SessionRecorder.FILL_COLOR:
+                thePanel.setFillColor(new Color(theEntry.myFirst, true));
+                break;
+            case SessionRecorder.FILL:
+                thePanel.setFillStatus(theEntry.myFlag);
+                break;
+            case SessionRecorder.STROKE:
+                thePanel.setStrokeWidth(theEntry.myFirst);
+                break;
+            case SessionRecorder.TOLERANCE:
+                thePanel.setFillTolerance(theEntry.myFirst);
+                break;
+            case SessionRecorder.FONT_SIZE:
+                thePanel.setFontSize(theEntry.myFirst);
+                break;
+            case SessionRecorder.SNAP_SHAPES:
+                thePanel.setSnapToShapes(theEntry.myFlag);
+                break;
+            case SessionRecorder.SNAP_GRID:
+                thePanel.setSnapGrid(theEntry.myFirst);
+                break;
+            case SessionRecorder.MOTIF:
+                thePanel.setMotifFromSelection();
+                break;
+            case SessionRecorder.CLEAR:
+                thePanel.clearShapes();
+                break;
+            case SessionRecorder.DOCUMENT:
+                thePanel.setDocument(theEntry.myDocument);
+                break;
+            case SessionRecorder.ACTIVE_LAYER:
+                thePanel.setActiveLayer(layers.get(theEntry.myFirst));
+                break;
+            case SessionRecorder.ADD_LAYER:
+                thePanel.addLayer();
+                break;
+            case SessionRecorder.REMOVE_LAYER:
+                thePanel.removeLayer(layers.get(theEntry.myFirst));
+                break;
+            case SessionRecorder.MOVE_LAYER:
+                thePanel.moveLayer(layers.get(theEntry.myFirst), theEntry.mySecond);
+                break;
+            case SessionRecorder.LAYER_VISIBLE:
+                thePanel.setLayerVisible(layers.get(theEntry.myFirst), theEntry.myFlag);
+                break;
+            case SessionRecorder.LAYER_OPACITY:
+                thePanel.setLayerOpacity(layers.get(theEntry.myFirst), theEntry.myOpacity);
+                break;
+            case SessionRecorder.IMPORT:
+                thePanel.placeImage(theEntry.myImage);
+                break;
+            default:
+                throw new IllegalStateException("Unknown recording entry " + theEntry.myTag);
+        }
+    }
+
+    /**
+     * Provides the kind an entry is reported under: the mouse entries each have their own,
+     * and every change of tool, style, or layer is reported together.
+     *
+     * @param theTag The entry.
+     * @return The kind of entry.
+     */
+    private static String kindOf(final byte theTag) {
+
+        final String kind;
+        switch (theTag) {
+            case SessionRecorder.PRESS:
+                kind = "press";
+                break;
+            case SessionRecorder.DRAG:
+                kind = "drag";
+                break;
+            case SessionRecorder.RELEASE:
+                kind = "release";
+                break;
+            default:
+                kind = "command";
+                break;
+        }
+        return kind;
+    }
+
+    /**
+     * Runs a task on the event dispatch thread and waits for it to finish, passing on
+     * anything it throws.
+     *
+     * @param theTask The task.
+     * @throws InterruptedIOException If interrupted while waiting.
+     */
+    static void runOnEventThread(final Runnable theTask)
+        throws InterruptedIOException {
+
+        try {
+            SwingUtilities.invokeAndWait(theTask);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Replay interrupted");
+        } catch (final InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Waits until the next entry is due when replaying at the recorded pace.
+     *
+     * @param theNanos The time until the entry is due; nothing is waited if not positive.
+     * @throws InterruptedIOException If interrupted while waiting.
+     */
+    private static void pause(final long theNanos) throws InterruptedIOException {
+
+        if (theNanos > 0) {
+            try {
+                Thread.sleep(theNanos / 1_000_000, (int) (theNanos % 1_000_000));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Replay interrupted");
+            }
+        }
+    }
+
+    /**
+     * Computes the CRC-32 of the RGB values of a frame's pixels, row by row.
+     *
+     * @param theFrame The frame.
+     * @return The checksum.
+     */
+    private static long checksum(final BufferedImage theFrame) {
+
+        final CRC32 crc = new CRC32();
+        final int[] row = new int[theFrame.getWidth()];
+        final byte[] bytes = new byte[row.length * 3];
+        for (int y = 0; y < theFrame.getHeight(); y++) {
+            theFrame.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int x = 0; x < row.length; x++) {
+                bytes[3 * x] = (byte) (row[x] >> 16);
+                bytes[3 * x + 1] = (byte) (row[x] >> 8);
+                bytes[3 * x + 2] = (byte) row[x];
+            }
+            crc.update(bytes);
+        }
+        return crc.getValue();
+    }
+
+
+    /**
+     * Results of replaying a session: how long each kind of entry took to handle and
+     * paint, and what the final frame looked like.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    public static final class Report {
+
+        /** Sorted handling and painting times of each kind of entry, in nanoseconds. */
+        private final Map<String, long[]> myLatencies;
+
+        /** The time the whole replay took, in nanoseconds. */
+        private final long myTotal;
+
+        /** The checksum of the final frame. */
+        private final long myChecksum;
+
+        /** The number of shapes in the drawing at the end of the replay. */
+        private final int myShapes;
+
+
+        /**
+         * Constructor that sorts the timings of each kind of entry.
+         *
+         * @param theLatencies The timings of each kind of entry, in nanoseconds.
+         * @param theTotal The time the whole replay took, in nanoseconds.
+         * @param theChecksum The checksum of the final frame.
+         * @param theShapes The number of shapes at the end of the replay.
+         */
+        private Report(final Map<String, List<Long>> theLatencies, final long theTotal,
+                       final long theChecksum, final int theShapes) {
+
+            myLatencies = new LinkedHashMap<String, long[]>();
+            for (final Map.Entry<String, List<Long>> kind: theLatencies.entrySet()) {
+                final long[] times = new long[kind.getValue().size()];
+                for (int i = 0; i < times.length; i++) {
+                    times[i] = kind.getValue().get(i);
+                }
+                Arrays.sort(times);
+                myLatencies.put(kind.getKey(), times);
+            }
+            myTotal = theTotal;
+            myChecksum = theChecksum;
+            myShapes = theShapes;
+        }
+
+        /**
+         * Provides the caller with the kinds of entry replayed: press, drag, release, and
+         * command, in the order they first appeared.
+         *
+         * @return The kinds of entry.
+         */
+        public List<String> getKinds() {
+
+            return Collections.unmodifiableList(new ArrayList<String>(myLatencies.keySet()));
+        }
+
+        /**
+         * Provides the caller with the number of entries of a kind that were replayed.
+         *
+         * @param theKind The kind of entry.
+         * @return The number of entries, 0 if there were none.
+         */
+        public int getCount(final String theKind) {
+
+            final long[] times = myLatencies.get(theKind);
+            return times == null ? 0 : times.length;
+        }
+
+        /**
+         * Provides the caller with the time within which a fraction of the entries of a
+         * kind were handled and painted.
+         *
+         * @param theKind The kind of entry.
+         * @param theFraction The fraction of entries, from 0 to 1; 1 gives the longest.
+         * @return The time in milliseconds, 0 if there were no such entries.
+         */
+        public double getLatencyMillis(final String theKind, final double theFraction) {
+
+            final long[] times = myLatencies.get(theKind);
+            if (times == null) {
+                return 0;
+            }
+            final int rank = (int) Math.ceil(theFraction * times.length) - 1;
+            return times[Math.max(0, Math.min(rank, times.length - 1))] / NANOS_PER_MILLI;
+        }
+
+        /**
+         * Provides the caller with the time each entry of a kind took to handle and paint.
+         *
+         * @param theKind The kind of entry.
+         * @return The times in nanoseconds from shortest to longest, empty if there were no
+         * such entries.
+         */
+        public long[] getLatencyNanos(final String theKind) {
+
+            final long[] times = myLatencies.get(theKind);
+            return times == null ? new long[0] : times.clone();
+        }
+
+        /**
+         * Provides the caller with the time the whole replay took, including any waiting
+         * to keep the recorded pace.
+         *
+         * @return The time in milliseconds.
+         */
+        public double getTotalMillis() {
+
+            return myTotal / NANOS_PER_MILLI;
+        }
+
+        /**
+         * Provides the caller with the CRC-32 of the final frame's pixels.
+         *
+         * @return The checksum.
+         */
+        public long getChecksum() {
+
+            return myChecksum;
+        }
+
+        /**
+         * Provides the caller with the number of shapes in the drawing at the end.
+         *
+         * @return The number of shapes over all layers.
+         */
+        public int getShapes() {
+
+            return myShapes;
+        }
+    }
+
+    /**
+     * One entry of a recording, holding whichever arguments its kind has.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class Entry {
+
+        /** The kind of entry, one of SessionRecorder's tags. */
+        private final byte myTag;
+
+        /** The time of the entry, in nanoseconds since recording started. */
+        private final long myTime;
+
+        /** The first number: a coordinate, value, color, or layer position. */
+        private int myFirst;
+
+        /** The second number: a coordinate or new layer position. */
+        private int mySecond;
+
+        /** Whether a setting or layer is on or shown. */
+        private boolean myFlag;
+
+        /** The opacity of a layer. */
+        private float myOpacity;
+
+        /** The name of a tool. */
+        private String myText;
+
+        /** The document opened. */
+        private PaintDocument myDocument;
+
+        /** The imported picture placed. */
+        private ImageShape myImage;
+
+
+        /**
+         * Constructor of an entry whose arguments are filled in as they are read.
+         *
+         * @param theTag The kind of entry.
+         * @param theTime The time of the entry.
+         */
+        private Entry(final byte theTag, final long theTime) {
+
+            myTag = theTag;
+            myTime = theTime;
+        }
+    }
+
+    /**
+     * PaintPanel that answers requests for text from the recording instead of asking the
+     * user, rasterizes every layer inline, and that can be painted into an image.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    private static final class ReplayPanel extends PaintPanel {
+
+        /** Auto-generated UID for object serialization. */
+        private static final long serialVersionUID = -3264071578820927341L;
+
+        /** The text entered during the recording, in order. */
+        private final transient Queue<String> myAnswers;
+
+
+        /**
+         * Constructor of a panel that gives the recorded answers when asked for text.
+         *
+         * @param theAnswers The text entered during the recording, in order.
+         */
+        private ReplayPanel(final Queue<String> theAnswers) {
+
+            super();
+            myAnswers = theAnswers;
+            // Every frame must show every entry handled so far, so nothing is deferred.
+            setBackgroundRendering(false);
+        }
+
+        @Override
+        protected String promptText() {
+
+            return myAnswers.poll();
+        }
+
+        /**
+         * Delivers a recorded mouse press, drag, or release to the panel's listeners.
+         *
+         * @param theId The kind of MouseEvent.
+         * @param theEntry The recorded entry, holding the point of the mouse.
+         */
+        private void mouse(final int theId, final Entry theEntry) {
+
+            int modifiers = InputEvent.BUTTON1_DOWN_MASK;
+            if (theId == MouseEvent.MOUSE_RELEASED) {
+                modifiers = 0;
+            }
+            dispatchEvent(new MouseEvent(this, theId, System.currentTimeMillis(), modifiers,
+                                         theEntry.myFirst, theEntry.mySecond, 1, false,
+                                         MouseEvent.BUTTON1));
+        }
+
+        /**
+         * Paints the panel into an image as the screen would show it.
+         *
+         * @param theFrame The image to paint into, the size of the panel.
+         */
+        private void render(final BufferedImage theFrame) {
+
+            final Graphics2D g2d = theFrame.createGraphics();
+            try {
+                paintComponent(g2d);
+            } finally {
+                g2d.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package view;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import model.DocumentLayer;
+import model.OcclusionIndex;
+import model.PaintDocument;
+import model.PaintShape;
+
+/**
+ * Draws committed PaintShapes. Shared by PaintPanel when painting the canvas and by the
+ * headless tools that render saved documents to images, so that both produce the same
+ * pixels.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class ShapeRenderer {
+
+    // CONSTANTS
+    /** Background color of every rendered canvas. */
+    public static final Color BACKGROUND_COLOR = Color.WHITE;
+
+    /** Shapes drawn between checks of whether a DocumentTask drawing them was cancelled. */
+    private static final int TASK_CHECK = 256;
+
+
+    // Private constructor to inhibit external instantiation.
+    private ShapeRenderer() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Turns on the rendering hints used for all PowerPaint drawing.
+     *
+     * @param theGraphics The graphics context to configure.
+     */
+    public static void applyHints(final Graphics2D theGraphics) {
+
+        theGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                     RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+
+    /**
+     * Draws each of the given PaintShapes in order. Shapes whose bounds lie entirely outside
+     * the clip are skipped.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theShapes The PaintShapes to draw, in drawing order.
+     * @return The number of PaintShapes drawn.
+     */
+    public static int paintShapes(final Graphics2D theGraphics,
+                                  final Iterable<PaintShape> theShapes) {
+
+        return paintShapes(theGraphics, theShapes, null);
+    }
+
+    /**
+     * Draws each of the given PaintShapes in order, skipping those whose bounds lie
+     * entirely outside the clip and those the occlusion index reports as hidden under a
+     * later opaque fill. Hidden shapes are only skipped when the graphics context maps the
+     * shapes onto whole pixels and blends at full opacity, as the index assumes; otherwise
+     * every shape is drawn, so the result is the same either way.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theShapes The PaintShapes to draw, in drawing order.
+     * @param theHidden The occlusion index of the PaintShapes, or null to draw them all.
+     * @return The number of PaintShapes drawn.
+     */
+    public static int paintShapes(final Graphics2D theGraphics,
+                                  final Iterable<PaintShape> theShapes,
+                                  final OcclusionIndex theHidden) {
+
+        return paintShapes(theGraphics, theShapes, theHidden, null);
+    }
+
+    /**
+     * Draws PaintShapes as paintShapes does for a DocumentTask, counting each shape as a
+     * unit of the task's work and stopping if the task is cancelled.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theShapes The PaintShapes to draw, in drawing order.
+     * @param theHidden The occlusion index of the PaintShapes, or null to draw them all.
+     * @param theTask The task drawing the PaintShapes, or null if none is.
+     * @return The number of PaintShapes drawn.
+     * @throws java.util.concurrent.CancellationException If the task is cancelled.
+     */
+    static int paintShapes(final Graphics2D theGraphics, final Iterable<PaintShape> theShapes,
+                           final OcclusionIndex theHidden, final DocumentTask<?> theTask) {
+
+        final Rectangle clip = theGraphics.getClipBounds();
+        final OcclusionIndex hidden = isPixelAligned(theGraphics) ? theHidden : null;
+        int result = 0;
+        int unchecked = 0;
+        for (final PaintShape shape: theShapes) {
+            if ((clip == null || shape.getBounds().intersects(clip))
+                && (hidden == null || !hidden.isHidden(shape))) {
+                shape.draw(theGraphics);
+                result++;
+            }
+            if (theTask != null && ++unchecked == TASK_CHECK) {
+                theTask.advance(unchecked);
+                unchecked = 0;
+            }
+        }
+        if (theTask != null) {
+            theTask.advance(unchecked);
+        }
+        return result;
+    }
+
+    /**
+     * Determines whether a graphics context draws shapes onto whole pixels of their own
+     * coordinates, moved by whole pixels at most, and blends them at full opacity.
+     *
+     * @param theGraphics The graphics context.
+     * @return Whether an OcclusionIndex describes drawing into the graphics context.
+     */
+    private static boolean isPixelAligned(final Graphics2D theGraphics) {
+
+        final AffineTransform transform = theGraphics.getTransform();
+        return (transform.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0
+               && transform.getTranslateX() == Math.rint(transform.getTranslateX())
+               && transform.getTranslateY() == Math.rint(transform.getTranslateY())
+               && AlphaComposite.SrcOver.equals(theGraphics.getComposite());
+    }
+
+    /**
+     * Draws every shown layer of a document from bottom to top. Layers that are not fully
+     * opaque are drawn into an offscreen image covering the clip and then blended in, so
+     * that their own overlapping shapes do not show through one another.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theDocument The document to draw.
+     */
+    public static void paintDocument(final Graphics2D theGraphics,
+                                     final PaintDocument theDocument) {
+
+        paintDocument(theGraphics, theDocument, null);
+    }
+
+    /**
+     * Draws a document as paintDocument does for a DocumentTask, counting each shape of a
+     * shown layer as a unit of the task's work and stopping if the task is cancelled.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theDocument The document to draw.
+     * @param theTask The task drawing the document, or null if none is.
+     * @throws java.util.concurrent.CancellationException If the task is cancelled.
+     */
+    static void paintDocument(final Graphics2D theGraphics, final PaintDocument theDocument,
+                              final DocumentTask<?> theTask) {
+
+        for (final DocumentLayer layer: theDocument.getLayers()) {
+            if (!layer.isVisible() || layer.getOpacity() == 0) {
+                continue;
+            }
+            if (layer.getOpacity() == 1) {
+                paintShapes(theGraphics, layer.getShapes(), null, theTask);
+            } else {
+                paintTranslucent(theGraphics, layer, theTask);
+            }
+        }
+    }
+
+    /**
+     * Draws a layer that is not fully opaque through an offscreen image in device space,
+     * covering no more than the layer's shapes.
+     *
+     * @param theGraphics The graphics context to draw into.
+     * @param theLayer The layer to draw.
+     * @param theTask The task drawing the layer, or null if none is.
+     */
+    private static void paintTranslucent(final Graphics2D theGraphics,
+                                         final DocumentLayer theLayer,
+                                         final DocumentTask<?> theTask) {
+
+        Rectangle2D content = null;
+        for (final PaintShape shape: theLayer.getShapes()) {
+            if (content == null) {
+                content = (Rectangle2D) shape.getBounds().clone();
+            } else {
+                content.add(shape.getBounds());
+            }
+        }
+        if (content == null) {
+            return;
+        }
+        // Only the part of the layer's content that can reach the device is drawn offscreen;
+        // the device itself may be unbounded, as when drawing into an image without a clip.
+        final AffineTransform transform = theGraphics.getTransform();
+        Rectangle area = transform.createTransformedShape(content).getBounds();
+        area.grow(1, 1);
+        area = area.intersection(theGraphics.getDeviceConfiguration().getBounds());
+        final Rectangle clip = theGraphics.getClipBounds();
+        if (clip != null) {
+            area = area.intersection(transform.createTransformedShape(clip).getBounds());
+        }
+        if (area.isEmpty()) {
+            if (theTask != null) {
+                theTask.advance(theLayer.getShapes().size());
+            }
+            return;
+        }
+        final BufferedImage image = new BufferedImage(area.width, area.height,
+                                                      BufferedImage.TYPE_INT_ARGB_PRE);
+        final Graphics2D g2d = image.createGraphics();
+        try {
+            applyHints(g2d);
+            g2d.translate(-area.x, -area.y);
+            g2d.transform(transform);
+            paintShapes(g2d, theLayer.getShapes(), null, theTask);
+        } finally {
+            g2d.dispose();
+        }
+        final Composite composite = theGraphics.getComposite();
+        theGraphics.setTransform(new AffineTransform());
+        theGraphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+                                                            theLayer.getOpacity()));
+        theGraphics.drawImage(image, area.x, area.y, null);
+        theGraphics.setComposite(composite);
+        theGraphics.setTransform(transform);
+    }
+
+    /**
+     * Renders a whole document into a new image of the requested size. The document's
+     * canvas is scaled to fill the image.
+     *
+     * @param theDocument The document to render.
+     * @param theWidth The width of the resulting image.
+     * @param theHeight The height of the resulting image.
+     * @return A new image holding the rendered document.
+     */
+    public static BufferedImage render(final PaintDocument theDocument, final int theWidth,
+                                       final int theHeight) {
+
+        return render(theDocument, theWidth, theHeight, null);
+    }
+
+    /**
+     * Renders a whole document as render does for a DocumentTask, counting each shape of a
+     * shown layer as a unit of the task's work and stopping if the task is cancelled.
+     *
+     * @param theDocument The document to render.
+     * @param theWidth The width of the resulting image.
+     * @param theHeight The height of the resulting image.
+     * @param theTask The task rendering the document, or null if none is.
+     * @return A new image holding the rendered document.
+     * @throws java.util.concurrent.CancellationException If the task is cancelled.
+     */
+    static BufferedImage render(final PaintDocument theDocument, final int theWidth,
+                                final int theHeight, final DocumentTask<?> theTask) {
+
+        final BufferedImage image =
+            new BufferedImage(theWidth, theHeight, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setColor(BACKGROUND_COLOR);
+            g2d.fillRect(0, 0, theWidth, theHeight);
+            applyHints(g2d);
+            g2d.scale((double) theWidth / theDocument.getWidth(),
+                      (double) theHeight / theDocument.getHeight());
+            paintDocument(g2d, theDocument, theTask);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,125 @@
+package view;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Times how long PowerPaint takes to start: from main to the window being shown, to the
+ * first frame of the canvas reaching the screen, and to the program being interactive,
+ * with its tool icons in place and the event dispatch thread free. The timeline is
+ * printed once the program is interactive, and when the system property
+ * powerpaint.startupLog names a file, it is also appended to that file so that startup
+ * times can be tracked across launches. Each launch appends a line of the time it ended
+ * and the milliseconds from the JVM starting to main, then from main to the window, to
+ * the first frame, and to being interactive, separated by commas.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class StartupTimeline {
+
+    // CONSTANTS
+    /** System property naming the file the timeline is appended to. */
+    public static final String LOG_PROPERTY = "powerpaint.startupLog";
+
+    /** Mark of the window being shown. */
+    static final String WINDOW = "window";
+
+    /** Mark of the first frame of the canvas reaching the screen. */
+    static final String FIRST_FRAME = "first frame";
+
+    /** Mark of the program being interactive. */
+    static final String INTERACTIVE = "interactive";
+
+    /** The time main began, from System.nanoTime. */
+    private static final long START = System.nanoTime();
+
+    /** Nanoseconds in a millisecond. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /** The milliseconds after main of each mark so far, in the order they were made. */
+    private static final Map<String, Double> MARKS = new LinkedHashMap<String, Double>();
+
+
+    // Private constructor to inhibit external instantiation.
+    private StartupTimeline() {
+
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Starts the timeline. Called first thing in main, since the timeline counts from
+     * when this class is loaded.
+     */
+    public static void begin() {
+
+        // Loading the class is what starts the timeline.
+    }
+
+    /**
+     * Marks a point of startup, unless it has been marked before.
+     *
+     * @param theName The name of the point.
+     */
+    static synchronized void mark(final String theName) {
+
+        if (!MARKS.containsKey(theName)) {
+            MARKS.put(theName, (System.nanoTime() - START) / NANOS_PER_MILLI);
+        }
+    }
+
+    /**
+     * Prints the timeline, and appends it to the file named by LOG_PROPERTY if there is
+     * one. Called once startup is over, off the event dispatch thread, since looking up
+     * the JVM's uptime loads the management classes.
+     */
+    static void report() {
+
+        final Map<String, Double> marks;
+        synchronized (StartupTimeline.class) {
+            marks = new LinkedHashMap<String, Double>(MARKS);
+        }
+        // The JVM's uptime is kept in whole milliseconds, so this is no finer than that.
+        final double beforeMain = ManagementFactory.getRuntimeMXBean().getUptime()
+                                  - (System.nanoTime() - START) / NANOS_PER_MILLI;
+
+        final StringBuilder line = new StringBuilder("Startup:");
+        for (final Map.Entry<String, Double> mark: marks.entrySet()) {
+            line.append(String.format(Locale.ROOT, " %s %.0f ms,", mark.getKey(),
+                                      mark.getValue()));
+        }
+        line.setLength(line.length() - 1);
+        line.append(String.format(Locale.ROOT, " after main (JVM start to main %.0f ms)",
+                                  beforeMain));
+        System.out.println(line);
+
+        final String log = System.getProperty(LOG_PROPERTY);
+        if (log != null) {
+            final StringBuilder record = new StringBuilder(Instant.now().toString());
+            record.append(String.format(Locale.ROOT, ",%.1f", beforeMain));
+            for (final String name: new String[] {WINDOW, FIRST_FRAME, INTERACTIVE}) {
+                final Double time = marks.get(name);
+                record.append(',');
+                if (time != null) {
+                    record.append(String.format(Locale.ROOT, "%.1f", time));
+                }
+            }
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(log),
+                     StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                     StandardOpenOption.APPEND))) {
+                out.println(record);
+            } catch (final IOException e) {
+                System.out.println("Could not append the startup timeline to " + log);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs DocumentTasks one after another on a background worker thread, committing each
+ * on the event dispatch thread once it is computed, so that the drawing changes in the
+ * order the tasks were submitted. Tasks are submitted, cancelled, and listed on the event
+ * dispatch thread, where the listener also hears of them.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+final class TaskRunner {
+
+    // INSTANCE FIELDS
+    /** The thread tasks are computed on. */
+    private final ExecutorService myWorker;
+
+    /** The tasks submitted and neither finished nor cancelled, oldest first. */
+    private final List<DocumentTask<?>> myTasks;
+
+    /** Told when tasks come and go and when one fails. */
+    private final Listener myListener;
+
+
+    /**
+     * Constructor that starts a runner with no tasks. Its worker thread does not keep the
+     * program running.
+     *
+     * @param theListener Told when tasks come and go and when one fails.
+     */
+    TaskRunner(final Listener theListener) {
+
+        myWorker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable theWork) {
+                final Thread result = new Thread(theWork, "Document worker");
+                result.setDaemon(true);
+                return result;
+            }
+        });
+        myTasks = new ArrayList<DocumentTask<?>>();
+        myListener = theListener;
+    }
+
+    /**
+     * Queues a task to be computed after those already submitted.
+     *
+     * @param <T> The type of the task's result.
+     * @param theTask The task.
+     */
+    <T> void submit(final DocumentTask<T> theTask) {
+
+        myTasks.add(theTask);
+        myListener.tasksChanged();
+        myWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final T result = theTask.run();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish(theTask, result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels a task and forgets it at once, without waiting for it to stop.
+     *
+     * @param theTask The task.
+     */
+    void cancel(final DocumentTask<?> theTask) {
+
+        theTask.cancel();
+        if (myTasks.remove(theTask)) {
+            myListener.tasksChanged();
+        }
+    }
+
+    /**
+     * Cancels every task and lets the worker thread end once the task it is computing
+     * stops. No task may be submitted afterwards.
+     */
+    void shutdown() {
+
+        for (final DocumentTask<?> task: myTasks) {
+            task.cancel();
+        }
+        myTasks.clear();
+        myWorker.shutdown();
+        myListener.tasksChanged();
+    }
+
+    /**
+     * Provides the caller with the tasks that are queued or being computed.
+     *
+     * @return The read-only list of unfinished tasks, oldest first.
+     */
+    List<DocumentTask<?>> getTasks() {
+
+        return Collections.unmodifiableList(myTasks);
+    }
+
+    /**
+     * Commits a computed task unless it was cancelled or failed, and forgets it.
+     *
+     * @param <T> The type of the task's result.
+     * @param theTask The task.
+     * @param theResult The result of the task.
+     */
+    private <T> void finish(final DocumentTask<T> theTask, final T theResult) {
+
+        myTasks.remove(theTask);
+        try {
+            if (!theTask.isCancelled()) {
+                if (theTask.getError() == null) {
+                    theTask.commit(theResult);
+                } else {
+                    myListener.failed(theTask);
+                }
+            }
+        } finally {
+            myListener.tasksChanged();
+        }
+    }
+
+
+    /**
+     * Receives news of a TaskRunner's tasks on the event dispatch thread.
+     *
+     * @author JJ Coldiron (jj.coldiron@outlook.com)
+     * @version 1.0
+     */
+    interface Listener {
+
+        /**
+         * Called when a task is submitted, cancelled, or finished.
+         */
+        void tasksChanged();
+
+        /**
+         * Called when a task fails; its error tells why.
+         *
+         * @param theTask The task.
+         */
+        void failed(DocumentTask<?> theTask);
+    }
+}
@@ -0,0 +1,153 @@
+package view;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+/**
+ * Status bar showing the progress of the PaintPanel's background tasks, such as opening or
+ * saving a large document, with a button to cancel the oldest. It listens for the panel's
+ * "tasks" PropertyChange and only appears once tasks have been running for a moment, so
+ * that quick ones do not make it flicker. When DocumentTabs fire the "document"
+ * PropertyChange, it shows the tasks of the document shown instead.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public class TaskStatusBar extends JPanel implements PropertyChangeListener {
+
+    // CONSTANTS
+    /** Auto-generated serial version UID for object serialization. */
+    private static final long serialVersionUID = 5120938474120394813L;
+
+    /** Milliseconds between refreshes of the progress shown. */
+    private static final int REFRESH_MILLIS = 100;
+
+    /** Nanoseconds tasks run before the bar appears. */
+    private static final long SHOW_DELAY = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /** Pixels between the parts of the bar and before it. */
+    private static final int GAP = 5;
+
+    /** Number of steps of the progress bar. */
+    private static final int STEPS = 1000;
+
+
+    // INSTANCE FIELDS
+    /** The panel whose tasks are shown. */
+    private PaintPanel myPanel;
+
+    /** What the oldest task does, and how many others wait. */
+    private final JLabel myLabel;
+
+    /** The progress of the oldest task. */
+    private final JProgressBar myProgress;
+
+    /** Refreshes the progress while tasks run. */
+    private final Timer myTimer;
+
+    /** Read-only view of the tasks running or waiting, oldest first. */
+    private List<DocumentTask<?>> myTasks;
+
+    /** When the bar may appear, on the System.nanoTime clock. */
+    private long myShowTime;
+
+
+    /**
+     * Constructor method that builds the hidden bar for the given panel's tasks.
+     *
+     * @param thePanel The panel whose tasks are shown.
+     */
+    protected TaskStatusBar(final PaintPanel thePanel) {
+
+        super(new BorderLayout(GAP, 0));
+        myPanel = thePanel;
+        myLabel = new JLabel();
+        myProgress = new JProgressBar(0, STEPS);
+        myTimer = new Timer(REFRESH_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                refresh();
+            }
+        });
+        myTasks = thePanel.getTasks();
+        setup();
+    }
+
+    /**
+     * Private helper method that lays out the label, progress bar, and "Cancel" button.
+     */
+    private void setup() {
+
+        final JButton cancel = new JButton("Cancel");
+        cancel.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                if (!myTasks.isEmpty()) {
+                    myPanel.cancelTask(myTasks.get(0));
+                }
+            }
+        });
+        setBorder(BorderFactory.createEmptyBorder(0, GAP, 0, 0));
+        add(myLabel, BorderLayout.WEST);
+        add(myProgress, BorderLayout.CENTER);
+        add(cancel, BorderLayout.EAST);
+        setVisible(false);
+    }
+
+    @Override
+    public void propertyChange(final PropertyChangeEvent theEvent) {
+
+        if (theEvent.getPropertyName().equals("document")) {
+            myPanel = (PaintPanel) theEvent.getNewValue();
+            myTimer.stop();
+            setVisible(false);
+        } else if (!theEvent.getPropertyName().equals("tasks")
+                   || theEvent.getSource() != myPanel) {
+            return;
+        }
+        myTasks = myPanel.getTasks();
+        if (myTasks.isEmpty()) {
+            myTimer.stop();
+            setVisible(false);
+        } else {
+            if (!myTimer.isRunning()) {
+                myShowTime = System.nanoTime() + SHOW_DELAY;
+                myTimer.start();
+            }
+            refresh();
+        }
+    }
+
+    /**
+     * Shows the progress of the oldest task, once tasks have run long enough to show it.
+     */
+    private void refresh() {
+
+        if (myTasks.isEmpty() || System.nanoTime() - myShowTime < 0) {
+            return;
+        }
+        final DocumentTask<?> task = myTasks.get(0);
+        if (myTasks.size() == 1) {
+            myLabel.setText(task.getName());
+        } else {
+            myLabel.setText(task.getName() + " (" + (myTasks.size() - 1) + " more)");
+        }
+        final double progress = task.getProgress();
+        myProgress.setIndeterminate(progress < 0);
+        if (progress >= 0) {
+            myProgress.setValue((int) Math.round(progress * STEPS));
+        }
+        setVisible(true);
+    }
+}
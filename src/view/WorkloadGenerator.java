@@ -0,0 +1,317 @@
+package view;
+
+import java.awt.Color;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Writes synthetic sessions in SessionRecorder's format, so that SessionReplayer can feed
+ * them through the real drawing tools into a PaintPanel. Each session draws a mix of
+ * lines, rectangles, ellipses, and pencil scribbles the way a user would: choosing the tool
+ * and style, pressing, dragging through a series of points, and releasing. The sizes,
+ * stroke widths, share of filled shapes, and weight of each kind of shape are configurable,
+ * and a generator with the same seed and settings always writes the same sessions.
+ *
+ * @author JJ Coldiron (jj.coldiron@outlook.com)
+ * @version 1.0
+ */
+public final class WorkloadGenerator {
+
+    // CONSTANTS
+    /** Names of the tools used, in the order of the weights of the mix. */
+    private static final String[] TOOLS = {"Line", "Rectangle", "Ellipse", "Pencil"};
+
+    /** Position of the pencil among the tools. */
+    private static final int PENCIL = 3;
+
+    /** Nanoseconds between mouse events, as if the mouse were sampled at 60 Hz. */
+    private static final long EVENT_NANOS = 16_666_667L;
+
+    /** Number of drags between the press and release of a line, rectangle, or ellipse. */
+    private static final int DRAGS = 8;
+
+    /** Length of a pencil step as a fraction of the scribble's size. */
+    private static final double PENCIL_STEP = 0.1;
+
+    /** Largest turn between pencil steps, in radians. */
+    private static final double PENCIL_TURN = 0.6;
+
+
+    // INSTANCE FIELDS
+    /** The width of the canvas the sessions are drawn on. */
+    private final int myWidth;
+
+    /** The height of the canvas the sessions are drawn on. */
+    private final int myHeight;
+
+    /** The source of every random choice. */
+    private final Random myRandom;
+
+    /** Relative weights of lines, rectangles, ellipses, and pencil scribbles. */
+    private final int[] myMix;
+
+    /** The smallest extent of a shape, in pixels. */
+    private int myMinSize;
+
+    /** The largest extent of a shape, in pixels. */
+    private int myMaxSize;
+
+    /** The thinnest stroke width. */
+    private int myMinStroke;
+
+    /** The thickest stroke width. */
+    private int myMaxStroke;
+
+    /** The share of rectangles and ellipses that are filled. */
+    private double myFillRatio;
+
+    /** The time of the next entry of the session being written. */
+    private long myTime;
+
+
+    /**
+     * Constructor of a generator with an even mix of shapes from 10 to 200 pixels across,
+     * stroke widths from 1 to 10, and a third of the rectangles and ellipses filled.
+     *
+     * @param theWidth The width of the canvas.
+     * @param theHeight The height of the canvas.
+     * @param theSeed The seed of the random choices.
+     * @throws IllegalArgumentException If the canvas is empty.
+     */
+    public WorkloadGenerator(final int theWidth, final int theHeight, final long theSeed) {
+
+        if (theWidth <= 0 || theHeight <= 0) {
+            throw new IllegalArgumentException("Invalid canvas size " + theWidth + "x"
+                                               + theHeight);
+        }
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myRandom = new Random(theSeed);
+        myMix = new int[] {1, 1, 1, 1};
+        myMinSize = 10;
+        myMaxSize = 200;
+        myMinStroke = 1;
+        myMaxStroke = 10;
+        myFillRatio = 1 / 3.0;
+    }
+
+    /**
+     * Sets the relative weights of each kind of shape.
+     *
+     * @param theLines The weight of lines.
+     * @param theRectangles The weight of rectangles.
+     * @param theEllipses The weight of ellipses.
+     * @param thePencils The weight of pencil scribbles.
+     * @throws IllegalArgumentException If a weight is negative or all are 0.
+     */
+    public void setMix(final int theLines, final int theRectangles, final int theEllipses,
+                       final int thePencils) {
+
+        if (theLines < 0 || theRectangles < 0 || theEllipses < 0 || thePencils < 0
+            || theLines + theRectangles + theEllipses + thePencils == 0) {
+            throw new IllegalArgumentException("Invalid mix");
+        }
+        myMix[0] = theLines;
+        myMix[1] = theRectangles;
+        myMix[2] = theEllipses;
+        myMix[PENCIL] = thePencils;
+    }
+
+    /**
+     * Sets the range of extents of the shapes.
+     *
+     * @param theMin The smallest extent, in pixels.
+     * @param theMax The largest extent, in pixels.
+     * @throws IllegalArgumentException If the range is empty or not positive.
+     */
+    public void setSizes(final int theMin, final int theMax) {
+
+        if (theMin <= 0 || theMax < theMin) {
+            throw new IllegalArgumentException("Invalid sizes " + theMin + " to " + theMax);
+        }
+        myMinSize = theMin;
+        myMaxSize = theMax;
+    }
+
+    /**
+     * Sets the range of stroke widths.
+     *
+     * @param theMin The thinnest stroke width.
+     * @param theMax The thickest stroke width.
+     * @throws IllegalArgumentException If the range is empty or negative.
+     */
+    public void setStrokeWidths(final int theMin, final int theMax) {
+
+        if (theMin < 0 || theMax < theMin) {
+            throw new IllegalArgumentException("Invalid stroke widths " + theMin + " to "
+                                               + theMax);
+        }
+        myMinStroke = theMin;
+        myMaxStroke = theMax;
+    }
+
+    /**
+     * Sets the share of rectangles and ellipses that are filled.
+     *
+     * @param theRatio The share, from 0 to 1.
+     * @throws IllegalArgumentException If the share is outside 0 to 1.
+     */
+    public void setFillRatio(final double theRatio) {
+
+        if (!(theRatio >= 0 && theRatio <= 1)) {
+            throw new IllegalArgumentException("Invalid fill ratio " + theRatio);
+        }
+        myFillRatio = theRatio;
+    }
+
+    /**
+     * Writes a session that draws some shapes, optionally clearing the drawing first.
+     * Sessions written one after another continue the same random sequence.
+     *
+     * @param theStream The stream to write to; not closed.
+     * @param theShapes The number of shapes to draw.
+     * @param theClear Whether to clear the drawing before drawing them.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void write(final OutputStream theStream, final int theShapes,
+                      final boolean theClear) throws IOException {
+
+        final DataOutputStream out = new DataOutputStream(theStream);
+        SessionRecorder.writeHeader(out, myWidth, myHeight);
+        myTime = 0;
+        if (theClear) {
+            begin(out, SessionRecorder.CLEAR);
+        }
+        for (int i = 0; i < theShapes; i++) {
+            writeShape(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the entries that choose a tool and style and draw one shape with them.
+     *
+     * @param theOutput The session being written.
+     * @throws IOException If the session cannot be written.
+     */
+    private void writeShape(final DataOutputStream theOutput) throws IOException {
+
+        final int tool = pickTool();
+        begin(theOutput, SessionRecorder.TOOL);
+        theOutput.writeUTF(TOOLS[tool]);
+        begin(theOutput, SessionRecorder.PAINT_COLOR);
+        theOutput.writeInt(randomColor().getRGB());
+        begin(theOutput, SessionRecorder.STROKE);
+        theOutput.writeInt(between(myMinStroke, myMaxStroke));
+        begin(theOutput, SessionRecorder.FILL);
+        final boolean fill = tool != 0 && tool != PENCIL && myRandom.nextDouble() < myFillRatio;
+        theOutput.writeBoolean(fill);
+        if (fill) {
+            begin(theOutput, SessionRecorder.FILL_COLOR);
+            theOutput.writeInt(randomColor().getRGB());
+        }
+
+        final int size = between(myMinSize, myMaxSize);
+        final double x = myRandom.nextDouble() * myWidth;
+        final double y = myRandom.nextDouble() * myHeight;
+        mouse(theOutput, SessionRecorder.PRESS, x, y);
+        if (tool == PENCIL) {
+            double px = x;
+            double py = y;
+            double angle = myRandom.nextDouble() * 2 * Math.PI;
+            final int steps = (int) Math.ceil(1 / PENCIL_STEP) * 2;
+            for (int i = 0; i < steps; i++) {
+                angle += (myRandom.nextDouble() * 2 - 1) * PENCIL_TURN;
+                px += Math.cos(angle) * size * PENCIL_STEP;
+                py += Math.sin(angle) * size * PENCIL_STEP;
+                mouse(theOutput, SessionRecorder.DRAG, px, py);
+            }
+            mouse(theOutput, SessionRecorder.RELEASE, px, py);
+        } else {
+            final double angle = myRandom.nextDouble() * 2 * Math.PI;
+            final double dx = Math.cos(angle) * size;
+            final double dy = Math.sin(angle) * size;
+            for (int i = 1; i <= DRAGS; i++) {
+                mouse(theOutput, SessionRecorder.DRAG, x + dx * i / DRAGS, y + dy * i / DRAGS);
+            }
+            mouse(theOutput, SessionRecorder.RELEASE, x + dx, y + dy);
+        }
+    }
+
+    /**
+     * Writes a mouse entry at a point kept within the canvas, one mouse sample after the
+     * previous one.
+     *
+     * @param theOutput The session being written.
+     * @param theTag PRESS, DRAG, or RELEASE.
+     * @param theX The x coordinate of the mouse.
+     * @param theY The y coordinate of the mouse.
+     * @throws IOException If the session cannot be written.
+     */
+    private void mouse(final DataOutputStream theOutput, final byte theTag, final double theX,
+                       final double theY) throws IOException {
+
+        myTime += EVENT_NANOS;
+        begin(theOutput, theTag);
+        theOutput.writeInt((int) Math.max(0, Math.min(Math.round(theX), myWidth - 1)));
+        theOutput.writeInt((int) Math.max(0, Math.min(Math.round(theY), myHeight - 1)));
+    }
+
+    /**
+     * Writes the tag and time of an entry.
+     *
+     * @param theOutput The session being written.
+     * @param theTag The entry.
+     * @throws IOException If the session cannot be written.
+     */
+    private void begin(final DataOutputStream theOutput, final byte theTag)
+        throws IOException {
+
+        theOutput.writeByte(theTag);
+        theOutput.writeLong(myTime);
+    }
+
+    /**
+     * Picks the tool of the next shape according to the mix.
+     *
+     * @return The position of the tool in TOOLS.
+     */
+    private int pickTool() {
+
+        int total = 0;
+        for (final int weight: myMix) {
+            total += weight;
+        }
+        int pick = myRandom.nextInt(total);
+        int tool = 0;
+        while (pick >= myMix[tool]) {
+            pick -= myMix[tool];
+            tool++;
+        }
+        return tool;
+    }
+
+    /**
+     * Picks a whole number within a range.
+     *
+     * @param theMin The smallest number.
+     * @param theMax The largest number.
+     * @return The number picked.
+     */
+    private int between(final int theMin, final int theMax) {
+
+        return theMin + myRandom.nextInt(theMax - theMin + 1);
+    }
+
+    /**
+     * Picks an opaque color.
+     *
+     * @return The color picked.
+     */
+    private Color randomColor() {
+
+        return new Color(myRandom.nextInt(1 << 24));
+    }
+}